@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.trohovsky.just.model.ClassSet;
+import com.github.trohovsky.just.model.Dependencies;
+import com.github.trohovsky.just.model.SymbolTable;
+
+/**
+ * Benchmarks of the add methods of {@link Dependencies} on the internal
+ * names, descriptors and signatures of the JDK classes. The results are per
+ * all strings of the kind, see the setup output for their counts.
+ * 
+ * @author Tomas Rohovsky
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class DependenciesBenchmark {
+
+	private static final int CLASSES = 1000;
+
+	private final List<String> internalNames = new ArrayList<String>();
+	private final List<String> descs = new ArrayList<String>();
+	private final List<String> methodDescs = new ArrayList<String>();
+	private final List<String> signatures = new ArrayList<String>();
+	private SymbolTable symbolTable;
+
+	@Setup
+	public void setUp() throws IOException {
+		for (byte[] bytes : JdkCorpus.read(CLASSES).values()) {
+			new ClassReader(bytes).accept(new Collector(), ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		}
+		// the names are interned already as in a long running analysis
+		symbolTable = new SymbolTable();
+		addInternalNames();
+		addDescs();
+		addMethodDescs();
+		addSignatures();
+	}
+
+	@Benchmark
+	public ClassSet addInternalNames() {
+		final Dependencies dependencies = new Dependencies(symbolTable);
+		for (String name : internalNames) {
+			dependencies.addInternalName(name);
+		}
+		return dependencies.get();
+	}
+
+	@Benchmark
+	public ClassSet addDescs() {
+		final Dependencies dependencies = new Dependencies(symbolTable);
+		for (String desc : descs) {
+			dependencies.addDesc(desc);
+		}
+		return dependencies.get();
+	}
+
+	@Benchmark
+	public ClassSet addMethodDescs() {
+		final Dependencies dependencies = new Dependencies(symbolTable);
+		for (String desc : methodDescs) {
+			dependencies.addMethodDesc(desc);
+		}
+		return dependencies.get();
+	}
+
+	@Benchmark
+	public ClassSet addSignatures() {
+		final Dependencies dependencies = new Dependencies(symbolTable);
+		for (String signature : signatures) {
+			dependencies.addSignature(signature);
+		}
+		return dependencies.get();
+	}
+
+	/**
+	 * Collects the strings the way the visitors pass them to Dependencies.
+	 */
+	private final class Collector extends ClassVisitor {
+
+		private final MethodVisitor methodVisitor = new MethodVisitor(Opcodes.ASM5) {
+
+			@Override
+			public void visitTypeInsn(int opcode, String type) {
+				internalNames.add(type);
+			}
+
+			@Override
+			public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+				internalNames.add(owner);
+				descs.add(desc);
+			}
+
+			@Override
+			public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+				internalNames.add(owner);
+				methodDescs.add(desc);
+			}
+		};
+
+		Collector() {
+			super(Opcodes.ASM5);
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature, String superName,
+				String[] interfaces) {
+			internalNames.add(name);
+			if (superName != null) {
+				internalNames.add(superName);
+			}
+			for (String i : interfaces) {
+				internalNames.add(i);
+			}
+			addSignature(signature);
+		}
+
+		@Override
+		public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+			descs.add(desc);
+			addSignature(signature);
+			return null;
+		}
+
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+				String[] exceptions) {
+			methodDescs.add(desc);
+			addSignature(signature);
+			return methodVisitor;
+		}
+
+		private void addSignature(final String signature) {
+			if (signature != null) {
+				signatures.add(signature);
+			}
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.benchmark;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.trohovsky.just.DependencyUtils;
+import com.github.trohovsky.just.model.ClassSet;
+import com.github.trohovsky.just.model.DependencyGraph;
+
+/**
+ * Benchmarks of the {@link DependencyUtils} operations on generated classes.
+ * Each class depends on {@value #DEPENDENCIES} classes, a half of them are
+ * external. The library classes overlap a half of the dependencies. The sets
+ * are either interned ones, as returned by the Reader, or TreeSets created by
+ * a user.
+ * 
+ * @author Tomas Rohovsky
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DependencyUtilsBenchmark {
+
+	private static final int DEPENDENCIES = 8;
+	private static final int CLASSES_PER_PACKAGE = 20;
+
+	@Param({ "100", "10000", "100000" })
+	public int size;
+
+	@Param({ "CLASS_SET", "TREE_SET" })
+	public String sets;
+
+	private Map<String, Set<String>> map;
+	private DependencyGraph graph;
+	private Set<String> classes;
+	private Set<String> dependencies;
+	private Set<String> library;
+	private String className;
+
+	@Setup
+	public void setUp() {
+		final Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+		for (int i = 0; i < size; i++) {
+			final Set<String> classDependencies = new TreeSet<String>();
+			for (int j = 0; j < DEPENDENCIES; j++) {
+				// a half of the dependencies are outside of the classes
+				classDependencies.add(name((int) ((i * 7L + j * 13L) % (size * 2L))));
+			}
+			classesWithDependencies.put(name(i), classDependencies);
+		}
+		final Set<String> libraryClasses = new TreeSet<String>();
+		for (int i = size; i < size * 3; i++) {
+			libraryClasses.add(name(i));
+		}
+		graph = DependencyGraph.of(classesWithDependencies);
+		if (sets.equals("CLASS_SET")) {
+			map = graph.toMap();
+			classes = graph.getClasses();
+			dependencies = DependencyUtils.flatten(graph);
+			library = ClassSet.of(graph.getSymbolTable(), libraryClasses);
+		} else {
+			map = classesWithDependencies;
+			classes = new TreeSet<String>(classesWithDependencies.keySet());
+			dependencies = new TreeSet<String>(DependencyUtils.flatten(classesWithDependencies));
+			library = libraryClasses;
+		}
+		className = name(size - 1);
+	}
+
+	private static String name(final int i) {
+		return "com/example/p" + i / CLASSES_PER_PACKAGE + "/C" + i;
+	}
+
+	@Benchmark
+	public Map<String, Set<String>> intersectionMapSet() {
+		return DependencyUtils.intersection(map, library);
+	}
+
+	@Benchmark
+	public DependencyGraph intersectionGraphSet() {
+		return DependencyUtils.intersection(graph, library);
+	}
+
+	@Benchmark
+	public Set<String> intersectionSetSet() {
+		return DependencyUtils.intersection(dependencies, library);
+	}
+
+	@Benchmark
+	public Set<String> union() {
+		return DependencyUtils.union(dependencies, library);
+	}
+
+	@Benchmark
+	public Set<String> subtractSetMap() {
+		return DependencyUtils.subtract(library, map);
+	}
+
+	@Benchmark
+	public Set<String> subtractSetGraph() {
+		return DependencyUtils.subtract(library, graph);
+	}
+
+	@Benchmark
+	public Set<String> subtractSetSet() {
+		return DependencyUtils.subtract(dependencies, classes);
+	}
+
+	@Benchmark
+	public Set<String> flattenMap() {
+		return DependencyUtils.flatten(map);
+	}
+
+	@Benchmark
+	public Set<String> flattenGraph() {
+		return DependencyUtils.flatten(graph);
+	}
+
+	@Benchmark
+	public String getPackageName() {
+		return DependencyUtils.getPackageName(className);
+	}
+
+	@Benchmark
+	public Set<String> toPackageNamesSet() {
+		return DependencyUtils.toPackageNames(dependencies);
+	}
+
+	@Benchmark
+	public Map<String, Set<String>> toPackageNamesMap() {
+		return DependencyUtils.toPackageNames(map);
+	}
+
+	@Benchmark
+	public DependencyGraph toPackageNamesGraph() {
+		return DependencyUtils.toPackageNames(graph);
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import com.github.trohovsky.just.model.Dependencies;
+import com.github.trohovsky.just.scanner.ConstantPoolScanner;
+
+/**
+ * Corpus of classes of the running JDK, so the benchmarks run offline. The
+ * classes are read from the jrt file system of JDK 9 or later, their version
+ * is lowered to Java 8 and the classes ASM cannot read are skipped. The
+ * corpus is the same for the same JDK.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class JdkCorpus {
+
+	private static final int JAVA_8 = 52;
+
+	private JdkCorpus() {
+	}
+
+	/**
+	 * Reads the first classes of the JDK ordered by module and name.
+	 * 
+	 * @param size
+	 *            the maximum number of classes
+	 * @return the class files by class names
+	 * @throws IOException
+	 *             if the JDK cannot be read
+	 */
+	public static SortedMap<String, byte[]> read(final int size) throws IOException {
+		final FileSystem fileSystem = FileSystems.getFileSystem(URI.create("jrt:/"));
+		final List<Path> modules;
+		try (Stream<Path> stream = Files.list(fileSystem.getPath("/modules"))) {
+			modules = stream.sorted().collect(Collectors.toList());
+		}
+		final SortedMap<String, byte[]> classes = new TreeMap<String, byte[]>();
+		for (Path module : modules) {
+			final List<Path> files;
+			try (Stream<Path> stream = Files.walk(module)) {
+				files = stream.filter(path -> path.toString().endsWith(".class")
+						&& !path.getFileName().toString().equals("module-info.class")).collect(Collectors.toList());
+			}
+			Collections.sort(files);
+			for (Path file : files) {
+				if (classes.size() == size) {
+					return classes;
+				}
+				final byte[] bytes = Files.readAllBytes(file);
+				bytes[6] = (byte) (JAVA_8 >>> 8);
+				bytes[7] = (byte) JAVA_8;
+				if (isReadable(bytes)) {
+					final String name = module.relativize(file).toString();
+					classes.put(name.substring(0, name.length() - ".class".length()), bytes);
+				}
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * Returns the class files of the corpus as a list.
+	 */
+	public static List<byte[]> toList(final Map<String, byte[]> classes) {
+		return new ArrayList<byte[]>(classes.values());
+	}
+
+	/**
+	 * Writes the classes to a JAR.
+	 */
+	public static void writeJar(final Map<String, byte[]> classes, final File file) throws IOException {
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+			for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+				out.putNextEntry(new ZipEntry(entry.getKey() + ".class"));
+				out.write(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Writes the classes to a directory tree.
+	 */
+	public static void writeDirectory(final Map<String, byte[]> classes, final File directory) throws IOException {
+		for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+			final File file = new File(directory, entry.getKey() + ".class");
+			file.getParentFile().mkdirs();
+			try (OutputStream out = new FileOutputStream(file)) {
+				out.write(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Deletes the file or directory tree.
+	 */
+	public static void delete(final File file) throws IOException {
+		if (file == null || !file.exists()) {
+			return;
+		}
+		try (Stream<Path> stream = Files.walk(file.toPath())) {
+			for (Path path : stream.sorted(Collections.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	private static boolean isReadable(final byte[] bytes) {
+		try {
+			// visits the code too
+			new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM5) {
+				@Override
+				public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+						String[] exceptions) {
+					return new MethodVisitor(Opcodes.ASM5) {
+					};
+				}
+			}, 0);
+			ConstantPoolScanner.scan(bytes, new Dependencies());
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+}
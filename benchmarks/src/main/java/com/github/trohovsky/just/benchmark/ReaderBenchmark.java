@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.trohovsky.just.Reader;
+import com.github.trohovsky.just.corpus.CorpusGenerator;
+
+/**
+ * Benchmarks of listing and reading classes of a JAR and a directory. The
+ * generated corpus scales to a million classes, e.g. by
+ * "-p source=GENERATED -p classes=1000000".
+ * 
+ * @author Tomas Rohovsky
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReaderBenchmark {
+
+	private static final long SEED = 1;
+
+	/**
+	 * The corpus of the JDK or a generated one, written as a JAR or a
+	 * directory.
+	 */
+	@State(Scope.Benchmark)
+	public static class Input {
+
+		@Param({ "JDK", "GENERATED" })
+		public String source;
+
+		@Param({ "JAR", "DIRECTORY" })
+		public String type;
+
+		@Param({ "1000", "10000" })
+		public int classes;
+
+		private File directory;
+		public String path;
+
+		@Setup
+		public void setUp() throws IOException {
+			directory = Files.createTempDirectory("just-benchmark").toFile();
+			final File jar = new File(directory, "corpus.jar");
+			path = type.equals("JAR") ? jar.getPath() : directory.getPath();
+			if (source.equals("GENERATED")) {
+				final CorpusGenerator generator = CorpusGenerator.of(classes).seed(SEED);
+				if (type.equals("JAR")) {
+					generator.writeJar(jar);
+				} else {
+					generator.writeDirectory(directory);
+				}
+			} else {
+				final Map<String, byte[]> corpus = JdkCorpus.read(classes);
+				if (type.equals("JAR")) {
+					JdkCorpus.writeJar(corpus, jar);
+				} else {
+					JdkCorpus.writeDirectory(corpus, directory);
+				}
+			}
+		}
+
+		@TearDown
+		public void tearDown() throws IOException {
+			JdkCorpus.delete(directory);
+		}
+	}
+
+	/**
+	 * The engine and parallelism of reading the classes.
+	 */
+	@State(Scope.Benchmark)
+	public static class Options {
+
+		@Param({ "VISITOR", "CONSTANT_POOL" })
+		public Reader.Engine engine;
+
+		@Param({ "1", "4" })
+		public int parallelism;
+	}
+
+	@Benchmark
+	public Set<String> listClasses(final Input input) throws IOException {
+		return Reader.from(input.path).listClasses();
+	}
+
+	@Benchmark
+	public Map<String, Set<String>> readClassesWithDependencies(final Input input, final Options options)
+			throws IOException {
+		return Reader.from(input.path).engine(options.engine).parallelism(options.parallelism)
+				.readClassesWithDependencies();
+	}
+}
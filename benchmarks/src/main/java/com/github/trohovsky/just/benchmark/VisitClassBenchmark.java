@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.trohovsky.just.Reader;
+import com.github.trohovsky.just.model.Dependencies;
+import com.github.trohovsky.just.model.SymbolTable;
+import com.github.trohovsky.just.scanner.ConstantPoolScanner;
+import com.github.trohovsky.just.visitor.AnnotationDependenciesVisitor;
+import com.github.trohovsky.just.visitor.ClassDependenciesVisitor;
+import com.github.trohovsky.just.visitor.FieldDependenciesVisitor;
+import com.github.trohovsky.just.visitor.MethodDependenciesVisitor;
+
+/**
+ * Benchmark of visiting a class by an engine of the {@link Reader}, the
+ * results are per class. A class is visited by the public scanner and
+ * visitors the same way as the Reader visits it.
+ * 
+ * @author Tomas Rohovsky
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class VisitClassBenchmark {
+
+	private static final int CLASSES = 2000;
+
+	@Param({ "VISITOR", "CONSTANT_POOL" })
+	public Reader.Engine engine;
+
+	private List<byte[]> classes;
+	private SymbolTable symbolTable;
+
+	@Setup
+	public void setUp() throws IOException {
+		classes = JdkCorpus.toList(JdkCorpus.read(CLASSES));
+		// the names are interned already as in a long running analysis
+		symbolTable = new SymbolTable();
+		for (byte[] bytes : classes) {
+			visitClass(bytes, new Dependencies(symbolTable));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CLASSES)
+	public void visitClass(final Blackhole blackhole) {
+		for (byte[] bytes : classes) {
+			final Dependencies dependencies = new Dependencies(symbolTable);
+			visitClass(bytes, dependencies);
+			blackhole.consume(dependencies.get());
+		}
+	}
+
+	private void visitClass(final byte[] bytes, final Dependencies dependencies) {
+		if (engine == Reader.Engine.CONSTANT_POOL) {
+			ConstantPoolScanner.scan(bytes, dependencies);
+		} else {
+			final AnnotationVisitor annotationVisitor = new AnnotationDependenciesVisitor(dependencies);
+			final FieldVisitor fieldVisitor = new FieldDependenciesVisitor(dependencies, annotationVisitor);
+			final MethodVisitor methodVisitor = new MethodDependenciesVisitor(dependencies, annotationVisitor);
+			final ClassVisitor visitor = new ClassDependenciesVisitor(dependencies, annotationVisitor, fieldVisitor,
+					methodVisitor);
+			new ClassReader(bytes).accept(visitor, 0);
+		}
+	}
+}
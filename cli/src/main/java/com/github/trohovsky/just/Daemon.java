@@ -0,0 +1,306 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.github.trohovsky.just.cache.ArchiveCache;
+import com.github.trohovsky.just.report.ReportFormat;
+
+/**
+ * Daemon running the CLI for {@link DaemonClient}s, so the JVM stays warm and
+ * the dependencies of JARs are kept in an {@link ArchiveCache} between the
+ * runs. The daemon listens on an ephemeral port of the loopback address. The
+ * port and a random token the clients have to send are written to the daemon
+ * file, which only the user can read.
+ * <p>
+ * A client sends the token, its working directory and the arguments. The
+ * daemon answers with frames of the standard output and error, each of them
+ * a type, a length and the bytes, and ends with the exit status.
+ * 
+ * @author Tomas Rohovsky
+ */
+final class Daemon {
+
+	static final byte EXIT = 0;
+	static final byte STDOUT = 1;
+	static final byte STDERR = 2;
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final long CACHE_CAPACITY = Long.getLong("just.daemon.cacheCapacity", 50000000L);
+	private static final int THREADS = Integer.getInteger("just.daemon.threads", Runtime.getRuntime()
+			.availableProcessors());
+	private static final int REQUEST_TIMEOUT = 10000;
+	private static final int MAX_ARGUMENTS = 4096;
+
+	private final ServerSocket server;
+	private final String token;
+	private final ArchiveCache archiveCache = new ArchiveCache(CACHE_CAPACITY);
+
+	private Daemon(final ServerSocket server, final String token) {
+		this.server = server;
+		this.token = token;
+	}
+
+	/**
+	 * Returns the daemon file, ~/.just/daemon unless the system property
+	 * just.daemon.file is set.
+	 */
+	static File getDaemonFile() {
+		final String file = System.getProperty("just.daemon.file");
+		return file != null ? new File(file) : new File(System.getProperty("user.home"), ".just" + File.separator
+				+ "daemon");
+	}
+
+	/**
+	 * Reads the port and the token from the daemon file.
+	 * 
+	 * @return the properties port and token, null if the file does not exist
+	 */
+	static Properties readDaemonFile() throws IOException {
+		final Properties properties = new Properties();
+		final InputStream in;
+		try {
+			in = new FileInputStream(getDaemonFile());
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		return properties;
+	}
+
+	/**
+	 * Runs the daemon until a client stops it.
+	 * 
+	 * @param err
+	 *            the stream for messages of the daemon
+	 */
+	static void run(final PrintStream err) throws IOException {
+		final byte[] bytes = new byte[16];
+		new SecureRandom().nextBytes(bytes);
+		final StringBuilder token = new StringBuilder();
+		for (byte b : bytes) {
+			token.append(String.format("%02x", b & 0xFF));
+		}
+
+		final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		try {
+			final Daemon daemon = new Daemon(server, token.toString());
+			daemon.writeDaemonFile();
+			err.println("Daemon listening on " + server.getLocalSocketAddress() + ", " + getDaemonFile());
+			try {
+				daemon.serve();
+			} finally {
+				daemon.deleteDaemonFile();
+			}
+			err.println("Daemon stopped, " + daemon.archiveCache);
+		} finally {
+			server.close();
+		}
+	}
+
+	private void serve() throws IOException {
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			while (true) {
+				final Socket socket;
+				try {
+					socket = server.accept();
+				} catch (SocketException e) {
+					if (server.isClosed()) {
+						// stopped by a client
+						return;
+					}
+					throw e;
+				}
+				executor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							serve(socket);
+						} catch (IOException e) {
+							// the client disconnected
+						} finally {
+							try {
+								socket.close();
+							} catch (IOException e) {
+								// nothing to do
+							}
+						}
+					}
+				});
+			}
+		} finally {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void serve(final Socket socket) throws IOException {
+		socket.setSoTimeout(REQUEST_TIMEOUT);
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		if (!MessageDigest.isEqual(token.getBytes(UTF_8), in.readUTF().getBytes(UTF_8))) {
+			return;
+		}
+		final File directory = new File(in.readUTF());
+		final int length = in.readInt();
+		if (length < 0 || length > MAX_ARGUMENTS) {
+			return;
+		}
+		final String[] args = new String[length];
+		boolean stop = false;
+		for (int i = 0; i < length; i++) {
+			args[i] = in.readUTF();
+			stop |= args[i].equals("-ds") || args[i].equals("--daemon-stop");
+		}
+
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		final PrintStream stdout = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, STDOUT),
+				ReportFormat.BUFFER_SIZE), false, "UTF-8");
+		final PrintStream stderr = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, STDERR)),
+				false, "UTF-8");
+		int status = 0;
+		if (stop) {
+			stderr.println("Daemon stopped, " + archiveCache);
+			server.close();
+		} else {
+			try {
+				status = Main.run(args, directory, stdout, stderr, archiveCache);
+			} catch (Exception e) {
+				e.printStackTrace(stderr);
+				status = 1;
+			}
+		}
+		stdout.flush();
+		stderr.flush();
+		synchronized (out) {
+			out.writeByte(EXIT);
+			out.writeInt(status);
+			out.flush();
+		}
+	}
+
+	private void writeDaemonFile() throws IOException {
+		final File file = getDaemonFile().getAbsoluteFile();
+		final File directory = file.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create directory " + directory);
+		}
+
+		final Properties properties = new Properties();
+		properties.setProperty("port", String.valueOf(server.getLocalPort()));
+		properties.setProperty("token", token);
+		// a temporary file is readable only by the user
+		final Path temporaryFile = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+		try {
+			final OutputStream out = Files.newOutputStream(temporaryFile);
+			try {
+				properties.store(out, "just daemon");
+			} finally {
+				out.close();
+			}
+			try {
+				Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	private void deleteDaemonFile() throws IOException {
+		// the file could be replaced by another daemon meanwhile
+		final Properties properties = readDaemonFile();
+		if (properties != null && token.equals(properties.getProperty("token"))) {
+			Files.deleteIfExists(getDaemonFile().toPath());
+		}
+	}
+
+	/**
+	 * Stream writing frames of the type to the output shared by the standard
+	 * output and error.
+	 */
+	private static final class FrameOutputStream extends OutputStream {
+
+		private final DataOutputStream out;
+		private final byte type;
+
+		private FrameOutputStream(final DataOutputStream out, final byte type) {
+			this.out = out;
+			this.type = type;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			if (len == 0) {
+				return;
+			}
+			synchronized (out) {
+				out.writeByte(type);
+				out.writeInt(len);
+				out.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (out) {
+				out.flush();
+			}
+		}
+	}
+}
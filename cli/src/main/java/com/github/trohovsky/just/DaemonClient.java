@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Thin client running the CLI by the {@link Daemon}.
+ * 
+ * @author Tomas Rohovsky
+ */
+final class DaemonClient {
+
+	/**
+	 * Status returned if the daemon is not running.
+	 */
+	static final int NOT_RUNNING = -1;
+
+	private static final int CONNECT_TIMEOUT = 1000;
+
+	private DaemonClient() {
+	}
+
+	/**
+	 * Runs the CLI with the arguments by the daemon, relative paths are
+	 * resolved against the current directory.
+	 * 
+	 * @return the exit status, {@link #NOT_RUNNING} if the daemon is not
+	 *         running
+	 */
+	static int run(final String[] args, final PrintStream out, final PrintStream err) throws IOException {
+		final Properties properties = Daemon.readDaemonFile();
+		if (properties == null) {
+			return NOT_RUNNING;
+		}
+		final int port;
+		try {
+			port = Integer.parseInt(properties.getProperty("port"));
+		} catch (NumberFormatException e) {
+			return NOT_RUNNING;
+		}
+
+		final Socket socket = new Socket();
+		try {
+			try {
+				socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+			} catch (ConnectException e) {
+				// the daemon file of a killed daemon
+				return NOT_RUNNING;
+			}
+
+			final DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			request.writeUTF(properties.getProperty("token", ""));
+			request.writeUTF(new File("").getAbsolutePath());
+			request.writeInt(args.length);
+			for (String arg : args) {
+				request.writeUTF(arg);
+			}
+			request.flush();
+
+			final DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final byte[] buffer = new byte[8192];
+			while (true) {
+				final byte type = response.readByte();
+				if (type == Daemon.EXIT) {
+					return response.readInt();
+				}
+				final PrintStream stream = type == Daemon.STDOUT ? out : err;
+				int length = response.readInt();
+				while (length > 0) {
+					final int read = response.read(buffer, 0, Math.min(length, buffer.length));
+					if (read < 0) {
+						throw new IOException("The daemon closed the connection");
+					}
+					stream.write(buffer, 0, read);
+					length -= read;
+				}
+			}
+		} finally {
+			socket.close();
+			out.flush();
+			err.flush();
+		}
+	}
+}
@@ -15,9 +15,19 @@
  */
 package com.github.trohovsky.just;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -26,6 +36,13 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import com.github.trohovsky.just.cache.ArchiveCache;
+import com.github.trohovsky.just.index.IndexWriter;
+import com.github.trohovsky.just.model.ClassSet;
+import com.github.trohovsky.just.report.ReportFormat;
+import com.github.trohovsky.just.report.ReportWriter;
+import com.github.trohovsky.just.stats.ScanStatistics;
+
 /**
  * CLI Main.
  * 
@@ -43,6 +60,25 @@ public final class Main {
 	}
 
 	public static void main(String[] args) throws IOException {
+		final int status = run(args, null, System.out, System.err, null);
+		if (status != 0) {
+			System.exit(status);
+		}
+	}
+
+	/**
+	 * Runs the CLI with the arguments, either for the user or by the daemon
+	 * for a client.
+	 * 
+	 * @param directory
+	 *            the directory relative paths are resolved against, null for
+	 *            the current directory
+	 * @param archiveCache
+	 *            the cache of the daemon, null if not run by the daemon
+	 * @return the exit status
+	 */
+	static int run(final String[] args, final File directory, final PrintStream out, final PrintStream err,
+			final ArchiveCache archiveCache) throws IOException {
 
 		// parsing of command line
 		final CommandLineParser parser = new GnuParser();
@@ -55,6 +91,27 @@ public final class Main {
 		options.addOption("f", "flatten", false, "flatten report, display only used classes");
 		options.addOption("p", "packages", false, "display package names instead of class names");
 		options.addOption("u", "unused", false, "display unused classes from dependencies");
+		options.addOption("r", "reachability", false, "display classes of artifacts and dependencies unreachable from "
+				+ "main classes, services and public classes of -rp prefixes");
+		options.addOption("m", "methods", false, "display methods of artifacts and dependencies unreachable from "
+				+ "main methods, service providers and public methods of public classes of -rp prefixes");
+		options.addOption("rp", true, "prefixes of public classes that are roots of reachability analysis");
+		options.addOption("t", "threads", true, "number of threads used for parsing of artifacts");
+		options.addOption("c", "cache", true, "directory for caching of dependencies of artifact classes");
+		options.addOption("n", "nested", false, "read also JARs nested in BOOT-INF/lib and WEB-INF/lib of JARs");
+		options.addOption("s", "stats", false, "print statistics of reading to the standard error");
+		options.addOption("sf", "stats-file", true, "write statistics of reading to the file as JSON");
+		options.addOption("sc", "stats-counters", false, "count also the work done per class in the statistics");
+		options.addOption("o", "output", true, "write the report to the file, compressed by gzip if it ends with .gz");
+		options.addOption("of", "output-format", true, "format of the report: text (default), jsonl, csv, dot "
+				+ "or graphml");
+		options.addOption("x", "index", true, "write an index of classes of artifacts and their dependencies to the "
+				+ "file instead of a report");
+		options.addOption("w", "watch", false, "keep watching directories of artifacts and dependencies and write the "
+				+ "report again whenever their classes change");
+		options.addOption("d", "daemon", false, "run as a daemon keeping dependencies of JARs in memory for clients");
+		options.addOption("cl", "client", false, "run by the daemon if it is running, otherwise run normally");
+		options.addOption("ds", "daemon-stop", false, "stop the daemon, can be applied only with option -cl");
 		options.addOption("h", "help", false, "print this help");
 
 		CommandLine cmdLine = null;
@@ -63,8 +120,29 @@ public final class Main {
 			if (cmdLine.hasOption('h')) {
 				final HelpFormatter formatter = new HelpFormatter();
 				formatter.setOptionComparator(null);
-				formatter.printHelp(HELP_CMDLINE, HELP_HEADER, options, HELP_FOOTER);
-				return;
+				printHelp(formatter, options, out);
+				return 0;
+			}
+			if (cmdLine.hasOption('d')) {
+				if (archiveCache != null) {
+					err.println("The daemon is already running");
+					return 0;
+				}
+				Daemon.run(err);
+				return 0;
+			}
+			if (cmdLine.hasOption("cl") && archiveCache == null) {
+				final int status = DaemonClient.run(removeClientOption(args), out, err);
+				if (status != DaemonClient.NOT_RUNNING) {
+					return status;
+				}
+				if (cmdLine.hasOption("ds")) {
+					err.println("The daemon is not running");
+					return 0;
+				}
+			} else if (cmdLine.hasOption("ds")) {
+				err.println("Option -ds can be applied only with option -cl");
+				return 0;
 			}
 			if (cmdLine.getArgs().length == 0) {
 				throw new ParseException("Missing ARTIFACT and/or DEPENDENCY.");
@@ -75,67 +153,273 @@ public final class Main {
 			}
 
 		} catch (ParseException e) {
-			System.err.println("Error parsing command line: " + e.getMessage());
-			final HelpFormatter formatter = new HelpFormatter();
-			formatter.printHelp(HELP_CMDLINE, HELP_HEADER, options, HELP_FOOTER);
-			return;
+			err.println("Error parsing command line: " + e.getMessage());
+			printHelp(new HelpFormatter(), options, out);
+			return 0;
 		}
 
 		// obtaining of values
-		final String[] artifactPaths = cmdLine.getArgs()[0].split(",");
-		final String[] dependencyPaths = cmdLine.getArgs().length == 2 ? cmdLine.getArgs()[1].split(",") : null;
+		final String[] artifactPaths = resolve(directory, cmdLine.getArgs()[0].split(","));
+		final String[] dependencyPaths = cmdLine.getArgs().length == 2 ? resolve(directory,
+				cmdLine.getArgs()[1].split(",")) : null;
 		final String[] artifactIncludes = splitValues(cmdLine.getOptionValue("ai"));
 		final String[] artifactExcludes = splitValues(cmdLine.getOptionValue("ae"));
 		final String[] dependencyIncludes = splitValues(cmdLine.getOptionValue("di"));
 		final String[] dependencyExcludes = splitValues(cmdLine.getOptionValue("de"));
+		final String[] publicApi = splitValues(cmdLine.getOptionValue("rp"));
+		final File cacheDirectory = cmdLine.hasOption('c') ? resolve(directory, cmdLine.getOptionValue('c')) : null;
+		final boolean nestedArchives = cmdLine.hasOption('n');
+		final File statsFile = cmdLine.hasOption("sf") ? resolve(directory, cmdLine.getOptionValue("sf")) : null;
+		final ScanStatistics statistics = cmdLine.hasOption('s') || statsFile != null ? new ScanStatistics() : null;
+		final boolean countCalls = cmdLine.hasOption("sc");
+		final File outputFile = cmdLine.hasOption('o') ? resolve(directory, cmdLine.getOptionValue('o')) : null;
+		final ReportFormat format;
+		try {
+			format = ReportFormat.of(cmdLine.getOptionValue("of", "text"));
+		} catch (IllegalArgumentException e) {
+			err.println("Option -of requires one of text, jsonl, csv, dot or graphml");
+			return 0;
+		}
+		final int threads;
+		try {
+			threads = Integer.parseInt(cmdLine.getOptionValue("t", "1"));
+		} catch (NumberFormatException e) {
+			err.println("Option -t requires a positive number of threads");
+			return 0;
+		}
 
 		// validation of values
+		if (threads < 1) {
+			err.println("Option -t requires a positive number of threads");
+			return 0;
+		}
+		if (cmdLine.hasOption('w') && (cmdLine.hasOption('r') || cmdLine.hasOption('m') || cmdLine.hasOption('x'))) {
+			err.println("Option -w cannot be applied with option -r, -m or -x");
+			return 0;
+		}
+		if (cmdLine.hasOption('w') && archiveCache != null) {
+			err.println("Option -w cannot be applied by the daemon");
+			return 0;
+		}
+		if (countCalls && statistics == null) {
+			err.println("Option -sc can be applied only with option -s or -sf");
+			return 0;
+		}
+		if (publicApi != null && !cmdLine.hasOption('r') && !cmdLine.hasOption('m')) {
+			err.println("Option -rp can be applied only with option -r or -m");
+			return 0;
+		}
 		if (dependencyPaths == null) {
 			if (dependencyIncludes != null) {
-				System.err.println("At least one dependency has to be specified to use option -di");
-				return;
+				err.println("At least one dependency has to be specified to use option -di");
+				return 0;
 			}
 			if (dependencyExcludes != null) {
-				System.err.println("At least one dependency has to be specified to use option -de");
-				return;
+				err.println("At least one dependency has to be specified to use option -de");
+				return 0;
 			}
 			if (cmdLine.hasOption('u')) {
-				System.err.println("At least one dependency has to be specified to use option -u");
-				return;
+				err.println("At least one dependency has to be specified to use option -u");
+				return 0;
 			}
 		}
 
 		// execution
-		Set<String> externalClasses = null;
-		if (dependencyPaths != null) {
-			externalClasses = Reader.from(dependencyPaths).includes(dependencyIncludes).excludes(dependencyExcludes)
-					.listClasses();
+		final Reader artifactReader = Reader.from(artifactPaths).includes(artifactIncludes).excludes(artifactExcludes)
+				.parallelism(threads).cache(cacheDirectory).archiveCache(archiveCache).nestedArchives(nestedArchives)
+				.listener(statistics).countCalls(countCalls);
+		final Reader dependencyReader = dependencyPaths != null ? Reader.from(dependencyPaths)
+				.includes(dependencyIncludes).excludes(dependencyExcludes).archiveCache(archiveCache)
+				.nestedArchives(nestedArchives).listener(statistics).countCalls(countCalls) : null;
+
+		if (cmdLine.hasOption('w')) {
+			watch(cmdLine, artifactReader, dependencyReader, format, outputFile, out, err, statistics, statsFile);
+			return 0;
 		}
 
-		if (cmdLine.hasOption('f') || cmdLine.hasOption('u')) {
-			Set<String> dependencies = Reader.from(artifactPaths).includes(artifactIncludes).excludes(artifactExcludes)
-					.readDependencies();
-			if (externalClasses != null) {
-				dependencies = DependencyUtils.intersection(dependencies, externalClasses);
-				if (cmdLine.hasOption('u')) {
-					dependencies = DependencyUtils.subtract(externalClasses, dependencies);
+		if (cmdLine.hasOption('x')) {
+			try {
+				new IndexWriter().addAll(artifactReader.readClassesWithDependenciesByPath()).write(
+						resolve(directory, cmdLine.getOptionValue('x')));
+			} finally {
+				printStatistics(cmdLine, statistics, statsFile, err);
+			}
+			return 0;
+		}
+
+		final ReportWriter reportWriter = outputFile != null ? format.open(openFile(outputFile)) : format.open(out);
+		try {
+			execute(cmdLine, threads, publicApi, cacheDirectory != null || archiveCache != null, artifactReader,
+					dependencyReader, reportWriter);
+		} finally {
+			// the standard output is only flushed
+			if (outputFile != null) {
+				reportWriter.close();
+			} else {
+				reportWriter.finish();
+			}
+			printStatistics(cmdLine, statistics, statsFile, err);
+		}
+		return 0;
+	}
+
+	private static void printHelp(final HelpFormatter formatter, final Options options, final PrintStream out) {
+		final PrintWriter writer = new PrintWriter(out);
+		formatter.printHelp(writer, formatter.getWidth(), HELP_CMDLINE, HELP_HEADER, options,
+				formatter.getLeftPadding(), formatter.getDescPadding(), HELP_FOOTER);
+		writer.flush();
+	}
+
+	private static String[] removeClientOption(final String[] args) {
+		final List<String> arguments = new ArrayList<String>();
+		for (String arg : args) {
+			if (!arg.equals("-cl") && !arg.equals("--client")) {
+				arguments.add(arg);
+			}
+		}
+		return arguments.toArray(new String[arguments.size()]);
+	}
+
+	private static String[] resolve(final File directory, final String[] paths) {
+		final String[] resolvedPaths = new String[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			resolvedPaths[i] = resolve(directory, paths[i]).getPath();
+		}
+		return resolvedPaths;
+	}
+
+	private static File resolve(final File directory, final String path) {
+		final File file = new File(path);
+		return directory == null || file.isAbsolute() ? file : new File(directory, path);
+	}
+
+	private static void printStatistics(final CommandLine cmdLine, final ScanStatistics statistics,
+			final File statsFile, final PrintStream err) throws IOException {
+		if (statistics == null) {
+			return;
+		}
+		statistics.stop();
+		if (cmdLine.hasOption('s')) {
+			err.print(statistics);
+		}
+		if (statsFile != null) {
+			final Writer writer = new OutputStreamWriter(new FileOutputStream(statsFile), "UTF-8");
+			try {
+				statistics.writeJson(writer);
+			} finally {
+				writer.close();
+			}
+		}
+	}
+
+	private static OutputStream openFile(final File file) throws IOException {
+		final OutputStream out = new FileOutputStream(file);
+		if (!file.getName().endsWith(".gz")) {
+			return out;
+		}
+		try {
+			return new GZIPOutputStream(out, ReportFormat.BUFFER_SIZE);
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the report whenever classes of the watched directories change,
+	 * the results are updated only by the changed classes.
+	 */
+	private static void watch(final CommandLine cmdLine, final Reader artifactReader, final Reader dependencyReader,
+			final ReportFormat format, final File outputFile, final PrintStream out, final PrintStream err,
+			final ScanStatistics statistics, final File statsFile) throws IOException {
+		final WatchSession session;
+		try {
+			session = WatchSession.open(artifactReader, dependencyReader);
+		} finally {
+			printStatistics(cmdLine, statistics, statsFile, err);
+		}
+		try {
+			while (true) {
+				final ReportWriter reportWriter = outputFile != null ? format.open(openFile(outputFile)) : format
+						.open(out);
+				try {
+					report(cmdLine, dependencyReader != null, session, reportWriter);
+				} finally {
+					if (outputFile != null) {
+						reportWriter.close();
+					} else {
+						reportWriter.finish();
+					}
 				}
+				final WatchSession.Changes changes = session.awaitChanges();
+				err.println("Changes: " + changes);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Writes the results of a session, or of a watch session after each
+	 * change.
+	 */
+	private static void report(final CommandLine cmdLine, final boolean dependencies, final AnalysisResults results,
+			final ReportWriter writer) throws IOException {
+		if (cmdLine.hasOption('f') || cmdLine.hasOption('u')) {
+			Set<String> classes = results.getDependencies();
+			if (dependencies) {
+				classes = cmdLine.hasOption('u') ? results.getUnusedClasses() : results.getUsedClasses();
 			}
 			if (cmdLine.hasOption('p')) {
-				dependencies = DependencyUtils.toPackageNames(dependencies);
+				classes = DependencyUtils.toPackageNames(classes);
 			}
-			Reporter.report(dependencies);
+			writer.writeAll(classes);
 		} else {
-			Map<String, Set<String>> classesWithDependencies = Reader.from(artifactPaths).includes(artifactIncludes)
-					.excludes(artifactExcludes).readClassesWithDependencies();
-			if (externalClasses != null) {
-				classesWithDependencies = DependencyUtils.intersection(classesWithDependencies, externalClasses);
+			Map<String, Set<String>> classesWithDependencies = results.getClassesWithDependencies();
+			if (dependencies) {
+				classesWithDependencies = results.getUsedClassesByClass();
 			}
 			if (cmdLine.hasOption('p')) {
 				classesWithDependencies = DependencyUtils.toPackageNames(classesWithDependencies);
 			}
-			Reporter.report(classesWithDependencies);
+			writer.writeAll(classesWithDependencies);
+		}
+	}
+
+	private static void execute(final CommandLine cmdLine, final int threads, final String[] publicApi,
+			final boolean cached, final Reader artifactReader, final Reader dependencyReader, final ReportWriter writer)
+			throws IOException {
+		if (cmdLine.hasOption('m')) {
+			final MemberReachabilityAnalysis analysis = dependencyReader != null ? MemberReachabilityAnalysis.of(
+					artifactReader, dependencyReader) : MemberReachabilityAnalysis.of(artifactReader);
+			writer.writeAll(analysis.publicApi(publicApi).run().getUnusedMethods());
+			return;
+		}
+		if (cmdLine.hasOption('r')) {
+			final ReachabilityAnalysis analysis = dependencyReader != null ? ReachabilityAnalysis.of(artifactReader,
+					dependencyReader.parallelism(threads)) : ReachabilityAnalysis.of(artifactReader);
+			Set<String> unreachableClasses = analysis.publicApi(publicApi).parallelism(threads).run()
+					.getUnreachableClasses();
+			if (cmdLine.hasOption('p')) {
+				unreachableClasses = DependencyUtils.toPackageNames(unreachableClasses);
+			}
+			writer.writeAll(unreachableClasses);
+			return;
 		}
+
+		// classes with dependencies are reported as they are parsed unless
+		// they are aggregated to packages or parsed in parallel or cached
+		if (!cmdLine.hasOption('f') && !cmdLine.hasOption('u') && !cmdLine.hasOption('p') && threads == 1
+				&& !cached) {
+			final Set<String> dependencyClasses = dependencyReader != null ? ClassSet.of(
+					artifactReader.getSymbolTable(), dependencyReader.listClasses()) : null;
+			Reporter.report(artifactReader.streamClassesWithDependencies(), dependencyClasses, writer);
+			return;
+		}
+
+		report(cmdLine, dependencyReader != null, AnalysisSession.open(artifactReader, dependencyReader), writer);
 	}
 
 	private static String[] splitValues(String text) {
@@ -15,9 +15,16 @@
  */
 package com.github.trohovsky.just;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.stream.Stream;
+
+import com.github.trohovsky.just.report.ReportFormat;
+import com.github.trohovsky.just.report.ReportWriter;
 
 /**
  * Reporter.
@@ -30,24 +37,58 @@ public class Reporter {
 	 * Reports classes with their dependencies to stdout.
 	 * 
 	 * @param classesWithDependencies
+	 * @throws IOException
 	 */
-	public static void report(Map<String, Set<String>> classesWithDependencies) {
-		for (Entry<String, Set<String>> entry : classesWithDependencies.entrySet()) {
-			System.out.println(entry.getKey());
-			for (String dependency : entry.getValue()) {
-				System.out.println("\t" + dependency);
-			}
-		}
+	public static void report(Map<String, Set<String>> classesWithDependencies) throws IOException {
+		final ReportWriter writer = ReportFormat.TEXT.open(System.out);
+		writer.writeAll(classesWithDependencies);
+		writer.finish();
 	}
 
 	/**
 	 * Reports dependencies to stdout.
 	 * 
 	 * @param dependencies
+	 * @throws IOException
+	 */
+	public static void report(Set<String> dependencies) throws IOException {
+		final ReportWriter writer = ReportFormat.TEXT.open(System.out);
+		writer.writeAll(dependencies);
+		writer.finish();
+	}
+
+	/**
+	 * Reports classes with their dependencies as they are read. Classes are
+	 * reported only with the dependencies of the Set if not null, classes
+	 * without any of them are omitted.
+	 * 
+	 * @param classesWithDependencies
+	 *            the Stream of classes and their dependencies, it is closed
+	 * @param dependencyClasses
+	 *            the classes of dependencies, null for all
+	 * @param writer
+	 *            the writer of the report
+	 * @throws IOException
 	 */
-	public static void report(Set<String> dependencies) {
-		for (String dependency : dependencies) {
-			System.out.println(dependency);
+	public static void report(Stream<Entry<String, Set<String>>> classesWithDependencies,
+			Set<String> dependencyClasses, ReportWriter writer) throws IOException {
+		try {
+			final Iterator<Entry<String, Set<String>>> iterator = classesWithDependencies.iterator();
+			while (iterator.hasNext()) {
+				final Entry<String, Set<String>> entry = iterator.next();
+				if (dependencyClasses == null) {
+					writer.writeClass(entry.getKey(), entry.getValue());
+				} else {
+					final Set<String> usedClasses = DependencyUtils.intersection(entry.getValue(), dependencyClasses);
+					if (!usedClasses.isEmpty()) {
+						writer.writeClass(entry.getKey(), usedClasses);
+					}
+				}
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			classesWithDependencies.close();
 		}
 	}
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results of an analysis of artifacts and their dependencies, computed at
+ * once by {@link AnalysisSession} or kept up to date by {@link WatchSession}.
+ * 
+ * @author Tomas Rohovsky
+ */
+public interface AnalysisResults {
+
+	/**
+	 * Returns classes of the artifacts.
+	 * 
+	 * @return the Set of classes
+	 */
+	Set<String> getArtifactClasses();
+
+	/**
+	 * Returns classes of the dependencies.
+	 * 
+	 * @return the Set of classes, empty if there are no dependencies
+	 */
+	Set<String> getDependencyClasses();
+
+	/**
+	 * Returns classes of the artifacts and their dependencies.
+	 * 
+	 * @return the Map of classes and their dependencies
+	 */
+	Map<String, Set<String>> getClassesWithDependencies();
+
+	/**
+	 * Returns dependencies of all the classes of the artifacts.
+	 * 
+	 * @return the Set of dependencies
+	 */
+	Set<String> getDependencies();
+
+	/**
+	 * Returns classes of the dependencies used by the artifacts.
+	 * 
+	 * @return the Set of used classes
+	 */
+	Set<String> getUsedClasses();
+
+	/**
+	 * Returns classes of the dependencies used by the artifacts per class of
+	 * the artifacts. Classes not using any dependency are omitted.
+	 * 
+	 * @return the Map of classes and their used classes
+	 */
+	Map<String, Set<String>> getUsedClassesByClass();
+
+	/**
+	 * Returns classes of the dependencies not used by the artifacts.
+	 * 
+	 * @return the Set of unused classes
+	 */
+	Set<String> getUnusedClasses();
+}
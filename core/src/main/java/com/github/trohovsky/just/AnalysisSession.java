@@ -0,0 +1,282 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.github.trohovsky.just.archive.Archive;
+import com.github.trohovsky.just.archive.ClassEntry;
+import com.github.trohovsky.just.model.ClassSet;
+import com.github.trohovsky.just.model.DependencyGraph;
+import com.github.trohovsky.just.model.SetAlgebra;
+import com.github.trohovsky.just.model.SymbolTable;
+import com.github.trohovsky.just.util.PrefixFilter;
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * Results of an analysis of artifacts and their dependencies. Classes of
+ * artifacts are parsed and classes of dependencies are listed when the
+ * session is opened, the results are then queried without any further
+ * reading. Every directory/JAR is listed with the filter of its reader, a
+ * JAR of dependencies only by its central directory. A directory/JAR that
+ * is both an artifact and a dependency is opened and listed only once
+ * without the filters, which are applied to its entries afterwards.
+ * <p>
+ * The session is immutable and can be queried by multiple threads.
+ * 
+ * <pre>
+ * AnalysisSession session = AnalysisSession.open(Reader.from(&quot;application.jar&quot;), Reader.from(&quot;library.jar&quot;));
+ * Set&lt;String&gt; usedClasses = session.getUsedClasses();
+ * Set&lt;String&gt; unusedClasses = session.getUnusedClasses();
+ * </pre>
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class AnalysisSession implements AnalysisResults {
+
+	private final ClassSet artifactClasses;
+	private final ClassSet dependencyClasses;
+	private final Map<String, Set<String>> classesWithDependencies;
+	private final DependencyGraph dependencyGraph;
+	private final ClassSet dependencies;
+
+	private AnalysisSession(final ClassSet artifactClasses, final ClassSet dependencyClasses,
+			final Map<String, Set<String>> classesWithDependencies) {
+		this.artifactClasses = artifactClasses;
+		this.dependencyClasses = dependencyClasses;
+		this.classesWithDependencies = Collections.unmodifiableMap(classesWithDependencies);
+		this.dependencyGraph = DependencyGraph.of(artifactClasses.getSymbolTable(), classesWithDependencies);
+		this.dependencies = DependencyUtils.getDependencies(dependencyGraph);
+	}
+
+	/**
+	 * Opens a session analyzing artifacts without dependencies.
+	 * 
+	 * @param artifacts
+	 *            the reader of the artifacts
+	 * @return the session
+	 * @throws IOException
+	 */
+	public static AnalysisSession open(final Reader artifacts) throws IOException {
+		return open(artifacts, null);
+	}
+
+	/**
+	 * Opens a session analyzing artifacts and their dependencies. Paths,
+	 * filters and other settings of the readers are applied. The dependencies
+	 * are only listed, so the engine, parallelism and cache of their reader
+	 * are not used.
+	 * 
+	 * @param artifacts
+	 *            the reader of the artifacts
+	 * @param dependencies
+	 *            the reader of the dependencies, null if there are no
+	 *            dependencies
+	 * @return the session
+	 * @throws IOException
+	 */
+	public static AnalysisSession open(final Reader artifacts, final Reader dependencies) throws IOException {
+		Validation.notNull(artifacts, "Reader of artifacts must be specified");
+
+		// a path of both readers is listed once without their filters, the
+		// other paths are listed with the filter of their reader
+		final Set<String> sharedKeys = new HashSet<String>();
+		if (dependencies != null) {
+			final Set<String> artifactKeys = new HashSet<String>();
+			for (String path : artifacts.getPaths()) {
+				artifactKeys.add(getKey(artifacts, path));
+			}
+			for (String path : dependencies.getPaths()) {
+				final String key = getKey(dependencies, path);
+				if (artifactKeys.contains(key)) {
+					sharedKeys.add(key);
+				}
+			}
+		}
+		final Map<String, List<ClassEntry>> entries = new HashMap<String, List<ClassEntry>>();
+		final List<Archive> archives = new ArrayList<Archive>();
+		artifacts.beginRead();
+		if (dependencies != null) {
+			dependencies.beginRead();
+		}
+		try {
+			final Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+			for (String path : artifacts.getPaths()) {
+				final String key = getKey(artifacts, path);
+				final List<ClassEntry> artifactEntries;
+				if (sharedKeys.contains(key)) {
+					artifactEntries = filter(listSharedClassEntries(artifacts, path, key, entries, archives),
+							artifacts.filter());
+				} else {
+					final Archive archive = artifacts.openArchive(path);
+					archives.add(archive);
+					artifactEntries = artifacts.listClassEntries(path, archive, artifacts.filter());
+				}
+				classesWithDependencies.putAll(artifacts.readClassesWithDependencies(path, artifactEntries));
+			}
+
+			final SymbolTable symbolTable = artifacts.getSymbolTable();
+			final List<String> dependencyClasses = new ArrayList<String>();
+			if (dependencies != null) {
+				for (String path : dependencies.getPaths()) {
+					final String key = getKey(dependencies, path);
+					if (sharedKeys.contains(key)) {
+						for (ClassEntry entry : filter(listSharedClassEntries(dependencies, path, key, entries,
+								archives), dependencies.filter())) {
+							dependencyClasses.add(entry.getName());
+						}
+					} else {
+						dependencies.listClasses(path, dependencyClasses);
+					}
+				}
+			}
+			return new AnalysisSession(ClassSet.of(symbolTable, classesWithDependencies.keySet()), ClassSet.of(
+					symbolTable, dependencyClasses), classesWithDependencies);
+		} finally {
+			for (Archive archive : archives) {
+				archive.close();
+			}
+			artifacts.endRead();
+			if (dependencies != null) {
+				dependencies.endRead();
+			}
+		}
+	}
+
+	/**
+	 * Returns the key of the path, the same for the same listed entries.
+	 */
+	private static String getKey(final Reader reader, final String path) throws IOException {
+		Validation.notNull(path, "Path must be specified");
+
+		// the nested JARs change the listed entries
+		return new File(path).getCanonicalPath() + (reader.readsNestedArchives() ? "!/" : "");
+	}
+
+	private static List<ClassEntry> listSharedClassEntries(final Reader reader, final String path, final String key,
+			final Map<String, List<ClassEntry>> entries, final List<Archive> archives) throws IOException {
+		List<ClassEntry> pathEntries = entries.get(key);
+		if (pathEntries == null) {
+			final Archive archive = reader.openArchive(path);
+			archives.add(archive);
+			pathEntries = reader.listClassEntries(path, archive, PrefixFilter.all());
+			entries.put(key, pathEntries);
+		}
+		return pathEntries;
+	}
+
+	private static List<ClassEntry> filter(final List<ClassEntry> entries, final PrefixFilter filter) {
+		if (filter.acceptsAll()) {
+			return entries;
+		}
+		final List<ClassEntry> filteredEntries = new ArrayList<ClassEntry>();
+		for (ClassEntry entry : entries) {
+			if (filter.accepts(entry.getName())) {
+				filteredEntries.add(entry);
+			}
+		}
+		return filteredEntries;
+	}
+
+	/**
+	 * Returns classes of the artifacts.
+	 * 
+	 * @return the Set of classes
+	 */
+	@Override
+	public Set<String> getArtifactClasses() {
+		return artifactClasses;
+	}
+
+	/**
+	 * Returns classes of the dependencies.
+	 * 
+	 * @return the Set of classes, empty if there are no dependencies
+	 */
+	@Override
+	public Set<String> getDependencyClasses() {
+		return dependencyClasses;
+	}
+
+	/**
+	 * Returns classes of the artifacts and their dependencies.
+	 * 
+	 * @return the Map of classes and their dependencies
+	 */
+	@Override
+	public Map<String, Set<String>> getClassesWithDependencies() {
+		return classesWithDependencies;
+	}
+
+	/**
+	 * Returns classes of the artifacts and their dependencies as a graph.
+	 * 
+	 * @return the graph of classes and their dependencies
+	 */
+	public DependencyGraph getDependencyGraph() {
+		return dependencyGraph;
+	}
+
+	/**
+	 * Returns dependencies of all the classes of the artifacts.
+	 * 
+	 * @return the Set of dependencies
+	 */
+	@Override
+	public Set<String> getDependencies() {
+		return dependencies;
+	}
+
+	/**
+	 * Returns classes of the dependencies used by the artifacts.
+	 * 
+	 * @return the Set of used classes
+	 */
+	@Override
+	public Set<String> getUsedClasses() {
+		return SetAlgebra.intersection(dependencies, dependencyClasses);
+	}
+
+	/**
+	 * Returns classes of the dependencies used by the artifacts per class of
+	 * the artifacts. Classes not using any dependency are omitted.
+	 * 
+	 * @return the Map of classes and their used classes
+	 */
+	@Override
+	public Map<String, Set<String>> getUsedClassesByClass() {
+		return DependencyUtils.intersection(dependencyGraph, dependencyClasses).toMap();
+	}
+
+	/**
+	 * Returns classes of the dependencies not used by the artifacts.
+	 * 
+	 * @return the Set of unused classes
+	 */
+	@Override
+	public Set<String> getUnusedClasses() {
+		return SetAlgebra.subtract(dependencyClasses, dependencies);
+	}
+}
@@ -15,12 +15,24 @@
  */
 package com.github.trohovsky.just;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import com.github.trohovsky.just.jfr.SetOperationEvent;
+import com.github.trohovsky.just.model.ClassSet;
+import com.github.trohovsky.just.model.DependencyGraph;
+import com.github.trohovsky.just.model.SetAlgebra;
+import com.github.trohovsky.just.model.SymbolTable;
+
 /**
  * Provides utility methods for manipulating with dependencies.
  * 
@@ -32,7 +44,8 @@ public final class DependencyUtils {
 	}
 
 	/**
-	 * Returns a Map containing the intersection of the given Map and Set.
+	 * Returns a Map containing the intersection of the given Map and Set. Keys
+	 * whose intersection is empty are omitted.
 	 * 
 	 * @param map
 	 *            the map, must not be null
@@ -41,26 +54,57 @@ public final class DependencyUtils {
 	 * @return the intersection of the Map and Set
 	 */
 	public static Map<String, Set<String>> intersection(final Map<String, Set<String>> map, final Set<String> set) {
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
+		final SymbolTable symbolTable = getSymbolTable(map.values(), set);
+		final List<ClassSet> values = new ArrayList<ClassSet>(map.size());
+		for (Set<String> value : map.values()) {
+			values.add(ClassSet.of(symbolTable, value));
+		}
+		final ClassSet[] intersections = SetAlgebra.intersection(values, ClassSet.of(symbolTable, set));
+
 		final Map<String, Set<String>> intersection = new TreeMap<String, Set<String>>();
+		int i = 0;
+		for (String key : map.keySet()) {
+			if (!intersections[i].isEmpty()) {
+				intersection.put(key, new TreeSet<String>(intersections[i]));
+			}
+			i++;
+		}
+		return event.finish("intersection", map.size() + set.size(), intersection.size(), intersection);
+	}
 
-		for (Entry<String, Set<String>> entry : map.entrySet()) {
-			for (String setElement : set) {
-				if (entry.getValue().contains(setElement)) {
-
-					// adding of the set element to the existing entry
-					if (intersection.containsKey(entry.getKey())) {
-						intersection.get(entry.getKey()).add(setElement);
-					} else {
-						// creating of a new set
-						final Set<String> newSet = new TreeSet<String>();
-						newSet.add(setElement);
-						intersection.put(entry.getKey(), newSet);
-					}
+	/**
+	 * Returns a graph containing the intersection of the given graph and Set,
+	 * i.e. the classes of the graph with their dependencies contained in the
+	 * Set. The classes without such dependencies are omitted.
+	 * 
+	 * @param graph
+	 *            the graph, must not be null
+	 * @param set
+	 *            the set, must not be null
+	 * @return the intersection of the graph and Set
+	 */
+	public static DependencyGraph intersection(final DependencyGraph graph, final Set<String> set) {
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
+		final BitSet members = toBitSet(graph.getSymbolTable(), set);
+		final DependencyGraph.Builder builder = new DependencyGraph.Builder(graph.getSymbolTable());
+		for (int node : graph.getClasses().toIdArray()) {
+			final int[] dependencies = new int[graph.getOutDegree(node)];
+			int length = 0;
+			for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+				if (members.get(graph.getTarget(edge))) {
+					dependencies[length++] = graph.getTarget(edge);
 				}
 			}
+			if (length != 0) {
+				builder.add(node, Arrays.copyOf(dependencies, length));
+			}
 		}
-
-		return intersection;
+		final DependencyGraph intersection = builder.build();
+		return event.finish("intersection", graph.getNodeCount() + set.size(), intersection.getNodeCount(),
+				intersection);
 	}
 
 	/**
@@ -73,9 +117,30 @@ public final class DependencyUtils {
 	 * @return the intersection of the Sets
 	 */
 	public static Set<String> intersection(final Set<String> setA, final Set<String> setB) {
-		final Set<String> intersection = new TreeSet<String>(setA);
-		intersection.retainAll(setB);
-		return intersection;
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
+		final SymbolTable symbolTable = getSymbolTable(Collections.<Set<String>> emptyList(), setA, setB);
+		final Set<String> intersection = new TreeSet<String>(SetAlgebra.intersection(ClassSet.of(symbolTable, setA),
+				ClassSet.of(symbolTable, setB)));
+		return event.finish("intersection", setA.size() + setB.size(), intersection.size(), intersection);
+	}
+
+	/**
+	 * Returns a Set containing the union of the given Sets.
+	 * 
+	 * @param setA
+	 *            the first set, must not be null
+	 * @param setB
+	 *            the second set, must not be null
+	 * @return the union of the Sets
+	 */
+	public static Set<String> union(final Set<String> setA, final Set<String> setB) {
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
+		final SymbolTable symbolTable = getSymbolTable(Collections.<Set<String>> emptyList(), setA, setB);
+		final Set<String> union = new TreeSet<String>(SetAlgebra.union(ClassSet.of(symbolTable, setA),
+				ClassSet.of(symbolTable, setB)));
+		return event.finish("union", setA.size() + setB.size(), union.size(), union);
 	}
 
 	/**
@@ -91,6 +156,29 @@ public final class DependencyUtils {
 		return subtract(set, flatten(map));
 	}
 
+	/**
+	 * Returns a new Set containing set - dependencies of the graph.
+	 * 
+	 * @param set
+	 *            the set, must not be null
+	 * @param graph
+	 *            the graph, must not be null
+	 * @return the Set containing set - dependencies of the graph
+	 */
+	public static Set<String> subtract(final Set<String> set, final DependencyGraph graph) {
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
+		final BitSet dependencies = toBitSet(graph);
+		final Set<String> setMinusGraph = new TreeSet<String>();
+		for (String setElement : set) {
+			final int id = graph.getSymbolTable().get(setElement);
+			if (id == -1 || !dependencies.get(id)) {
+				setMinusGraph.add(setElement);
+			}
+		}
+		return event.finish("subtract", set.size() + graph.getNodeCount(), setMinusGraph.size(), setMinusGraph);
+	}
+
 	/**
 	 * Returns a new Set containing setA - setB.
 	 * 
@@ -101,9 +189,12 @@ public final class DependencyUtils {
 	 * @return the Set containing setA - setB
 	 */
 	public static Set<String> subtract(final Set<String> setA, final Set<String> setB) {
-		final Set<String> aMinusB = new TreeSet<String>(setA);
-		aMinusB.removeAll(intersection(setB, setA));
-		return aMinusB;
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
+		final SymbolTable symbolTable = getSymbolTable(Collections.<Set<String>> emptyList(), setA, setB);
+		final Set<String> difference = new TreeSet<String>(SetAlgebra.subtract(ClassSet.of(symbolTable, setA),
+				ClassSet.of(symbolTable, setB)));
+		return event.finish("subtract", setA.size() + setB.size(), difference.size(), difference);
 	}
 
 	/**
@@ -114,11 +205,90 @@ public final class DependencyUtils {
 	 * @return the set created by flattening of the map
 	 */
 	public static Set<String> flatten(final Map<String, Set<String>> map) {
-		final Set<String> flattenedMap = new TreeSet<String>();
-		for (Entry<String, Set<String>> entry : map.entrySet()) {
-			flattenedMap.addAll(entry.getValue());
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
+		final SymbolTable symbolTable = getSymbolTable(map.values());
+		final List<ClassSet> values = new ArrayList<ClassSet>(map.size());
+		for (Set<String> value : map.values()) {
+			values.add(ClassSet.of(symbolTable, value));
 		}
-		return flattenedMap;
+		final Set<String> flattened = new TreeSet<String>(SetAlgebra.union(symbolTable, values));
+		return event.finish("flatten", map.size(), flattened.size(), flattened);
+	}
+
+	/**
+	 * Returns the symbol table of the arguments if all of them are ClassSets
+	 * of the same reader, so they are not converted, or a new one. Foreign
+	 * names are never interned in the symbol table of a reader.
+	 */
+	private static SymbolTable getSymbolTable(final Collection<Set<String>> sets, final Set<?>... otherSets) {
+		SymbolTable symbolTable = null;
+		for (Set<?> set : otherSets) {
+			if (!(set instanceof ClassSet) || symbolTable != null && ((ClassSet) set).getSymbolTable() != symbolTable) {
+				return new SymbolTable();
+			}
+			symbolTable = ((ClassSet) set).getSymbolTable();
+		}
+		for (Set<String> set : sets) {
+			if (!(set instanceof ClassSet) || symbolTable != null && ((ClassSet) set).getSymbolTable() != symbolTable) {
+				return new SymbolTable();
+			}
+			symbolTable = ((ClassSet) set).getSymbolTable();
+		}
+		return symbolTable != null ? symbolTable : new SymbolTable();
+	}
+
+	/**
+	 * Flattens the graph to a set of dependencies of its classes.
+	 * 
+	 * @param graph
+	 *            the graph to be flatten
+	 * @return the set created by flattening of the graph
+	 */
+	public static Set<String> flatten(final DependencyGraph graph) {
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
+		final Set<String> flattened = new TreeSet<String>(getDependencies(graph));
+		return event.finish("flatten", graph.getNodeCount(), flattened.size(), flattened);
+	}
+
+	/**
+	 * Returns the dependencies of the classes of the graph as a ClassSet of
+	 * the symbol table of the graph.
+	 */
+	static ClassSet getDependencies(final DependencyGraph graph) {
+		final BitSet dependencies = toBitSet(graph);
+		final int[] ids = new int[dependencies.cardinality()];
+		int length = 0;
+		for (int id = dependencies.nextSetBit(0); id != -1; id = dependencies.nextSetBit(id + 1)) {
+			ids[length++] = id;
+		}
+		return ClassSet.ofIds(graph.getSymbolTable(), ids, length);
+	}
+
+	private static BitSet toBitSet(final DependencyGraph graph) {
+		final BitSet dependencies = new BitSet(graph.getNodeCount());
+		for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+			dependencies.set(graph.getTarget(edge));
+		}
+		return dependencies;
+	}
+
+	private static BitSet toBitSet(final SymbolTable symbolTable, final Set<String> set) {
+		final BitSet members = new BitSet(symbolTable.size());
+		if (set instanceof ClassSet && ((ClassSet) set).getSymbolTable() == symbolTable) {
+			for (int id : ((ClassSet) set).toIdArray()) {
+				members.set(id);
+			}
+			return members;
+		}
+		for (String setElement : set) {
+			final int id = symbolTable.get(setElement);
+			if (id != -1) {
+				members.set(id);
+			}
+		}
+		return members;
 	}
 
 	/**
@@ -141,12 +311,14 @@ public final class DependencyUtils {
 	 * @return the Set of packages
 	 */
 	public static Set<String> toPackageNames(final Set<String> classNames) {
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
 		final Set<String> packageNames = new TreeSet<String>();
 		for (String className : classNames) {
 			final String packageName = getPackageName(className);
 			packageNames.add(packageName);
 		}
-		return packageNames;
+		return event.finish("toPackageNames", classNames.size(), packageNames.size(), packageNames);
 	}
 
 	/**
@@ -159,6 +331,8 @@ public final class DependencyUtils {
 	 * @return the Map of packages and their depended packages
 	 */
 	public static Map<String, Set<String>> toPackageNames(final Map<String, Set<String>> map) {
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
 		final Map<String, Set<String>> mapWithPackages = new TreeMap<String, Set<String>>();
 		for (Entry<String, Set<String>> entry : map.entrySet()) {
 			final String key = getPackageName(entry.getKey());
@@ -172,6 +346,44 @@ public final class DependencyUtils {
 				mapWithPackages.put(key, values);
 			}
 		}
-		return mapWithPackages;
+		return event.finish("toPackageNames", map.size(), mapWithPackages.size(), mapWithPackages);
+	}
+
+	/**
+	 * Transforms the graph of classes to a graph of packages and their
+	 * depended packages. Names of the packages are interned in a new symbol
+	 * table, not in the one of the graph.
+	 * 
+	 * @param graph
+	 *            the graph of classes
+	 * @return the graph of packages and their depended packages
+	 */
+	public static DependencyGraph toPackageNames(final DependencyGraph graph) {
+		final SetOperationEvent event = new SetOperationEvent();
+		event.begin();
+		final SymbolTable symbolTable = new SymbolTable();
+		final int[] packages = new int[graph.getNodeCount()];
+		Arrays.fill(packages, -1);
+
+		final DependencyGraph.Builder builder = new DependencyGraph.Builder(symbolTable);
+		for (int node : graph.getClasses().toIdArray()) {
+			final int[] dependencies = new int[graph.getOutDegree(node)];
+			int length = 0;
+			for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+				dependencies[length++] = getPackage(graph.getSymbolTable(), symbolTable, graph.getTarget(edge),
+						packages);
+			}
+			builder.add(getPackage(graph.getSymbolTable(), symbolTable, node, packages), dependencies);
+		}
+		final DependencyGraph packageGraph = builder.build();
+		return event.finish("toPackageNames", graph.getNodeCount(), packageGraph.getNodeCount(), packageGraph);
+	}
+
+	private static int getPackage(final SymbolTable classes, final SymbolTable symbolTable, final int node,
+			final int[] packages) {
+		if (packages[node] == -1) {
+			packages[node] = symbolTable.intern(getPackageName(classes.name(node)));
+		}
+		return packages[node];
 	}
 }
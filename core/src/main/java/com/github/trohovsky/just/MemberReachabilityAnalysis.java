@@ -0,0 +1,329 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.objectweb.asm.Opcodes;
+
+import com.github.trohovsky.just.archive.Archive;
+import com.github.trohovsky.just.archive.ClassEntry;
+import com.github.trohovsky.just.callgraph.CallGraph;
+import com.github.trohovsky.just.callgraph.CallGraphSearch;
+import com.github.trohovsky.just.callgraph.MemberTable;
+import com.github.trohovsky.just.model.SymbolTable;
+import com.github.trohovsky.just.util.PrefixFilter;
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * Analysis of methods and fields reachable from entry points through calls
+ * and field accesses. Members of classes of all the readers are parsed into
+ * one {@link CallGraph} that is searched by {@link CallGraphSearch} from the
+ * roots:
+ * <ul>
+ * <li>main methods of Main-Class and Start-Class of manifests of JARs</li>
+ * <li>constructors without arguments of service providers listed in
+ * META-INF/services</li>
+ * <li>public and protected methods of public classes matched by prefixes of
+ * public API</li>
+ * <li>explicitly specified members</li>
+ * </ul>
+ * Members are written as "owner.name(descriptor)" for methods and
+ * "owner.name:descriptor" for fields, where the owner is the internal name of
+ * the class. Methods not reachable from the roots are dead code, unless they
+ * are called by reflection.
+ * 
+ * <pre>
+ * Reader reader = Reader.from(&quot;application.jar&quot;, &quot;library.jar&quot;);
+ * MemberReachabilityAnalysis.Result result = MemberReachabilityAnalysis.of(reader).run();
+ * Set&lt;String&gt; unusedMethods = result.getUnusedMethods();
+ * </pre>
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class MemberReachabilityAnalysis {
+
+	private static final String MAIN = "main";
+	private static final String MAIN_DESCRIPTOR = "([Ljava/lang/String;)V";
+	private static final String CONSTRUCTOR = "<init>";
+	private static final String NO_ARGUMENTS = "()V";
+
+	private final Reader[] readers;
+	private String[] roots = new String[0];
+	private PrefixFilter publicApi;
+	private boolean mainClasses = true;
+	private boolean services = true;
+
+	private MemberReachabilityAnalysis(final Reader... readers) {
+		this.readers = readers;
+	}
+
+	/**
+	 * Creates an analysis of classes of the readers. Paths and filters of the
+	 * readers are applied.
+	 * 
+	 * @param readers
+	 *            the readers of the classes
+	 * @return the analysis
+	 */
+	public static MemberReachabilityAnalysis of(final Reader... readers) {
+		Validation.isTrue(readers.length > 0, "At least one reader must be specified");
+		Validation.noNullValues(readers, "Readers cannot contain null values");
+		return new MemberReachabilityAnalysis(readers);
+	}
+
+	/**
+	 * Sets members that are roots of the search in addition to the other
+	 * ones. A root is either a member, e.g. "com/example/Main.run(I)V", all
+	 * the members of the name, e.g. "com/example/Main.run", or all the
+	 * methods of a class, e.g. "com/example/Main".
+	 * 
+	 * @param roots
+	 *            the roots
+	 * @return the same instance of MemberReachabilityAnalysis
+	 */
+	public MemberReachabilityAnalysis roots(final String... roots) {
+		Validation.noNullValues(roots, "Roots cannot contain null values");
+		this.roots = roots;
+		return this;
+	}
+
+	/**
+	 * Sets prefixes of public API. Public and protected methods of public
+	 * classes matched by the prefixes are roots of the search. There is no
+	 * public API by default.
+	 * 
+	 * @param prefixes
+	 *            the prefixes of the public API
+	 * @return the same instance of MemberReachabilityAnalysis
+	 */
+	public MemberReachabilityAnalysis publicApi(final String... prefixes) {
+		this.publicApi = prefixes != null ? PrefixFilter.of(prefixes, null) : null;
+		return this;
+	}
+
+	/**
+	 * Sets whether main methods of main classes of manifests are roots of the
+	 * search, they are by default.
+	 * 
+	 * @param mainClasses
+	 *            true if the main methods are roots
+	 * @return the same instance of MemberReachabilityAnalysis
+	 */
+	public MemberReachabilityAnalysis mainClasses(final boolean mainClasses) {
+		this.mainClasses = mainClasses;
+		return this;
+	}
+
+	/**
+	 * Sets whether service providers are roots of the search, they are by
+	 * default.
+	 * 
+	 * @param services
+	 *            true if the service providers are roots
+	 * @return the same instance of MemberReachabilityAnalysis
+	 */
+	public MemberReachabilityAnalysis services(final boolean services) {
+		this.services = services;
+		return this;
+	}
+
+	/**
+	 * Reads the classes and searches for the members reachable from the
+	 * roots.
+	 * 
+	 * @return the result of the analysis
+	 * @throws IOException
+	 */
+	public Result run() throws IOException {
+		final CallGraph.Builder builder = new CallGraph.Builder(new MemberTable(readers[0].getSymbolTable(),
+				new SymbolTable()));
+		final List<String> mainClassNames = new ArrayList<String>();
+		final List<String> providers = new ArrayList<String>();
+		// the readers and their paths are read from the last ones, so the later
+		// classes precede like in the reachability analysis of classes
+		for (int i = readers.length - 1; i >= 0; i--) {
+			final Reader reader = readers[i];
+			reader.beginRead();
+			try {
+				final String[] paths = reader.getPaths();
+				for (int j = paths.length - 1; j >= 0; j--) {
+					final String path = paths[j];
+					Validation.notNull(path, "Path must be specified");
+					final Archive archive = reader.openArchive(path);
+					try {
+						final List<ClassEntry> entries = reader.listClassEntries(path, archive, reader.filter());
+						reader.readCallGraph(path, entries, builder);
+						if (mainClasses) {
+							ReachabilityAnalysis.addMainClasses(archive, mainClassNames);
+						}
+						if (services) {
+							ReachabilityAnalysis.addServices(archive, new ArrayList<String>(), providers);
+						}
+					} finally {
+						archive.close();
+					}
+				}
+			} finally {
+				reader.endRead();
+			}
+		}
+
+		final CallGraph graph = builder.build();
+		final MemberTable members = graph.getMembers();
+		final SymbolTable classTable = members.getClasses();
+		final SymbolTable strings = members.getStrings();
+		final List<Integer> rootMembers = new ArrayList<Integer>();
+		final List<Integer> rootClasses = new ArrayList<Integer>();
+		for (String mainClass : mainClassNames) {
+			addRoot(graph, classTable.get(mainClass), strings.get(MAIN), strings.get(MAIN_DESCRIPTOR), rootMembers);
+		}
+		for (String provider : providers) {
+			final int clazz = classTable.get(provider);
+			if (clazz >= 0) {
+				rootClasses.add(clazz);
+				addRoot(graph, clazz, strings.get(CONSTRUCTOR), strings.get(NO_ARGUMENTS), rootMembers);
+			}
+		}
+		if (publicApi != null) {
+			for (int clazz = 0; clazz < graph.getClassCount(); clazz++) {
+				if (graph.isClass(clazz) && (graph.getClassAccess(clazz) & Opcodes.ACC_PUBLIC) != 0
+						&& publicApi.accepts(classTable.name(clazz))) {
+					for (int member : graph.getDeclaredMembers(clazz)) {
+						final int access = graph.getMemberAccess(member);
+						if (graph.isMethod(member) && (access & (Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED)) != 0) {
+							rootMembers.add(member);
+						}
+					}
+				}
+			}
+		}
+		for (String root : roots) {
+			addRoot(graph, root, rootMembers);
+		}
+
+		final BitSet reachable = CallGraphSearch.reachableFrom(graph, toArray(rootMembers), toArray(rootClasses));
+		return new Result(graph, reachable);
+	}
+
+	private static void addRoot(final CallGraph graph, final int clazz, final int name, final int descriptor,
+			final List<Integer> rootMembers) {
+		if (clazz >= 0 && name >= 0 && descriptor >= 0) {
+			final int member = graph.getMembers().get(clazz, name, descriptor);
+			if (member >= 0) {
+				rootMembers.add(member);
+			}
+		}
+	}
+
+	private static void addRoot(final CallGraph graph, final String root, final List<Integer> rootMembers) {
+		final MemberTable members = graph.getMembers();
+		final int paren = root.indexOf('(');
+		final int colon = root.indexOf(':');
+		final int end = paren != -1 ? paren : colon != -1 ? colon : root.length();
+		final int dot = root.lastIndexOf('.', end);
+		final int clazz = members.getClasses().get(dot != -1 ? root.substring(0, dot) : root);
+		if (clazz < 0) {
+			return;
+		}
+		for (int member : graph.getDeclaredMembers(clazz)) {
+			if (dot == -1) {
+				if (graph.isMethod(member)) {
+					rootMembers.add(member);
+				}
+			} else if (members.getStrings().name(members.getName(member)).equals(root.substring(dot + 1, end))
+					&& (end == root.length() || members.toString(member).equals(root))) {
+				rootMembers.add(member);
+			}
+		}
+	}
+
+	private static int[] toArray(final List<Integer> list) {
+		final int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Result of the analysis.
+	 */
+	public static final class Result {
+
+		private final CallGraph graph;
+		private final BitSet reachable;
+
+		Result(final CallGraph graph, final BitSet reachable) {
+			this.graph = graph;
+			this.reachable = reachable;
+		}
+
+		/**
+		 * Returns the call graph of all the read classes.
+		 * 
+		 * @return the call graph
+		 */
+		public CallGraph getCallGraph() {
+			return graph;
+		}
+
+		/**
+		 * Returns the methods of the read classes reachable from the roots.
+		 * 
+		 * @return the sorted Set of reachable methods
+		 */
+		public Set<String> getReachableMethods() {
+			return members(true, true);
+		}
+
+		/**
+		 * Returns the methods of the read classes unreachable from the roots,
+		 * i.e. the unused ones.
+		 * 
+		 * @return the sorted Set of unused methods
+		 */
+		public Set<String> getUnusedMethods() {
+			return members(true, false);
+		}
+
+		/**
+		 * Returns the fields of the read classes unreachable from the roots,
+		 * i.e. the unused ones.
+		 * 
+		 * @return the sorted Set of unused fields
+		 */
+		public Set<String> getUnusedFields() {
+			return members(false, false);
+		}
+
+		private Set<String> members(final boolean methods, final boolean reached) {
+			final Set<String> members = new TreeSet<String>();
+			for (int member = 0; member < graph.getMemberCount(); member++) {
+				if (graph.isDeclared(member) && graph.isMethod(member) == methods
+						&& reachable.get(member) == reached) {
+					members.add(graph.getMembers().toString(member));
+				}
+			}
+			return members;
+		}
+	}
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+import org.objectweb.asm.Opcodes;
+
+import com.github.trohovsky.just.archive.Archive;
+import com.github.trohovsky.just.archive.ClassEntry;
+import com.github.trohovsky.just.model.BreadthFirstSearch;
+import com.github.trohovsky.just.model.ClassSet;
+import com.github.trohovsky.just.model.DependencyGraph;
+import com.github.trohovsky.just.model.SetAlgebra;
+import com.github.trohovsky.just.model.SymbolTable;
+import com.github.trohovsky.just.scanner.ConstantPoolScanner;
+import com.github.trohovsky.just.util.PrefixFilter;
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * Analysis of classes reachable from entry points through dependencies of
+ * classes. Classes of all the readers, e.g. artifacts and their
+ * dependencies, are parsed into one graph that is searched from the roots:
+ * <ul>
+ * <li>Main-Class and Start-Class of manifests of JARs</li>
+ * <li>services and their providers listed in META-INF/services</li>
+ * <li>public classes matched by prefixes of public API</li>
+ * <li>explicitly specified classes</li>
+ * </ul>
+ * Classes not reachable from the roots are not needed, unless they are
+ * loaded by reflection.
+ * 
+ * <pre>
+ * Reader reader = Reader.from(&quot;application.jar&quot;, &quot;library.jar&quot;);
+ * ReachabilityAnalysis.Result result = ReachabilityAnalysis.of(reader).publicApi(&quot;com/example/api/&quot;).run();
+ * Set&lt;String&gt; unreachableClasses = result.getUnreachableClasses();
+ * </pre>
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class ReachabilityAnalysis {
+
+	private static final String MANIFEST = "META-INF/MANIFEST.MF";
+	private static final String SERVICES = "META-INF/services/";
+	private static final Attributes.Name START_CLASS = new Attributes.Name("Start-Class");
+
+	private final Reader[] readers;
+	private String[] roots = new String[0];
+	private PrefixFilter publicApi;
+	private boolean mainClasses = true;
+	private boolean services = true;
+	private int parallelism = 1;
+
+	private ReachabilityAnalysis(final Reader... readers) {
+		this.readers = readers;
+	}
+
+	/**
+	 * Creates an analysis of classes of the readers. Paths, filters and other
+	 * settings of the readers are applied.
+	 * 
+	 * @param readers
+	 *            the readers of the classes
+	 * @return the analysis
+	 */
+	public static ReachabilityAnalysis of(final Reader... readers) {
+		Validation.isTrue(readers.length > 0, "At least one reader must be specified");
+		Validation.noNullValues(readers, "Readers cannot contain null values");
+		return new ReachabilityAnalysis(readers);
+	}
+
+	/**
+	 * Sets classes that are roots of the search in addition to the other
+	 * ones.
+	 * 
+	 * @param roots
+	 *            the internal names of the classes
+	 * @return the same instance of ReachabilityAnalysis
+	 */
+	public ReachabilityAnalysis roots(final String... roots) {
+		Validation.noNullValues(roots, "Roots cannot contain null values");
+		this.roots = roots;
+		return this;
+	}
+
+	/**
+	 * Sets prefixes of public API. Public classes matched by the prefixes are
+	 * roots of the search. There is no public API by default.
+	 * 
+	 * @param prefixes
+	 *            the prefixes of the public API
+	 * @return the same instance of ReachabilityAnalysis
+	 */
+	public ReachabilityAnalysis publicApi(final String... prefixes) {
+		this.publicApi = prefixes != null ? PrefixFilter.of(prefixes, null) : null;
+		return this;
+	}
+
+	/**
+	 * Sets whether main classes of manifests are roots of the search, they
+	 * are by default.
+	 * 
+	 * @param mainClasses
+	 *            true if the main classes are roots
+	 * @return the same instance of ReachabilityAnalysis
+	 */
+	public ReachabilityAnalysis mainClasses(final boolean mainClasses) {
+		this.mainClasses = mainClasses;
+		return this;
+	}
+
+	/**
+	 * Sets whether services and their providers are roots of the search, they
+	 * are by default.
+	 * 
+	 * @param services
+	 *            true if the services are roots
+	 * @return the same instance of ReachabilityAnalysis
+	 */
+	public ReachabilityAnalysis services(final boolean services) {
+		this.services = services;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads used for the search. The classes are parsed
+	 * with the parallelism of their readers.
+	 * 
+	 * @param parallelism
+	 *            the number of threads, must be positive
+	 * @return the same instance of ReachabilityAnalysis
+	 */
+	public ReachabilityAnalysis parallelism(final int parallelism) {
+		Validation.isTrue(parallelism > 0, "Parallelism must be positive");
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Reads the classes and searches for the ones reachable from the roots.
+	 * 
+	 * @return the result of the analysis
+	 * @throws IOException
+	 */
+	public Result run() throws IOException {
+		final SymbolTable symbolTable = readers[0].getSymbolTable();
+		final Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+		final List<String> rootClasses = new ArrayList<String>(Arrays.asList(roots));
+		for (Reader reader : readers) {
+			reader.beginRead();
+			try {
+				for (String path : reader.getPaths()) {
+					Validation.notNull(path, "Path must be specified");
+					final Archive archive = reader.openArchive(path);
+					try {
+						final List<ClassEntry> entries = reader.listClassEntries(path, archive, reader.filter());
+						classesWithDependencies.putAll(reader.readClassesWithDependencies(path, entries));
+						addRoots(archive, entries, rootClasses);
+					} finally {
+						archive.close();
+					}
+				}
+			} finally {
+				reader.endRead();
+			}
+		}
+
+		final DependencyGraph graph = DependencyGraph.of(symbolTable, classesWithDependencies);
+		final ClassSet rootSet = ClassSet.of(symbolTable, rootClasses);
+		final ClassSet reachable = BreadthFirstSearch.reachableFrom(graph, rootSet, parallelism);
+		return new Result(graph, rootSet, SetAlgebra.intersection(graph.getClasses(), reachable));
+	}
+
+	private void addRoots(final Archive archive, final List<ClassEntry> entries, final List<String> rootClasses)
+			throws IOException {
+		if (mainClasses) {
+			addMainClasses(archive, rootClasses);
+		}
+		if (services) {
+			addServices(archive, rootClasses, rootClasses);
+		}
+		if (publicApi != null) {
+			for (ClassEntry entry : entries) {
+				if (publicApi.accepts(entry.getName())
+						&& (ConstantPoolScanner.readAccess(entry.read()) & Opcodes.ACC_PUBLIC) != 0) {
+					rootClasses.add(entry.getName());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds Main-Class and Start-Class of the manifest of the archive.
+	 */
+	static void addMainClasses(final Archive archive, final List<String> mainClasses) throws IOException {
+		final byte[] manifestBytes = archive.readResource(MANIFEST);
+		if (manifestBytes != null) {
+			final Attributes attributes = new Manifest(new ByteArrayInputStream(manifestBytes)).getMainAttributes();
+			addRoot(attributes.getValue(Attributes.Name.MAIN_CLASS), mainClasses);
+			addRoot(attributes.getValue(START_CLASS), mainClasses);
+		}
+	}
+
+	/**
+	 * Adds services and their providers listed in META-INF/services of the
+	 * archive.
+	 */
+	static void addServices(final Archive archive, final List<String> services, final List<String> providers)
+			throws IOException {
+		for (String service : archive.listResources(SERVICES)) {
+			addRoot(service.substring(SERVICES.length()), services);
+			addProviders(new String(archive.readResource(service), "UTF-8"), providers);
+		}
+	}
+
+	private static void addProviders(final String providers, final List<String> rootClasses) {
+		for (String line : providers.split("\n")) {
+			final int comment = line.indexOf('#');
+			addRoot(comment != -1 ? line.substring(0, comment) : line, rootClasses);
+		}
+	}
+
+	private static void addRoot(final String binaryName, final List<String> rootClasses) {
+		if (binaryName != null && !binaryName.trim().isEmpty()) {
+			rootClasses.add(binaryName.trim().replace('.', '/'));
+		}
+	}
+
+	/**
+	 * Result of the analysis.
+	 */
+	public static final class Result {
+
+		private final DependencyGraph graph;
+		private final ClassSet roots;
+		private final ClassSet reachableClasses;
+
+		Result(final DependencyGraph graph, final ClassSet roots, final ClassSet reachableClasses) {
+			this.graph = graph;
+			this.roots = roots;
+			this.reachableClasses = reachableClasses;
+		}
+
+		/**
+		 * Returns the graph of all the read classes and their dependencies.
+		 * 
+		 * @return the graph
+		 */
+		public DependencyGraph getDependencyGraph() {
+			return graph;
+		}
+
+		/**
+		 * Returns the roots of the search.
+		 * 
+		 * @return the Set of roots
+		 */
+		public Set<String> getRoots() {
+			return roots;
+		}
+
+		/**
+		 * Returns the read classes.
+		 * 
+		 * @return the Set of classes
+		 */
+		public Set<String> getClasses() {
+			return graph.getClasses();
+		}
+
+		/**
+		 * Returns the read classes reachable from the roots.
+		 * 
+		 * @return the Set of reachable classes
+		 */
+		public Set<String> getReachableClasses() {
+			return reachableClasses;
+		}
+
+		/**
+		 * Returns the read classes unreachable from the roots, i.e. the
+		 * transitively unused ones.
+		 * 
+		 * @return the Set of unreachable classes
+		 */
+		public Set<String> getUnreachableClasses() {
+			return SetAlgebra.subtract(graph.getClasses(), reachableClasses);
+		}
+	}
+}
@@ -16,31 +16,58 @@
 package com.github.trohovsky.just;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.signature.SignatureVisitor;
 
+import com.github.trohovsky.just.archive.Archive;
+import com.github.trohovsky.just.archive.CentralDirectory;
+import com.github.trohovsky.just.archive.ClassEntry;
+import com.github.trohovsky.just.cache.ArchiveCache;
+import com.github.trohovsky.just.cache.DependencyCache;
+import com.github.trohovsky.just.callgraph.CallGraph;
+import com.github.trohovsky.just.callgraph.MemberTable;
+import com.github.trohovsky.just.jfr.ArchiveOpenEvent;
+import com.github.trohovsky.just.jfr.ArchiveScanEvent;
+import com.github.trohovsky.just.jfr.ClassParseEvent;
+import com.github.trohovsky.just.model.ClassSet;
 import com.github.trohovsky.just.model.Dependencies;
+import com.github.trohovsky.just.model.DependencyGraph;
+import com.github.trohovsky.just.model.SymbolTable;
+import com.github.trohovsky.just.scanner.ConstantPoolScanner;
+import com.github.trohovsky.just.stats.Counter;
+import com.github.trohovsky.just.stats.ParseCounters;
+import com.github.trohovsky.just.stats.ScanListener;
+import com.github.trohovsky.just.stats.ScanStatistics;
+import com.github.trohovsky.just.util.PrefixFilter;
 import com.github.trohovsky.just.util.Validation;
 import com.github.trohovsky.just.visitor.AnnotationDependenciesVisitor;
+import com.github.trohovsky.just.visitor.CallGraphVisitor;
 import com.github.trohovsky.just.visitor.ClassDependenciesVisitor;
 import com.github.trohovsky.just.visitor.FieldDependenciesVisitor;
 import com.github.trohovsky.just.visitor.MethodDependenciesVisitor;
-import com.github.trohovsky.just.visitor.SignatureDependenciesVisitor;
 
 /**
  * Reader of classes and their dependencies.
@@ -49,10 +76,40 @@ import com.github.trohovsky.just.visitor.SignatureDependenciesVisitor;
  */
 public final class Reader {
 
-	private static final String CLASS_EXTENSION = ".class";
+	private static final int PARSE_THRESHOLD = 16;
 	private String[] paths;
 	private String[] includes;
 	private String[] excludes;
+	private int parallelism = 1;
+	private Engine engine = Engine.VISITOR;
+	private DependencyCache cache;
+	private ArchiveCache archiveCache;
+	private boolean nestedArchives;
+	private ScanListener listener;
+	private boolean countCalls;
+	private final SymbolTable symbolTable = new SymbolTable();
+	private PrefixFilter filter = PrefixFilter.all();
+	// the pool of the current reads, shared by all their paths
+	private ForkJoinPool pool;
+	private int reads;
+
+	/**
+	 * Engine used for collecting of dependencies of a class.
+	 */
+	public enum Engine {
+
+		/**
+		 * Visits the whole class including instructions by ASM visitors.
+		 */
+		VISITOR,
+
+		/**
+		 * Scans the constant pool, signatures and annotations of the class,
+		 * see {@link ConstantPoolScanner}. The results are the same as the
+		 * ones of the visitor, but the scanning is faster.
+		 */
+		CONSTANT_POOL
+	}
 
 	private Reader(String... paths) {
 		this.paths = paths;
@@ -81,6 +138,7 @@ public final class Reader {
 	 */
 	public Reader includes(final String... includes) {
 		this.includes = includes;
+		this.filter = PrefixFilter.of(includes, excludes);
 		return this;
 	}
 
@@ -94,6 +152,112 @@ public final class Reader {
 	 */
 	public Reader excludes(final String... excludes) {
 		this.excludes = excludes;
+		this.filter = PrefixFilter.of(includes, excludes);
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads used for reading and parsing of classes and
+	 * walking of directories. Classes are parsed by a single thread by
+	 * default. The results do not depend on the parallelism.
+	 * 
+	 * @param parallelism
+	 *            the number of parsing threads, must be positive
+	 * @return the same instance of Reader
+	 */
+	public Reader parallelism(final int parallelism) {
+		Validation.isTrue(parallelism > 0, "Parallelism must be positive");
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Sets the engine used for collecting of dependencies of classes.
+	 * {@link Engine#VISITOR} is used by default.
+	 * 
+	 * @param engine
+	 *            the engine
+	 * @return the same instance of Reader
+	 */
+	public Reader engine(final Engine engine) {
+		Validation.notNull(engine, "Engine must be specified");
+		this.engine = engine;
+		return this;
+	}
+
+	/**
+	 * Sets a directory for caching of dependencies of classes. Only the classes
+	 * that changed since the previous reading are parsed, dependencies of the
+	 * other classes are loaded from the cache. The directory can be shared by
+	 * multiple processes. Nothing is cached by default.
+	 * 
+	 * @param directory
+	 *            the cache directory, null for no caching
+	 * @return the same instance of Reader
+	 */
+	public Reader cache(final File directory) {
+		this.cache = directory != null ? new DependencyCache(directory) : null;
+		return this;
+	}
+
+	/**
+	 * Sets an in-memory cache of dependencies of classes of JARs, e.g. one
+	 * shared by the readers of a daemon. The classes of a JAR are parsed only
+	 * if its size or modification time changed since it was cached,
+	 * directories are always read. The reader keeps its own symbol table, only
+	 * the cached dependencies refer to the one of the cache. Nothing is
+	 * cached by default.
+	 * 
+	 * @param archiveCache
+	 *            the cache, null for no caching
+	 * @return the same instance of Reader
+	 */
+	public Reader archiveCache(final ArchiveCache archiveCache) {
+		this.archiveCache = archiveCache;
+		return this;
+	}
+
+	/**
+	 * Sets whether JARs nested in BOOT-INF/lib and WEB-INF/lib of the JARs,
+	 * e.g. Spring Boot JARs and WARs, are read too. Then the classes in
+	 * BOOT-INF/classes and WEB-INF/classes are read under their own names.
+	 * The nested JARs are read in place without extracting and they are
+	 * opened in parallel. Nested JARs are not read by default.
+	 * 
+	 * @param nestedArchives
+	 *            true if the nested JARs are read
+	 * @return the same instance of Reader
+	 */
+	public Reader nestedArchives(final boolean nestedArchives) {
+		this.nestedArchives = nestedArchives;
+		return this;
+	}
+
+	/**
+	 * Sets a listener of reading, e.g. {@link ScanStatistics}. The phases of
+	 * reading are timed only if a listener is set.
+	 * 
+	 * @param listener
+	 *            the listener, null for none
+	 * @return the same instance of Reader
+	 */
+	public Reader listener(final ScanListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Sets whether the work done by parsing of a class for its dependencies
+	 * is counted, see {@link Counter}, and reported to the listener. The
+	 * counts are kept per class, so they are cheap even for parallel reading,
+	 * but they are not counted by default.
+	 * 
+	 * @param countCalls
+	 *            true if the calls are counted, ignored without a listener
+	 * @return the same instance of Reader
+	 */
+	public Reader countCalls(final boolean countCalls) {
+		this.countCalls = countCalls;
 		return this;
 	}
 
@@ -105,76 +269,76 @@ public final class Reader {
 	 */
 	public Set<String> listClasses() throws IOException {
 		final Set<String> classes = new TreeSet<String>();
-		for (String path : paths) {
-			final Set<String> classesFromPath = listClasses(path);
-			if (classesFromPath != null) {
-				classes.addAll(classesFromPath);
+		beginRead();
+		try {
+			for (String path : paths) {
+				listClasses(path, classes);
 			}
+		} finally {
+			endRead();
 		}
 		return classes;
 	}
 
-	private Set<String> listClasses(final String path) throws IOException {
+	/**
+	 * Lists the classes of the path accepted by the filter, a JAR without
+	 * nested JARs by its central directory only.
+	 */
+	void listClasses(final String path, final Collection<String> classes) throws IOException {
 		Validation.notNull(path, "Path must be specified");
 
-		final File file = new File(path);
-		if (file.isDirectory()) {
-			return listClassesFromDirInit(file);
-		} else {
-			return listClassesFromJar(path);
-		}
-	}
-
-	private Set<String> listClassesFromDirInit(final File dir) {
-		final Set<String> classes = new TreeSet<String>();
-		listClassesFromDir(dir, "", classes);
-		return classes;
-	}
-
-	private void listClassesFromDir(final File dir, final String path, final Set<String> classes) {
-		for (File file : dir.listFiles()) {
-			if (file.isDirectory()) {
-				listClassesFromDir(file, path + file.getName() + "/", classes);
-			} else {
-				String className = path + removeClassExtension(file.getName());
-				if (file.getName().endsWith(CLASS_EXTENSION) && (includes == null || matches(className, includes))
-						&& (excludes == null || !matches(className, excludes))) {
-					classes.add(className);
+		if (nestedArchives || new File(path).isDirectory()) {
+			final Archive archive = openArchive(path);
+			try {
+				for (ClassEntry entry : listClassEntries(path, archive, filter())) {
+					classes.add(entry.getName());
 				}
+			} finally {
+				archive.close();
 			}
+		} else if (listener == null) {
+			CentralDirectory.read(path).listClasses(filter(), classes);
+		} else {
+			final long start = System.nanoTime();
+			final CentralDirectory centralDirectory = CentralDirectory.read(path);
+			final long opened = System.nanoTime();
+			listener.archiveOpened(path, opened - start);
+			final int count = centralDirectory.listClasses(filter(), classes);
+			listener.classesListed(path, count, System.nanoTime() - opened);
 		}
 	}
 
-	private Set<String> listClassesFromJar(final String path) throws IOException {
-		FileInputStream fis = null;
-		ZipInputStream zis = null;
-		final Set<String> classes = new TreeSet<String>();
+	/**
+	 * Returns classes contained in the encapsulated directories/JARs together
+	 * with their locations: the path of the directory or JAR, followed by
+	 * "!/" and the name of the nested JAR if the class came from a nested
+	 * one, e.g. "application.jar!/BOOT-INF/lib/library.jar". If a class is
+	 * contained more than once, the last location is returned, the same as
+	 * the class read by {@link #readClassesWithDependencies()}.
+	 * 
+	 * @return the Map of classes and their locations
+	 * @throws IOException
+	 */
+	public Map<String, String> listClassLocations() throws IOException {
+		final Map<String, String> classLocations = new TreeMap<String, String>();
+		beginRead();
 		try {
-			fis = new FileInputStream(path);
-			zis = new ZipInputStream(fis);
-			ZipEntry entry = null;
-
-			if (includes != null || excludes != null) {
-				while ((entry = zis.getNextEntry()) != null) {
-					if (entry.getName().endsWith(CLASS_EXTENSION)
-							&& (includes == null || matches(entry.getName(), includes))
-							&& (excludes == null || !matches(entry.getName(), excludes))) {
-						classes.add(removeClassExtension(entry.getName()));
-					}
-				}
-			} else {
-				while ((entry = zis.getNextEntry()) != null) {
-					if (entry.getName().endsWith(CLASS_EXTENSION)) {
-						classes.add(removeClassExtension(entry.getName()));
+			for (String path : paths) {
+				Validation.notNull(path, "Path must be specified");
+				final Archive archive = openArchive(path);
+				try {
+					for (ClassEntry entry : listClassEntries(path, archive, filter())) {
+						classLocations.put(entry.getName(),
+								entry.getLocation() != null ? path + "!/" + entry.getLocation() : path);
 					}
+				} finally {
+					archive.close();
 				}
 			}
-			return classes;
 		} finally {
-			if (zis != null) {
-				zis.close();
-			}
+			endRead();
 		}
+		return classLocations;
 	}
 
 	/**
@@ -186,83 +350,250 @@ public final class Reader {
 	 */
 	public Map<String, Set<String>> readClassesWithDependencies() throws IOException {
 		final Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
-		for (String path : paths) {
-			final Map<String, Set<String>> classesWithDependenciesFromPath = readClassesWithDependencies(path);
-			if (classesWithDependenciesFromPath != null) {
-				classesWithDependencies.putAll(classesWithDependenciesFromPath);
+		beginRead();
+		try {
+			for (String path : paths) {
+				final Map<String, Set<String>> pathClasses = readClassesWithDependencies(path);
+				final long start = listener != null ? System.nanoTime() : 0;
+				classesWithDependencies.putAll(pathClasses);
+				if (listener != null) {
+					listener.classesMerged(path, pathClasses.size(), System.nanoTime() - start);
+				}
 			}
+		} finally {
+			endRead();
 		}
 		return classesWithDependencies;
 	}
 
+	/**
+	 * Reads dependencies the same as {@link #readClassesWithDependencies()},
+	 * but the classes are kept separately for every directory/JAR, e.g. for
+	 * {@link com.github.trohovsky.just.index.IndexWriter}.
+	 * 
+	 * @return the Map of paths in the order of the encapsulated
+	 *         directories/JARs and their classes and dependencies
+	 * @throws IOException
+	 */
+	public Map<String, Map<String, Set<String>>> readClassesWithDependenciesByPath() throws IOException {
+		final Map<String, Map<String, Set<String>>> pathsWithClasses =
+				new LinkedHashMap<String, Map<String, Set<String>>>();
+		beginRead();
+		try {
+			for (String path : paths) {
+				pathsWithClasses.put(path, readClassesWithDependencies(path));
+			}
+		} finally {
+			endRead();
+		}
+		return pathsWithClasses;
+	}
+
 	private Map<String, Set<String>> readClassesWithDependencies(final String path) throws IOException {
 		Validation.notNull(path, "Path must be specified");
 
+		final Archive archive = openArchive(path);
+		try {
+			return readClassesWithDependencies(path, listClassEntries(path, archive, filter()));
+		} finally {
+			archive.close();
+		}
+	}
+
+	/**
+	 * Reads dependencies of the class entries of the path, from the caches if
+	 * the reader has them.
+	 */
+	Map<String, Set<String>> readClassesWithDependencies(final String path, final List<ClassEntry> entries)
+			throws IOException {
+		final ArchiveScanEvent event = new ArchiveScanEvent();
+		event.begin();
 		final File file = new File(path);
-		if (file.isDirectory()) {
-			return listClassesWithDependenciesFromDirInit(file);
-		} else {
-			return listClassesWithDependenciesFromJar(path);
+		final Map<String, Set<String>> classesWithDependencies = archiveCache != null && file.isFile()
+				? readCachedArchive(path, file, entries) : scanClassesWithDependencies(path, entries);
+		commit(event, path, "classesWithDependencies", entries);
+		return classesWithDependencies;
+	}
+
+	private Map<String, Set<String>> readCachedArchive(final String path, final File file,
+			final List<ClassEntry> entries) throws IOException {
+		// taken before reading, so a JAR changed meanwhile is not cached as the new one
+		final long size = file.length();
+		final long lastModified = file.lastModified();
+		final Map<String, Set<String>> cachedClasses = archiveCache.get(file, configuration(), size, lastModified);
+		if (cachedClasses != null) {
+			if (listener != null) {
+				listener.classesCached(path, cachedClasses.size());
+			}
+			return cachedClasses;
 		}
+		return archiveCache.put(file, configuration(), size, lastModified, scanClassesWithDependencies(path, entries));
 	}
 
-	private Map<String, Set<String>> listClassesWithDependenciesFromDirInit(final File dir) throws IOException {
-		final Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
-		listClassesWithDependenciesFromDir(dir, "", classesWithDependencies);
+	private Map<String, Set<String>> scanClassesWithDependencies(final String path, final List<ClassEntry> entries)
+			throws IOException {
+		if (cache == null) {
+			return parseClasses(path, entries);
+		}
+		final String configuration = configuration();
+		final Map<String, Set<String>> cachedClasses = cache.read(path, configuration, entries, symbolTable);
+
+		final List<ClassEntry> changedEntries = new ArrayList<ClassEntry>();
+		for (ClassEntry entry : entries) {
+			if (!cachedClasses.containsKey(entry.getName())) {
+				changedEntries.add(entry);
+			}
+		}
+
+		if (listener != null) {
+			listener.classesCached(path, entries.size() - changedEntries.size());
+		}
+
+		final Map<String, Set<String>> classesWithDependencies = parseClasses(path, changedEntries);
+		if (!changedEntries.isEmpty() || cachedClasses.size() != entries.size()) {
+			// the entries of changed classes precede in case of duplicates
+			final Map<String, Set<String>> allClasses = new TreeMap<String, Set<String>>(cachedClasses);
+			allClasses.putAll(classesWithDependencies);
+			cache.write(path, configuration, entries, allClasses);
+			return allClasses;
+		}
+		classesWithDependencies.putAll(cachedClasses);
 		return classesWithDependencies;
 	}
 
-	private void listClassesWithDependenciesFromDir(final File dir, final String path,
-			final Map<String, Set<String>> classes) throws FileNotFoundException {
-		for (File file : dir.listFiles()) {
-			if (file.isDirectory()) {
-				listClassesWithDependenciesFromDir(file, path + file.getName() + "/", classes);
-			} else {
-				String className = path + removeClassExtension(file.getName());
-				if (file.getName().endsWith(CLASS_EXTENSION) && (includes == null || matches(className, includes))
-						&& (excludes == null || !matches(className, excludes))) {
-					final Dependencies dependencies = new Dependencies();
-					visitClass(new FileInputStream(file), dependencies);
-					classes.put(className, dependencies.get());
+	private String configuration() {
+		return engine + ";" + Arrays.toString(includes) + ";" + Arrays.toString(excludes)
+				+ (nestedArchives ? ";nested" : "");
+	}
+
+	/**
+	 * Returns a Stream of classes from the encapsulated directories/JARs and
+	 * their dependencies. The entries come in the order of class names, the
+	 * same as from {@link #readClassesWithDependencies()}, but a class is
+	 * parsed only when its entry is consumed, so the results of all the
+	 * classes are never held in memory at once. A parallel Stream parses the
+	 * classes by the threads of the Stream framework, the parallelism and
+	 * the cache of the reader are not used.
+	 * <p>
+	 * The Stream holds the directories/JARs open, so it has to be closed.
+	 * Errors of reading are thrown as {@link UncheckedIOException}.
+	 * 
+	 * @return the Stream of classes and their dependencies
+	 * @throws IOException
+	 */
+	public Stream<Map.Entry<String, Set<String>>> streamClassesWithDependencies() throws IOException {
+		final List<Archive> archives = new ArrayList<Archive>();
+		final Map<String, ClassEntry> entries = new TreeMap<String, ClassEntry>();
+		final Map<ClassEntry, String> entryPaths = new IdentityHashMap<ClassEntry, String>();
+		boolean opened = false;
+		beginRead();
+		try {
+			for (String path : paths) {
+				Validation.notNull(path, "Path must be specified");
+				final Archive archive = openArchive(path);
+				archives.add(archive);
+				// the later entries precede in case of duplicates
+				for (ClassEntry entry : listClassEntries(path, archive, filter())) {
+					entries.put(entry.getName(), entry);
+					entryPaths.put(entry, path);
+				}
+			}
+			opened = true;
+		} finally {
+			endRead();
+			if (!opened) {
+				close(archives);
+			}
+		}
+
+		final List<ClassEntry> sortedEntries = new ArrayList<ClassEntry>(entries.values());
+		return StreamSupport.stream(new ClassesWithDependenciesSpliterator(sortedEntries, entryPaths, 0,
+				sortedEntries.size()), false).onClose(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					close(archives);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
 				}
 			}
+		});
+	}
+
+	private static void close(final List<Archive> archives) throws IOException {
+		IOException exception = null;
+		for (Archive archive : archives) {
+			try {
+				archive.close();
+			} catch (IOException e) {
+				exception = e;
+			}
+		}
+		if (exception != null) {
+			throw exception;
 		}
 	}
 
-	private Map<String, Set<String>> listClassesWithDependenciesFromJar(final String path) throws IOException {
-		FileInputStream fis = null;
-		ZipInputStream zis = null;
-		final Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+	/**
+	 * Reads dependencies and returns them as a graph of classes from the
+	 * encapsulated directories/JARs and their dependencies.
+	 * 
+	 * @return the graph of classes and their dependencies
+	 * @throws IOException
+	 */
+	public DependencyGraph readDependencyGraph() throws IOException {
+		return DependencyGraph.of(symbolTable, readClassesWithDependencies());
+	}
+
+	/**
+	 * Reads members of classes and references among them from the
+	 * encapsulated directories/JARs. If a class is contained more than once,
+	 * the last one is read, the same as by
+	 * {@link #readClassesWithDependencies()}. Classes are always parsed by ASM
+	 * regardless of the engine.
+	 * 
+	 * @return the call graph of the classes
+	 * @throws IOException
+	 */
+	public CallGraph readCallGraph() throws IOException {
+		final CallGraph.Builder builder = new CallGraph.Builder(new MemberTable(symbolTable, new SymbolTable()));
+		beginRead();
 		try {
-			fis = new FileInputStream(path);
-			zis = new ZipInputStream(fis);
-			ZipEntry entry = null;
-
-			if (includes != null || excludes != null) {
-				while ((entry = zis.getNextEntry()) != null) {
-					if (entry.getName().endsWith(CLASS_EXTENSION)
-							&& (includes == null || matches(entry.getName(), includes))
-							&& (excludes == null || !matches(entry.getName(), excludes))) {
-						final Dependencies dependencies = new Dependencies();
-						visitClass(zis, dependencies);
-						classesWithDependencies.put(removeClassExtension(entry.getName()), dependencies.get());
-					}
-				}
-			} else {
-				while ((entry = zis.getNextEntry()) != null) {
-					if (entry.getName().endsWith(CLASS_EXTENSION)) {
-						final Dependencies dependencies = new Dependencies();
-						visitClass(zis, dependencies);
-						classesWithDependencies.put(removeClassExtension(entry.getName()), dependencies.get());
-					}
+			// the paths are read from the last one, so the later classes precede
+			for (int i = paths.length - 1; i >= 0; i--) {
+				final String path = paths[i];
+				Validation.notNull(path, "Path must be specified");
+				final Archive archive = openArchive(path);
+				try {
+					readCallGraph(path, listClassEntries(path, archive, filter), builder);
+				} finally {
+					archive.close();
 				}
 			}
-			return classesWithDependencies;
 		} finally {
-			if (zis != null) {
-				zis.close();
+			endRead();
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Reads the entries to the call graph. The classes already contained in
+	 * the builder are skipped and the later entries precede, so the paths
+	 * must be read from the last one.
+	 */
+	void readCallGraph(final String path, final List<ClassEntry> entries, final CallGraph.Builder builder)
+			throws IOException {
+		final ArchiveScanEvent event = new ArchiveScanEvent();
+		event.begin();
+		final ClassVisitor visitor = new CallGraphVisitor(builder);
+		for (int i = entries.size() - 1; i >= 0; i--) {
+			final ClassEntry entry = entries.get(i);
+			if (!builder.containsClass(entry.getName())) {
+				parseClass(path, entry.getName(), read(path, entry), null, visitor);
 			}
 		}
+		commit(event, path, "callGraph", entries);
 	}
 
 	/**
@@ -272,114 +603,427 @@ public final class Reader {
 	 * @throws IOException
 	 */
 	public Set<String> readDependencies() throws IOException {
-		final Set<String> dependencies = new TreeSet<String>();
-		for (String path : paths) {
-			final Set<String> dependenciesFromPath = readDependencies(path);
-			if (dependenciesFromPath != null) {
-				dependencies.addAll(dependenciesFromPath);
+		final Dependencies dependencies = new Dependencies(symbolTable);
+		beginRead();
+		try {
+			for (String path : paths) {
+				readDependencies(path, dependencies);
 			}
+		} finally {
+			endRead();
 		}
-		return dependencies;
+		return dependencies.get();
 	}
 
-	private Set<String> readDependencies(final String path) throws IOException {
+	private void readDependencies(final String path, final Dependencies dependencies) throws IOException {
 		Validation.notNull(path, "Path must be specified");
 
-		final File file = new File(path);
-		if (file.isDirectory()) {
-			return readDependenciesFromDirInit(file);
-		} else {
-			return readDependenciesFromJar(path);
+		if (cache != null) {
+			for (Set<String> classDependencies : readClassesWithDependencies(path).values()) {
+				dependencies.addAll(ClassSet.of(symbolTable, classDependencies));
+			}
+			return;
+		}
+		final Archive archive = openArchive(path);
+		try {
+			final List<ClassEntry> entries = listClassEntries(path, archive, filter());
+			final ArchiveScanEvent event = new ArchiveScanEvent();
+			event.begin();
+			final Dependencies pathDependencies = parseDependencies(path, entries);
+			commit(event, path, "dependencies", entries);
+			final long start = listener != null ? System.nanoTime() : 0;
+			dependencies.addAll(pathDependencies);
+			if (listener != null) {
+				listener.classesMerged(path, 0, System.nanoTime() - start);
+			}
+		} finally {
+			archive.close();
 		}
 	}
 
-	private Set<String> readDependenciesFromDirInit(final File dir) throws IOException {
-		final Set<String> dependencies = new TreeSet<String>();
-		readDependenciesFromDir(dir, "", dependencies);
-		return dependencies;
+	/**
+	 * Begins a read of the paths, e.g. by an analysis. The threads parsing
+	 * the classes in parallel are started only once for all the paths of the
+	 * read, including the nested ones, and stopped by {@link #endRead()}.
+	 */
+	void beginRead() {
+		synchronized (this) {
+			reads++;
+		}
 	}
 
-	private void readDependenciesFromDir(final File dir, final String path, final Set<String> dependencies)
-			throws FileNotFoundException {
-		for (File file : dir.listFiles()) {
-			if (file.isDirectory()) {
-				readDependenciesFromDir(file, path + "/" + file.getName(), dependencies);
-			} else {
-				String className = path + removeClassExtension(file.getName());
-				if (file.getName().endsWith(CLASS_EXTENSION) && (includes == null || matches(className, includes))
-						&& (excludes == null || !matches(className, excludes))) {
-					final Dependencies dependencyContainer = new Dependencies();
-					visitClass(new FileInputStream(file), dependencyContainer);
-					dependencies.addAll(dependencyContainer.get());
-				}
+	/**
+	 * Ends the read begun by {@link #beginRead()}.
+	 */
+	void endRead() {
+		final ForkJoinPool endedPool;
+		synchronized (this) {
+			if (--reads > 0 || pool == null) {
+				return;
 			}
+			endedPool = pool;
+			pool = null;
 		}
+		endedPool.shutdown();
 	}
 
-	private Set<String> readDependenciesFromJar(final String path) throws FileNotFoundException, IOException {
-		FileInputStream fis = null;
-		ZipInputStream zis = null;
-		try {
-			fis = new FileInputStream(path);
-			zis = new ZipInputStream(fis);
-			ZipEntry entry = null;
-			final Dependencies dependencies = new Dependencies();
-
-			if (includes != null || excludes != null) {
-				while ((entry = zis.getNextEntry()) != null) {
-					if (entry.getName().endsWith(CLASS_EXTENSION)
-							&& (includes == null || matches(entry.getName(), includes))
-							&& (excludes == null || !matches(entry.getName(), excludes))) {
-						visitClass(zis, dependencies);
-					}
-				}
-			} else {
-				while ((entry = zis.getNextEntry()) != null) {
-					if (entry.getName().endsWith(CLASS_EXTENSION)) {
-						visitClass(zis, dependencies);
-					}
-				}
+	/**
+	 * Returns the pool of the current reads, started on demand.
+	 * 
+	 * @return the pool, null if the reader is not parallel or nothing is read
+	 */
+	synchronized ForkJoinPool getPool() {
+		if (parallelism == 1 || reads == 0) {
+			return null;
+		}
+		if (pool == null) {
+			pool = new ForkJoinPool(parallelism);
+		}
+		return pool;
+	}
+
+	String[] getPaths() {
+		return paths;
+	}
+
+	SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	PrefixFilter filter() {
+		return filter;
+	}
+
+	boolean readsNestedArchives() {
+		return nestedArchives;
+	}
+
+	Archive openArchive(final String path) throws IOException {
+		final ArchiveOpenEvent event = new ArchiveOpenEvent();
+		event.begin();
+		final long start = listener != null ? System.nanoTime() : 0;
+		final ForkJoinPool pool = getPool();
+		final Archive archive = pool != null ? Archive.open(path, nestedArchives, pool) : Archive.open(path,
+				nestedArchives, parallelism);
+		if (listener != null) {
+			listener.archiveOpened(path, System.nanoTime() - start);
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.path = path;
+			event.nestedArchives = nestedArchives;
+			event.commit();
+		}
+		return archive;
+	}
+
+	List<ClassEntry> listClassEntries(final String path, final Archive archive, final PrefixFilter filter)
+			throws IOException {
+		if (listener == null) {
+			return archive.listClassEntries(filter);
+		}
+		final long start = System.nanoTime();
+		final List<ClassEntry> entries = archive.listClassEntries(filter);
+		listener.classesListed(path, entries.size(), System.nanoTime() - start);
+		return entries;
+	}
+
+	private byte[] read(final String path, final ClassEntry entry) throws IOException {
+		if (listener == null) {
+			return entry.read();
+		}
+		final long start = System.nanoTime();
+		final byte[] bytes = entry.read();
+		listener.classRead(path, entry.getName(), entry.getCompressedSize(), bytes.length, System.nanoTime() - start);
+		return bytes;
+	}
+
+	/**
+	 * Parses the class for the dependencies or by the visitor if not null.
+	 * Large classes are recorded by the flight recorder.
+	 */
+	private void parseClass(final String path, final String className, final byte[] bytes,
+			final Dependencies dependencies, final ClassVisitor visitor) {
+		final ClassParseEvent event = bytes.length >= ClassParseEvent.SIZE_THRESHOLD ? new ClassParseEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		final long start = listener != null ? System.nanoTime() : 0;
+		final ParseCounters counters = countCalls && listener != null && visitor == null ? new ParseCounters() : null;
+		if (visitor != null) {
+			new ClassReader(bytes).accept(visitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		} else if (counters != null) {
+			dependencies.startCounting(counters);
+			visitClass(bytes, dependencies);
+			dependencies.stopCounting();
+		} else {
+			visitClass(bytes, dependencies);
+		}
+		if (counters != null) {
+			listener.classParsed(path, className, bytes.length, System.nanoTime() - start, counters);
+		} else if (listener != null) {
+			listener.classParsed(path, className, bytes.length, System.nanoTime() - start);
+		}
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.path = path;
+				event.className = className;
+				event.bytes = bytes.length;
+				event.commit();
 			}
-			return dependencies.get();
-		} finally {
-			if (zis != null) {
-				zis.close();
+		}
+	}
+
+	private static void commit(final ArchiveScanEvent event, final String path, final String operation,
+			final List<ClassEntry> entries) {
+		event.end();
+		if (event.shouldCommit()) {
+			long bytes = 0;
+			for (ClassEntry entry : entries) {
+				bytes += Math.max(entry.getSize(), 0);
 			}
+			event.path = path;
+			event.operation = operation;
+			event.classes = entries.size();
+			event.bytes = bytes;
+			event.commit();
 		}
 	}
 
-	private static void visitClass(final InputStream is, final Dependencies dependencies) {
-		final ClassReader classReader;
+	/**
+	 * Parses the class entries of the path without the caches.
+	 */
+	Map<String, Set<String>> parseClasses(final String path, final List<ClassEntry> entries) throws IOException {
+		if (parallelism > 1 && entries.size() > PARSE_THRESHOLD) {
+			return invoke(new ClassesWithDependenciesTask(path, entries, 0, entries.size()));
+		}
+		return parseClasses(path, entries, 0, entries.size());
+	}
+
+	private Dependencies parseDependencies(final String path, final List<ClassEntry> entries) throws IOException {
+		if (parallelism > 1 && entries.size() > PARSE_THRESHOLD) {
+			return invoke(new DependenciesTask(path, entries, 0, entries.size()));
+		}
+		final Dependencies dependencies = new Dependencies(symbolTable);
+		parseDependencies(path, entries, 0, entries.size(), dependencies);
+		return dependencies;
+	}
+
+	private <T> T invoke(final RecursiveTask<T> task) throws IOException {
+		final ForkJoinPool pool = getPool();
+		if (pool != null) {
+			return invoke(pool, task);
+		}
+		// not within a read
+		final ForkJoinPool taskPool = new ForkJoinPool(parallelism);
 		try {
-			classReader = new ClassReader(is);
+			return invoke(taskPool, task);
+		} finally {
+			taskPool.shutdown();
+		}
+	}
+
+	private static <T> T invoke(final ForkJoinPool pool, final RecursiveTask<T> task) throws IOException {
+		try {
+			return pool.invoke(task);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private Map<String, Set<String>> parseClasses(final String path, final List<ClassEntry> entries,
+			final int from, final int to) throws IOException {
+		final Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+		for (int i = from; i < to; i++) {
+			final ClassEntry entry = entries.get(i);
+			final Dependencies dependencies = new Dependencies(symbolTable);
+			parseClass(path, entry.getName(), read(path, entry), dependencies, null);
+			classesWithDependencies.put(entry.getName(), dependencies.get());
+		}
+		return classesWithDependencies;
+	}
+
+	private void parseDependencies(final String path, final List<ClassEntry> entries, final int from, final int to,
+			final Dependencies dependencies) throws IOException {
+		for (int i = from; i < to; i++) {
+			final ClassEntry entry = entries.get(i);
+			parseClass(path, entry.getName(), read(path, entry), dependencies, null);
+		}
+	}
+
+	private void visitClass(final byte[] bytes, final Dependencies dependencies) {
+		if (engine == Engine.CONSTANT_POOL) {
+			ConstantPoolScanner.scan(bytes, dependencies);
+		} else {
+			visitClass(new ClassReader(bytes), dependencies);
+		}
+	}
+
+	private static void visitClass(final ClassReader classReader, final Dependencies dependencies) {
+		final AnnotationVisitor annotationVisitor = new AnnotationDependenciesVisitor(dependencies);
+		final FieldVisitor fieldVisitor = new FieldDependenciesVisitor(dependencies, annotationVisitor);
+		final MethodVisitor methodVisitor = new MethodDependenciesVisitor(dependencies, annotationVisitor);
+		final ClassVisitor visitor = new ClassDependenciesVisitor(dependencies, annotationVisitor, fieldVisitor,
+				methodVisitor);
+
+		classReader.accept(visitor, 0);
+	}
+
+	/**
+	 * Parses classes one by one as they are consumed. A range of classes is
+	 * split into halves for parallel Streams.
+	 */
+	private final class ClassesWithDependenciesSpliterator implements Spliterator<Map.Entry<String, Set<String>>> {
 
-			final AnnotationVisitor annotationVisitor = new AnnotationDependenciesVisitor(dependencies);
-			final SignatureVisitor signatureVisitor = new SignatureDependenciesVisitor(dependencies);
-			final FieldVisitor fieldVisitor = new FieldDependenciesVisitor(dependencies, annotationVisitor);
-			final MethodVisitor methodVisitor = new MethodDependenciesVisitor(dependencies, annotationVisitor,
-					signatureVisitor);
-			final ClassVisitor visitor = new ClassDependenciesVisitor(dependencies, annotationVisitor,
-					signatureVisitor, fieldVisitor, methodVisitor);
+		private final List<ClassEntry> entries;
+		private final Map<ClassEntry, String> entryPaths;
+		private int from;
+		private final int to;
 
-			classReader.accept(visitor, 0);
-		} catch (IOException e) {
-			e.printStackTrace();
+		ClassesWithDependenciesSpliterator(final List<ClassEntry> entries, final Map<ClassEntry, String> entryPaths,
+				final int from, final int to) {
+			this.entries = entries;
+			this.entryPaths = entryPaths;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean tryAdvance(final Consumer<? super Map.Entry<String, Set<String>>> action) {
+			if (from == to) {
+				return false;
+			}
+			final ClassEntry entry = entries.get(from++);
+			final Dependencies dependencies = new Dependencies(symbolTable);
+			try {
+				final String path = entryPaths.get(entry);
+				parseClass(path, entry.getName(), read(path, entry), dependencies, null);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			action.accept(new AbstractMap.SimpleImmutableEntry<String, Set<String>>(entry.getName(),
+					dependencies.get()));
+			return true;
+		}
+
+		@Override
+		public Spliterator<Map.Entry<String, Set<String>>> trySplit() {
+			if (to - from < 2) {
+				return null;
+			}
+			final int middle = (from + to) >>> 1;
+			final Spliterator<Map.Entry<String, Set<String>>> prefix = new ClassesWithDependenciesSpliterator(
+					entries, entryPaths, from, middle);
+			from = middle;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return to - from;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | DISTINCT | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
 		}
 	}
 
-	private static String removeClassExtension(final String name) {
-		return name.substring(0, name.length() - CLASS_EXTENSION.length());
+	/**
+	 * Parses a range of classes, every class gets its own Dependencies. Halves
+	 * of the range are parsed in parallel and their Maps are merged.
+	 */
+	private final class ClassesWithDependenciesTask extends RecursiveTask<Map<String, Set<String>>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String path;
+		private final List<ClassEntry> entries;
+		private final int from;
+		private final int to;
+
+		ClassesWithDependenciesTask(final String path, final List<ClassEntry> entries, final int from, final int to) {
+			this.path = path;
+			this.entries = entries;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Map<String, Set<String>> compute() {
+			if (to - from <= PARSE_THRESHOLD) {
+				try {
+					return parseClasses(path, entries, from, to);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			final int middle = (from + to) >>> 1;
+			final ClassesWithDependenciesTask left = new ClassesWithDependenciesTask(path, entries, from, middle);
+			left.fork();
+			final Map<String, Set<String>> classesWithDependencies = new ClassesWithDependenciesTask(path, entries,
+					middle, to).compute();
+			final Map<String, Set<String>> leftClasses = left.join();
+
+			// the left half precedes the right one in the JAR, so it must not
+			// overwrite classes of the right half
+			final long start = listener != null ? System.nanoTime() : 0;
+			for (Map.Entry<String, Set<String>> entry : leftClasses.entrySet()) {
+				if (!classesWithDependencies.containsKey(entry.getKey())) {
+					classesWithDependencies.put(entry.getKey(), entry.getValue());
+				}
+			}
+			if (listener != null) {
+				listener.classesMerged(path, leftClasses.size(), System.nanoTime() - start);
+			}
+			return classesWithDependencies;
+		}
 	}
 
-	private static boolean matches(final String string, final String[] patterns) {
-		if (patterns == null) {
-			return false;
+	/**
+	 * Parses a range of classes into a single Dependencies per leaf task.
+	 * Halves of the range are parsed in parallel and their Dependencies are
+	 * merged.
+	 */
+	private final class DependenciesTask extends RecursiveTask<Dependencies> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String path;
+		private final List<ClassEntry> entries;
+		private final int from;
+		private final int to;
+
+		DependenciesTask(final String path, final List<ClassEntry> entries, final int from, final int to) {
+			this.path = path;
+			this.entries = entries;
+			this.from = from;
+			this.to = to;
 		}
-		for (String pattern : patterns) {
-			if (string.startsWith(pattern)) {
-				return true;
+
+		@Override
+		protected Dependencies compute() {
+			if (to - from <= PARSE_THRESHOLD) {
+				final Dependencies dependencies = new Dependencies(symbolTable);
+				try {
+					parseDependencies(path, entries, from, to, dependencies);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return dependencies;
+			}
+			final int middle = (from + to) >>> 1;
+			final DependenciesTask left = new DependenciesTask(path, entries, from, middle);
+			left.fork();
+			final Dependencies dependencies = new DependenciesTask(path, entries, middle, to).compute();
+			final Dependencies leftDependencies = left.join();
+			final long start = listener != null ? System.nanoTime() : 0;
+			dependencies.addAll(leftDependencies);
+			if (listener != null) {
+				listener.classesMerged(path, middle - from, System.nanoTime() - start);
 			}
+			return dependencies;
 		}
-		return false;
 	}
 }
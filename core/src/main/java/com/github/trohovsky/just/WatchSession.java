@@ -0,0 +1,722 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.github.trohovsky.just.archive.Archive;
+import com.github.trohovsky.just.archive.ClassEntry;
+import com.github.trohovsky.just.archive.DirectoryArchive;
+import com.github.trohovsky.just.util.PrefixFilter;
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * Results of an analysis of artifacts and their dependencies kept up to date
+ * while classes in their directories change, e.g. target/classes during
+ * development. The directories are watched by a {@link WatchService} and
+ * only the class files that were created, modified or deleted are parsed
+ * again. The classes of the dependencies are counted by the number of
+ * classes of the artifacts using them, so the unused classes are updated
+ * without going through all the dependencies. JARs are read only when the
+ * session is opened.
+ * <p>
+ * The changes are collected until nothing changes for the debounce period,
+ * so a compilation writing many classes is applied as one batch. A class
+ * file that cannot be parsed, e.g. one still being written, keeps its
+ * previous results until it changes again.
+ * <p>
+ * The session is not thread-safe, it is queried by the thread awaiting the
+ * changes.
+ * 
+ * <pre>
+ * WatchSession session = WatchSession.open(Reader.from(&quot;target/classes&quot;), Reader.from(&quot;lib.jar&quot;));
+ * while (true) {
+ * 	WatchSession.Changes changes = session.awaitChanges();
+ * 	Set&lt;String&gt; unusedClasses = session.getUnusedClasses();
+ * }
+ * </pre>
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class WatchSession implements AnalysisResults, Closeable {
+
+	/**
+	 * Default debounce period in milliseconds.
+	 */
+	public static final long DEFAULT_DEBOUNCE = 200;
+
+	private static final String CLASS_EXTENSION = ".class";
+
+	private final WatchService watchService;
+	private final List<Root> artifactRoots = new ArrayList<Root>();
+	private final List<Root> dependencyRoots = new ArrayList<Root>();
+	private final TreeMap<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+	private final TreeSet<String> dependencyClasses = new TreeSet<String>();
+	// the number of classes of the artifacts using a class
+	private final TreeMap<String, int[]> usages = new TreeMap<String, int[]>();
+	private final TreeSet<String> unusedClasses = new TreeSet<String>();
+	private long debounce = DEFAULT_DEBOUNCE;
+
+	private WatchSession(final WatchService watchService) {
+		this.watchService = watchService;
+	}
+
+	/**
+	 * Opens a session watching artifacts without dependencies.
+	 * 
+	 * @param artifacts
+	 *            the reader of the artifacts
+	 * @return the session
+	 * @throws IOException
+	 */
+	public static WatchSession open(final Reader artifacts) throws IOException {
+		return open(artifacts, null);
+	}
+
+	/**
+	 * Opens a session watching artifacts and their dependencies. Paths,
+	 * filters and other settings of the readers are applied, the caches only
+	 * when the session is opened. The dependencies are only listed.
+	 * 
+	 * @param artifacts
+	 *            the reader of the artifacts
+	 * @param dependencies
+	 *            the reader of the dependencies, null if there are no
+	 *            dependencies
+	 * @return the session
+	 * @throws IOException
+	 */
+	public static WatchSession open(final Reader artifacts, final Reader dependencies) throws IOException {
+		Validation.notNull(artifacts, "Reader of artifacts must be specified");
+
+		final WatchSession session = new WatchSession(FileSystems.getDefault().newWatchService());
+		boolean opened = false;
+		try {
+			for (String path : artifacts.getPaths()) {
+				session.artifactRoots.add(session.read(artifacts, path, true));
+			}
+			if (dependencies != null) {
+				for (String path : dependencies.getPaths()) {
+					session.dependencyRoots.add(session.read(dependencies, path, false));
+				}
+			}
+			session.update(session.getClassNames(session.artifactRoots),
+					session.getClassNames(session.dependencyRoots), new Changes());
+			opened = true;
+			return session;
+		} finally {
+			if (!opened) {
+				session.close();
+			}
+		}
+	}
+
+	private Root read(final Reader reader, final String path, final boolean artifact) throws IOException {
+		Validation.notNull(path, "Path must be specified");
+
+		final File file = new File(path);
+		final Root root = new Root(reader, path, file.isDirectory() ? file.getAbsoluteFile().toPath().normalize()
+				: null, artifact);
+		if (root.dir != null) {
+			// registered before listing, so no change is missed
+			register(root.dir);
+		}
+		reader.beginRead();
+		try {
+			final Archive archive = reader.openArchive(path);
+			try {
+				final List<ClassEntry> entries = reader.listClassEntries(path, archive, reader.filter());
+				if (artifact) {
+					root.classes.putAll(reader.readClassesWithDependencies(path, entries));
+				} else {
+					for (ClassEntry entry : entries) {
+						root.classes.put(entry.getName(), Collections.<String> emptySet());
+					}
+				}
+			} finally {
+				archive.close();
+			}
+		} finally {
+			reader.endRead();
+		}
+		return root;
+	}
+
+	private void register(final Path dir) throws IOException {
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory(final Path subdir, final BasicFileAttributes attributes)
+					throws IOException {
+				subdir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private Set<String> getClassNames(final List<Root> roots) {
+		final Set<String> names = new HashSet<String>();
+		for (Root root : roots) {
+			names.addAll(root.classes.keySet());
+		}
+		return names;
+	}
+
+	/**
+	 * Sets the period without changes after which the collected changes are
+	 * applied.
+	 * 
+	 * @param debounce
+	 *            the period in milliseconds, {@link #DEFAULT_DEBOUNCE} by
+	 *            default
+	 * @return the same instance of WatchSession
+	 */
+	public WatchSession debounce(final long debounce) {
+		Validation.isTrue(debounce >= 0, "Debounce must not be negative");
+		this.debounce = debounce;
+		return this;
+	}
+
+	/**
+	 * Waits until some classes of the watched directories change and applies
+	 * the changes.
+	 * 
+	 * @return the changes, never empty
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public Changes awaitChanges() throws IOException, InterruptedException {
+		while (true) {
+			final Changes changes = apply(watchService.take());
+			if (!changes.isEmpty()) {
+				return changes;
+			}
+		}
+	}
+
+	/**
+	 * Waits at most the timeout until some classes of the watched directories
+	 * change and applies the changes. The debounce period can exceed the
+	 * timeout.
+	 * 
+	 * @return the changes, null if nothing changed in time
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public Changes awaitChanges(final long timeout, final TimeUnit unit) throws IOException, InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (true) {
+			final WatchKey key = watchService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if (key == null) {
+				return null;
+			}
+			final Changes changes = apply(key);
+			if (!changes.isEmpty()) {
+				return changes;
+			}
+		}
+	}
+
+	private Changes apply(final WatchKey firstKey) throws IOException, InterruptedException {
+		final Map<Path, WatchEvent.Kind<?>> paths = new LinkedHashMap<Path, WatchEvent.Kind<?>>();
+		boolean overflow = collect(firstKey, paths);
+		WatchKey key;
+		while ((key = watchService.poll(debounce, TimeUnit.MILLISECONDS)) != null) {
+			overflow |= collect(key, paths);
+		}
+
+		final Set<String> artifactNames = new HashSet<String>();
+		for (Root root : artifactRoots) {
+			update(root, paths, overflow, artifactNames);
+		}
+		final Set<String> dependencyNames = new HashSet<String>();
+		for (Root root : dependencyRoots) {
+			update(root, paths, overflow, dependencyNames);
+		}
+		final Changes changes = new Changes();
+		update(artifactNames, dependencyNames, changes);
+		return changes;
+	}
+
+	/**
+	 * Collects the changed paths with the kinds of their events. A created
+	 * path stays created, e.g. a directory deleted and created again is
+	 * replaced.
+	 */
+	private static boolean collect(final WatchKey key, final Map<Path, WatchEvent.Kind<?>> paths) {
+		final Path dir = (Path) key.watchable();
+		boolean overflow = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+			} else {
+				final Path path = dir.resolve((Path) event.context());
+				if (paths.get(path) != StandardWatchEventKinds.ENTRY_CREATE) {
+					paths.put(path, event.kind());
+				}
+			}
+		}
+		// the key of a deleted directory is cancelled
+		key.reset();
+		return overflow;
+	}
+
+	/**
+	 * Updates the classes of the root by the changed paths, all the classes
+	 * are listed again in case of lost events. A class is removed only if its
+	 * file does not exist anymore, a class that cannot be parsed keeps its
+	 * previous dependencies until it changes again.
+	 */
+	private void update(final Root root, final Map<Path, WatchEvent.Kind<?>> paths, final boolean overflow,
+			final Set<String> names) throws IOException {
+		if (root.dir == null) {
+			return;
+		}
+		final PrefixFilter filter = root.reader.filter();
+		final List<ClassEntry> entries = new ArrayList<ClassEntry>();
+		if (overflow) {
+			register(root.dir);
+			entries.addAll(root.archive.listClassEntries(filter));
+			removeUnlisted(root, "", entries, names);
+		} else {
+			for (Map.Entry<Path, WatchEvent.Kind<?>> event : paths.entrySet()) {
+				final Path path = event.getKey();
+				if (!path.startsWith(root.dir) || path.equals(root.dir)) {
+					continue;
+				}
+				final String name = toName(root.dir.relativize(path));
+				if (Files.isDirectory(path)) {
+					if (event.getValue() != StandardWatchEventKinds.ENTRY_CREATE) {
+						// the changed files of the directory have their own events
+						continue;
+					}
+					// a created, moved or replaced directory
+					register(path);
+					final List<ClassEntry> directoryEntries = new ArrayList<ClassEntry>();
+					for (ClassEntry entry : root.archive.listClassEntries(PrefixFilter.of(new String[] { name
+							+ "/" }, null))) {
+						if (filter.accepts(entry.getName())) {
+							directoryEntries.add(entry);
+						}
+					}
+					removeUnlisted(root, name + "/", directoryEntries, names);
+					entries.addAll(directoryEntries);
+				} else if (name.endsWith(CLASS_EXTENSION)) {
+					final String className = name.substring(0, name.length() - CLASS_EXTENSION.length());
+					if (!filter.accepts(className)) {
+						continue;
+					}
+					final ClassEntry entry = root.archive.getClassEntry(className);
+					if (entry != null) {
+						entries.add(entry);
+					} else if (root.classes.remove(className) != null) {
+						names.add(className);
+					}
+				} else if (!Files.exists(path)) {
+					// a deleted directory
+					removeUnlisted(root, name + "/", Collections.<ClassEntry> emptyList(), names);
+				}
+			}
+		}
+
+		if (root.artifact) {
+			final Map<String, Set<String>> parsedClasses = parse(root, entries);
+			root.classes.putAll(parsedClasses);
+			names.addAll(parsedClasses.keySet());
+		} else {
+			for (ClassEntry entry : entries) {
+				root.classes.put(entry.getName(), Collections.<String> emptySet());
+				names.add(entry.getName());
+			}
+		}
+	}
+
+	/**
+	 * Removes the classes of the root with the prefix that are not listed
+	 * anymore, the listed ones are replaced after they are parsed.
+	 */
+	private static void removeUnlisted(final Root root, final String prefix, final List<ClassEntry> entries,
+			final Set<String> names) {
+		final Set<String> listedNames = new HashSet<String>();
+		for (ClassEntry entry : entries) {
+			listedNames.add(entry.getName());
+		}
+		final Iterator<String> iterator = root.classes.tailMap(prefix).keySet().iterator();
+		while (iterator.hasNext()) {
+			final String name = iterator.next();
+			if (!name.startsWith(prefix)) {
+				break;
+			}
+			if (!listedNames.contains(name)) {
+				names.add(name);
+				iterator.remove();
+			}
+		}
+	}
+
+	private static Map<String, Set<String>> parse(final Root root, final List<ClassEntry> entries) {
+		root.reader.beginRead();
+		try {
+			return parseClasses(root, entries);
+		} finally {
+			root.reader.endRead();
+		}
+	}
+
+	private static Map<String, Set<String>> parseClasses(final Root root, final List<ClassEntry> entries) {
+		try {
+			return root.reader.parseClasses(root.path, entries);
+		} catch (IOException e) {
+			// some class cannot be read, the other ones are parsed one by one
+		} catch (RuntimeException e) {
+			// some class cannot be parsed
+		}
+		final Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+		for (ClassEntry entry : entries) {
+			try {
+				classesWithDependencies.putAll(root.reader.parseClasses(root.path, Collections.singletonList(entry)));
+			} catch (IOException e) {
+				// deleted or still being written, it changes again
+			} catch (RuntimeException e) {
+				// malformed or still being written, it changes again
+			}
+		}
+		return classesWithDependencies;
+	}
+
+	private static String toName(final Path relativePath) {
+		final StringBuilder name = new StringBuilder();
+		for (Path element : relativePath) {
+			if (name.length() > 0) {
+				name.append('/');
+			}
+			name.append(element.toString());
+		}
+		return name.toString();
+	}
+
+	/**
+	 * Updates the merged results by the classes of the roots with the names,
+	 * a class of a later path precedes as in case of reading.
+	 */
+	private void update(final Set<String> artifactNames, final Set<String> dependencyNames, final Changes changes) {
+		for (String name : artifactNames) {
+			Set<String> dependencies = null;
+			for (Root root : artifactRoots) {
+				final Set<String> rootDependencies = root.classes.get(name);
+				if (rootDependencies != null) {
+					dependencies = rootDependencies;
+				}
+			}
+			final Set<String> previousDependencies = dependencies != null ? classesWithDependencies.put(name,
+					dependencies) : classesWithDependencies.remove(name);
+			if (dependencies == previousDependencies) {
+				// e.g. the class of a later JAR precedes
+				continue;
+			}
+			if (dependencies != null) {
+				// used first, so a class used by both has never zero usages
+				for (String dependency : dependencies) {
+					use(dependency, changes);
+				}
+				changes.updatedClasses.add(name);
+			} else if (previousDependencies != null) {
+				changes.removedClasses.add(name);
+			}
+			if (previousDependencies != null) {
+				for (String dependency : previousDependencies) {
+					release(dependency, changes);
+				}
+			}
+		}
+
+		for (String name : dependencyNames) {
+			boolean contained = false;
+			for (Root root : dependencyRoots) {
+				contained |= root.classes.containsKey(name);
+			}
+			if (contained && dependencyClasses.add(name)) {
+				changes.addedDependencyClasses.add(name);
+				if (!usages.containsKey(name)) {
+					unusedClasses.add(name);
+					changes.addUnused(name);
+				}
+			} else if (!contained && dependencyClasses.remove(name)) {
+				changes.removedDependencyClasses.add(name);
+				if (unusedClasses.remove(name)) {
+					changes.removeUnused(name);
+				}
+			}
+		}
+	}
+
+	private void use(final String dependency, final Changes changes) {
+		final int[] count = usages.get(dependency);
+		if (count != null) {
+			count[0]++;
+			return;
+		}
+		usages.put(dependency, new int[] { 1 });
+		if (unusedClasses.remove(dependency)) {
+			changes.removeUnused(dependency);
+		}
+	}
+
+	private void release(final String dependency, final Changes changes) {
+		final int[] count = usages.get(dependency);
+		if (--count[0] > 0) {
+			return;
+		}
+		usages.remove(dependency);
+		if (dependencyClasses.contains(dependency)) {
+			unusedClasses.add(dependency);
+			changes.addUnused(dependency);
+		}
+	}
+
+	/**
+	 * Returns classes of the artifacts.
+	 * 
+	 * @return the Set of classes
+	 */
+	@Override
+	public Set<String> getArtifactClasses() {
+		return Collections.unmodifiableSet(classesWithDependencies.keySet());
+	}
+
+	/**
+	 * Returns classes of the dependencies.
+	 * 
+	 * @return the Set of classes, empty if there are no dependencies
+	 */
+	@Override
+	public Set<String> getDependencyClasses() {
+		return Collections.unmodifiableSet(dependencyClasses);
+	}
+
+	/**
+	 * Returns classes of the artifacts and their dependencies.
+	 * 
+	 * @return the Map of classes and their dependencies
+	 */
+	@Override
+	public Map<String, Set<String>> getClassesWithDependencies() {
+		return Collections.unmodifiableMap(classesWithDependencies);
+	}
+
+	/**
+	 * Returns dependencies of all the classes of the artifacts.
+	 * 
+	 * @return the Set of dependencies
+	 */
+	@Override
+	public Set<String> getDependencies() {
+		return Collections.unmodifiableSet(usages.keySet());
+	}
+
+	/**
+	 * Returns classes of the dependencies used by the artifacts.
+	 * 
+	 * @return the Set of used classes
+	 */
+	@Override
+	public Set<String> getUsedClasses() {
+		final Set<String> usedClasses = new TreeSet<String>();
+		for (String name : dependencyClasses) {
+			if (usages.containsKey(name)) {
+				usedClasses.add(name);
+			}
+		}
+		return usedClasses;
+	}
+
+	/**
+	 * Returns classes of the dependencies used by the artifacts per class of
+	 * the artifacts. Classes not using any dependency are omitted.
+	 * 
+	 * @return the Map of classes and their used classes
+	 */
+	@Override
+	public Map<String, Set<String>> getUsedClassesByClass() {
+		return DependencyUtils.intersection(classesWithDependencies, dependencyClasses);
+	}
+
+	/**
+	 * Returns classes of the dependencies not used by the artifacts.
+	 * 
+	 * @return the Set of unused classes
+	 */
+	@Override
+	public Set<String> getUnusedClasses() {
+		return Collections.unmodifiableSet(unusedClasses);
+	}
+
+	/**
+	 * Stops watching of the directories.
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	/**
+	 * Watched directory or JAR and the results of its classes.
+	 */
+	private static final class Root {
+
+		private final Reader reader;
+		private final String path;
+		private final Path dir;
+		private final DirectoryArchive archive;
+		private final boolean artifact;
+		// the dependencies are empty for classes of dependencies
+		private final TreeMap<String, Set<String>> classes = new TreeMap<String, Set<String>>();
+
+		Root(final Reader reader, final String path, final Path dir, final boolean artifact) {
+			this.reader = reader;
+			this.path = path;
+			this.dir = dir;
+			this.archive = dir != null ? new DirectoryArchive(dir.toFile()) : null;
+			this.artifact = artifact;
+		}
+	}
+
+	/**
+	 * Changes of classes applied at once.
+	 */
+	public static final class Changes {
+
+		private final Set<String> updatedClasses = new TreeSet<String>();
+		private final Set<String> removedClasses = new TreeSet<String>();
+		private final Set<String> addedDependencyClasses = new TreeSet<String>();
+		private final Set<String> removedDependencyClasses = new TreeSet<String>();
+		private final Set<String> addedUnusedClasses = new TreeSet<String>();
+		private final Set<String> removedUnusedClasses = new TreeSet<String>();
+
+		private Changes() {
+		}
+
+		private void addUnused(final String name) {
+			if (!removedUnusedClasses.remove(name)) {
+				addedUnusedClasses.add(name);
+			}
+		}
+
+		private void removeUnused(final String name) {
+			if (!addedUnusedClasses.remove(name)) {
+				removedUnusedClasses.add(name);
+			}
+		}
+
+		/**
+		 * Returns the classes of the artifacts that were created or modified.
+		 * 
+		 * @return the Set of classes
+		 */
+		public Set<String> getUpdatedClasses() {
+			return Collections.unmodifiableSet(updatedClasses);
+		}
+
+		/**
+		 * Returns the classes of the artifacts that were deleted.
+		 * 
+		 * @return the Set of classes
+		 */
+		public Set<String> getRemovedClasses() {
+			return Collections.unmodifiableSet(removedClasses);
+		}
+
+		/**
+		 * Returns the classes of the dependencies that were created.
+		 * 
+		 * @return the Set of classes
+		 */
+		public Set<String> getAddedDependencyClasses() {
+			return Collections.unmodifiableSet(addedDependencyClasses);
+		}
+
+		/**
+		 * Returns the classes of the dependencies that were deleted.
+		 * 
+		 * @return the Set of classes
+		 */
+		public Set<String> getRemovedDependencyClasses() {
+			return Collections.unmodifiableSet(removedDependencyClasses);
+		}
+
+		/**
+		 * Returns the classes of the dependencies that became unused.
+		 * 
+		 * @return the Set of classes
+		 */
+		public Set<String> getAddedUnusedClasses() {
+			return Collections.unmodifiableSet(addedUnusedClasses);
+		}
+
+		/**
+		 * Returns the classes of the dependencies that are not unused anymore,
+		 * because they became used or were deleted.
+		 * 
+		 * @return the Set of classes
+		 */
+		public Set<String> getRemovedUnusedClasses() {
+			return Collections.unmodifiableSet(removedUnusedClasses);
+		}
+
+		/**
+		 * Returns whether nothing changed.
+		 * 
+		 * @return true if nothing changed
+		 */
+		public boolean isEmpty() {
+			return updatedClasses.isEmpty() && removedClasses.isEmpty() && addedDependencyClasses.isEmpty()
+					&& removedDependencyClasses.isEmpty() && addedUnusedClasses.isEmpty()
+					&& removedUnusedClasses.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return "updated " + updatedClasses.size() + ", removed " + removedClasses.size()
+					+ " classes, added " + addedDependencyClasses.size() + ", removed "
+					+ removedDependencyClasses.size() + " dependency classes, " + addedUnusedClasses.size()
+					+ " classes became unused, " + removedUnusedClasses.size() + " not unused anymore";
+		}
+	}
+}
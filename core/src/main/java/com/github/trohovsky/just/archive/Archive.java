@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.archive;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import com.github.trohovsky.just.util.PrefixFilter;
+
+/**
+ * Directory or JAR containing classes.
+ * 
+ * @author Tomas Rohovsky
+ */
+public abstract class Archive implements Closeable {
+
+	static final String CLASS_EXTENSION = ".class";
+
+	/**
+	 * Opens the directory or JAR.
+	 * 
+	 * @param path
+	 *            the path referring to the directory or JAR
+	 * @return the archive
+	 * @throws IOException
+	 */
+	public static Archive open(final String path) throws IOException {
+		return open(path, false);
+	}
+
+	/**
+	 * Opens the directory or JAR. Classes of a JAR can include the ones of
+	 * JARs nested in BOOT-INF/lib and WEB-INF/lib, see
+	 * {@link JarArchive#JarArchive(String, boolean)}.
+	 * 
+	 * @param path
+	 *            the path referring to the directory or JAR
+	 * @param nestedArchives
+	 *            true if the nested JARs are read
+	 * @return the archive
+	 * @throws IOException
+	 */
+	public static Archive open(final String path, final boolean nestedArchives) throws IOException {
+		return open(path, nestedArchives, 1);
+	}
+
+	/**
+	 * Opens the directory or JAR. A directory is walked and nested JARs are
+	 * opened by the number of threads, see
+	 * {@link DirectoryArchive#DirectoryArchive(File, int)}.
+	 * 
+	 * @param path
+	 *            the path referring to the directory or JAR
+	 * @param nestedArchives
+	 *            true if the nested JARs are read
+	 * @param parallelism
+	 *            the number of threads walking a directory or opening nested JARs
+	 * @return the archive
+	 * @throws IOException
+	 */
+	public static Archive open(final String path, final boolean nestedArchives, final int parallelism)
+			throws IOException {
+		final File file = new File(path);
+		if (file.isDirectory()) {
+			return new DirectoryArchive(file, parallelism);
+		} else {
+			return new JarArchive(path, nestedArchives, parallelism);
+		}
+	}
+
+	/**
+	 * Opens the directory or JAR. A directory is walked and nested JARs are
+	 * opened by the threads of the pool, see
+	 * {@link DirectoryArchive#DirectoryArchive(File, ForkJoinPool)}.
+	 * 
+	 * @param path
+	 *            the path referring to the directory or JAR
+	 * @param nestedArchives
+	 *            true if the nested JARs are read
+	 * @param pool
+	 *            the pool walking a directory or opening nested JARs
+	 * @return the archive
+	 * @throws IOException
+	 */
+	public static Archive open(final String path, final boolean nestedArchives, final ForkJoinPool pool)
+			throws IOException {
+		final File file = new File(path);
+		if (file.isDirectory()) {
+			return new DirectoryArchive(file, pool);
+		} else {
+			return new JarArchive(path, nestedArchives, pool);
+		}
+	}
+
+	/**
+	 * Lists the classes accepted by the filter.
+	 * 
+	 * @param filter
+	 *            the filter of class names
+	 * @return the List of class entries
+	 * @throws IOException
+	 */
+	public abstract List<ClassEntry> listClassEntries(PrefixFilter filter) throws IOException;
+
+	/**
+	 * Lists names of the resources contained directly in the directory of the
+	 * archive, e.g. "META-INF/services/".
+	 * 
+	 * @param directory
+	 *            the name of the directory ending with '/'
+	 * @return the List of names of the resources, including the directory
+	 * @throws IOException
+	 */
+	public abstract List<String> listResources(String directory) throws IOException;
+
+	/**
+	 * Reads content of the resource.
+	 * 
+	 * @param name
+	 *            the name of the resource, e.g. "META-INF/MANIFEST.MF"
+	 * @return the bytes of the resource, null if there is no such resource
+	 * @throws IOException
+	 */
+	public abstract byte[] readResource(String name) throws IOException;
+
+	static String removeClassExtension(final String name) {
+		return name.substring(0, name.length() - CLASS_EXTENSION.length());
+	}
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.ZipException;
+
+import com.github.trohovsky.just.util.PrefixFilter;
+
+/**
+ * Central directory of a ZIP archive. Only the end of the archive is read,
+ * names of the entries are examined as raw bytes and the content of the
+ * entries is never inflated.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class CentralDirectory {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final byte[] CLASS_EXTENSION = ".class".getBytes(UTF_8);
+
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int END_SIZE = 22;
+	private static final int MAX_COMMENT_SIZE = 0xffff;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_END_SIZE = 56;
+	private static final int HEADER_SIGNATURE = 0x02014b50;
+	private static final int HEADER_SIZE = 46;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+
+	private final byte[] bytes;
+	private final int entryCount;
+
+	private CentralDirectory(final byte[] bytes, final int entryCount) {
+		this.bytes = bytes;
+		this.entryCount = entryCount;
+	}
+
+	/**
+	 * Reads the central directory of the archive.
+	 * 
+	 * @param path
+	 *            the path of the archive
+	 * @return the central directory
+	 * @throws IOException
+	 *             if the file cannot be read or is not a ZIP archive
+	 */
+	public static CentralDirectory read(final String path) throws IOException {
+		final FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+		try {
+			return read(new ChannelRegion(channel));
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads the central directory of the archive held in the buffer, e.g. a
+	 * JAR nested in another one.
+	 * 
+	 * @param zip
+	 *            the buffer of the archive from its position to its limit
+	 * @return the central directory
+	 * @throws IOException
+	 *             if the buffer is not a ZIP archive
+	 */
+	public static CentralDirectory read(final ByteBuffer zip) throws IOException {
+		return read(new BufferRegion(zip));
+	}
+
+	private static CentralDirectory read(final Region region) throws IOException {
+		final long size = region.size();
+		final int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE);
+		final ByteBuffer tail = region.read(size - tailSize, tailSize);
+
+		// the end record is followed only by a comment of the length stored
+		// in the record
+		int end = -1;
+		for (int position = tailSize - END_SIZE; position >= 0; position--) {
+			if (tail.getInt(position) == END_SIGNATURE
+					&& position + END_SIZE + (tail.getShort(position + 20) & 0xffff) == tailSize) {
+				end = position;
+				break;
+			}
+		}
+		if (end == -1) {
+			throw new ZipException("zip END header not found");
+		}
+		final long endPosition = size - tailSize + end;
+		long entryCount = tail.getShort(end + 10) & 0xffff;
+		long directorySize = tail.getInt(end + 12) & 0xffffffffL;
+		final long directoryOffset = tail.getInt(end + 16) & 0xffffffffL;
+		long directoryPosition = endPosition - directorySize;
+
+		if (entryCount == 0xffff || directorySize == 0xffffffffL || directoryOffset == 0xffffffffL) {
+			if (end >= ZIP64_LOCATOR_SIZE && tail.getInt(end - ZIP64_LOCATOR_SIZE) == ZIP64_LOCATOR_SIGNATURE) {
+				// the zip64 end record usually precedes the locator, otherwise
+				// the offset stored in the locator is used
+				long zip64EndPosition = endPosition - ZIP64_LOCATOR_SIZE - ZIP64_END_SIZE;
+				ByteBuffer zip64End = region.read(zip64EndPosition, ZIP64_END_SIZE);
+				if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+					zip64EndPosition = tail.getLong(end - ZIP64_LOCATOR_SIZE + 8);
+					zip64End = region.read(zip64EndPosition, ZIP64_END_SIZE);
+					if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+						throw new ZipException("invalid zip64 END header at " + zip64EndPosition);
+					}
+				}
+				entryCount = zip64End.getLong(32);
+				directorySize = zip64End.getLong(40);
+				directoryPosition = zip64EndPosition - directorySize;
+			}
+		}
+		if (directorySize > Integer.MAX_VALUE || entryCount > Integer.MAX_VALUE || directoryPosition < 0) {
+			throw new ZipException("invalid central directory");
+		}
+
+		final ByteBuffer directory = region.read(directoryPosition, (int) directorySize);
+		return new CentralDirectory(directory.array(), (int) entryCount);
+	}
+
+	/**
+	 * Returns the number of entries of the archive.
+	 * 
+	 * @return the number of entries
+	 */
+	public int size() {
+		return entryCount;
+	}
+
+	/**
+	 * Adds names of the classes accepted by the filter to the collection.
+	 * Names of other entries are never decoded.
+	 * 
+	 * @param filter
+	 *            the filter of class names
+	 * @param classes
+	 *            the collection the class names are added to
+	 * @return the number of the accepted classes, including those already
+	 *         contained in the collection
+	 * @throws ZipException
+	 *             if the central directory is malformed
+	 */
+	public int listClasses(final PrefixFilter filter, final Collection<String> classes) throws ZipException {
+		int count = 0;
+		int position = 0;
+		for (int i = 0; i < entryCount; i++) {
+			if (position + HEADER_SIZE > bytes.length || getInt(position) != HEADER_SIGNATURE) {
+				throw new ZipException("invalid central directory header at " + position);
+			}
+			final int nameLength = getShort(position + 28);
+			final int nameOffset = position + HEADER_SIZE;
+			if (nameOffset + nameLength > bytes.length) {
+				throw new ZipException("invalid central directory header at " + position);
+			}
+			if (endsWith(nameOffset, nameLength, CLASS_EXTENSION)
+					&& filter.accepts(bytes, nameOffset, nameLength)) {
+				classes.add(new String(bytes, nameOffset, nameLength - CLASS_EXTENSION.length, UTF_8));
+				count++;
+			}
+			position = nameOffset + nameLength + getShort(position + 30) + getShort(position + 32);
+		}
+		return count;
+	}
+
+	/**
+	 * Lists all the entries of the archive.
+	 * 
+	 * @return the List of entries in order of the central directory
+	 * @throws ZipException
+	 *             if the central directory is malformed
+	 */
+	public List<Entry> listEntries() throws ZipException {
+		final List<Entry> entries = new ArrayList<Entry>(entryCount);
+		int position = 0;
+		for (int i = 0; i < entryCount; i++) {
+			if (position + HEADER_SIZE > bytes.length || getInt(position) != HEADER_SIGNATURE) {
+				throw new ZipException("invalid central directory header at " + position);
+			}
+			final int nameLength = getShort(position + 28);
+			final int extraLength = getShort(position + 30);
+			final int nameOffset = position + HEADER_SIZE;
+			if (nameOffset + nameLength + extraLength > bytes.length) {
+				throw new ZipException("invalid central directory header at " + position);
+			}
+			long compressedSize = getInt(position + 20) & 0xffffffffL;
+			long size = getInt(position + 24) & 0xffffffffL;
+			long offset = getInt(position + 42) & 0xffffffffL;
+			if (compressedSize == 0xffffffffL || size == 0xffffffffL || offset == 0xffffffffL) {
+				// the values are stored in the zip64 extra field in this order
+				// if they overflow
+				int extra = nameOffset + nameLength;
+				while (extra + 4 <= nameOffset + nameLength + extraLength) {
+					if (getShort(extra) == ZIP64_EXTRA_ID) {
+						int value = extra + 4;
+						if (size == 0xffffffffL) {
+							size = getLong(value);
+							value += 8;
+						}
+						if (compressedSize == 0xffffffffL) {
+							compressedSize = getLong(value);
+							value += 8;
+						}
+						if (offset == 0xffffffffL) {
+							offset = getLong(value);
+						}
+						break;
+					}
+					extra += 4 + getShort(extra + 2);
+				}
+			}
+			entries.add(new Entry(new String(bytes, nameOffset, nameLength, UTF_8), getShort(position + 10),
+					getInt(position + 16) & 0xffffffffL, compressedSize, size, offset));
+			position = nameOffset + nameLength + extraLength + getShort(position + 32);
+		}
+		return entries;
+	}
+
+	private boolean endsWith(final int offset, final int length, final byte[] suffix) {
+		if (length <= suffix.length) {
+			return false;
+		}
+		final int start = offset + length - suffix.length;
+		for (int i = 0; i < suffix.length; i++) {
+			if (bytes[start + i] != suffix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int getShort(final int position) {
+		return (bytes[position] & 0xff) | (bytes[position + 1] & 0xff) << 8;
+	}
+
+	private int getInt(final int position) {
+		return getShort(position) | getShort(position + 2) << 16;
+	}
+
+	private long getLong(final int position) {
+		return (getInt(position) & 0xffffffffL) | (long) getInt(position + 4) << 32;
+	}
+
+	/**
+	 * Entry of the central directory.
+	 */
+	public static final class Entry {
+
+		/** Compression method of entries that are stored without compression. */
+		public static final int STORED = 0;
+		/** Compression method of deflated entries. */
+		public static final int DEFLATED = 8;
+
+		private final String name;
+		private final int method;
+		private final long crc;
+		private final long compressedSize;
+		private final long size;
+		private final long offset;
+
+		Entry(final String name, final int method, final long crc, final long compressedSize, final long size,
+				final long offset) {
+			this.name = name;
+			this.method = method;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.offset = offset;
+		}
+
+		/**
+		 * Returns the name of the entry.
+		 * 
+		 * @return the name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the compression method of the entry.
+		 * 
+		 * @return the compression method
+		 */
+		public int getMethod() {
+			return method;
+		}
+
+		/**
+		 * Returns the CRC-32 of the uncompressed content of the entry.
+		 * 
+		 * @return the CRC-32
+		 */
+		public long getCrc() {
+			return crc;
+		}
+
+		/**
+		 * Returns the size of the compressed content of the entry.
+		 * 
+		 * @return the compressed size in bytes
+		 */
+		public long getCompressedSize() {
+			return compressedSize;
+		}
+
+		/**
+		 * Returns the size of the uncompressed content of the entry.
+		 * 
+		 * @return the size in bytes
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * Returns the offset of the local header of the entry from the start
+		 * of the archive.
+		 * 
+		 * @return the offset in bytes
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Tells whether the entry is a directory.
+		 * 
+		 * @return true if the entry is a directory
+		 */
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Part of an archive that can be read at absolute positions.
+	 */
+	private abstract static class Region {
+
+		abstract long size() throws IOException;
+
+		abstract ByteBuffer read(long position, int length) throws IOException;
+	}
+
+	private static final class ChannelRegion extends Region {
+
+		private final FileChannel channel;
+
+		ChannelRegion(final FileChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		long size() throws IOException {
+			return channel.size();
+		}
+
+		@Override
+		ByteBuffer read(final long position, final int length) throws IOException {
+			if (position < 0) {
+				throw new ZipException("invalid position " + position);
+			}
+			final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) == -1) {
+					throw new EOFException("Unexpected end of ZIP archive");
+				}
+			}
+			return buffer;
+		}
+	}
+
+	private static final class BufferRegion extends Region {
+
+		private final ByteBuffer zip;
+
+		BufferRegion(final ByteBuffer zip) {
+			this.zip = zip.slice();
+		}
+
+		@Override
+		long size() {
+			return zip.remaining();
+		}
+
+		@Override
+		ByteBuffer read(final long position, final int length) throws IOException {
+			if (position < 0 || position + length > zip.remaining()) {
+				throw new ZipException("invalid position " + position);
+			}
+			final ByteBuffer source = zip.duplicate();
+			// called through Buffer, the overrides of ByteBuffer do not exist in Java 8
+			((Buffer) source).position((int) position);
+			((Buffer) source).limit((int) position + length);
+			final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.put(source);
+			((Buffer) buffer).clear();
+			return buffer;
+		}
+	}
+}
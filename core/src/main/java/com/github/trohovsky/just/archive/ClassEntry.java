@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.archive;
+
+import java.io.IOException;
+
+/**
+ * Class stored in an archive. Content of the class is read on demand, so the
+ * entries can be listed cheaply and read by multiple threads afterwards.
+ * 
+ * @author Tomas Rohovsky
+ */
+public abstract class ClassEntry {
+
+	private final String name;
+	private final long size;
+	private final long stamp;
+	private final String location;
+
+	protected ClassEntry(final String name, final long size, final long stamp) {
+		this(name, size, stamp, null);
+	}
+
+	protected ClassEntry(final String name, final long size, final long stamp, final String location) {
+		this.name = name;
+		this.size = size;
+		this.stamp = stamp;
+		this.location = location;
+	}
+
+	/**
+	 * Returns the internal name of the class.
+	 * 
+	 * @return the internal name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the size of the class file.
+	 * 
+	 * @return the size in bytes, -1 if not known
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the size of the class file in the archive, the compressed size
+	 * of a JAR entry.
+	 * 
+	 * @return the size in bytes, -1 if not known
+	 */
+	public long getCompressedSize() {
+		return size;
+	}
+
+	/**
+	 * Returns a stamp of the content of the class file, the CRC-32 of a JAR
+	 * entry or the last modification time of a file. Together with the size
+	 * it tells whether the class changed.
+	 * 
+	 * @return the stamp, -1 if not known
+	 */
+	public long getStamp() {
+		return stamp;
+	}
+
+	/**
+	 * Returns the location of the nested archive the class came from, e.g.
+	 * "BOOT-INF/lib/library.jar".
+	 * 
+	 * @return the name of the nested archive within its archive, null if the
+	 *         class is contained directly in the archive
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	/**
+	 * Reads content of the class file.
+	 * 
+	 * @return the bytes of the class file
+	 * @throws IOException
+	 */
+	public abstract byte[] read() throws IOException;
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
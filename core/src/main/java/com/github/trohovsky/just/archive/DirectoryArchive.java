@@ -0,0 +1,282 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.archive;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import com.github.trohovsky.just.util.IOUtils;
+import com.github.trohovsky.just.util.PrefixFilter;
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * Directory containing class files in directories of their packages. The
+ * directories are walked by {@link DirectoryStream}s, attributes of each file
+ * are read only once and the directories of packages that cannot contain any
+ * accepted class are skipped. Subdirectories can be walked by multiple
+ * threads, the entries are listed in the same order regardless of the
+ * parallelism: the files of a directory sorted by name followed by its
+ * sorted subdirectories.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class DirectoryArchive extends Archive {
+
+	private final File dir;
+	private final int parallelism;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Opens the directory.
+	 * 
+	 * @param dir
+	 *            the directory
+	 */
+	public DirectoryArchive(final File dir) {
+		this(dir, 1);
+	}
+
+	/**
+	 * Opens the directory walked by the number of threads.
+	 * 
+	 * @param dir
+	 *            the directory
+	 * @param parallelism
+	 *            the number of threads walking the directory
+	 */
+	public DirectoryArchive(final File dir, final int parallelism) {
+		this.dir = dir;
+		this.parallelism = parallelism;
+		this.pool = null;
+	}
+
+	/**
+	 * Opens the directory walked by the threads of the pool, e.g. the one
+	 * parsing the classes afterwards.
+	 * 
+	 * @param dir
+	 *            the directory
+	 * @param pool
+	 *            the pool walking the directory
+	 */
+	public DirectoryArchive(final File dir, final ForkJoinPool pool) {
+		Validation.notNull(pool, "Pool must be specified");
+		this.dir = dir;
+		this.parallelism = pool.getParallelism();
+		this.pool = pool;
+	}
+
+	@Override
+	public List<ClassEntry> listClassEntries(final PrefixFilter filter) throws IOException {
+		final ListTask task = new ListTask(dir.toPath(), "", filter, parallelism > 1);
+		if (parallelism == 1) {
+			return task.list();
+		}
+		if (pool != null) {
+			return invoke(pool, task);
+		}
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return invoke(pool, task);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static List<ClassEntry> invoke(final ForkJoinPool pool, final ListTask task) throws IOException {
+		try {
+			return pool.invoke(task);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Returns the entry of the class if its class file exists, e.g. to read
+	 * a single changed class without listing the directory.
+	 * 
+	 * @param name
+	 *            the internal name of the class
+	 * @return the entry, null if there is no class file of the class
+	 * @throws IOException
+	 */
+	public ClassEntry getClassEntry(final String name) throws IOException {
+		final Path file = dir.toPath().resolve(name + CLASS_EXTENSION);
+		final BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		return attributes.isRegularFile() ? new FileClassEntry(name, file, attributes) : null;
+	}
+
+	@Override
+	public List<String> listResources(final String directory) {
+		final List<String> resources = new ArrayList<String>();
+		final File[] files = new File(dir, directory).listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.isFile()) {
+					resources.add(directory + file.getName());
+				}
+			}
+		}
+		return resources;
+	}
+
+	@Override
+	public byte[] readResource(final String name) throws IOException {
+		final File file = new File(dir, name);
+		if (!file.isFile()) {
+			return null;
+		}
+		final InputStream is = new FileInputStream(file);
+		try {
+			return IOUtils.toByteArray(is, file.length());
+		} finally {
+			is.close();
+		}
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * Lists the classes of a directory and its subdirectories, the
+	 * subdirectories are listed by subtasks in parallel.
+	 */
+	private static final class ListTask extends RecursiveTask<List<ClassEntry>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path dir;
+		private final String path;
+		private final PrefixFilter filter;
+		private final boolean parallel;
+
+		ListTask(final Path dir, final String path, final PrefixFilter filter, final boolean parallel) {
+			this.dir = dir;
+			this.path = path;
+			this.filter = filter;
+			this.parallel = parallel;
+		}
+
+		@Override
+		protected List<ClassEntry> compute() {
+			try {
+				return list();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		List<ClassEntry> list() throws IOException {
+			final List<FileClassEntry> files = new ArrayList<FileClassEntry>();
+			final List<ListTask> subdirs = new ArrayList<ListTask>();
+			final DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+			try {
+				for (Path file : stream) {
+					final String fileName = file.getFileName().toString();
+					final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+					if (attributes.isDirectory()) {
+						final String subdirPath = path + fileName + "/";
+						// skips packages that cannot contain any accepted class
+						if (filter.acceptsAnyStartingWith(subdirPath)) {
+							subdirs.add(new ListTask(file, subdirPath, filter, parallel));
+						}
+					} else if (fileName.endsWith(CLASS_EXTENSION)) {
+						final String className = path + removeClassExtension(fileName);
+						if (filter.accepts(className)) {
+							files.add(new FileClassEntry(className, file, attributes));
+						}
+					}
+				}
+			} finally {
+				stream.close();
+			}
+
+			Collections.sort(files, BY_NAME);
+			Collections.sort(subdirs, BY_PATH);
+			final List<ClassEntry> entries = new ArrayList<ClassEntry>(files);
+			if (parallel && subdirs.size() > 1) {
+				ForkJoinTask.invokeAll(subdirs);
+				for (ListTask subdir : subdirs) {
+					entries.addAll(subdir.getRawResult());
+				}
+			} else {
+				for (ListTask subdir : subdirs) {
+					entries.addAll(subdir.list());
+				}
+			}
+			return entries;
+		}
+	}
+
+	private static final Comparator<ClassEntry> BY_NAME = new Comparator<ClassEntry>() {
+
+		@Override
+		public int compare(final ClassEntry entry1, final ClassEntry entry2) {
+			return entry1.getName().compareTo(entry2.getName());
+		}
+	};
+
+	private static final Comparator<ListTask> BY_PATH = new Comparator<ListTask>() {
+
+		@Override
+		public int compare(final ListTask task1, final ListTask task2) {
+			return task1.path.compareTo(task2.path);
+		}
+	};
+
+	private static final class FileClassEntry extends ClassEntry {
+
+		private final Path file;
+
+		FileClassEntry(final String name, final Path file, final BasicFileAttributes attributes) {
+			super(name, attributes.size(), attributes.lastModifiedTime().toMillis());
+			this.file = file;
+		}
+
+		@Override
+		public byte[] read() throws IOException {
+			// the size is known from the listing, so the file is only opened,
+			// read and closed
+			final InputStream is = new FileInputStream(file.toFile());
+			try {
+				return IOUtils.toByteArray(is, getSize());
+			} finally {
+				is.close();
+			}
+		}
+	}
+}
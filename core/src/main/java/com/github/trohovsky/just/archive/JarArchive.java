@@ -0,0 +1,355 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import com.github.trohovsky.just.util.IOUtils;
+import com.github.trohovsky.just.util.PrefixFilter;
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * JAR read through its central directory. Entries that are not classes are
+ * skipped without being read and the class entries can be inflated by
+ * multiple threads at the same time.
+ * <p>
+ * Fat JARs, e.g. Spring Boot JARs and WARs, can be read together with their
+ * nested JARs. Then the classes in BOOT-INF/classes and WEB-INF/classes are
+ * listed under their own names and the JARs in BOOT-INF/lib and WEB-INF/lib
+ * are read in place as {@link NestedJarArchive}s. Resources are read only
+ * from the outer JAR.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class JarArchive extends Archive {
+
+	private static final String[] CLASS_DIRECTORIES = { "BOOT-INF/classes/", "WEB-INF/classes/" };
+	private static final String[] LIB_DIRECTORIES = { "BOOT-INF/lib/", "WEB-INF/lib/" };
+	private static final String JAR_EXTENSION = ".jar";
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+
+	private final String path;
+	private final ZipFile zipFile;
+	private final boolean nestedArchives;
+	private final int parallelism;
+	private final ForkJoinPool pool;
+	private List<NestedJarArchive> nested;
+
+	/**
+	 * Opens the JAR.
+	 * 
+	 * @param path
+	 *            the path of the JAR
+	 * @throws IOException
+	 */
+	public JarArchive(final String path) throws IOException {
+		this(path, false);
+	}
+
+	/**
+	 * Opens the JAR, optionally with the JARs nested in BOOT-INF/lib and
+	 * WEB-INF/lib.
+	 * 
+	 * @param path
+	 *            the path of the JAR
+	 * @param nestedArchives
+	 *            true if the nested JARs are read
+	 * @throws IOException
+	 */
+	public JarArchive(final String path, final boolean nestedArchives) throws IOException {
+		this(path, nestedArchives, 1);
+	}
+
+	/**
+	 * Opens the JAR, optionally with the nested JARs opened by the number of
+	 * threads.
+	 * 
+	 * @param path
+	 *            the path of the JAR
+	 * @param nestedArchives
+	 *            true if the nested JARs are read
+	 * @param parallelism
+	 *            the number of threads opening the nested JARs
+	 * @throws IOException
+	 */
+	public JarArchive(final String path, final boolean nestedArchives, final int parallelism) throws IOException {
+		this.path = path;
+		this.zipFile = new ZipFile(path);
+		this.nestedArchives = nestedArchives;
+		this.parallelism = parallelism;
+		this.pool = null;
+	}
+
+	/**
+	 * Opens the JAR, optionally with the nested JARs opened by the threads of
+	 * the pool, e.g. the one parsing the classes afterwards.
+	 * 
+	 * @param path
+	 *            the path of the JAR
+	 * @param nestedArchives
+	 *            true if the nested JARs are read
+	 * @param pool
+	 *            the pool opening the nested JARs
+	 * @throws IOException
+	 */
+	public JarArchive(final String path, final boolean nestedArchives, final ForkJoinPool pool) throws IOException {
+		Validation.notNull(pool, "Pool must be specified");
+		this.path = path;
+		this.zipFile = new ZipFile(path);
+		this.nestedArchives = nestedArchives;
+		this.parallelism = pool.getParallelism();
+		this.pool = pool;
+	}
+
+	/**
+	 * Lists the classes accepted by the filter in order of the central
+	 * directory, followed by the classes of the nested JARs in the same
+	 * order.
+	 */
+	@Override
+	public List<ClassEntry> listClassEntries(final PrefixFilter filter) throws IOException {
+		final List<ClassEntry> classEntries = new ArrayList<ClassEntry>();
+		final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+			final ZipEntry entry = entries.nextElement();
+			final String name = nestedArchives ? removeClassDirectory(entry.getName()) : entry.getName();
+			if (name.endsWith(CLASS_EXTENSION) && !entry.isDirectory() && filter.accepts(name)) {
+				classEntries.add(new JarClassEntry(removeClassExtension(name), entry));
+			}
+		}
+		if (nestedArchives) {
+			for (NestedJarArchive archive : openNestedArchives()) {
+				classEntries.addAll(archive.listClassEntries(filter));
+			}
+		}
+		return classEntries;
+	}
+
+	private static String removeClassDirectory(final String name) {
+		for (String directory : CLASS_DIRECTORIES) {
+			if (name.startsWith(directory)) {
+				return name.substring(directory.length());
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * Opens the nested JARs by the threads of the JAR, a stored JAR is mapped
+	 * from the outer JAR and a deflated JAR is inflated into memory.
+	 */
+	private synchronized List<NestedJarArchive> openNestedArchives() throws IOException {
+		if (nested != null) {
+			return nested;
+		}
+		final List<OpenTask> tasks = new ArrayList<OpenTask>();
+		final FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+		try {
+			for (CentralDirectory.Entry entry : CentralDirectory.read(path).listEntries()) {
+				if (isNestedArchive(entry.getName())) {
+					tasks.add(new OpenTask(channel, entry));
+				}
+			}
+			if (parallelism == 1) {
+				for (OpenTask task : tasks) {
+					task.invoke();
+				}
+			} else if (pool != null) {
+				pool.invoke(new OpenAllTask(tasks));
+			} else {
+				final ForkJoinPool pool = new ForkJoinPool(parallelism);
+				try {
+					pool.invoke(new OpenAllTask(tasks));
+				} finally {
+					pool.shutdown();
+				}
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			channel.close();
+		}
+		nested = new ArrayList<NestedJarArchive>(tasks.size());
+		for (OpenTask task : tasks) {
+			nested.add(task.getRawResult());
+		}
+		return nested;
+	}
+
+	private static boolean isNestedArchive(final String name) {
+		for (String directory : LIB_DIRECTORIES) {
+			if (name.startsWith(directory) && name.endsWith(JAR_EXTENSION)
+					&& name.indexOf('/', directory.length()) == -1) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private NestedJarArchive openNestedArchive(final FileChannel channel, final CentralDirectory.Entry entry)
+			throws IOException {
+		final ByteBuffer buffer;
+		if (entry.getMethod() == CentralDirectory.Entry.STORED) {
+			final ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header, entry.getOffset() + header.position()) == -1) {
+					throw new ZipException("invalid local header of " + entry);
+				}
+			}
+			if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+				throw new ZipException("invalid local header of " + entry);
+			}
+			final long dataOffset = entry.getOffset() + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xffff)
+					+ (header.getShort(28) & 0xffff);
+			buffer = channel.map(MapMode.READ_ONLY, dataOffset, entry.getSize());
+		} else {
+			final ZipEntry zipEntry = zipFile.getEntry(entry.getName());
+			final InputStream is = zipFile.getInputStream(zipEntry);
+			try {
+				buffer = ByteBuffer.wrap(IOUtils.toByteArray(is, zipEntry.getSize()));
+			} finally {
+				is.close();
+			}
+		}
+		return new NestedJarArchive(entry.getName(), buffer);
+	}
+
+	@Override
+	public List<String> listResources(final String directory) {
+		final List<String> resources = new ArrayList<String>();
+		final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+			final ZipEntry entry = entries.nextElement();
+			final String name = entry.getName();
+			if (name.startsWith(directory) && name.indexOf('/', directory.length()) == -1 && !entry.isDirectory()) {
+				resources.add(name);
+			}
+		}
+		return resources;
+	}
+
+	@Override
+	public byte[] readResource(final String name) throws IOException {
+		final ZipEntry entry = zipFile.getEntry(name);
+		if (entry == null || entry.isDirectory()) {
+			return null;
+		}
+		final InputStream is = zipFile.getInputStream(entry);
+		try {
+			return entry.getSize() != -1 ? IOUtils.toByteArray(is, entry.getSize()) : IOUtils.toByteArray(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Closes the JAR and the nested JARs, their mapped regions are unmapped
+	 * by the garbage collector afterwards.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (nested != null) {
+				for (NestedJarArchive archive : nested) {
+					archive.close();
+				}
+				nested = null;
+			}
+		}
+		zipFile.close();
+	}
+
+	private final class OpenTask extends RecursiveTask<NestedJarArchive> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final CentralDirectory.Entry entry;
+
+		OpenTask(final FileChannel channel, final CentralDirectory.Entry entry) {
+			this.channel = channel;
+			this.entry = entry;
+		}
+
+		@Override
+		protected NestedJarArchive compute() {
+			try {
+				return openNestedArchive(channel, entry);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static final class OpenAllTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<OpenTask> tasks;
+
+		OpenAllTask(final List<OpenTask> tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
+
+	private final class JarClassEntry extends ClassEntry {
+
+		private final ZipEntry entry;
+
+		JarClassEntry(final String name, final ZipEntry entry) {
+			super(name, entry.getSize(), entry.getCrc());
+			this.entry = entry;
+		}
+
+		@Override
+		public long getCompressedSize() {
+			return entry.getCompressedSize();
+		}
+
+		@Override
+		public byte[] read() throws IOException {
+			final InputStream is = zipFile.getInputStream(entry);
+			try {
+				return IOUtils.toByteArray(is, entry.getSize());
+			} finally {
+				is.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import com.github.trohovsky.just.util.IOUtils;
+import com.github.trohovsky.just.util.PrefixFilter;
+
+/**
+ * JAR nested in another JAR, e.g. a library in BOOT-INF/lib of a Spring Boot
+ * JAR or in WEB-INF/lib of a WAR. The nested JAR is held in a buffer: a
+ * mapped region of the outer JAR if it is stored without compression, its
+ * inflated content otherwise. Its entries are read from the buffer at
+ * offsets given by its central directory, so it is never extracted to disk.
+ * The buffer is dropped when the archive is closed, a mapped region is
+ * unmapped by the garbage collector afterwards.
+ * 
+ * @author Tomas Rohovsky
+ */
+final class NestedJarArchive extends Archive {
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+
+	private final String location;
+	private volatile ByteBuffer buffer;
+	private final List<CentralDirectory.Entry> entries;
+
+	/**
+	 * Opens the nested JAR.
+	 * 
+	 * @param location
+	 *            the name of the nested JAR within the outer one
+	 * @param buffer
+	 *            the content of the nested JAR
+	 * @throws IOException
+	 */
+	NestedJarArchive(final String location, final ByteBuffer buffer) throws IOException {
+		this.location = location;
+		this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		this.entries = CentralDirectory.read(buffer).listEntries();
+	}
+
+	/**
+	 * Returns the name of the nested JAR within the outer one.
+	 * 
+	 * @return the location
+	 */
+	String getLocation() {
+		return location;
+	}
+
+	@Override
+	public List<ClassEntry> listClassEntries(final PrefixFilter filter) {
+		final List<ClassEntry> classEntries = new ArrayList<ClassEntry>();
+		for (CentralDirectory.Entry entry : entries) {
+			final String name = entry.getName();
+			if (name.endsWith(CLASS_EXTENSION) && !entry.isDirectory() && filter.accepts(name)) {
+				classEntries.add(new NestedClassEntry(removeClassExtension(name), entry));
+			}
+		}
+		return classEntries;
+	}
+
+	@Override
+	public List<String> listResources(final String directory) {
+		final List<String> resources = new ArrayList<String>();
+		for (CentralDirectory.Entry entry : entries) {
+			final String name = entry.getName();
+			if (name.startsWith(directory) && name.indexOf('/', directory.length()) == -1 && !entry.isDirectory()) {
+				resources.add(name);
+			}
+		}
+		return resources;
+	}
+
+	@Override
+	public byte[] readResource(final String name) throws IOException {
+		for (CentralDirectory.Entry entry : entries) {
+			if (entry.getName().equals(name) && !entry.isDirectory()) {
+				return read(entry);
+			}
+		}
+		return null;
+	}
+
+	private byte[] read(final CentralDirectory.Entry entry) throws IOException {
+		final ByteBuffer buffer = this.buffer;
+		if (buffer == null) {
+			throw new IOException(location + " is closed");
+		}
+		final long offset = entry.getOffset();
+		if (offset < 0 || offset + LOCAL_HEADER_SIZE > buffer.limit()
+				|| buffer.getInt((int) offset) != LOCAL_HEADER_SIGNATURE) {
+			throw new ZipException("invalid local header of " + entry + " in " + location);
+		}
+		final long dataOffset = offset + LOCAL_HEADER_SIZE + (buffer.getShort((int) offset + 26) & 0xffff)
+				+ (buffer.getShort((int) offset + 28) & 0xffff);
+		if (dataOffset + entry.getCompressedSize() > buffer.limit()) {
+			throw new ZipException("invalid size of " + entry + " in " + location);
+		}
+		// the duplicate keeps the reading by multiple threads independent
+		final ByteBuffer data = buffer.duplicate();
+		// called through Buffer, ByteBuffer.position(int) does not exist in Java 8
+		((Buffer) data).position((int) dataOffset);
+		// the inflater may need an extra dummy byte after the deflated data
+		final int length = (int) entry.getCompressedSize();
+		final byte[] compressed = new byte[entry.getMethod() == CentralDirectory.Entry.DEFLATED ? length + 1 : length];
+		data.get(compressed, 0, length);
+		switch (entry.getMethod()) {
+		case CentralDirectory.Entry.STORED:
+			return compressed;
+		case CentralDirectory.Entry.DEFLATED:
+			final Inflater inflater = new Inflater(true);
+			try {
+				final InputStream is = new InflaterInputStream(new ByteArrayInputStream(compressed), inflater);
+				return IOUtils.toByteArray(is, entry.getSize());
+			} finally {
+				inflater.end();
+			}
+		default:
+			throw new ZipException("unsupported compression method " + entry.getMethod() + " of " + entry + " in "
+					+ location);
+		}
+	}
+
+	@Override
+	public void close() {
+		buffer = null;
+	}
+
+	private final class NestedClassEntry extends ClassEntry {
+
+		private final CentralDirectory.Entry entry;
+
+		NestedClassEntry(final String name, final CentralDirectory.Entry entry) {
+			super(name, entry.getSize(), entry.getCrc(), location);
+			this.entry = entry;
+		}
+
+		@Override
+		public long getCompressedSize() {
+			return entry.getCompressedSize();
+		}
+
+		@Override
+		public byte[] read() throws IOException {
+			return NestedJarArchive.this.read(entry);
+		}
+	}
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.github.trohovsky.just.model.ClassSet;
+import com.github.trohovsky.just.model.SymbolTable;
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * In-memory cache of dependencies of classes of JARs for a long-running
+ * process reading the same JARs repeatedly, e.g. a daemon. A JAR is
+ * identified by its canonical path and the reading configuration, its
+ * cached classes are valid as long as its size and modification time do not
+ * change.
+ * <p>
+ * The weight of a JAR is the number of its classes and their dependencies.
+ * The least recently used JARs are evicted when the total weight exceeds the
+ * capacity. The dependencies of the cached JARs share the symbol table of
+ * the cache, so the names of classes are kept only once. Only the cached
+ * dependencies are interned in it and it is rebuilt when most of its names
+ * are not referred to by the cached JARs anymore, so its size is bounded by
+ * the capacity as well. The cache is thread-safe.
+ * 
+ * @see com.github.trohovsky.just.Reader#archiveCache(ArchiveCache)
+ * @author Tomas Rohovsky
+ */
+public final class ArchiveCache {
+
+	private final long capacity;
+	private SymbolTable symbolTable = new SymbolTable();
+	// the number of names referred to by the cached JARs when last counted
+	private int liveNames;
+	private final LinkedHashMap<String, CachedArchive> archives =
+			new LinkedHashMap<String, CachedArchive>(16, 0.75f, true);
+	private long weight;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a cache of the capacity.
+	 * 
+	 * @param capacity
+	 *            the maximum total number of cached classes and their
+	 *            dependencies
+	 */
+	public ArchiveCache(final long capacity) {
+		Validation.isTrue(capacity > 0, "Capacity must be positive");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the cached dependencies of the classes of the JAR if its size
+	 * and modification time are the same as when they were cached.
+	 * 
+	 * @param file
+	 *            the JAR
+	 * @param configuration
+	 *            the description of the reading configuration, the results
+	 *            for different configurations are cached separately
+	 * @param size
+	 *            the current size of the JAR
+	 * @param lastModified
+	 *            the current modification time of the JAR
+	 * @return the unmodifiable Map of classes and their dependencies, null if
+	 *         the JAR is not cached or changed
+	 * @throws IOException
+	 *             if the canonical path cannot be resolved
+	 */
+	public Map<String, Set<String>> get(final File file, final String configuration, final long size,
+			final long lastModified) throws IOException {
+		final String key = getKey(file, configuration);
+		synchronized (this) {
+			final CachedArchive archive = archives.get(key);
+			if (archive == null || archive.size != size || archive.lastModified != lastModified) {
+				misses++;
+				return null;
+			}
+			hits++;
+			return archive.classesWithDependencies;
+		}
+	}
+
+	/**
+	 * Caches the dependencies of the classes of the JAR, replacing the
+	 * previously cached ones. The size and modification time have to be taken
+	 * before reading of the JAR, so a JAR changed during reading is read again
+	 * next time. A JAR heavier than the capacity is not cached. The
+	 * dependencies are interned in the symbol table of the cache.
+	 * 
+	 * @param file
+	 *            the JAR
+	 * @param configuration
+	 *            the description of the reading configuration
+	 * @param size
+	 *            the size of the JAR
+	 * @param lastModified
+	 *            the modification time of the JAR
+	 * @param classesWithDependencies
+	 *            the classes and their dependencies
+	 * @return the unmodifiable view of the classes and their dependencies
+	 * @throws IOException
+	 *             if the canonical path cannot be resolved
+	 */
+	public Map<String, Set<String>> put(final File file, final String configuration, final long size,
+			final long lastModified, final Map<String, Set<String>> classesWithDependencies) throws IOException {
+		final String key = getKey(file, configuration);
+		if (getWeight(classesWithDependencies) > capacity) {
+			synchronized (this) {
+				removeArchive(key);
+			}
+			return Collections.unmodifiableMap(classesWithDependencies);
+		}
+		// interned without the lock, again if the symbol table was rebuilt meanwhile
+		final SymbolTable symbolTable = getSymbolTable();
+		CachedArchive archive = new CachedArchive(size, lastModified, symbolTable, classesWithDependencies);
+		synchronized (this) {
+			if (this.symbolTable != symbolTable) {
+				archive = archive.intern(this.symbolTable);
+			}
+			removeArchive(key);
+			archives.put(key, archive);
+			weight += archive.weight;
+			evict();
+			compact();
+		}
+		return archive.classesWithDependencies;
+	}
+
+	private synchronized SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	private void removeArchive(final String key) {
+		final CachedArchive previous = archives.remove(key);
+		if (previous != null) {
+			weight -= previous.weight;
+		}
+	}
+
+	private void evict() {
+		final Iterator<CachedArchive> iterator = archives.values().iterator();
+		while (weight > capacity && iterator.hasNext()) {
+			weight -= iterator.next().weight;
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Rebuilds the symbol table when it has more than twice as many names as
+	 * the cached JARs refer to. The names are counted only when the table has
+	 * doubled since they were counted last time.
+	 */
+	private void compact() {
+		if (symbolTable.size() <= 2 * liveNames) {
+			return;
+		}
+		final BitSet names = new BitSet(symbolTable.size());
+		for (CachedArchive archive : archives.values()) {
+			archive.mark(names);
+		}
+		liveNames = names.cardinality();
+		if (symbolTable.size() > 2 * liveNames) {
+			symbolTable = new SymbolTable();
+			for (Map.Entry<String, CachedArchive> entry : archives.entrySet()) {
+				entry.setValue(entry.getValue().intern(symbolTable));
+			}
+			liveNames = symbolTable.size();
+		}
+	}
+
+	/**
+	 * Removes all the cached JARs and drops the symbol table.
+	 */
+	public synchronized void clear() {
+		archives.clear();
+		weight = 0;
+		symbolTable = new SymbolTable();
+		liveNames = 0;
+	}
+
+	/**
+	 * Returns the number of cached JARs.
+	 * 
+	 * @return the number of JARs
+	 */
+	public synchronized int size() {
+		return archives.size();
+	}
+
+	/**
+	 * Returns the total number of cached classes and their dependencies.
+	 * 
+	 * @return the weight
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Returns the number of names in the symbol table of the cache.
+	 * 
+	 * @return the number of names
+	 */
+	public synchronized int getNameCount() {
+		return symbolTable.size();
+	}
+
+	/**
+	 * Returns the number of JARs found in the cache.
+	 * 
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of JARs not found in the cache or changed.
+	 * 
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of JARs evicted because of the capacity.
+	 * 
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ArchiveCache[archives=" + archives.size() + ", weight=" + weight + "/" + capacity + ", names="
+				+ symbolTable.size() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+	}
+
+	private static String getKey(final File file, final String configuration) throws IOException {
+		Validation.notNull(file, "File must be specified");
+		return file.getCanonicalPath() + "\n" + configuration;
+	}
+
+	private static long getWeight(final Map<String, Set<String>> classesWithDependencies) {
+		long weight = classesWithDependencies.size();
+		for (Set<String> dependencies : classesWithDependencies.values()) {
+			weight += dependencies.size();
+		}
+		return weight;
+	}
+
+	private static final class CachedArchive {
+
+		private final long size;
+		private final long lastModified;
+		private final Map<String, Set<String>> classesWithDependencies;
+		private final long weight;
+
+		private CachedArchive(final long size, final long lastModified, final SymbolTable symbolTable,
+				final Map<String, Set<String>> classesWithDependencies) {
+			this.size = size;
+			this.lastModified = lastModified;
+			final Map<String, Set<String>> internedClasses = new TreeMap<String, Set<String>>();
+			for (Map.Entry<String, Set<String>> entry : classesWithDependencies.entrySet()) {
+				internedClasses.put(entry.getKey(), ClassSet.of(symbolTable, entry.getValue()));
+			}
+			this.classesWithDependencies = Collections.unmodifiableMap(internedClasses);
+			this.weight = getWeight(classesWithDependencies);
+		}
+
+		/**
+		 * Returns the same archive with the dependencies interned in the
+		 * symbol table.
+		 */
+		private CachedArchive intern(final SymbolTable symbolTable) {
+			return new CachedArchive(size, lastModified, symbolTable, classesWithDependencies);
+		}
+
+		/**
+		 * Marks the IDs of the dependencies.
+		 */
+		private void mark(final BitSet names) {
+			for (Set<String> dependencies : classesWithDependencies.values()) {
+				for (int id : ((ClassSet) dependencies).toIdArray()) {
+					names.set(id);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.github.trohovsky.just.archive.ClassEntry;
+import com.github.trohovsky.just.model.ClassSet;
+import com.github.trohovsky.just.model.SymbolTable;
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * Persistent cache of dependencies of classes. Every archive has its own
+ * cache file containing the dependencies of its classes together with sizes
+ * and stamps of the class entries, so only the changed classes have to be
+ * parsed again.
+ * <p>
+ * The cache directory can be shared by multiple processes. A cache file is
+ * written to a temporary file and atomically moved to its place, so readers
+ * see either the old or the new file. Unreadable files are treated as
+ * missing.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class DependencyCache {
+
+	private static final int MAGIC = 0x4A555354; // JUST
+	private static final int VERSION = 1;
+	private static final String SUFFIX = ".deps";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final File directory;
+
+	/**
+	 * Creates a cache stored in the directory. The directory is created if it
+	 * does not exist.
+	 * 
+	 * @param directory
+	 *            the cache directory
+	 */
+	public DependencyCache(final File directory) {
+		Validation.notNull(directory, "Cache directory must be specified");
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the cached dependencies of the classes whose entries did not
+	 * change since they were cached.
+	 * 
+	 * @param path
+	 *            the path of the archive
+	 * @param configuration
+	 *            the description of the reading configuration, e.g. filters
+	 *            or an engine, the results for different configurations are
+	 *            cached separately
+	 * @param entries
+	 *            the current class entries of the archive
+	 * @param symbolTable
+	 *            the symbol table for the dependencies
+	 * @return the Map of unchanged classes and their dependencies, empty if
+	 *         nothing is cached
+	 */
+	public Map<String, Set<String>> read(final String path, final String configuration,
+			final List<ClassEntry> entries, final SymbolTable symbolTable) {
+		final Map<String, CachedClass> cachedClasses;
+		try {
+			cachedClasses = readFile(getFile(path, configuration), symbolTable);
+		} catch (IOException e) {
+			// missing, concurrently replaced or corrupted file
+			return Collections.emptyMap();
+		}
+
+		final Map<String, Set<String>> classesWithDependencies = new HashMap<String, Set<String>>();
+		for (ClassEntry entry : entries) {
+			final CachedClass cachedClass = cachedClasses.get(entry.getName());
+			if (cachedClass != null && cachedClass.size == entry.getSize() && cachedClass.stamp == entry.getStamp()
+					&& entry.getStamp() != -1) {
+				classesWithDependencies.put(entry.getName(), cachedClass.dependencies);
+			}
+		}
+		return classesWithDependencies;
+	}
+
+	/**
+	 * Stores dependencies of the classes of the archive, replacing the
+	 * previously cached ones.
+	 * 
+	 * @param path
+	 *            the path of the archive
+	 * @param configuration
+	 *            the description of the reading configuration
+	 * @param entries
+	 *            the class entries of the archive
+	 * @param classesWithDependencies
+	 *            the dependencies of the classes of the entries
+	 * @throws IOException
+	 */
+	public void write(final String path, final String configuration, final List<ClassEntry> entries,
+			final Map<String, Set<String>> classesWithDependencies) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+			throw new FileNotFoundException("Cache directory " + directory + " cannot be created");
+		}
+		final File file = getFile(path, configuration);
+		final Path temporaryFile = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+		try {
+			final OutputStream os = Files.newOutputStream(temporaryFile);
+			try {
+				writeFile(new DataOutputStream(new BufferedOutputStream(os)), entries, classesWithDependencies);
+			} finally {
+				os.close();
+			}
+			try {
+				Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	private File getFile(final String path, final String configuration) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update(new File(path).getCanonicalPath().getBytes(UTF_8));
+		digest.update((byte) 0);
+		digest.update(configuration.getBytes(UTF_8));
+
+		final StringBuilder name = new StringBuilder();
+		for (byte b : digest.digest()) {
+			name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return new File(directory, name.append(SUFFIX).toString());
+	}
+
+	/**
+	 * Format: magic, version, string table of class names, then for every
+	 * class the index of its name, size, stamp and indexes of its
+	 * dependencies.
+	 */
+	private static void writeFile(final DataOutputStream dos, final List<ClassEntry> entries,
+			final Map<String, Set<String>> classesWithDependencies) throws IOException {
+		final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		final List<String> strings = new ArrayList<String>();
+		for (ClassEntry entry : entries) {
+			index(entry.getName(), indexes, strings);
+			for (String dependency : classesWithDependencies.get(entry.getName())) {
+				index(dependency, indexes, strings);
+			}
+		}
+
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(strings.size());
+		for (String string : strings) {
+			dos.writeUTF(string);
+		}
+		dos.writeInt(entries.size());
+		for (ClassEntry entry : entries) {
+			final Set<String> dependencies = classesWithDependencies.get(entry.getName());
+			dos.writeInt(indexes.get(entry.getName()));
+			dos.writeLong(entry.getSize());
+			dos.writeLong(entry.getStamp());
+			dos.writeInt(dependencies.size());
+			for (String dependency : dependencies) {
+				dos.writeInt(indexes.get(dependency));
+			}
+		}
+		dos.flush();
+	}
+
+	private static void index(final String string, final Map<String, Integer> indexes, final List<String> strings) {
+		if (!indexes.containsKey(string)) {
+			indexes.put(string, strings.size());
+			strings.add(string);
+		}
+	}
+
+	/**
+	 * Reads the whole file before interning the names into the symbol table,
+	 * so a corrupted file does not add names to it. The counts are checked
+	 * against the length of the file before allocating arrays for them.
+	 */
+	private static Map<String, CachedClass> readFile(final File file, final SymbolTable symbolTable)
+			throws IOException {
+		final long length = file.length();
+		final InputStream is = Files.newInputStream(file.toPath());
+		final String[] strings;
+		final int[] names;
+		final long[] sizes;
+		final long[] stamps;
+		final int[][] dependencies;
+		try {
+			final DataInputStream dis = new DataInputStream(new BufferedInputStream(is));
+			if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+				throw new IOException("Unsupported cache file " + file);
+			}
+			// a string takes at least 2 bytes, a class 24 bytes and a dependency 4 bytes
+			strings = new String[readCount(dis, length / 2, file)];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = dis.readUTF();
+			}
+			final int classCount = readCount(dis, length / 24, file);
+			names = new int[classCount];
+			sizes = new long[classCount];
+			stamps = new long[classCount];
+			dependencies = new int[classCount][];
+			for (int i = 0; i < classCount; i++) {
+				names[i] = readIndex(dis, strings.length, file);
+				sizes[i] = dis.readLong();
+				stamps[i] = dis.readLong();
+				dependencies[i] = new int[readCount(dis, length / 4, file)];
+				for (int j = 0; j < dependencies[i].length; j++) {
+					dependencies[i][j] = readIndex(dis, strings.length, file);
+				}
+			}
+			if (dis.read() != -1) {
+				throw new EOFException("Trailing data in cache file " + file);
+			}
+		} finally {
+			is.close();
+		}
+
+		final int[] ids = new int[strings.length];
+		for (int i = 0; i < strings.length; i++) {
+			ids[i] = symbolTable.intern(strings[i]);
+		}
+		final Map<String, CachedClass> cachedClasses = new TreeMap<String, CachedClass>();
+		for (int i = 0; i < names.length; i++) {
+			final int[] dependencyIds = dependencies[i];
+			for (int j = 0; j < dependencyIds.length; j++) {
+				dependencyIds[j] = ids[dependencyIds[j]];
+			}
+			final ClassSet classSet = ClassSet.ofIds(symbolTable, dependencyIds, dependencyIds.length);
+			cachedClasses.put(strings[names[i]], new CachedClass(sizes[i], stamps[i], classSet));
+		}
+		return cachedClasses;
+	}
+
+	private static int readCount(final DataInputStream dis, final long limit, final File file) throws IOException {
+		final int count = dis.readInt();
+		if (count < 0 || count > limit) {
+			throw new IOException("Corrupted cache file " + file);
+		}
+		return count;
+	}
+
+	private static int readIndex(final DataInputStream dis, final int count, final File file) throws IOException {
+		final int index = dis.readInt();
+		if (index < 0 || index >= count) {
+			throw new IOException("Corrupted cache file " + file);
+		}
+		return index;
+	}
+
+	private static final class CachedClass {
+
+		private final long size;
+		private final long stamp;
+		private final ClassSet dependencies;
+
+		CachedClass(final long size, final long stamp, final ClassSet dependencies) {
+			this.size = size;
+			this.stamp = stamp;
+			this.dependencies = dependencies;
+		}
+	}
+}
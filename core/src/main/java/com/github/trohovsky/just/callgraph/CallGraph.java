@@ -0,0 +1,489 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.callgraph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.github.trohovsky.just.model.SymbolTable;
+
+/**
+ * Immutable graph of members of classes and the class hierarchy needed to
+ * resolve calls. Classes are IDs of the class {@link SymbolTable}, methods
+ * and fields are IDs of a {@link MemberTable}. The edges lead from methods to
+ * the members and classes they refer to and are stored in the compressed
+ * sparse row form: the edges of all methods are kept in one array ordered by
+ * the methods and an array of offsets tells where the edges of a method
+ * start. Each edge holds the ID of its target and the kind of the reference.
+ * Interfaces and declared members of the classes are stored in the same
+ * form.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class CallGraph {
+
+	/** Kind of an edge to a method called by invokestatic. */
+	public static final int INVOKE_STATIC = 0;
+	/** Kind of an edge to a method called by invokespecial. */
+	public static final int INVOKE_SPECIAL = 1;
+	/** Kind of an edge to a method called by invokevirtual. */
+	public static final int INVOKE_VIRTUAL = 2;
+	/** Kind of an edge to a method called by invokeinterface. */
+	public static final int INVOKE_INTERFACE = 3;
+	/** Kind of an edge to an accessed field. */
+	public static final int FIELD = 4;
+	/** Kind of an edge to a class, the target is an ID of the class symbol table. */
+	public static final int CLASS = 5;
+
+	private static final int KIND_BITS = 3;
+	private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+	private final MemberTable members;
+	private final BitSet classes;
+	private final int[] classAccess;
+	private final int[] superClasses;
+	private final int[] interfaceOffsets;
+	private final int[] interfaces;
+	private final int[] declaredOffsets;
+	private final int[] declared;
+	private final BitSet declaredMembers;
+	private final int[] memberAccess;
+	private final int[] edgeOffsets;
+	private final int[] edges;
+
+	private CallGraph(final Builder builder, final int classCount, final int memberCount) {
+		this.members = builder.members;
+		this.classes = builder.classes;
+		this.classAccess = Arrays.copyOf(builder.classAccess, classCount);
+		this.superClasses = Arrays.copyOf(builder.superClasses, classCount);
+		this.interfaceOffsets = new int[classCount + 1];
+		this.interfaces = group(builder.interfaceSources, builder.interfaceTargets, builder.interfaceCount,
+				interfaceOffsets);
+		this.declaredOffsets = new int[classCount + 1];
+		this.declared = group(builder.declaredOwners, builder.declaredMembers, builder.declaredCount,
+				declaredOffsets);
+		this.declaredMembers = builder.declaredSet;
+		this.memberAccess = Arrays.copyOf(builder.memberAccess, memberCount);
+		this.edgeOffsets = new int[memberCount + 1];
+		this.edges = group(builder.edgeSources, builder.edgeTargets, builder.edgeCount, edgeOffsets);
+	}
+
+	/**
+	 * Sorts the values by their keys using counting sort, fills the offsets
+	 * of the keys and returns the sorted values.
+	 */
+	private static int[] group(final int[] keys, final int[] values, final int size, final int[] offsets) {
+		for (int i = 0; i < size; i++) {
+			offsets[keys[i] + 1]++;
+		}
+		for (int key = 1; key < offsets.length; key++) {
+			offsets[key] += offsets[key - 1];
+		}
+		final int[] positions = Arrays.copyOf(offsets, offsets.length - 1);
+		final int[] grouped = new int[size];
+		for (int i = 0; i < size; i++) {
+			grouped[positions[keys[i]]++] = values[i];
+		}
+		return grouped;
+	}
+
+	/**
+	 * Returns the table of the members.
+	 * 
+	 * @return the member table
+	 */
+	public MemberTable getMembers() {
+		return members;
+	}
+
+	/**
+	 * Returns the symbol table of the classes.
+	 * 
+	 * @return the symbol table
+	 */
+	public SymbolTable getClassTable() {
+		return members.getClasses();
+	}
+
+	/**
+	 * Returns the number of IDs of classes covered by the graph.
+	 * 
+	 * @return the number of classes
+	 */
+	public int getClassCount() {
+		return superClasses.length;
+	}
+
+	/**
+	 * Returns the number of IDs of members covered by the graph.
+	 * 
+	 * @return the number of members
+	 */
+	public int getMemberCount() {
+		return memberAccess.length;
+	}
+
+	/**
+	 * Tells whether the class was read, the classes that were only referred
+	 * to are outside of the graph.
+	 * 
+	 * @param clazz
+	 *            the ID of the class
+	 * @return true if the class was read
+	 */
+	public boolean isClass(final int clazz) {
+		return classes.get(clazz);
+	}
+
+	/**
+	 * Returns the access flags of the read class.
+	 * 
+	 * @param clazz
+	 *            the ID of the class
+	 * @return the access flags
+	 */
+	public int getClassAccess(final int clazz) {
+		return clazz < classAccess.length ? classAccess[clazz] : 0;
+	}
+
+	/**
+	 * Returns the super class of the read class.
+	 * 
+	 * @param clazz
+	 *            the ID of the class
+	 * @return the ID of the super class, -1 if the class has none or was not
+	 *         read
+	 */
+	public int getSuperClass(final int clazz) {
+		return clazz < superClasses.length && classes.get(clazz) ? superClasses[clazz] : -1;
+	}
+
+	/**
+	 * Returns the interfaces directly implemented by the read class.
+	 * 
+	 * @param clazz
+	 *            the ID of the class
+	 * @return the IDs of the interfaces
+	 */
+	public int[] getInterfaces(final int clazz) {
+		return clazz < superClasses.length
+				? Arrays.copyOfRange(interfaces, interfaceOffsets[clazz], interfaceOffsets[clazz + 1]) : new int[0];
+	}
+
+	int getInterfaceStart(final int clazz) {
+		return interfaceOffsets[clazz];
+	}
+
+	int getInterfaceEnd(final int clazz) {
+		return interfaceOffsets[clazz + 1];
+	}
+
+	int getInterface(final int index) {
+		return interfaces[index];
+	}
+
+	/**
+	 * Returns the members declared by the read class.
+	 * 
+	 * @param clazz
+	 *            the ID of the class
+	 * @return the IDs of the members
+	 */
+	public int[] getDeclaredMembers(final int clazz) {
+		return clazz < superClasses.length
+				? Arrays.copyOfRange(declared, declaredOffsets[clazz], declaredOffsets[clazz + 1]) : new int[0];
+	}
+
+	int getDeclaredStart(final int clazz) {
+		return declaredOffsets[clazz];
+	}
+
+	int getDeclaredEnd(final int clazz) {
+		return declaredOffsets[clazz + 1];
+	}
+
+	int getDeclared(final int index) {
+		return declared[index];
+	}
+
+	/**
+	 * Tells whether the member is declared by a read class.
+	 * 
+	 * @param member
+	 *            the ID of the member
+	 * @return true if the member is declared
+	 */
+	public boolean isDeclared(final int member) {
+		return declaredMembers.get(member);
+	}
+
+	/**
+	 * Tells whether the member is a method.
+	 * 
+	 * @param member
+	 *            the ID of the member
+	 * @return true if the member is a method, false if it is a field
+	 */
+	public boolean isMethod(final int member) {
+		return members.getStrings().name(members.getDescriptor(member)).charAt(0) == '(';
+	}
+
+	/**
+	 * Returns the access flags of the declared member.
+	 * 
+	 * @param member
+	 *            the ID of the member
+	 * @return the access flags
+	 */
+	public int getMemberAccess(final int member) {
+		return memberAccess[member];
+	}
+
+	/**
+	 * Returns the number of edges.
+	 * 
+	 * @return the number of edges
+	 */
+	public int getEdgeCount() {
+		return edges.length;
+	}
+
+	/**
+	 * Returns the index of the first out-edge of the method.
+	 * 
+	 * @param method
+	 *            the ID of the method
+	 * @return the index of the first edge
+	 */
+	public int getEdgeStart(final int method) {
+		return edgeOffsets[method];
+	}
+
+	/**
+	 * Returns the index after the last out-edge of the method.
+	 * 
+	 * @param method
+	 *            the ID of the method
+	 * @return the index after the last edge
+	 */
+	public int getEdgeEnd(final int method) {
+		return edgeOffsets[method + 1];
+	}
+
+	/**
+	 * Returns the target of the edge, an ID of a member or an ID of a class
+	 * if the kind of the edge is {@link #CLASS}.
+	 * 
+	 * @param edge
+	 *            the index of the edge
+	 * @return the target
+	 */
+	public int getTarget(final int edge) {
+		return edges[edge] >>> KIND_BITS;
+	}
+
+	/**
+	 * Returns the kind of the edge, one of the constants of this class.
+	 * 
+	 * @param edge
+	 *            the index of the edge
+	 * @return the kind
+	 */
+	public int getKind(final int edge) {
+		return edges[edge] & KIND_MASK;
+	}
+
+	/**
+	 * Builder of a call graph. Classes are added first, then their members
+	 * and the edges of the methods. If a class is added more than once, only
+	 * the first one is kept like on a class path.
+	 * <p>
+	 * The builder is not thread-safe.
+	 */
+	public static final class Builder {
+
+		private final MemberTable members;
+		private final BitSet classes = new BitSet();
+		private int[] classAccess = new int[64];
+		private int[] superClasses = new int[64];
+		private int[] interfaceSources = new int[64];
+		private int[] interfaceTargets = new int[64];
+		private int interfaceCount;
+		private int[] declaredOwners = new int[256];
+		private int[] declaredMembers = new int[256];
+		private int declaredCount;
+		private final BitSet declaredSet = new BitSet();
+		private int[] memberAccess = new int[256];
+		private int[] edgeSources = new int[1024];
+		private int[] edgeTargets = new int[1024];
+		private int edgeCount;
+
+		/**
+		 * Creates a builder of a call graph.
+		 * 
+		 * @param members
+		 *            the table of the members
+		 */
+		public Builder(final MemberTable members) {
+			this.members = members;
+		}
+
+		/**
+		 * Returns the table of the members.
+		 * 
+		 * @return the member table
+		 */
+		public MemberTable getMembers() {
+			return members;
+		}
+
+		/**
+		 * Tells whether the class was already added.
+		 * 
+		 * @param className
+		 *            the internal name of the class
+		 * @return true if the class was added
+		 */
+		public boolean containsClass(final String className) {
+			final int clazz = members.getClasses().get(className);
+			return clazz >= 0 && classes.get(clazz);
+		}
+
+		/**
+		 * Adds the class.
+		 * 
+		 * @param className
+		 *            the internal name of the class
+		 * @param access
+		 *            the access flags of the class
+		 * @param superName
+		 *            the internal name of the super class, null if there is
+		 *            none
+		 * @param interfaceNames
+		 *            the internal names of the interfaces
+		 * @return the ID of the class, -1 if the class was already added
+		 */
+		public int addClass(final String className, final int access, final String superName,
+				final String[] interfaceNames) {
+			final SymbolTable classTable = members.getClasses();
+			final int clazz = classTable.intern(className);
+			if (classes.get(clazz)) {
+				return -1;
+			}
+			classes.set(clazz);
+			if (clazz >= superClasses.length) {
+				final int length = Math.max(clazz + 1, superClasses.length * 2);
+				classAccess = Arrays.copyOf(classAccess, length);
+				superClasses = Arrays.copyOf(superClasses, length);
+			}
+			classAccess[clazz] = access;
+			superClasses[clazz] = superName != null ? classTable.intern(superName) : -1;
+			if (interfaceNames != null) {
+				for (String interfaceName : interfaceNames) {
+					if (interfaceCount == interfaceSources.length) {
+						interfaceSources = Arrays.copyOf(interfaceSources, interfaceCount * 2);
+						interfaceTargets = Arrays.copyOf(interfaceTargets, interfaceCount * 2);
+					}
+					interfaceSources[interfaceCount] = clazz;
+					interfaceTargets[interfaceCount++] = classTable.intern(interfaceName);
+				}
+			}
+			return clazz;
+		}
+
+		/**
+		 * Adds the member declared by the class.
+		 * 
+		 * @param clazz
+		 *            the ID of the class
+		 * @param access
+		 *            the access flags of the member
+		 * @param name
+		 *            the name of the member
+		 * @param descriptor
+		 *            the descriptor of the member
+		 * @return the ID of the member
+		 */
+		public int addMember(final int clazz, final int access, final String name, final String descriptor) {
+			final int member = members.intern(clazz, members.getStrings().intern(name),
+					members.getStrings().intern(descriptor));
+			if (declaredSet.get(member)) {
+				return member;
+			}
+			declaredSet.set(member);
+			if (declaredCount == declaredOwners.length) {
+				declaredOwners = Arrays.copyOf(declaredOwners, declaredCount * 2);
+				declaredMembers = Arrays.copyOf(declaredMembers, declaredCount * 2);
+			}
+			declaredOwners[declaredCount] = clazz;
+			declaredMembers[declaredCount++] = member;
+			if (member >= memberAccess.length) {
+				memberAccess = Arrays.copyOf(memberAccess, Math.max(member + 1, memberAccess.length * 2));
+			}
+			memberAccess[member] = access;
+			return member;
+		}
+
+		/**
+		 * Adds the edge from the method to the member.
+		 * 
+		 * @param method
+		 *            the ID of the method
+		 * @param kind
+		 *            the kind of the edge
+		 * @param owner
+		 *            the internal name of the owner class of the member
+		 * @param name
+		 *            the name of the member
+		 * @param descriptor
+		 *            the descriptor of the member
+		 */
+		public void addEdge(final int method, final int kind, final String owner, final String name,
+				final String descriptor) {
+			addEdge(method, kind, members.intern(owner, name, descriptor));
+		}
+
+		/**
+		 * Adds the edge from the method to the class.
+		 * 
+		 * @param method
+		 *            the ID of the method
+		 * @param className
+		 *            the internal name of the class
+		 */
+		public void addClassEdge(final int method, final String className) {
+			addEdge(method, CLASS, members.getClasses().intern(className));
+		}
+
+		private void addEdge(final int method, final int kind, final int target) {
+			if (edgeCount == edgeSources.length) {
+				edgeSources = Arrays.copyOf(edgeSources, edgeCount * 2);
+				edgeTargets = Arrays.copyOf(edgeTargets, edgeCount * 2);
+			}
+			edgeSources[edgeCount] = method;
+			edgeTargets[edgeCount++] = target << KIND_BITS | kind;
+		}
+
+		/**
+		 * Builds the graph.
+		 * 
+		 * @return the graph
+		 */
+		public CallGraph build() {
+			return new CallGraph(this, members.getClasses().size(), members.size());
+		}
+	}
+}
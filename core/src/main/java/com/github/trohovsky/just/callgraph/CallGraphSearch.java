@@ -0,0 +1,345 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.callgraph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.objectweb.asm.Opcodes;
+
+import com.github.trohovsky.just.model.SymbolTable;
+
+/**
+ * Worklist search for members reachable in a {@link CallGraph}. Virtual and
+ * interface calls are resolved by class hierarchy analysis: a call reaches
+ * the resolved method and all the methods overriding it in subtypes of the
+ * owner of the called method. A class is live once any of its members is
+ * reached or it is instantiated. The static initializer of a live class is
+ * reached and so are its public and protected methods that may override
+ * methods of classes outside of the graph, e.g. {@code Runnable.run()},
+ * because they may be called back from there.
+ * <p>
+ * All the state is kept in primitive arrays and bit sets indexed by IDs of
+ * the classes and members.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class CallGraphSearch {
+
+	private static final byte UNKNOWN = 0;
+	private static final byte INTERNAL = 1;
+	private static final byte OBJECT = 2;
+	private static final byte EXTERNAL = 3;
+
+	private static final String[][] OBJECT_METHODS = { { "toString", "()Ljava/lang/String;" },
+			{ "equals", "(Ljava/lang/Object;)Z" }, { "hashCode", "()I" }, { "finalize", "()V" },
+			{ "clone", "()Ljava/lang/Object;" } };
+
+	private final CallGraph graph;
+	private final MemberTable members;
+	private final BitSet reached = new BitSet();
+	private final BitSet liveClasses = new BitSet();
+	private final BitSet dispatched = new BitSet();
+	private final int[] subtypeOffsets;
+	private final int[] subtypes;
+	private final byte[] supertypes;
+	private final int[] visited;
+	private int stamp;
+	private int[] worklist = new int[256];
+	private int worklistSize;
+	private int[] stack = new int[64];
+	private final int object;
+	private final int clinit;
+	private final int noArguments;
+	private final long[] objectMethods;
+
+	private CallGraphSearch(final CallGraph graph) {
+		this.graph = graph;
+		this.members = graph.getMembers();
+		final int classCount = graph.getClassCount();
+		this.supertypes = new byte[classCount];
+		this.visited = new int[classCount];
+		this.subtypeOffsets = new int[classCount + 1];
+		this.subtypes = subtypes(graph, subtypeOffsets);
+		final SymbolTable strings = members.getStrings();
+		this.object = members.getClasses().get("java/lang/Object");
+		this.clinit = strings.get("<clinit>");
+		this.noArguments = strings.get("()V");
+		this.objectMethods = new long[OBJECT_METHODS.length];
+		for (int i = 0; i < OBJECT_METHODS.length; i++) {
+			objectMethods[i] = pair(strings.get(OBJECT_METHODS[i][0]), strings.get(OBJECT_METHODS[i][1]));
+		}
+	}
+
+	/**
+	 * Searches for the members reachable from the roots.
+	 * 
+	 * @param graph
+	 *            the call graph
+	 * @param rootMembers
+	 *            the IDs of members that are roots of the search
+	 * @param rootClasses
+	 *            the IDs of classes that are live from the start
+	 * @return the IDs of the reachable members declared by classes of the
+	 *         graph
+	 */
+	public static BitSet reachableFrom(final CallGraph graph, final int[] rootMembers, final int[] rootClasses) {
+		final CallGraphSearch search = new CallGraphSearch(graph);
+		for (int clazz : rootClasses) {
+			search.markLive(clazz);
+		}
+		for (int member : rootMembers) {
+			search.reach(member);
+		}
+		search.run();
+		return search.reached;
+	}
+
+	/**
+	 * Creates the direct subtypes of all the classes in the compressed sparse
+	 * row form.
+	 */
+	private static int[] subtypes(final CallGraph graph, final int[] offsets) {
+		final int classCount = graph.getClassCount();
+		for (int clazz = 0; clazz < classCount; clazz++) {
+			if (graph.isClass(clazz)) {
+				final int superClass = graph.getSuperClass(clazz);
+				if (superClass >= 0) {
+					offsets[superClass + 1]++;
+				}
+				for (int i = graph.getInterfaceStart(clazz); i < graph.getInterfaceEnd(clazz); i++) {
+					offsets[graph.getInterface(i) + 1]++;
+				}
+			}
+		}
+		for (int clazz = 1; clazz <= classCount; clazz++) {
+			offsets[clazz] += offsets[clazz - 1];
+		}
+		final int[] positions = Arrays.copyOf(offsets, classCount);
+		final int[] subtypes = new int[offsets[classCount]];
+		for (int clazz = 0; clazz < classCount; clazz++) {
+			if (graph.isClass(clazz)) {
+				final int superClass = graph.getSuperClass(clazz);
+				if (superClass >= 0) {
+					subtypes[positions[superClass]++] = clazz;
+				}
+				for (int i = graph.getInterfaceStart(clazz); i < graph.getInterfaceEnd(clazz); i++) {
+					subtypes[positions[graph.getInterface(i)]++] = clazz;
+				}
+			}
+		}
+		return subtypes;
+	}
+
+	private void run() {
+		while (worklistSize > 0) {
+			final int method = worklist[--worklistSize];
+			for (int edge = graph.getEdgeStart(method); edge < graph.getEdgeEnd(method); edge++) {
+				final int target = graph.getTarget(edge);
+				switch (graph.getKind(edge)) {
+				case CallGraph.CLASS:
+					markLive(target);
+					break;
+				case CallGraph.FIELD:
+				case CallGraph.INVOKE_STATIC:
+				case CallGraph.INVOKE_SPECIAL:
+					markLive(members.getOwner(target));
+					reach(resolve(target));
+					break;
+				default:
+					reach(resolve(target));
+					dispatch(target);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks the member as reached and adds it to the worklist if it is a
+	 * method declared by a class of the graph.
+	 */
+	private void reach(final int member) {
+		if (member < 0 || member >= graph.getMemberCount() || !graph.isDeclared(member) || reached.get(member)) {
+			return;
+		}
+		reached.set(member);
+		if (graph.isMethod(member)) {
+			if (worklistSize == worklist.length) {
+				worklist = Arrays.copyOf(worklist, worklistSize * 2);
+			}
+			worklist[worklistSize++] = member;
+		}
+		markLive(members.getOwner(member));
+	}
+
+	/**
+	 * Marks the class and its super classes as live.
+	 */
+	private void markLive(final int clazz) {
+		for (int live = clazz; live >= 0 && live < graph.getClassCount() && !liveClasses.get(live); live = graph
+				.getSuperClass(live)) {
+			liveClasses.set(live);
+			if (!graph.isClass(live)) {
+				return;
+			}
+			if (clinit >= 0 && noArguments >= 0) {
+				reach(members.get(live, clinit, noArguments));
+			}
+			final byte kind = supertypes(live);
+			if (kind != INTERNAL) {
+				for (int i = graph.getDeclaredStart(live); i < graph.getDeclaredEnd(live); i++) {
+					final int member = graph.getDeclared(i);
+					if (overridesExternal(member, kind)) {
+						reach(member);
+					}
+				}
+			}
+		}
+	}
+
+	private boolean overridesExternal(final int member, final byte kind) {
+		final int access = graph.getMemberAccess(member);
+		if ((access & Opcodes.ACC_STATIC) != 0 || (access & (Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED)) == 0
+				|| !graph.isMethod(member) || members.getStrings().name(members.getName(member)).charAt(0) == '<') {
+			return false;
+		}
+		if (kind == EXTERNAL) {
+			return true;
+		}
+		final long method = pair(members.getName(member), members.getDescriptor(member));
+		for (long objectMethod : objectMethods) {
+			if (objectMethod == method) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether the class has supertypes outside of the graph: none of
+	 * them, only java.lang.Object, or others.
+	 */
+	private byte supertypes(final int clazz) {
+		if (!graph.isClass(clazz)) {
+			return clazz == object ? OBJECT : EXTERNAL;
+		}
+		if (supertypes[clazz] == UNKNOWN) {
+			// guards against cycles of invalid class files
+			supertypes[clazz] = INTERNAL;
+			byte kind = INTERNAL;
+			final int superClass = graph.getSuperClass(clazz);
+			if (superClass >= 0) {
+				kind = (byte) Math.max(kind, supertypes(superClass));
+			}
+			for (int i = graph.getInterfaceStart(clazz); i < graph.getInterfaceEnd(clazz); i++) {
+				kind = (byte) Math.max(kind, supertypes(graph.getInterface(i)));
+			}
+			supertypes[clazz] = kind;
+		}
+		return supertypes[clazz];
+	}
+
+	/**
+	 * Resolves the referenced member to the declared one, searching the owner
+	 * class and its super classes first and then their interfaces.
+	 */
+	private int resolve(final int member) {
+		final int name = members.getName(member);
+		final int descriptor = members.getDescriptor(member);
+		int clazz = members.getOwner(member);
+		for (; clazz >= 0 && graph.isClass(clazz); clazz = graph.getSuperClass(clazz)) {
+			final int declared = members.get(clazz, name, descriptor);
+			if (declared >= 0 && graph.isDeclared(declared)) {
+				return declared;
+			}
+		}
+		stamp++;
+		int stackSize = 0;
+		for (clazz = members.getOwner(member); clazz >= 0 && graph.isClass(clazz); clazz = graph
+				.getSuperClass(clazz)) {
+			stackSize = pushInterfaces(clazz, stackSize);
+			while (stackSize > 0) {
+				final int type = stack[--stackSize];
+				final int declared = members.get(type, name, descriptor);
+				if (declared >= 0 && graph.isDeclared(declared)) {
+					return declared;
+				}
+				stackSize = pushInterfaces(type, stackSize);
+			}
+		}
+		return -1;
+	}
+
+	private int pushInterfaces(final int clazz, int stackSize) {
+		if (!graph.isClass(clazz)) {
+			return stackSize;
+		}
+		for (int i = graph.getInterfaceStart(clazz); i < graph.getInterfaceEnd(clazz); i++) {
+			stackSize = push(graph.getInterface(i), stackSize);
+		}
+		return stackSize;
+	}
+
+	private int push(final int clazz, final int stackSize) {
+		if (visited[clazz] == stamp) {
+			return stackSize;
+		}
+		visited[clazz] = stamp;
+		if (stackSize == stack.length) {
+			stack = Arrays.copyOf(stack, stackSize * 2);
+		}
+		stack[stackSize] = clazz;
+		return stackSize + 1;
+	}
+
+	/**
+	 * Reaches the methods overriding the called method in all the subtypes
+	 * of its owner, once per called method.
+	 */
+	private void dispatch(final int method) {
+		if (dispatched.get(method)) {
+			return;
+		}
+		dispatched.set(method);
+		final int owner = members.getOwner(method);
+		if (owner >= graph.getClassCount()) {
+			return;
+		}
+		final int name = members.getName(method);
+		final int descriptor = members.getDescriptor(method);
+		stamp++;
+		visited[owner] = stamp;
+		int stackSize = 0;
+		for (int i = subtypeOffsets[owner]; i < subtypeOffsets[owner + 1]; i++) {
+			stackSize = push(subtypes[i], stackSize);
+		}
+		while (stackSize > 0) {
+			final int subtype = stack[--stackSize];
+			final int overriding = members.get(subtype, name, descriptor);
+			if (overriding >= 0
+					&& (graph.getMemberAccess(overriding) & (Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE)) == 0) {
+				reach(overriding);
+			}
+			for (int i = subtypeOffsets[subtype]; i < subtypeOffsets[subtype + 1]; i++) {
+				stackSize = push(subtypes[i], stackSize);
+			}
+		}
+	}
+
+	private static long pair(final int first, final int second) {
+		return (long) first << 32 | second & 0xFFFFFFFFL;
+	}
+}
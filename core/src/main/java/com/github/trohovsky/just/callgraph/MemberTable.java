@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.callgraph;
+
+import java.util.Arrays;
+
+import com.github.trohovsky.just.model.SymbolTable;
+
+/**
+ * Table assigning dense int IDs to members of classes, i.e. methods and
+ * fields. A member is identified by IDs of its owner class, name and
+ * descriptor, so the Strings of names and descriptors are shared by all the
+ * members. The members are stored in primitive arrays and found through an
+ * open addressing hash table.
+ * <p>
+ * The table is not thread-safe.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class MemberTable {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int EMPTY = -1;
+
+	private final SymbolTable classes;
+	private final SymbolTable strings;
+	private int[] owners = new int[INITIAL_CAPACITY];
+	private int[] names = new int[INITIAL_CAPACITY];
+	private int[] descriptors = new int[INITIAL_CAPACITY];
+	private int[] hashTable = newHashTable(INITIAL_CAPACITY * 2);
+	private int size;
+
+	/**
+	 * Creates an empty table.
+	 * 
+	 * @param classes
+	 *            the symbol table of owner classes
+	 * @param strings
+	 *            the symbol table of names and descriptors
+	 */
+	public MemberTable(final SymbolTable classes, final SymbolTable strings) {
+		this.classes = classes;
+		this.strings = strings;
+	}
+
+	/**
+	 * Returns the ID of the member, assigns a new one if the member is not in
+	 * the table yet.
+	 * 
+	 * @param owner
+	 *            the internal name of the owner class
+	 * @param name
+	 *            the name of the member
+	 * @param descriptor
+	 *            the descriptor of the member
+	 * @return the ID
+	 */
+	public int intern(final String owner, final String name, final String descriptor) {
+		return intern(classes.intern(owner), strings.intern(name), strings.intern(descriptor));
+	}
+
+	int intern(final int owner, final int name, final int descriptor) {
+		int slot = slot(owner, name, descriptor);
+		while (hashTable[slot] != EMPTY) {
+			final int id = hashTable[slot];
+			if (owners[id] == owner && names[id] == name && descriptors[id] == descriptor) {
+				return id;
+			}
+			slot = (slot + 1) & (hashTable.length - 1);
+		}
+		if (size == owners.length) {
+			owners = Arrays.copyOf(owners, size * 2);
+			names = Arrays.copyOf(names, size * 2);
+			descriptors = Arrays.copyOf(descriptors, size * 2);
+		}
+		owners[size] = owner;
+		names[size] = name;
+		descriptors[size] = descriptor;
+		hashTable[slot] = size;
+		if (++size * 2 > hashTable.length) {
+			rehash();
+		}
+		return size - 1;
+	}
+
+	/**
+	 * Returns the ID of the member without interning it.
+	 * 
+	 * @param owner
+	 *            the ID of the owner class
+	 * @param name
+	 *            the ID of the name
+	 * @param descriptor
+	 *            the ID of the descriptor
+	 * @return the ID, -1 if the member is not in the table
+	 */
+	public int get(final int owner, final int name, final int descriptor) {
+		int slot = slot(owner, name, descriptor);
+		while (hashTable[slot] != EMPTY) {
+			final int id = hashTable[slot];
+			if (owners[id] == owner && names[id] == name && descriptors[id] == descriptor) {
+				return id;
+			}
+			slot = (slot + 1) & (hashTable.length - 1);
+		}
+		return EMPTY;
+	}
+
+	private int slot(final int owner, final int name, final int descriptor) {
+		int hash = (owner * 31 + name) * 31 + descriptor;
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		return hash & (hashTable.length - 1);
+	}
+
+	private void rehash() {
+		hashTable = newHashTable(hashTable.length * 2);
+		for (int id = 0; id < size; id++) {
+			int slot = slot(owners[id], names[id], descriptors[id]);
+			while (hashTable[slot] != EMPTY) {
+				slot = (slot + 1) & (hashTable.length - 1);
+			}
+			hashTable[slot] = id;
+		}
+	}
+
+	private static int[] newHashTable(final int capacity) {
+		final int[] hashTable = new int[capacity];
+		Arrays.fill(hashTable, EMPTY);
+		return hashTable;
+	}
+
+	/**
+	 * Returns the symbol table of owner classes.
+	 * 
+	 * @return the symbol table
+	 */
+	public SymbolTable getClasses() {
+		return classes;
+	}
+
+	/**
+	 * Returns the symbol table of names and descriptors.
+	 * 
+	 * @return the symbol table
+	 */
+	public SymbolTable getStrings() {
+		return strings;
+	}
+
+	/**
+	 * Returns the number of members in the table.
+	 * 
+	 * @return the number of members
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the ID of the owner class of the member.
+	 * 
+	 * @param member
+	 *            the ID of the member
+	 * @return the ID of the owner class
+	 */
+	public int getOwner(final int member) {
+		return owners[member];
+	}
+
+	/**
+	 * Returns the ID of the name of the member.
+	 * 
+	 * @param member
+	 *            the ID of the member
+	 * @return the ID of the name
+	 */
+	public int getName(final int member) {
+		return names[member];
+	}
+
+	/**
+	 * Returns the ID of the descriptor of the member.
+	 * 
+	 * @param member
+	 *            the ID of the member
+	 * @return the ID of the descriptor
+	 */
+	public int getDescriptor(final int member) {
+		return descriptors[member];
+	}
+
+	/**
+	 * Returns the member as a String, e.g. "java/lang/Object.toString()Ljava/lang/String;" for a method or
+	 * "java/lang/System.out:Ljava/io/PrintStream;" for a field.
+	 * 
+	 * @param member
+	 *            the ID of the member
+	 * @return the String of the member
+	 */
+	public String toString(final int member) {
+		final String descriptor = strings.name(descriptors[member]);
+		return classes.name(owners[member]) + '.' + strings.name(names[member])
+				+ (descriptor.charAt(0) == '(' ? "" : ":") + descriptor;
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * Index of classes and their dependencies written by {@link IndexWriter} and
+ * mapped to memory. The queries read the mapped file directly, nothing but
+ * the names of the archives is loaded onto the heap, so even a large index is
+ * opened instantly and only the pages touched by the queries are read.
+ * <p>
+ * Format, version 1, big-endian:
+ * <ul>
+ * <li>header of 64 bytes: magic "JIDX", version, counts of nodes, classes,
+ * edges and archives, size of the file</li>
+ * <li>string table: offsets of the names of the nodes as longs followed by
+ * the names in UTF-8 at the end of the file, the nodes are numbered in the
+ * order of the names, so a name is found by binary search</li>
+ * <li>origin: the archive of every node, -1 for nodes that are only
+ * dependencies</li>
+ * <li>dependencies and dependents: offsets and sorted targets of the edges in
+ * the compressed sparse row form, see
+ * {@link com.github.trohovsky.just.model.DependencyGraph}</li>
+ * <li>classes of the archives: offsets and sorted classes</li>
+ * <li>names of the archives: offsets and the names in UTF-8</li>
+ * </ul>
+ * The index is immutable and can be queried by multiple threads. The file is
+ * unmapped when the index is garbage collected.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class DependencyIndex {
+
+	static final int MAGIC = 0x4A494458; // JIDX
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+
+	private final MappedFile file;
+	private final int nodeCount;
+	private final int classCount;
+	private final int edgeCount;
+	private final List<String> archives;
+	private final long origins;
+	private final long dependencyOffsets;
+	private final long dependencyTargets;
+	private final long dependentOffsets;
+	private final long dependentSources;
+	private final long archiveClassOffsets;
+	private final long archiveClasses;
+	private final long strings;
+
+	private DependencyIndex(final MappedFile file, final String name) throws IOException {
+		this.file = file;
+		if (file.size() < HEADER_SIZE || file.getInt(0) != MAGIC || file.getInt(4) != VERSION) {
+			throw new IOException("Unsupported index file " + name);
+		}
+		nodeCount = file.getInt(8);
+		classCount = file.getInt(12);
+		edgeCount = file.getInt(16);
+		final int archiveCount = file.getInt(20);
+		if (nodeCount < 0 || classCount < 0 || edgeCount < 0 || archiveCount < 0 || file.getLong(24) != file.size()) {
+			throw new IOException("Corrupted index file " + name);
+		}
+
+		final long stringOffsets = HEADER_SIZE;
+		origins = stringOffsets + 8L * (nodeCount + 1);
+		dependencyOffsets = origins + 4L * nodeCount;
+		dependencyTargets = dependencyOffsets + 4L * (nodeCount + 1);
+		dependentOffsets = dependencyTargets + 4L * edgeCount;
+		dependentSources = dependentOffsets + 4L * (nodeCount + 1);
+		archiveClassOffsets = dependentSources + 4L * edgeCount;
+		archiveClasses = archiveClassOffsets + 4L * (archiveCount + 1);
+		final long archiveNameOffsets = archiveClasses + 4L * classCount;
+		final long archiveNames = archiveNameOffsets + 4L * (archiveCount + 1);
+		if (archiveNames > file.size()) {
+			throw new IOException("Corrupted index file " + name);
+		}
+		strings = archiveNames + file.getInt(archiveNameOffsets + 4L * archiveCount);
+		if (strings + file.getLong(stringOffsets + 8L * nodeCount) != file.size()) {
+			throw new IOException("Corrupted index file " + name);
+		}
+
+		final List<String> archiveList = new ArrayList<String>(archiveCount);
+		for (int i = 0; i < archiveCount; i++) {
+			archiveList.add(readString(archiveNames + file.getInt(archiveNameOffsets + 4L * i), archiveNames
+					+ file.getInt(archiveNameOffsets + 4L * (i + 1))));
+		}
+		archives = Collections.unmodifiableList(archiveList);
+	}
+
+	/**
+	 * Opens the index file.
+	 * 
+	 * @param file
+	 *            the index file
+	 * @return the index
+	 * @throws IOException
+	 *             if the file cannot be read or it is not an index
+	 */
+	public static DependencyIndex open(final File file) throws IOException {
+		Validation.notNull(file, "Index file must be specified");
+		return open(file.toPath(), MappedFile.CHUNK_SIZE);
+	}
+
+	static DependencyIndex open(final Path file, final int chunkSize) throws IOException {
+		return new DependencyIndex(MappedFile.map(file, chunkSize), file.toString());
+	}
+
+	/**
+	 * Returns the number of nodes, i.e. the classes and their dependencies.
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Returns the number of classes the dependencies were collected for.
+	 */
+	public int getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * Returns the number of dependencies of all the classes.
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * Returns the names of the archives in the order they were added to the
+	 * index.
+	 */
+	public List<String> getArchives() {
+		return archives;
+	}
+
+	/**
+	 * Returns the node of the class or dependency.
+	 * 
+	 * @param name
+	 *            the name of the class
+	 * @return the node, -1 if there is no such node
+	 */
+	public int getNode(final String name) {
+		final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = nodeCount - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int comparison = compare(middle, bytes);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the name of the node.
+	 */
+	public String getName(final int node) {
+		return readString(strings + file.getLong(HEADER_SIZE + 8L * node), strings
+				+ file.getLong(HEADER_SIZE + 8L * (node + 1)));
+	}
+
+	/**
+	 * Returns the archive of the class.
+	 * 
+	 * @param className
+	 *            the name of the class
+	 * @return the archive, null if the class is not in any archive
+	 */
+	public String getArchive(final String className) {
+		final int node = getNode(className);
+		final int archive = node >= 0 ? file.getInt(origins + 4L * node) : -1;
+		return archive >= 0 ? archives.get(archive) : null;
+	}
+
+	/**
+	 * Returns the dependencies of the class.
+	 * 
+	 * @param className
+	 *            the name of the class
+	 * @return the sorted dependencies, empty if the class is not in the index
+	 */
+	public List<String> getDependencies(final String className) {
+		return getNames(dependencyOffsets, dependencyTargets, getNode(className));
+	}
+
+	/**
+	 * Returns the classes depending on the class.
+	 * 
+	 * @param className
+	 *            the name of the class or dependency
+	 * @return the sorted dependent classes, empty if there are none
+	 */
+	public List<String> getDependents(final String className) {
+		return getNames(dependentOffsets, dependentSources, getNode(className));
+	}
+
+	/**
+	 * Returns the classes of the archive.
+	 * 
+	 * @param archive
+	 *            the name of the archive as it was added to the index
+	 * @return the sorted classes, empty if the archive is not in the index
+	 */
+	public List<String> getClasses(final String archive) {
+		return getNames(archiveClassOffsets, archiveClasses, archives.indexOf(archive));
+	}
+
+	private List<String> getNames(final long offsets, final long nodes, final int index) {
+		if (index < 0) {
+			return Collections.emptyList();
+		}
+		final int start = file.getInt(offsets + 4L * index);
+		final int end = file.getInt(offsets + 4L * (index + 1));
+		final List<String> names = new ArrayList<String>(end - start);
+		for (int i = start; i < end; i++) {
+			names.add(getName(file.getInt(nodes + 4L * i)));
+		}
+		return names;
+	}
+
+	private int compare(final int node, final byte[] bytes) {
+		final long start = strings + file.getLong(HEADER_SIZE + 8L * node);
+		final int length = (int) (strings + file.getLong(HEADER_SIZE + 8L * (node + 1)) - start);
+		final int commonLength = Math.min(length, bytes.length);
+		for (int i = 0; i < commonLength; i++) {
+			final int comparison = (file.getByte(start + i) & 0xFF) - (bytes[i] & 0xFF);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return length - bytes.length;
+	}
+
+	private String readString(final long start, final long end) {
+		final byte[] bytes = new byte[(int) (end - start)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = file.getByte(start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * Writer of a {@link DependencyIndex} of classes of archives and their
+ * dependencies.
+ * 
+ * <pre>
+ * Reader reader = Reader.from(&quot;application.jar&quot;, &quot;library.jar&quot;);
+ * new IndexWriter().addAll(reader.readClassesWithDependenciesByPath()).write(new File(&quot;application.jidx&quot;));
+ * </pre>
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class IndexWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Comparator<byte[]> UNSIGNED_ORDER = new Comparator<byte[]>() {
+
+		@Override
+		public int compare(final byte[] a, final byte[] b) {
+			final int length = Math.min(a.length, b.length);
+			for (int i = 0; i < length; i++) {
+				final int comparison = (a[i] & 0xFF) - (b[i] & 0xFF);
+				if (comparison != 0) {
+					return comparison;
+				}
+			}
+			return a.length - b.length;
+		}
+	};
+
+	private final Map<String, Map<String, ? extends Set<String>>> archives =
+			new LinkedHashMap<String, Map<String, ? extends Set<String>>>();
+
+	/**
+	 * Adds classes of the archive. If a class is in more archives, the class
+	 * of the archive added later is indexed, the same as the class of the
+	 * later path is read by {@link com.github.trohovsky.just.Reader}.
+	 * 
+	 * @param archive
+	 *            the name of the archive, e.g. its path
+	 * @param classesWithDependencies
+	 *            the classes of the archive and their dependencies
+	 * @return the same instance of IndexWriter
+	 */
+	public IndexWriter add(final String archive, final Map<String, ? extends Set<String>> classesWithDependencies) {
+		Validation.notNull(archive, "Archive must be specified");
+		Validation.notNull(classesWithDependencies, "Classes of archive must be specified");
+		archives.remove(archive);
+		archives.put(archive, classesWithDependencies);
+		return this;
+	}
+
+	/**
+	 * Adds classes of the archives, e.g. from
+	 * {@link com.github.trohovsky.just.Reader#readClassesWithDependenciesByPath()}.
+	 * 
+	 * @param archivesWithClasses
+	 *            the archives and their classes and dependencies
+	 * @return the same instance of IndexWriter
+	 */
+	public IndexWriter addAll(final Map<String, ? extends Map<String, ? extends Set<String>>> archivesWithClasses) {
+		for (Entry<String, ? extends Map<String, ? extends Set<String>>> entry : archivesWithClasses.entrySet()) {
+			add(entry.getKey(), entry.getValue());
+		}
+		return this;
+	}
+
+	/**
+	 * Writes the index to the file. The index is written to a temporary file
+	 * first and moved to its place, so readers never see a partial index.
+	 * 
+	 * @param file
+	 *            the index file
+	 * @throws IOException
+	 */
+	public void write(final File file) throws IOException {
+		Validation.notNull(file, "Index file must be specified");
+		final Path directory = file.getAbsoluteFile().getParentFile().toPath();
+		// unlike a temporary file of Files, the index gets the default permissions
+		final Path temporaryFile = directory.resolve(file.getName() + "." + System.nanoTime() + ".tmp");
+		try {
+			final OutputStream os = Files.newOutputStream(temporaryFile, StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.WRITE);
+			try {
+				final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os, BUFFER_SIZE));
+				writeIndex(dos);
+				dos.flush();
+			} finally {
+				os.close();
+			}
+			try {
+				Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	private void writeIndex(final DataOutputStream dos) throws IOException {
+		// the archive of every class, the later archives precede
+		final List<String> archiveNames = new ArrayList<String>(archives.keySet());
+		final Map<String, Integer> classArchives = new HashMap<String, Integer>();
+		final Map<String, Set<String>> classesWithDependencies = new HashMap<String, Set<String>>();
+		final Set<String> names = new HashSet<String>();
+		for (int i = 0; i < archiveNames.size(); i++) {
+			for (Entry<String, ? extends Set<String>> entry : archives.get(archiveNames.get(i)).entrySet()) {
+				classArchives.put(entry.getKey(), i);
+				classesWithDependencies.put(entry.getKey(), entry.getValue());
+				names.add(entry.getKey());
+			}
+		}
+		for (Set<String> dependencies : classesWithDependencies.values()) {
+			names.addAll(dependencies);
+		}
+
+		// the nodes are numbered in the order of their names in UTF-8
+		final byte[][] nameBytes = new byte[names.size()][];
+		int nodeCount = 0;
+		for (String name : names) {
+			nameBytes[nodeCount++] = name.getBytes(StandardCharsets.UTF_8);
+		}
+		Arrays.sort(nameBytes, UNSIGNED_ORDER);
+		final String[] nodeNames = new String[nodeCount];
+		final Map<String, Integer> nodes = new HashMap<String, Integer>(nodeCount * 2);
+		for (int node = 0; node < nodeCount; node++) {
+			nodeNames[node] = new String(nameBytes[node], StandardCharsets.UTF_8);
+			nodes.put(nodeNames[node], node);
+		}
+
+		// dependencies
+		final int[] origins = new int[nodeCount];
+		final int[] dependencyOffsets = new int[nodeCount + 1];
+		final int[][] nodeDependencies = new int[nodeCount][];
+		long edgeCount = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			final Integer archive = classArchives.get(nodeNames[node]);
+			origins[node] = archive != null ? archive : -1;
+			final Set<String> dependencies = classesWithDependencies.get(nodeNames[node]);
+			final int[] targets = new int[dependencies != null ? dependencies.size() : 0];
+			if (dependencies != null) {
+				int i = 0;
+				for (String dependency : dependencies) {
+					targets[i++] = nodes.get(dependency);
+				}
+				Arrays.sort(targets);
+			}
+			nodeDependencies[node] = targets;
+			edgeCount += targets.length;
+			if (edgeCount > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Index cannot contain more than " + Integer.MAX_VALUE
+						+ " dependencies");
+			}
+			dependencyOffsets[node + 1] = (int) edgeCount;
+		}
+
+		// dependents, the sources of a target are sorted as they are added in
+		// the order of the nodes
+		final int[] dependentOffsets = new int[nodeCount + 1];
+		for (int[] targets : nodeDependencies) {
+			for (int target : targets) {
+				dependentOffsets[target + 1]++;
+			}
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			dependentOffsets[node + 1] += dependentOffsets[node];
+		}
+		final int[] dependentSources = new int[(int) edgeCount];
+		final int[] dependentPositions = Arrays.copyOf(dependentOffsets, nodeCount);
+		for (int node = 0; node < nodeCount; node++) {
+			for (int target : nodeDependencies[node]) {
+				dependentSources[dependentPositions[target]++] = node;
+			}
+		}
+
+		// classes of the archives
+		final int[] archiveClassOffsets = new int[archiveNames.size() + 1];
+		for (int origin : origins) {
+			if (origin >= 0) {
+				archiveClassOffsets[origin + 1]++;
+			}
+		}
+		for (int i = 0; i < archiveNames.size(); i++) {
+			archiveClassOffsets[i + 1] += archiveClassOffsets[i];
+		}
+		final int classCount = archiveClassOffsets[archiveNames.size()];
+		final int[] archiveClasses = new int[classCount];
+		final int[] archivePositions = Arrays.copyOf(archiveClassOffsets, archiveNames.size());
+		for (int node = 0; node < nodeCount; node++) {
+			if (origins[node] >= 0) {
+				archiveClasses[archivePositions[origins[node]]++] = node;
+			}
+		}
+
+		final byte[][] archiveNameBytes = new byte[archiveNames.size()][];
+		final int[] archiveNameOffsets = new int[archiveNames.size() + 1];
+		for (int i = 0; i < archiveNames.size(); i++) {
+			archiveNameBytes[i] = archiveNames.get(i).getBytes(StandardCharsets.UTF_8);
+			archiveNameOffsets[i + 1] = archiveNameOffsets[i] + archiveNameBytes[i].length;
+		}
+		final long[] stringOffsets = new long[nodeCount + 1];
+		for (int node = 0; node < nodeCount; node++) {
+			stringOffsets[node + 1] = stringOffsets[node] + nameBytes[node].length;
+		}
+
+		final long size = DependencyIndex.HEADER_SIZE + 8L * (nodeCount + 1) + 4L * nodeCount + 2 * 4L
+				* (nodeCount + 1 + edgeCount) + 4L * (archiveNames.size() + 1 + classCount) + 4L
+				* (archiveNames.size() + 1) + archiveNameOffsets[archiveNames.size()] + stringOffsets[nodeCount];
+		dos.writeInt(DependencyIndex.MAGIC);
+		dos.writeInt(DependencyIndex.VERSION);
+		dos.writeInt(nodeCount);
+		dos.writeInt(classCount);
+		dos.writeInt((int) edgeCount);
+		dos.writeInt(archiveNames.size());
+		dos.writeLong(size);
+		dos.write(new byte[DependencyIndex.HEADER_SIZE - 32]);
+		for (long offset : stringOffsets) {
+			dos.writeLong(offset);
+		}
+		writeInts(dos, origins);
+		writeInts(dos, dependencyOffsets);
+		for (int[] targets : nodeDependencies) {
+			writeInts(dos, targets);
+		}
+		writeInts(dos, dependentOffsets);
+		writeInts(dos, dependentSources);
+		writeInts(dos, archiveClassOffsets);
+		writeInts(dos, archiveClasses);
+		writeInts(dos, archiveNameOffsets);
+		for (byte[] bytes : archiveNameBytes) {
+			dos.write(bytes);
+		}
+		for (byte[] bytes : nameBytes) {
+			dos.write(bytes);
+		}
+	}
+
+	private static void writeInts(final DataOutputStream dos, final int[] values) throws IOException {
+		for (int value : values) {
+			dos.writeInt(value);
+		}
+	}
+}
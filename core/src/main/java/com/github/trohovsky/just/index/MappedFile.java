@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only file mapped to memory in chunks, so files larger than 2 GB can be
+ * mapped too. Values are big-endian and must not cross the chunks, which
+ * holds for aligned ints and longs since the size of a chunk is a power of
+ * two.
+ * 
+ * @author Tomas Rohovsky
+ */
+final class MappedFile {
+
+	/**
+	 * Default size of a chunk, 1 GB.
+	 */
+	static final int CHUNK_SIZE = 1 << 30;
+
+	private final ByteBuffer[] chunks;
+	private final int chunkShift;
+	private final int chunkMask;
+	private final long size;
+
+	private MappedFile(final ByteBuffer[] chunks, final int chunkSize, final long size) {
+		this.chunks = chunks;
+		this.chunkShift = Integer.numberOfTrailingZeros(chunkSize);
+		this.chunkMask = chunkSize - 1;
+		this.size = size;
+	}
+
+	/**
+	 * Maps the file. The pages are loaded by the operating system when they
+	 * are accessed, so the mapping is fast regardless of the size of the file.
+	 */
+	static MappedFile map(final Path file, final int chunkSize) throws IOException {
+		if (Integer.bitCount(chunkSize) != 1 || chunkSize < 8) {
+			throw new IllegalArgumentException("Size of a chunk must be a power of two of at least 8");
+		}
+		final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			final long size = channel.size();
+			final ByteBuffer[] chunks = new ByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+			for (int i = 0; i < chunks.length; i++) {
+				final long position = (long) i * chunkSize;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, size - position));
+			}
+			// the mapping stays valid after the channel is closed
+			return new MappedFile(chunks, chunkSize, size);
+		} finally {
+			channel.close();
+		}
+	}
+
+	long size() {
+		return size;
+	}
+
+	byte getByte(final long position) {
+		return chunks[(int) (position >>> chunkShift)].get((int) position & chunkMask);
+	}
+
+	int getInt(final long position) {
+		return chunks[(int) (position >>> chunkShift)].getInt((int) position & chunkMask);
+	}
+
+	long getLong(final long position) {
+		return chunks[(int) (position >>> chunkShift)].getLong((int) position & chunkMask);
+	}
+}
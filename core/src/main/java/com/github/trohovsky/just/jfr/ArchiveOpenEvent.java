@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of opening of an archive, e.g. reading the central
+ * directory of a JAR and opening its nested JARs.
+ * 
+ * @author Tomas Rohovsky
+ */
+@Name("com.github.trohovsky.just.ArchiveOpen")
+@Label("Archive Open")
+@Category({ "Just", "Reader" })
+@Description("Opening of a JAR or directory")
+public final class ArchiveOpenEvent extends Event {
+
+	@Label("Path")
+	public String path;
+
+	@Label("Nested Archives")
+	@Description("Whether nested JARs were opened")
+	public boolean nestedArchives;
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of reading and parsing of classes of an archive.
+ * 
+ * @author Tomas Rohovsky
+ */
+@Name("com.github.trohovsky.just.ArchiveScan")
+@Label("Archive Scan")
+@Category({ "Just", "Reader" })
+@Description("Reading and parsing of classes of a JAR or directory")
+public final class ArchiveScanEvent extends Event {
+
+	@Label("Path")
+	public String path;
+
+	@Label("Operation")
+	@Description("What was read, e.g. classes with dependencies or the call graph")
+	public String operation;
+
+	@Label("Classes")
+	public int classes;
+
+	@Label("Bytes")
+	@Description("Size of the class files")
+	@DataAmount
+	public long bytes;
+}
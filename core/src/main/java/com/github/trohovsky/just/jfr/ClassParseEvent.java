@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of parsing of a class. Only classes of at least
+ * {@link #SIZE_THRESHOLD} bytes are recorded, set by the system property
+ * "just.jfr.classParseThreshold", so the small classes do not flood the
+ * recording.
+ * 
+ * @author Tomas Rohovsky
+ */
+@Name("com.github.trohovsky.just.ClassParse")
+@Label("Class Parse")
+@Category({ "Just", "Reader" })
+@Description("Parsing of a large class")
+public final class ClassParseEvent extends Event {
+
+	/**
+	 * The minimal size of a recorded class in bytes, 16 KB by default.
+	 */
+	public static final int SIZE_THRESHOLD = Integer.getInteger("just.jfr.classParseThreshold", 16 * 1024);
+
+	@Label("Path")
+	public String path;
+
+	@Label("Class")
+	public String className;
+
+	@Label("Bytes")
+	@DataAmount
+	public int bytes;
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of writing of a report.
+ * 
+ * @author Tomas Rohovsky
+ */
+@Name("com.github.trohovsky.just.Report")
+@Label("Report")
+@Category({ "Just", "Reporter" })
+@Description("Writing of a report of classes")
+public final class ReportEvent extends Event {
+
+	@Label("Format")
+	public String format;
+
+	@Label("Classes")
+	public long classes;
+
+	@Label("Dependencies")
+	@Description("Dependencies reported with the classes")
+	public long dependencies;
+
+	@Label("Bytes")
+	@Description("Characters written")
+	@DataAmount
+	public long bytes;
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of an operation of
+ * {@link com.github.trohovsky.just.DependencyUtils}.
+ * 
+ * @author Tomas Rohovsky
+ */
+@Name("com.github.trohovsky.just.SetOperation")
+@Label("Set Operation")
+@Category({ "Just", "DependencyUtils" })
+@Description("Operation on sets, maps or graphs of classes")
+public final class SetOperationEvent extends Event {
+
+	@Label("Operation")
+	public String operation;
+
+	@Label("Input Classes")
+	@Description("Classes or keys of the inputs")
+	public long inputClasses;
+
+	@Label("Output Classes")
+	@Description("Classes or keys of the result")
+	public long outputClasses;
+
+	/**
+	 * Ends the event and commits it with the sizes if it is recorded.
+	 * 
+	 * @return the result of the operation
+	 */
+	public <T> T finish(final String operation, final long inputClasses, final long outputClasses, final T result) {
+		end();
+		if (shouldCommit()) {
+			this.operation = operation;
+			this.inputClasses = inputClasses;
+			this.outputClasses = outputClasses;
+			commit();
+		}
+		return result;
+	}
+}
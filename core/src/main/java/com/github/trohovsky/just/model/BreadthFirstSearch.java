@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * Breadth-first search of a {@link DependencyGraph}. The search proceeds by
+ * levels, nodes of a large frontier are expanded in parallel and every node
+ * is claimed by an atomic update of the visited bits, so it is expanded only
+ * once.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class BreadthFirstSearch {
+
+	private static final int PARALLEL_THRESHOLD = 2048;
+
+	private final DependencyGraph graph;
+	private final AtomicLongArray visited;
+
+	private BreadthFirstSearch(final DependencyGraph graph) {
+		this.graph = graph;
+		this.visited = new AtomicLongArray((graph.getNodeCount() + 63) >>> 6);
+	}
+
+	/**
+	 * Returns the nodes reachable from the roots, including the roots.
+	 * 
+	 * @param graph
+	 *            the graph
+	 * @param roots
+	 *            the roots of the search
+	 * @param parallelism
+	 *            the number of threads expanding large frontiers, must be
+	 *            positive
+	 * @return the Set of reachable nodes
+	 */
+	public static ClassSet reachableFrom(final DependencyGraph graph, final ClassSet roots, final int parallelism) {
+		Validation.isTrue(roots.getSymbolTable() == graph.getSymbolTable(),
+				"Roots must have the symbol table of the graph");
+		Validation.isTrue(parallelism > 0, "Parallelism must be positive");
+
+		final BreadthFirstSearch search = new BreadthFirstSearch(graph);
+		int[] frontier = new int[roots.size()];
+		int length = 0;
+		for (int root : roots.ids()) {
+			// roots interned after the graph was built have no edges
+			if (root < graph.getNodeCount() && search.visit(root)) {
+				frontier[length++] = root;
+			}
+		}
+
+		final ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+		try {
+			frontier = Arrays.copyOf(frontier, length);
+			while (frontier.length != 0) {
+				if (pool != null && frontier.length > PARALLEL_THRESHOLD) {
+					frontier = pool.invoke(search.new ExpansionTask(frontier, 0, frontier.length));
+				} else {
+					frontier = search.expand(frontier, 0, frontier.length);
+				}
+			}
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+
+		final long[] words = new long[search.visited.length()];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = search.visited.get(i);
+		}
+		final BitSet reachable = BitSet.valueOf(words);
+		for (int root : roots.ids()) {
+			reachable.set(root);
+		}
+		final int[] ids = new int[reachable.cardinality()];
+		int i = 0;
+		for (int id = reachable.nextSetBit(0); id != -1; id = reachable.nextSetBit(id + 1)) {
+			ids[i++] = id;
+		}
+		return ClassSet.wrap(graph.getSymbolTable(), ids);
+	}
+
+	/**
+	 * Marks the node as visited.
+	 * 
+	 * @return true if the node was not visited before
+	 */
+	private boolean visit(final int node) {
+		final int word = node >>> 6;
+		final long bit = 1L << node;
+		long value;
+		do {
+			value = visited.get(word);
+			if ((value & bit) != 0) {
+				return false;
+			}
+		} while (!visited.compareAndSet(word, value, value | bit));
+		return true;
+	}
+
+	/**
+	 * Returns the nodes of the next frontier claimed by expanding of the range
+	 * of the frontier.
+	 */
+	private int[] expand(final int[] frontier, final int from, final int to) {
+		int[] next = new int[Math.max(16, to - from)];
+		int length = 0;
+		for (int i = from; i < to; i++) {
+			final int node = frontier[i];
+			for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+				final int target = graph.getTarget(edge);
+				if (visit(target)) {
+					if (length == next.length) {
+						next = Arrays.copyOf(next, length * 2);
+					}
+					next[length++] = target;
+				}
+			}
+		}
+		return Arrays.copyOf(next, length);
+	}
+
+	/**
+	 * Expands a range of the frontier, halves of the range are expanded in
+	 * parallel and their next frontiers are concatenated.
+	 */
+	private final class ExpansionTask extends RecursiveTask<int[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] frontier;
+		private final int from;
+		private final int to;
+
+		ExpansionTask(final int[] frontier, final int from, final int to) {
+			this.frontier = frontier;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				return expand(frontier, from, to);
+			}
+			final int middle = (from + to) >>> 1;
+			final ExpansionTask left = new ExpansionTask(frontier, from, middle);
+			left.fork();
+			final int[] right = new ExpansionTask(frontier, middle, to).compute();
+			final int[] leftNext = left.join();
+			final int[] next = Arrays.copyOf(leftNext, leftNext.length + right.length);
+			System.arraycopy(right, 0, next, leftNext.length, right.length);
+			return next;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable Set of classes stored as a sorted array of IDs of a
+ * {@link SymbolTable}. It takes a few bytes per class instead of a tree node
+ * and a String. The classes are iterated in the order of their names, so the
+ * Set behaves like a TreeSet of the names. The order is resolved only once,
+ * on the first iteration.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class ClassSet extends AbstractSet<String> {
+
+	private static final int[] NO_IDS = new int[0];
+	// marks the Sets whose IDs are in the order of the names
+	private static final String[] ID_ORDER = new String[0];
+
+	private final SymbolTable symbolTable;
+	private final int[] ids;
+	private volatile String[] sortedNames;
+
+	private ClassSet(final SymbolTable symbolTable, final int[] ids) {
+		this.symbolTable = symbolTable;
+		this.ids = ids;
+	}
+
+	/**
+	 * Creates an empty Set.
+	 * 
+	 * @param symbolTable
+	 *            the symbol table of the Set
+	 * @return the empty Set
+	 */
+	public static ClassSet empty(final SymbolTable symbolTable) {
+		return new ClassSet(symbolTable, NO_IDS);
+	}
+
+	/**
+	 * Creates a Set of the classes, the names are interned in the symbol
+	 * table.
+	 * 
+	 * @param symbolTable
+	 *            the symbol table of the Set
+	 * @param names
+	 *            the internal names of the classes
+	 * @return the Set of the classes
+	 */
+	public static ClassSet of(final SymbolTable symbolTable, final Collection<String> names) {
+		if (names instanceof ClassSet && ((ClassSet) names).symbolTable == symbolTable) {
+			return (ClassSet) names;
+		}
+		final int[] ids = new int[names.size()];
+		int i = 0;
+		for (String name : names) {
+			ids[i++] = symbolTable.intern(name);
+		}
+		return ofIds(symbolTable, ids, ids.length);
+	}
+
+	/**
+	 * Creates a Set of the IDs. The array is sorted and deduplicated in place
+	 * and must not be used by the caller afterwards.
+	 * 
+	 * @param symbolTable
+	 *            the symbol table of the IDs
+	 * @param ids
+	 *            the array of IDs, may contain duplicates
+	 * @param length
+	 *            the number of IDs in the array
+	 * @return the Set of the classes
+	 */
+	public static ClassSet ofIds(final SymbolTable symbolTable, final int[] ids, final int length) {
+		final int size = sortUnique(ids, length);
+		return new ClassSet(symbolTable, size == ids.length ? ids : Arrays.copyOf(ids, size));
+	}
+
+	/**
+	 * Creates a Set of sorted distinct IDs without copying the array.
+	 */
+	static ClassSet wrap(final SymbolTable symbolTable, final int[] ids) {
+		return new ClassSet(symbolTable, ids.length == 0 ? NO_IDS : ids);
+	}
+
+	/**
+	 * Returns the sorted IDs without copying, the array must not be modified.
+	 */
+	int[] ids() {
+		return ids;
+	}
+
+	/**
+	 * Sorts the first length elements of the array and moves the distinct
+	 * ones to its beginning.
+	 * 
+	 * @return the number of the distinct elements
+	 */
+	static int sortUnique(final int[] ids, final int length) {
+		if (length == 0) {
+			return 0;
+		}
+		Arrays.sort(ids, 0, length);
+		int size = 1;
+		for (int i = 1; i < length; i++) {
+			if (ids[i] != ids[size - 1]) {
+				ids[size++] = ids[i];
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the symbol table of the IDs of the Set.
+	 * 
+	 * @return the symbol table
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	/**
+	 * Returns the IDs of the classes in ascending order.
+	 * 
+	 * @return a copy of the IDs
+	 */
+	public int[] toIdArray() {
+		return ids.clone();
+	}
+
+	/**
+	 * Tells whether the Set contains the ID.
+	 * 
+	 * @param id
+	 *            the ID of a class
+	 * @return true if the class is in the Set
+	 */
+	public boolean containsId(final int id) {
+		return Arrays.binarySearch(ids, id) >= 0;
+	}
+
+	@Override
+	public boolean contains(final Object o) {
+		if (!(o instanceof String)) {
+			return false;
+		}
+		final int id = symbolTable.get((String) o);
+		return id != -1 && containsId(id);
+	}
+
+	@Override
+	public int size() {
+		return ids.length;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		final String[] names = getSortedNames();
+		return new Iterator<String>() {
+
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < ids.length;
+			}
+
+			@Override
+			public String next() {
+				if (index == ids.length) {
+					throw new NoSuchElementException();
+				}
+				return names == ID_ORDER ? symbolTable.name(ids[index++]) : names[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Returns the names in their order, {@link #ID_ORDER} if the IDs are
+	 * already in the order of the names. The names are sorted only once, a
+	 * concurrent iteration can sort them too.
+	 */
+	private String[] getSortedNames() {
+		String[] names = sortedNames;
+		if (names != null) {
+			return names;
+		}
+		names = new String[ids.length];
+		boolean sorted = true;
+		for (int i = 0; i < ids.length; i++) {
+			names[i] = symbolTable.name(ids[i]);
+			sorted &= i == 0 || names[i - 1].compareTo(names[i]) < 0;
+		}
+		if (sorted) {
+			names = ID_ORDER;
+		} else {
+			Arrays.sort(names);
+		}
+		sortedNames = names;
+		return names;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (o instanceof ClassSet && ((ClassSet) o).symbolTable == symbolTable) {
+			return Arrays.equals(ids, ((ClassSet) o).ids);
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		// the same as the one of AbstractSet, but without sorting of the names
+		int hashCode = 0;
+		for (int id : ids) {
+			hashCode += symbolTable.name(id).hashCode();
+		}
+		return hashCode;
+	}
+}
@@ -15,39 +15,136 @@
  */
 package com.github.trohovsky.just.model;
 
-import java.util.Collections;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Arrays;
 
 import org.objectweb.asm.Type;
-import org.objectweb.asm.signature.SignatureReader;
 import org.objectweb.asm.signature.SignatureVisitor;
 
+import com.github.trohovsky.just.stats.Counter;
+import com.github.trohovsky.just.stats.ParseCounters;
+
 /**
- * Container class for collecting of dependencies.
+ * Container class for collecting of dependencies. Names of the dependencies
+ * are interned in a {@link SymbolTable} and collected as IDs.
+ * <p>
+ * The work done is counted into {@link ParseCounters} between
+ * {@link #startCounting(ParseCounters)} and {@link #stopCounting()}, the
+ * visitors count their callbacks by {@link #count(Counter)}.
  * 
  * @author Tomas Rohovsky
  */
 public class Dependencies {
 
-	private final Set<String> dependencies = new TreeSet<String>();
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final SymbolTable symbolTable;
+	private int[] ids = new int[INITIAL_CAPACITY];
+	private int size;
+	private DescriptorDecoder decoder;
+	private ParseCounters counters;
+	// size when the counted names were deduplicated the last time
+	private int countedSize;
+
+	public Dependencies() {
+		this(new SymbolTable());
+	}
+
+	public Dependencies(final SymbolTable symbolTable) {
+		this.symbolTable = symbolTable;
+	}
 
-	public Set<String> get() {
-		return Collections.unmodifiableSet(dependencies);
+	public ClassSet get() {
+		size = ClassSet.sortUnique(ids, size);
+		return ClassSet.ofIds(symbolTable, Arrays.copyOf(ids, size), size);
 	}
 
 	public void addName(final String name) {
 		if (name == null) {
 			return;
 		}
-		dependencies.add(name);
+		addId(symbolTable.intern(name));
+	}
+
+	public void addAll(final ClassSet classes) {
+		if (classes.getSymbolTable() != symbolTable) {
+			for (String name : classes) {
+				addName(name);
+			}
+			return;
+		}
+		for (int id : classes.toIdArray()) {
+			addId(id);
+		}
+	}
+
+	public void addAll(final Dependencies dependencies) {
+		if (dependencies.symbolTable != symbolTable) {
+			for (String name : dependencies.get()) {
+				addName(name);
+			}
+			return;
+		}
+		for (int i = 0; i < dependencies.size; i++) {
+			addId(dependencies.ids[i]);
+		}
+	}
+
+	void addId(final int id) {
+		if (size == ids.length) {
+			// duplicates are removed before growing, so the array stays
+			// proportional to the number of distinct dependencies
+			deduplicate();
+			if (size > ids.length / 2) {
+				ids = Arrays.copyOf(ids, ids.length * 2);
+			}
+		}
+		ids[size++] = id;
+	}
+
+	private void deduplicate() {
+		final int unique = ClassSet.sortUnique(ids, size);
+		if (counters != null) {
+			counters.add(Counter.NAMES_ADDED, size - countedSize);
+			counters.add(Counter.NAMES_DEDUPLICATED, size - unique);
+			countedSize = unique;
+		}
+		size = unique;
+	}
+
+	/**
+	 * Starts counting of the work done into the counters, e.g. of a class
+	 * being parsed.
+	 */
+	public void startCounting(final ParseCounters counters) {
+		this.counters = counters;
+		countedSize = size;
+	}
+
+	/**
+	 * Stops counting. The names added since the start are deduplicated to
+	 * count the ones that were already added.
+	 */
+	public void stopCounting() {
+		if (counters != null) {
+			deduplicate();
+			counters = null;
+		}
+	}
+
+	/**
+	 * Counts a call of a callback of a visitor if counting was started.
+	 */
+	public void count(final Counter counter) {
+		if (counters != null) {
+			counters.increment(counter);
+		}
 	}
 
 	public void addInternalName(final String name) {
 		if (name == null) {
 			return;
 		}
-		addType(Type.getObjectType(name));
+		decoder().addInternalName(name);
 	}
 
 	public void addInternalNames(final String[] names) {
@@ -60,15 +157,13 @@ public class Dependencies {
 	}
 
 	public void addDesc(final String desc) {
-		addType(Type.getType(desc));
+		count(Counter.DESCRIPTORS);
+		decoder().addSignature(desc);
 	}
 
 	public void addMethodDesc(final String desc) {
-		addType(Type.getReturnType(desc));
-		final Type[] types = Type.getArgumentTypes(desc);
-		for (Type type : types) {
-			addType(type);
-		}
+		count(Counter.DESCRIPTORS);
+		decoder().addSignature(desc);
 	}
 
 	public void addType(final Type t) {
@@ -82,16 +177,47 @@ public class Dependencies {
 		}
 	}
 
-	public void addSignature(final String signature, final SignatureVisitor signatureVisitor) {
+	/**
+	 * Adds classes of the signature of a class, method or type, or of a
+	 * descriptor.
+	 * 
+	 * @param signature
+	 *            the signature, null is ignored
+	 */
+	public void addSignature(final String signature) {
 		if (signature != null) {
-			new SignatureReader(signature).accept(signatureVisitor);
+			count(Counter.SIGNATURES);
+			decoder().addSignature(signature);
 		}
 	}
 
+	/**
+	 * Adds classes of the signature, the visitor is ignored.
+	 * 
+	 * @deprecated the signature is decoded directly, use
+	 *             {@link #addSignature(String)}
+	 */
+	@Deprecated
+	public void addSignature(final String signature, final SignatureVisitor signatureVisitor) {
+		addSignature(signature);
+	}
+
+	/**
+	 * Adds classes of the type signature, the visitor is ignored.
+	 * 
+	 * @deprecated the signature is decoded directly, use
+	 *             {@link #addSignature(String)}
+	 */
+	@Deprecated
 	public void addTypeSignature(final String signature, final SignatureVisitor signatureVisitor) {
-		if (signature != null) {
-			new SignatureReader(signature).acceptType(signatureVisitor);
+		addSignature(signature);
+	}
+
+	private DescriptorDecoder decoder() {
+		if (decoder == null) {
+			decoder = new DescriptorDecoder(symbolTable, this);
 		}
+		return decoder;
 	}
 
 }
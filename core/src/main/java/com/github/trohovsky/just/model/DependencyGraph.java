@@ -0,0 +1,404 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable graph of classes and their dependencies. Nodes are IDs of a
+ * {@link SymbolTable}, edges are stored in the compressed sparse row form:
+ * targets of all nodes are kept in one array ordered by their source nodes
+ * and an array of offsets tells where the targets of a node start. Targets of
+ * a node are sorted.
+ * <p>
+ * The out-edges of a node are iterated as follows:
+ * 
+ * <pre>
+ * for (int edge = graph.getEdgeStart(node); edge &lt; graph.getEdgeEnd(node); edge++) {
+ * 	int target = graph.getTarget(edge);
+ * }
+ * </pre>
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class DependencyGraph {
+
+	private final SymbolTable symbolTable;
+	private final int[] classes;
+	private final int[] offsets;
+	private final int[] targets;
+	private volatile DependencyGraph reverse;
+
+	private DependencyGraph(final SymbolTable symbolTable, final int[] classes, final int[] offsets,
+			final int[] targets) {
+		this.symbolTable = symbolTable;
+		this.classes = classes;
+		this.offsets = offsets;
+		this.targets = targets;
+	}
+
+	/**
+	 * Creates a graph from the Map of classes and their dependencies. The
+	 * symbol table of the dependencies is reused if they are
+	 * {@link ClassSet}s, a new one is created otherwise.
+	 * 
+	 * @param classesWithDependencies
+	 *            the Map of classes and their dependencies
+	 * @return the graph
+	 */
+	public static DependencyGraph of(final Map<String, ? extends Set<String>> classesWithDependencies) {
+		SymbolTable symbolTable = null;
+		for (Set<String> dependencies : classesWithDependencies.values()) {
+			if (dependencies instanceof ClassSet) {
+				symbolTable = ((ClassSet) dependencies).getSymbolTable();
+				break;
+			}
+		}
+		return of(symbolTable != null ? symbolTable : new SymbolTable(), classesWithDependencies);
+	}
+
+	/**
+	 * Creates a graph from the Map of classes and their dependencies. Names of
+	 * the classes are interned in the symbol table.
+	 * 
+	 * @param symbolTable
+	 *            the symbol table of the graph
+	 * @param classesWithDependencies
+	 *            the Map of classes and their dependencies
+	 * @return the graph
+	 */
+	public static DependencyGraph of(final SymbolTable symbolTable,
+			final Map<String, ? extends Set<String>> classesWithDependencies) {
+		final Builder builder = new Builder(symbolTable);
+		for (Entry<String, ? extends Set<String>> entry : classesWithDependencies.entrySet()) {
+			builder.add(symbolTable.intern(entry.getKey()), ClassSet.of(symbolTable, entry.getValue()).toIdArray());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the symbol table of the nodes.
+	 * 
+	 * @return the symbol table
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
+	/**
+	 * Returns the number of nodes, the nodes are IDs from 0 to the number of
+	 * nodes - 1. The IDs of the symbol table that are neither classes nor
+	 * dependencies are nodes without edges.
+	 * 
+	 * @return the number of nodes
+	 */
+	public int getNodeCount() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Returns the number of edges.
+	 * 
+	 * @return the number of edges
+	 */
+	public int getEdgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * Returns the classes of the graph, the ones the dependencies were
+	 * collected for.
+	 * 
+	 * @return the Set of the classes
+	 */
+	public ClassSet getClasses() {
+		return ClassSet.ofIds(symbolTable, classes.clone(), classes.length);
+	}
+
+	/**
+	 * Tells whether the node is a class of the graph.
+	 * 
+	 * @param node
+	 *            the node
+	 * @return true if the node is a class of the graph
+	 */
+	public boolean isClass(final int node) {
+		return Arrays.binarySearch(classes, node) >= 0;
+	}
+
+	/**
+	 * Returns the index of the first out-edge of the node.
+	 * 
+	 * @param node
+	 *            the node
+	 * @return the index of the first edge
+	 */
+	public int getEdgeStart(final int node) {
+		return node < getNodeCount() ? offsets[node] : targets.length;
+	}
+
+	/**
+	 * Returns the index after the last out-edge of the node.
+	 * 
+	 * @param node
+	 *            the node
+	 * @return the index after the last edge
+	 */
+	public int getEdgeEnd(final int node) {
+		return node < getNodeCount() ? offsets[node + 1] : targets.length;
+	}
+
+	/**
+	 * Returns the target node of the edge.
+	 * 
+	 * @param edge
+	 *            the index of the edge
+	 * @return the target node
+	 */
+	public int getTarget(final int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * Returns the number of out-edges of the node.
+	 * 
+	 * @param node
+	 *            the node
+	 * @return the number of out-edges
+	 */
+	public int getOutDegree(final int node) {
+		return getEdgeEnd(node) - getEdgeStart(node);
+	}
+
+	/**
+	 * Returns the dependencies of the node.
+	 * 
+	 * @param node
+	 *            the node
+	 * @return the Set of the dependencies
+	 */
+	public ClassSet getDependencies(final int node) {
+		final int start = getEdgeStart(node);
+		final int end = getEdgeEnd(node);
+		return ClassSet.ofIds(symbolTable, Arrays.copyOfRange(targets, start, end), end - start);
+	}
+
+	/**
+	 * Returns the dependencies of the class.
+	 * 
+	 * @param className
+	 *            the internal name of the class
+	 * @return the Set of the dependencies, null if the class is not a class of
+	 *         the graph
+	 */
+	public ClassSet getDependencies(final String className) {
+		final int node = symbolTable.get(className);
+		return node != -1 && isClass(node) ? getDependencies(node) : null;
+	}
+
+	/**
+	 * Returns the graph with reversed edges, i.e. the graph of dependencies
+	 * and the classes depending on them. Its classes are the nodes having
+	 * in-edges in this graph. The graph is built on the first call.
+	 * 
+	 * @return the reversed graph
+	 */
+	public DependencyGraph reverse() {
+		DependencyGraph reverse = this.reverse;
+		if (reverse == null) {
+			reverse = buildReverse();
+			this.reverse = reverse;
+		}
+		return reverse;
+	}
+
+	private DependencyGraph buildReverse() {
+		final int nodeCount = getNodeCount();
+		final int[] reverseOffsets = new int[nodeCount + 1];
+		for (int target : targets) {
+			reverseOffsets[target + 1]++;
+		}
+		int classCount = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			if (reverseOffsets[node + 1] != 0) {
+				classCount++;
+			}
+			reverseOffsets[node + 1] += reverseOffsets[node];
+		}
+
+		final int[] reverseClasses = new int[classCount];
+		classCount = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			if (reverseOffsets[node + 1] != reverseOffsets[node]) {
+				reverseClasses[classCount++] = node;
+			}
+		}
+
+		// sources are visited in ascending order, so the targets of the
+		// reversed graph end up sorted
+		final int[] positions = Arrays.copyOf(reverseOffsets, nodeCount);
+		final int[] reverseTargets = new int[targets.length];
+		for (int node = 0; node < nodeCount; node++) {
+			for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+				reverseTargets[positions[targets[edge]]++] = node;
+			}
+		}
+		final DependencyGraph reverse = new DependencyGraph(symbolTable, reverseClasses, reverseOffsets,
+				reverseTargets);
+		reverse.reverse = this;
+		return reverse;
+	}
+
+	/**
+	 * Returns the graph as a Map of classes and their dependencies.
+	 * 
+	 * @return the Map of classes and their dependencies
+	 */
+	public Map<String, Set<String>> toMap() {
+		final Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+		for (int node : classes) {
+			classesWithDependencies.put(symbolTable.name(node), getDependencies(node));
+		}
+		return classesWithDependencies;
+	}
+
+	@Override
+	public String toString() {
+		return toMap().toString();
+	}
+
+	/**
+	 * Builder of a graph. Classes can be added in any order, dependencies of
+	 * a class added multiple times are merged.
+	 */
+	public static final class Builder {
+
+		private final SymbolTable symbolTable;
+		private int[] classes = new int[16];
+		private int[][] dependencies = new int[16][];
+		private int size;
+
+		/**
+		 * Creates a builder of a graph.
+		 * 
+		 * @param symbolTable
+		 *            the symbol table of the nodes
+		 */
+		public Builder(final SymbolTable symbolTable) {
+			this.symbolTable = symbolTable;
+		}
+
+		/**
+		 * Adds the class and its dependencies.
+		 * 
+		 * @param node
+		 *            the ID of the class
+		 * @param dependencies
+		 *            the IDs of the dependencies, the array is sorted in
+		 *            place and must not be used by the caller afterwards
+		 * @return the same instance of Builder
+		 */
+		public Builder add(final int node, final int[] dependencies) {
+			if (size == classes.length) {
+				classes = Arrays.copyOf(classes, size * 2);
+				this.dependencies = Arrays.copyOf(this.dependencies, size * 2);
+			}
+			classes[size] = node;
+			this.dependencies[size++] = dependencies;
+			return this;
+		}
+
+		/**
+		 * Builds the graph.
+		 * 
+		 * @return the graph
+		 */
+		public DependencyGraph build() {
+			// counting sort of the added classes by their IDs
+			int nodeCount = symbolTable.size();
+			for (int i = 0; i < size; i++) {
+				nodeCount = Math.max(nodeCount, classes[i] + 1);
+				for (int dependency : dependencies[i]) {
+					nodeCount = Math.max(nodeCount, dependency + 1);
+				}
+			}
+			final int[] counts = new int[nodeCount + 1];
+			for (int i = 0; i < size; i++) {
+				counts[classes[i] + 1]++;
+			}
+			for (int node = 0; node < nodeCount; node++) {
+				counts[node + 1] += counts[node];
+			}
+			final int[] order = new int[size];
+			final int[] positions = Arrays.copyOf(counts, nodeCount);
+			for (int i = 0; i < size; i++) {
+				order[positions[classes[i]]++] = i;
+			}
+
+			// dependencies of every class, merged if the class was added
+			// multiple times
+			final int[] classIds = new int[size];
+			final int[][] classDependencies = new int[size][];
+			int classCount = 0;
+			int edgeCount = 0;
+			for (int node = 0; node < nodeCount; node++) {
+				final int from = counts[node];
+				final int to = counts[node + 1];
+				if (from == to) {
+					continue;
+				}
+				int length = 0;
+				for (int i = from; i < to; i++) {
+					length += dependencies[order[i]].length;
+				}
+				int[] merged = dependencies[order[from]];
+				if (to - from > 1) {
+					merged = new int[length];
+					length = 0;
+					for (int i = from; i < to; i++) {
+						final int[] added = dependencies[order[i]];
+						System.arraycopy(added, 0, merged, length, added.length);
+						length += added.length;
+					}
+				}
+				length = ClassSet.sortUnique(merged, length);
+				classIds[classCount] = node;
+				classDependencies[classCount++] = length == merged.length ? merged : Arrays.copyOf(merged, length);
+				edgeCount += length;
+			}
+
+			final int[] offsets = new int[nodeCount + 1];
+			final int[] targets = new int[edgeCount];
+			int edge = 0;
+			int node = 0;
+			for (int i = 0; i < classCount; i++) {
+				while (node <= classIds[i]) {
+					offsets[node++] = edge;
+				}
+				System.arraycopy(classDependencies[i], 0, targets, edge, classDependencies[i].length);
+				edge += classDependencies[i].length;
+			}
+			while (node <= nodeCount) {
+				offsets[node++] = edge;
+			}
+			return new DependencyGraph(symbolTable, Arrays.copyOf(classIds, classCount), offsets, targets);
+		}
+	}
+}
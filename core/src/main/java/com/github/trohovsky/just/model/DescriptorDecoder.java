@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.Arrays;
+
+import com.github.trohovsky.just.stats.Counter;
+
+/**
+ * Decoder of descriptors and generic signatures collecting the classes they
+ * refer to. The input is decoded by index arithmetic and the names are
+ * interned by ranges of characters, so no objects are created for the
+ * classes already in the {@link SymbolTable}. Only names of inner classes
+ * of signatures, e.g. "Outer$Inner" of "LOuter&lt;TT;&gt;.Inner;", are
+ * assembled in a reused buffer.
+ * <p>
+ * The decoder is not thread-safe, it is used by one {@link Dependencies}.
+ * 
+ * @author Tomas Rohovsky
+ */
+final class DescriptorDecoder {
+
+	private final SymbolTable symbolTable;
+	private final Dependencies dependencies;
+	private char[] buffer = new char[64];
+	private int bufferTop;
+
+	DescriptorDecoder(final SymbolTable symbolTable, final Dependencies dependencies) {
+		this.symbolTable = symbolTable;
+		this.dependencies = dependencies;
+	}
+
+	/**
+	 * Adds the class of the internal name, or the element class if the name
+	 * is a descriptor of an array.
+	 */
+	void addInternalName(final String name) {
+		if (name.charAt(0) == '[') {
+			addSignature(name);
+		} else {
+			dependencies.addId(symbolTable.intern(name));
+		}
+	}
+
+	/**
+	 * Adds the classes of the signature of a class, method or type. A
+	 * descriptor is a signature without type parameters and arguments.
+	 */
+	void addSignature(final String signature) {
+		int i = 0;
+		if (signature.charAt(0) == '<') {
+			i = addTypeParameters(signature, 1);
+		}
+		if (i < signature.length() && signature.charAt(i) == '(') {
+			i++;
+			while (signature.charAt(i) != ')') {
+				i = addType(signature, i);
+			}
+			i++;
+		}
+		while (i < signature.length()) {
+			// exceptions of a method signature
+			if (signature.charAt(i) == '^') {
+				i++;
+			}
+			i = addType(signature, i);
+		}
+	}
+
+	private int addTypeParameters(final String signature, int i) {
+		while (signature.charAt(i) != '>') {
+			i = signature.indexOf(':', i);
+			while (signature.charAt(i) == ':') {
+				i++;
+				if (signature.charAt(i) != ':' && signature.charAt(i) != '>') {
+					i = addType(signature, i);
+				}
+			}
+		}
+		return i + 1;
+	}
+
+	private int addType(final String signature, int i) {
+		char c = signature.charAt(i);
+		while (c == '[') {
+			c = signature.charAt(++i);
+		}
+		switch (c) {
+		case 'T':
+			return signature.indexOf(';', i) + 1;
+		case 'L':
+			return addClassType(signature, i + 1);
+		default:
+			return i + 1;
+		}
+	}
+
+	/**
+	 * Adds the class type starting at the index and its inner class types,
+	 * returns the index after the terminating ';'.
+	 */
+	private int addClassType(final String signature, int i) {
+		// the name is a range of the signature until an inner class type
+		// follows, then it is assembled in the buffer above the names of the
+		// enclosing class types being decoded
+		final int base = bufferTop;
+		int length = -1;
+		int start = i;
+		while (true) {
+			char c = signature.charAt(i);
+			if (c != ';' && c != '<' && c != '.') {
+				i++;
+				continue;
+			}
+			final int end = i;
+			dependencies.count(Counter.CLASS_TYPES);
+			if (length < 0) {
+				dependencies.addId(symbolTable.intern(signature, start, end));
+			} else {
+				length = append(signature, start, end, base, length);
+				dependencies.addId(symbolTable.intern(buffer, base, base + length));
+			}
+			if (c == '<') {
+				bufferTop = base + Math.max(length, 0);
+				i = addTypeArguments(signature, i + 1);
+				bufferTop = base;
+				c = signature.charAt(i);
+			}
+			if (c == ';') {
+				return i + 1;
+			}
+			// '.' separates the name of an inner class
+			if (length < 0) {
+				length = append(signature, start, end, base, 0);
+			}
+			length = append("$", 0, 1, base, length);
+			start = ++i;
+		}
+	}
+
+	private int addTypeArguments(final String signature, int i) {
+		while (signature.charAt(i) != '>') {
+			final char c = signature.charAt(i);
+			if (c == '*') {
+				i++;
+			} else {
+				i = addType(signature, c == '+' || c == '-' ? i + 1 : i);
+			}
+		}
+		return i + 1;
+	}
+
+	private int append(final String chars, final int start, final int end, final int base, final int length) {
+		final int newLength = length + end - start;
+		if (base + newLength > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, base + newLength));
+		}
+		chars.getChars(start, end, buffer, base + length);
+		return newLength;
+	}
+}
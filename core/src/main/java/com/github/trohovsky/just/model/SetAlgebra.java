@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.trohovsky.just.util.Validation;
+
+/**
+ * Bulk operations over {@link ClassSet}s of the same {@link SymbolTable}.
+ * Sets are combined by merge joins of their sorted IDs, a small Set is
+ * looked up in a large one by binary search and many Sets are combined
+ * through a BitSet. Intersections of many Sets with one Set are computed in
+ * parallel.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class SetAlgebra {
+
+	private static final int PARALLEL_THRESHOLD = 1024;
+
+	private SetAlgebra() {
+	}
+
+	/**
+	 * Returns the intersection of the Sets.
+	 * 
+	 * @param setA
+	 *            the first Set
+	 * @param setB
+	 *            the second Set
+	 * @return the intersection of the Sets
+	 */
+	public static ClassSet intersection(final ClassSet setA, final ClassSet setB) {
+		checkSymbolTables(setA, setB);
+		final int[] a = setA.ids();
+		final int[] b = setB.ids();
+		if (a.length > b.length) {
+			return intersection(setB, setA);
+		}
+		final int[] intersection = new int[a.length];
+		int length = 0;
+		if (isSkewed(a.length, b.length)) {
+			for (int id : a) {
+				if (Arrays.binarySearch(b, id) >= 0) {
+					intersection[length++] = id;
+				}
+			}
+		} else {
+			int i = 0;
+			int j = 0;
+			while (i < a.length && j < b.length) {
+				if (a[i] < b[j]) {
+					i++;
+				} else if (a[i] > b[j]) {
+					j++;
+				} else {
+					intersection[length++] = a[i];
+					i++;
+					j++;
+				}
+			}
+		}
+		return wrap(setA.getSymbolTable(), intersection, length);
+	}
+
+	/**
+	 * Returns setA - setB.
+	 * 
+	 * @param setA
+	 *            the Set
+	 * @param setB
+	 *            the subtracted Set
+	 * @return the Set containing setA - setB
+	 */
+	public static ClassSet subtract(final ClassSet setA, final ClassSet setB) {
+		checkSymbolTables(setA, setB);
+		final int[] a = setA.ids();
+		final int[] b = setB.ids();
+		final int[] difference = new int[a.length];
+		int length = 0;
+		if (isSkewed(a.length, b.length)) {
+			for (int id : a) {
+				if (Arrays.binarySearch(b, id) < 0) {
+					difference[length++] = id;
+				}
+			}
+		} else {
+			int j = 0;
+			for (int id : a) {
+				while (j < b.length && b[j] < id) {
+					j++;
+				}
+				if (j == b.length || b[j] != id) {
+					difference[length++] = id;
+				}
+			}
+		}
+		return wrap(setA.getSymbolTable(), difference, length);
+	}
+
+	/**
+	 * Returns the union of the Sets.
+	 * 
+	 * @param setA
+	 *            the first Set
+	 * @param setB
+	 *            the second Set
+	 * @return the union of the Sets
+	 */
+	public static ClassSet union(final ClassSet setA, final ClassSet setB) {
+		checkSymbolTables(setA, setB);
+		final int[] a = setA.ids();
+		final int[] b = setB.ids();
+		final int[] union = new int[a.length + b.length];
+		int length = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				union[length++] = a[i++];
+			} else if (a[i] > b[j]) {
+				union[length++] = b[j++];
+			} else {
+				union[length++] = a[i++];
+				j++;
+			}
+		}
+		while (i < a.length) {
+			union[length++] = a[i++];
+		}
+		while (j < b.length) {
+			union[length++] = b[j++];
+		}
+		return wrap(setA.getSymbolTable(), union, length);
+	}
+
+	/**
+	 * Returns the union of all the Sets.
+	 * 
+	 * @param symbolTable
+	 *            the symbol table of the Sets
+	 * @param sets
+	 *            the Sets
+	 * @return the union of the Sets
+	 */
+	public static ClassSet union(final SymbolTable symbolTable, final Iterable<ClassSet> sets) {
+		final BitSet union = new BitSet(symbolTable.size());
+		for (ClassSet set : sets) {
+			Validation.isTrue(set.getSymbolTable() == symbolTable, "Sets must have the same symbol table");
+			for (int id : set.ids()) {
+				union.set(id);
+			}
+		}
+		final int[] ids = new int[union.cardinality()];
+		int length = 0;
+		for (int id = union.nextSetBit(0); id != -1; id = union.nextSetBit(id + 1)) {
+			ids[length++] = id;
+		}
+		return ClassSet.wrap(symbolTable, ids);
+	}
+
+	/**
+	 * Returns the intersections of every Set of the List with the Set. Large
+	 * Lists are processed in parallel.
+	 * 
+	 * @param sets
+	 *            the List of Sets
+	 * @param set
+	 *            the Set
+	 * @return the intersections in the order of the List
+	 */
+	public static ClassSet[] intersection(final List<ClassSet> sets, final ClassSet set) {
+		final BitSet members = new BitSet();
+		for (int id : set.ids()) {
+			members.set(id);
+		}
+		final ClassSet[] intersections = new ClassSet[sets.size()];
+		final IntersectionTask task = new IntersectionTask(sets, set, members, intersections, 0, sets.size());
+		if (sets.size() > PARALLEL_THRESHOLD) {
+			ForkJoinPool.commonPool().invoke(task);
+		} else {
+			task.compute();
+		}
+		return intersections;
+	}
+
+	private static ClassSet intersection(final ClassSet setA, final ClassSet setB, final BitSet membersOfB) {
+		checkSymbolTables(setA, setB);
+		final int[] a = setA.ids();
+		int length = 0;
+		for (int id : a) {
+			if (membersOfB.get(id)) {
+				length++;
+			}
+		}
+		if (length == a.length) {
+			return setA;
+		}
+		final int[] intersection = new int[length];
+		length = 0;
+		for (int id : a) {
+			if (membersOfB.get(id)) {
+				intersection[length++] = id;
+			}
+		}
+		return ClassSet.wrap(setA.getSymbolTable(), intersection);
+	}
+
+	/**
+	 * Tells whether binary searches of the smaller Set in the larger one are
+	 * cheaper than a merge.
+	 */
+	private static boolean isSkewed(final int smaller, final int larger) {
+		return (long) smaller * (32 - Integer.numberOfLeadingZeros(larger)) < larger;
+	}
+
+	private static ClassSet wrap(final SymbolTable symbolTable, final int[] ids, final int length) {
+		return ClassSet.wrap(symbolTable, length == ids.length ? ids : Arrays.copyOf(ids, length));
+	}
+
+	private static void checkSymbolTables(final ClassSet setA, final ClassSet setB) {
+		Validation.isTrue(setA.getSymbolTable() == setB.getSymbolTable(), "Sets must have the same symbol table");
+	}
+
+	/**
+	 * Intersects a range of the List, halves of the range are processed in
+	 * parallel.
+	 */
+	private static final class IntersectionTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<ClassSet> sets;
+		private final ClassSet set;
+		private final BitSet members;
+		private final ClassSet[] intersections;
+		private final int from;
+		private final int to;
+
+		IntersectionTask(final List<ClassSet> sets, final ClassSet set, final BitSet members,
+				final ClassSet[] intersections, final int from, final int to) {
+			this.sets = sets;
+			this.set = set;
+			this.members = members;
+			this.intersections = intersections;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					intersections[i] = intersection(sets.get(i), set, members);
+				}
+				return;
+			}
+			final int middle = (from + to) >>> 1;
+			invokeAll(new IntersectionTask(sets, set, members, intersections, from, middle), new IntersectionTask(
+					sets, set, members, intersections, middle, to));
+		}
+	}
+}
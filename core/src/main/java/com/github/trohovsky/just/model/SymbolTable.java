@@ -0,0 +1,218 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Table assigning dense int IDs to internal names of classes. Every name is
+ * stored only once, so sets of classes can be represented by arrays of IDs.
+ * The table is thread-safe, IDs are assigned in the order of interning and
+ * never change.
+ * <p>
+ * Names can also be looked up by a range of characters of a descriptor or
+ * signature, so no String is created for the names already in the table.
+ * The ranges are hashed into an open addressing table of IDs that is
+ * written under the lock and read without it, a reader missing a name just
+ * written falls back to {@link #intern(String)}.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class SymbolTable {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	private volatile String[] names = new String[INITIAL_CAPACITY];
+	private volatile int[] slots = newSlots(INITIAL_CAPACITY * 2);
+	private int size;
+
+	/**
+	 * Returns the ID of the name, assigns a new one if the name is not in the
+	 * table yet.
+	 * 
+	 * @param name
+	 *            the internal name of a class, must not be null
+	 * @return the ID
+	 */
+	public int intern(final String name) {
+		final Integer id = ids.get(name);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			final Integer existingId = ids.get(name);
+			if (existingId != null) {
+				return existingId;
+			}
+			String[] names = this.names;
+			if (size == names.length) {
+				final String[] newNames = new String[size * 2];
+				System.arraycopy(names, 0, newNames, 0, size);
+				names = newNames;
+			}
+			names[size] = name;
+			// publishes the name before its ID
+			this.names = names;
+			ids.put(name, size);
+			addSlot(name, size);
+			return size++;
+		}
+	}
+
+	/**
+	 * Returns the ID of the name given by the range of the characters, assigns
+	 * a new one if the name is not in the table yet.
+	 * 
+	 * @param chars
+	 *            the characters containing the name, e.g. a descriptor
+	 * @param start
+	 *            the index of the first character of the name
+	 * @param end
+	 *            the index after the last character of the name
+	 * @return the ID
+	 */
+	public int intern(final String chars, final int start, final int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + chars.charAt(i);
+		}
+		final int[] slots = this.slots;
+		final String[] names = this.names;
+		final int length = end - start;
+		for (int slot = slot(hash, slots.length);; slot = (slot + 1) & (slots.length - 1)) {
+			final int id = slots[slot];
+			if (id < 0) {
+				return intern(chars.substring(start, end));
+			}
+			final String name = id < names.length ? names[id] : null;
+			if (name != null && name.length() == length && chars.regionMatches(start, name, 0, length)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Returns the ID of the name given by the range of the characters, assigns
+	 * a new one if the name is not in the table yet.
+	 * 
+	 * @param chars
+	 *            the characters containing the name
+	 * @param start
+	 *            the index of the first character of the name
+	 * @param end
+	 *            the index after the last character of the name
+	 * @return the ID
+	 */
+	public int intern(final char[] chars, final int start, final int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		final int[] slots = this.slots;
+		final String[] names = this.names;
+		final int length = end - start;
+		for (int slot = slot(hash, slots.length);; slot = (slot + 1) & (slots.length - 1)) {
+			final int id = slots[slot];
+			if (id < 0) {
+				return intern(new String(chars, start, length));
+			}
+			final String name = id < names.length ? names[id] : null;
+			if (name != null && name.length() == length && regionMatches(chars, start, name)) {
+				return id;
+			}
+		}
+	}
+
+	private static boolean regionMatches(final char[] chars, final int start, final String name) {
+		for (int i = 0; i < name.length(); i++) {
+			if (chars[start + i] != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the ID to the slot of the name, called under the lock. The slots
+	 * are rehashed into a new array that is published when complete.
+	 */
+	private void addSlot(final String name, final int id) {
+		int[] slots = this.slots;
+		if ((id + 1) * 2 > slots.length) {
+			final int[] newSlots = newSlots(slots.length * 2);
+			for (int i = 0; i < id; i++) {
+				insert(newSlots, names[i].hashCode(), i);
+			}
+			insert(newSlots, name.hashCode(), id);
+			this.slots = newSlots;
+		} else {
+			insert(slots, name.hashCode(), id);
+		}
+	}
+
+	private static void insert(final int[] slots, final int hash, final int id) {
+		int slot = slot(hash, slots.length);
+		while (slots[slot] >= 0) {
+			slot = (slot + 1) & (slots.length - 1);
+		}
+		slots[slot] = id;
+	}
+
+	private static int slot(final int hash, final int length) {
+		return (hash ^ hash >>> 16) & (length - 1);
+	}
+
+	private static int[] newSlots(final int capacity) {
+		final int[] slots = new int[capacity];
+		Arrays.fill(slots, -1);
+		return slots;
+	}
+
+	/**
+	 * Returns the ID of the name without interning it.
+	 * 
+	 * @param name
+	 *            the internal name of a class
+	 * @return the ID, -1 if the name is not in the table
+	 */
+	public int get(final String name) {
+		final Integer id = ids.get(name);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * Returns the name of the ID.
+	 * 
+	 * @param id
+	 *            the ID returned by {@link #intern(String)}
+	 * @return the internal name of the class
+	 */
+	public String name(final int id) {
+		return names[id];
+	}
+
+	/**
+	 * Returns the number of names in the table.
+	 * 
+	 * @return the number of names
+	 */
+	public int size() {
+		return ids.size();
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+
+/**
+ * Writer of {@link ReportFormat#CSV}, an edge list of classes and their
+ * dependencies. The fields are quoted only if needed, see RFC 4180.
+ * 
+ * @author Tomas Rohovsky
+ */
+final class CsvReportWriter extends ReportWriter {
+
+	CsvReportWriter(final Writer writer) {
+		super(ReportFormat.CSV, writer);
+	}
+
+	@Override
+	void writeHeader(final boolean classesWithDependencies) throws IOException {
+		write(classesWithDependencies ? "class,dependency\r\n" : "class\r\n");
+	}
+
+	@Override
+	void writeClassWithDependencies(final String className, final Collection<String> classDependencies)
+			throws IOException {
+		if (classDependencies.isEmpty()) {
+			writeField(className);
+			write(",\r\n");
+			return;
+		}
+		for (String dependency : classDependencies) {
+			writeField(className);
+			write(',');
+			writeField(dependency);
+			write("\r\n");
+		}
+	}
+
+	@Override
+	void writeClassOnly(final String className) throws IOException {
+		writeField(className);
+		write("\r\n");
+	}
+
+	@Override
+	void writeFooter() {
+	}
+
+	private void writeField(final String field) throws IOException {
+		boolean quoted = false;
+		for (int i = 0; i < field.length() && !quoted; i++) {
+			final char c = field.charAt(i);
+			quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+		}
+		if (!quoted) {
+			write(field);
+			return;
+		}
+		write('"');
+		write(field.replace("\"", "\"\""));
+		write('"');
+	}
+}
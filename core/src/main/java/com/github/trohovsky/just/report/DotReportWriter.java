@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+
+/**
+ * Writer of {@link ReportFormat#DOT}. Every class is a node, dependencies
+ * are edges from the class.
+ * 
+ * @author Tomas Rohovsky
+ */
+final class DotReportWriter extends ReportWriter {
+
+	DotReportWriter(final Writer writer) {
+		super(ReportFormat.DOT, writer);
+	}
+
+	@Override
+	void writeHeader(final boolean classesWithDependencies) throws IOException {
+		write("digraph dependencies {\n");
+	}
+
+	@Override
+	void writeClassWithDependencies(final String className, final Collection<String> classDependencies)
+			throws IOException {
+		writeClassOnly(className);
+		for (String dependency : classDependencies) {
+			write('\t');
+			writeId(className);
+			write(" -> ");
+			writeId(dependency);
+			write(";\n");
+		}
+	}
+
+	@Override
+	void writeClassOnly(final String className) throws IOException {
+		write('\t');
+		writeId(className);
+		write(";\n");
+	}
+
+	@Override
+	void writeFooter() throws IOException {
+		write("}\n");
+	}
+
+	private void writeId(final String id) throws IOException {
+		write('"');
+		for (int i = 0; i < id.length(); i++) {
+			final char c = id.charAt(i);
+			if (c == '"' || c == '\\') {
+				write('\\');
+			}
+			write(c);
+		}
+		write('"');
+	}
+}
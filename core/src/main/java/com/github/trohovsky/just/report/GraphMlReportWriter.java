@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writer of {@link ReportFormat#GRAPHML}. A node is written when a class
+ * occurs for the first time, so only the names of the classes are kept, not
+ * the edges.
+ * 
+ * @author Tomas Rohovsky
+ */
+final class GraphMlReportWriter extends ReportWriter {
+
+	private final Set<String> nodes = new HashSet<String>();
+
+	GraphMlReportWriter(final Writer writer) {
+		super(ReportFormat.GRAPHML, writer);
+	}
+
+	@Override
+	void writeHeader(final boolean classesWithDependencies) throws IOException {
+		write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+		write("  <graph id=\"dependencies\" edgedefault=\"directed\">\n");
+	}
+
+	@Override
+	void writeClassWithDependencies(final String className, final Collection<String> classDependencies)
+			throws IOException {
+		writeClassOnly(className);
+		for (String dependency : classDependencies) {
+			writeClassOnly(dependency);
+			write("    <edge source=");
+			writeAttribute(className);
+			write(" target=");
+			writeAttribute(dependency);
+			write("/>\n");
+		}
+	}
+
+	@Override
+	void writeClassOnly(final String className) throws IOException {
+		if (nodes.add(className)) {
+			write("    <node id=");
+			writeAttribute(className);
+			write("/>\n");
+		}
+	}
+
+	@Override
+	void writeFooter() throws IOException {
+		write("  </graph>\n");
+		write("</graphml>\n");
+	}
+
+	private void writeAttribute(final String value) throws IOException {
+		write('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+			case '&':
+				write("&amp;");
+				break;
+			case '<':
+				write("&lt;");
+				break;
+			case '"':
+				write("&quot;");
+				break;
+			default:
+				write(c);
+			}
+		}
+		write('"');
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+
+/**
+ * Writer of {@link ReportFormat#JSONL}.
+ * 
+ * @author Tomas Rohovsky
+ */
+final class JsonLinesReportWriter extends ReportWriter {
+
+	JsonLinesReportWriter(final Writer writer) {
+		super(ReportFormat.JSONL, writer);
+	}
+
+	@Override
+	void writeHeader(final boolean classesWithDependencies) {
+	}
+
+	@Override
+	void writeClassWithDependencies(final String className, final Collection<String> classDependencies)
+			throws IOException {
+		write("{\"class\":");
+		writeString(className);
+		write(",\"dependencies\":[");
+		boolean first = true;
+		for (String dependency : classDependencies) {
+			if (!first) {
+				write(',');
+			}
+			writeString(dependency);
+			first = false;
+		}
+		write("]}\n");
+	}
+
+	@Override
+	void writeClassOnly(final String className) throws IOException {
+		write("{\"class\":");
+		writeString(className);
+		write("}\n");
+	}
+
+	@Override
+	void writeFooter() {
+	}
+
+	private void writeString(final String string) throws IOException {
+		write('"');
+		for (int i = 0; i < string.length(); i++) {
+			final char c = string.charAt(i);
+			if (c == '"' || c == '\\') {
+				write('\\');
+				write(c);
+			} else if (c < 0x20) {
+				write(String.format("\\u%04x", (int) c));
+			} else {
+				write(c);
+			}
+		}
+		write('"');
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.report;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Format of a report of classes.
+ * 
+ * @author Tomas Rohovsky
+ */
+public enum ReportFormat {
+
+	/**
+	 * Class names on lines, dependencies of a class follow it indented by a
+	 * tab.
+	 */
+	TEXT {
+		@Override
+		public ReportWriter open(final Writer writer) {
+			return new TextReportWriter(writer);
+		}
+	},
+
+	/**
+	 * JSON object per line, e.g. {"class":"a/B","dependencies":["c/D"]}.
+	 */
+	JSONL {
+		@Override
+		public ReportWriter open(final Writer writer) {
+			return new JsonLinesReportWriter(writer);
+		}
+	},
+
+	/**
+	 * CSV with a header, a row per dependency of a class or per class if
+	 * there are no dependencies.
+	 */
+	CSV {
+		@Override
+		public ReportWriter open(final Writer writer) {
+			return new CsvReportWriter(writer);
+		}
+	},
+
+	/**
+	 * Directed graph of Graphviz.
+	 */
+	DOT {
+		@Override
+		public ReportWriter open(final Writer writer) {
+			return new DotReportWriter(writer);
+		}
+	},
+
+	/**
+	 * Directed graph in GraphML.
+	 */
+	GRAPHML {
+		@Override
+		public ReportWriter open(final Writer writer) {
+			return new GraphMlReportWriter(writer);
+		}
+	};
+
+	/**
+	 * Size of the buffer of a report written to a stream, 64 KB.
+	 */
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Opens a report written to the writer. The writer should be buffered.
+	 * 
+	 * @param writer
+	 *            the writer
+	 * @return the report writer
+	 */
+	public abstract ReportWriter open(Writer writer);
+
+	/**
+	 * Opens a report written to the stream in UTF-8 through a buffer of
+	 * {@link #BUFFER_SIZE}.
+	 * 
+	 * @param out
+	 *            the stream
+	 * @return the report writer
+	 */
+	public ReportWriter open(final OutputStream out) {
+		return open(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE));
+	}
+
+	/**
+	 * Returns the name of the format, e.g. "jsonl".
+	 */
+	public String getName() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Returns the format of the name, case is ignored.
+	 * 
+	 * @param name
+	 *            the name of the format
+	 * @return the format
+	 * @throws IllegalArgumentException
+	 *             if there is no such format
+	 */
+	public static ReportFormat of(final String name) {
+		for (ReportFormat format : values()) {
+			if (format.name().equalsIgnoreCase(name)) {
+				return format;
+			}
+		}
+		throw new IllegalArgumentException("Unknown format of report: " + name);
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.report;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.github.trohovsky.just.jfr.ReportEvent;
+
+/**
+ * Writer of a report of classes in a {@link ReportFormat}. The classes are
+ * written one by one as they are produced, so a report does not have to be
+ * held in memory. A report contains either classes with their dependencies
+ * or only classes, e.g. the used classes.
+ * 
+ * <pre>
+ * ReportWriter writer = ReportFormat.CSV.open(new FileOutputStream(&quot;dependencies.csv&quot;));
+ * try {
+ * 	writer.writeAll(classesWithDependencies);
+ * } finally {
+ * 	writer.close();
+ * }
+ * </pre>
+ * 
+ * @author Tomas Rohovsky
+ */
+public abstract class ReportWriter implements Closeable, Flushable {
+
+	private final ReportFormat format;
+	private final Writer writer;
+	private final ReportEvent event = new ReportEvent();
+	private Boolean withDependencies;
+	private boolean finished;
+	private long classes;
+	private long dependencies;
+	private long chars;
+
+	ReportWriter(final ReportFormat format, final Writer writer) {
+		this.format = format;
+		this.writer = writer;
+		event.begin();
+	}
+
+	public ReportFormat getFormat() {
+		return format;
+	}
+
+	/**
+	 * Writes the class with its dependencies.
+	 * 
+	 * @param className
+	 *            the name of the class
+	 * @param classDependencies
+	 *            the dependencies of the class
+	 * @throws IOException
+	 */
+	public final void writeClass(final String className, final Collection<String> classDependencies)
+			throws IOException {
+		begin(true);
+		writeClassWithDependencies(className, classDependencies);
+		classes++;
+		dependencies += classDependencies.size();
+	}
+
+	/**
+	 * Writes the class without dependencies.
+	 * 
+	 * @param className
+	 *            the name of the class
+	 * @throws IOException
+	 */
+	public final void writeClass(final String className) throws IOException {
+		begin(false);
+		writeClassOnly(className);
+		classes++;
+	}
+
+	/**
+	 * Writes the classes with their dependencies.
+	 * 
+	 * @param classesWithDependencies
+	 *            the classes and their dependencies
+	 * @throws IOException
+	 */
+	public void writeAll(final Map<String, ? extends Collection<String>> classesWithDependencies)
+			throws IOException {
+		begin(true);
+		for (Entry<String, ? extends Collection<String>> entry : classesWithDependencies.entrySet()) {
+			writeClass(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Writes the classes without dependencies.
+	 * 
+	 * @param classNames
+	 *            the names of the classes
+	 * @throws IOException
+	 */
+	public void writeAll(final Collection<String> classNames) throws IOException {
+		begin(false);
+		for (String className : classNames) {
+			writeClass(className);
+		}
+	}
+
+	private void begin(final boolean classesWithDependencies) throws IOException {
+		if (finished) {
+			throw new IllegalStateException("Report is already finished");
+		}
+		if (withDependencies == null) {
+			withDependencies = classesWithDependencies;
+			writeHeader(classesWithDependencies);
+		} else if (withDependencies != classesWithDependencies) {
+			throw new IllegalStateException(withDependencies ? "Report contains classes with dependencies"
+					: "Report contains classes without dependencies");
+		}
+	}
+
+	/**
+	 * Finishes the report, e.g. closes the elements of the format, and
+	 * flushes it. The underlying stream is left open.
+	 * 
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		if (withDependencies == null) {
+			begin(true);
+		}
+		writeFooter();
+		finished = true;
+		writer.flush();
+		event.end();
+		if (event.shouldCommit()) {
+			event.format = format.getName();
+			event.classes = classes;
+			event.dependencies = dependencies;
+			event.bytes = chars;
+			event.commit();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	/**
+	 * Finishes the report and closes the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Returns the number of written classes.
+	 */
+	public long getClasses() {
+		return classes;
+	}
+
+	/**
+	 * Returns the number of written dependencies of the classes.
+	 */
+	public long getDependencies() {
+		return dependencies;
+	}
+
+	abstract void writeHeader(boolean classesWithDependencies) throws IOException;
+
+	abstract void writeClassWithDependencies(String className, Collection<String> classDependencies)
+			throws IOException;
+
+	abstract void writeClassOnly(String className) throws IOException;
+
+	abstract void writeFooter() throws IOException;
+
+	void write(final String string) throws IOException {
+		writer.write(string);
+		chars += string.length();
+	}
+
+	void write(final char c) throws IOException {
+		writer.write(c);
+		chars++;
+	}
+}
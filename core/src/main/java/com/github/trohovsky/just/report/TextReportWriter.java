@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+
+/**
+ * Writer of {@link ReportFormat#TEXT}.
+ * 
+ * @author Tomas Rohovsky
+ */
+final class TextReportWriter extends ReportWriter {
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	TextReportWriter(final Writer writer) {
+		super(ReportFormat.TEXT, writer);
+	}
+
+	@Override
+	void writeHeader(final boolean classesWithDependencies) {
+	}
+
+	@Override
+	void writeClassWithDependencies(final String className, final Collection<String> classDependencies)
+			throws IOException {
+		writeClassOnly(className);
+		for (String dependency : classDependencies) {
+			write('\t');
+			write(dependency);
+			write(LINE_SEPARATOR);
+		}
+	}
+
+	@Override
+	void writeClassOnly(final String className) throws IOException {
+		write(className);
+		write(LINE_SEPARATOR);
+	}
+
+	@Override
+	void writeFooter() {
+	}
+}
@@ -0,0 +1,617 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.scanner;
+
+import java.util.Arrays;
+
+import com.github.trohovsky.just.model.Dependencies;
+
+/**
+ * Scanner collecting dependencies of a class from its constant pool,
+ * descriptors, signatures and annotations. Unlike the visitor chain it does
+ * not decode instructions, it derives the classes referenced by the code from
+ * the constant pool entries instead.
+ * <p>
+ * The results are the same as the ones of the visitor chain. A constant pool
+ * entry can also be referenced only by structures that the visitor chain
+ * ignores, e.g. inner classes, stack map frames or method handles of lambdas.
+ * Only if there is such an entry, the operands of instructions referencing
+ * the constant pool are scanned in order to find out whether the code uses it.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class ConstantPoolScanner {
+
+	// constant pool tags
+	private static final int UTF8 = 1;
+	private static final int INTEGER = 3;
+	private static final int FLOAT = 4;
+	private static final int LONG = 5;
+	private static final int DOUBLE = 6;
+	private static final int CLASS = 7;
+	private static final int STRING = 8;
+	private static final int FIELD_REF = 9;
+	private static final int METHOD_REF = 10;
+	private static final int INTERFACE_METHOD_REF = 11;
+	private static final int NAME_AND_TYPE = 12;
+	private static final int METHOD_HANDLE = 15;
+	private static final int METHOD_TYPE = 16;
+	private static final int DYNAMIC = 17;
+	private static final int INVOKE_DYNAMIC = 18;
+	private static final int MODULE = 19;
+	private static final int PACKAGE = 20;
+
+	// references of constant pool entries
+	private static final byte KNOWN = 1;
+	private static final byte STRUCTURAL = 2;
+	private static final byte CODE = 4;
+	private static final byte HANDLE = 8;
+
+	/**
+	 * Lengths of instructions of a fixed length indexed by their opcodes.
+	 */
+	private static final byte[] INSTRUCTION_LENGTHS = new byte[256];
+
+	static {
+		Arrays.fill(INSTRUCTION_LENGTHS, (byte) 1);
+		INSTRUCTION_LENGTHS[0x10] = 2; // bipush
+		INSTRUCTION_LENGTHS[0x11] = 3; // sipush
+		INSTRUCTION_LENGTHS[0x14] = 3; // ldc2_w
+		for (int opcode = 0x15; opcode <= 0x19; opcode++) {
+			INSTRUCTION_LENGTHS[opcode] = 2; // loads
+		}
+		for (int opcode = 0x36; opcode <= 0x3A; opcode++) {
+			INSTRUCTION_LENGTHS[opcode] = 2; // stores
+		}
+		INSTRUCTION_LENGTHS[0x84] = 3; // iinc
+		for (int opcode = 0x99; opcode <= 0xA8; opcode++) {
+			INSTRUCTION_LENGTHS[opcode] = 3; // jumps
+		}
+		INSTRUCTION_LENGTHS[0xA9] = 2; // ret
+		INSTRUCTION_LENGTHS[0xBA] = 5; // invokedynamic
+		INSTRUCTION_LENGTHS[0xBC] = 2; // newarray
+		INSTRUCTION_LENGTHS[0xC6] = 3; // ifnull
+		INSTRUCTION_LENGTHS[0xC7] = 3; // ifnonnull
+		INSTRUCTION_LENGTHS[0xC8] = 5; // goto_w
+		INSTRUCTION_LENGTHS[0xC9] = 5; // jsr_w
+	}
+
+	private final byte[] b;
+	private final Dependencies dependencies;
+	private final int[] offsets;
+	private final byte[] tags;
+	private final byte[] references;
+	private final String[] strings;
+	private final char[] buffer;
+	private int[] codeOffsets = new int[16];
+	private int codeCount;
+
+	private ConstantPoolScanner(final byte[] b, final Dependencies dependencies) {
+		this.b = b;
+		this.dependencies = dependencies;
+		if (readInt(0) != 0xCAFEBABE) {
+			throw new IllegalArgumentException("Not a class file");
+		}
+		final int count = readUnsignedShort(8);
+		this.offsets = new int[count];
+		this.tags = new byte[count];
+		this.references = new byte[count];
+		this.strings = new String[count];
+		int maxUtf8Length = 0;
+		int offset = 10;
+		for (int i = 1; i < count; i++) {
+			final int tag = b[offset];
+			tags[i] = (byte) tag;
+			offsets[i] = offset + 1;
+			switch (tag) {
+			case UTF8:
+				final int length = readUnsignedShort(offset + 1);
+				maxUtf8Length = Math.max(maxUtf8Length, length);
+				offset += 3 + length;
+				break;
+			case CLASS:
+			case STRING:
+			case METHOD_TYPE:
+			case MODULE:
+			case PACKAGE:
+				offset += 3;
+				break;
+			case METHOD_HANDLE:
+				references[readUnsignedShort(offset + 2)] |= HANDLE;
+				offset += 4;
+				break;
+			case INTEGER:
+			case FLOAT:
+			case FIELD_REF:
+			case METHOD_REF:
+			case INTERFACE_METHOD_REF:
+			case NAME_AND_TYPE:
+			case DYNAMIC:
+			case INVOKE_DYNAMIC:
+				offset += 5;
+				break;
+			case LONG:
+			case DOUBLE:
+				offset += 9;
+				i++;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown constant pool tag " + tag + " at " + offset);
+			}
+		}
+		this.buffer = new char[maxUtf8Length];
+		this.offsets[0] = offset;
+	}
+
+	/**
+	 * Scans the class file and adds its dependencies.
+	 * 
+	 * @param classFile
+	 *            the bytes of the class file
+	 * @param dependencies
+	 *            the container the dependencies are added to
+	 */
+	public static void scan(final byte[] classFile, final Dependencies dependencies) {
+		new ConstantPoolScanner(classFile, dependencies).scan();
+	}
+
+	/**
+	 * Reads access flags of the class, e.g. to tell whether the class is
+	 * public.
+	 * 
+	 * @param classFile
+	 *            the bytes of the class file
+	 * @return the access flags of the class
+	 */
+	public static int readAccess(final byte[] classFile) {
+		final ConstantPoolScanner scanner = new ConstantPoolScanner(classFile, null);
+		return scanner.readUnsignedShort(scanner.offsets[0]);
+	}
+
+	private void scan() {
+		int offset = offsets[0];
+		references[readUnsignedShort(offset + 2)] |= STRUCTURAL; // this class
+		final int superClass = readUnsignedShort(offset + 4);
+		references[superClass] |= KNOWN;
+		final int interfaceCount = readUnsignedShort(offset + 6);
+		offset += 8;
+		for (int i = 0; i < interfaceCount; i++) {
+			references[readUnsignedShort(offset)] |= KNOWN;
+			offset += 2;
+		}
+
+		// the class signature is preferred to the super class and interfaces
+		// of the header, the referenced classes are the same anyway
+		offset = scanMembers(offset); // fields
+		offset = scanMembers(offset); // methods
+		scanClassAttributes(offset);
+
+		for (int i = 1; i < tags.length; i++) {
+			if (isMemberRef(tags[i]) && (references[i] & HANDLE) == 0) {
+				references[readUnsignedShort(offsets[i])] |= KNOWN;
+			}
+		}
+
+		// an entry is ambiguous if it might be referenced by the code only
+		boolean ambiguous = false;
+		for (int i = 1; i < tags.length && !ambiguous; i++) {
+			ambiguous = (references[i] & HANDLE) != 0 || (tags[i] == CLASS && (references[i] & KNOWN) == 0);
+		}
+		if (ambiguous) {
+			for (int i = 0; i < codeCount; i++) {
+				scanCode(codeOffsets[i]);
+			}
+		}
+
+		for (int i = 1; i < tags.length; i++) {
+			if (isMemberRef(tags[i])) {
+				if ((references[i] & HANDLE) == 0 || (references[i] & CODE) != 0) {
+					references[readUnsignedShort(offsets[i])] |= KNOWN;
+					addNameAndTypeDescriptor(readUnsignedShort(offsets[i] + 2));
+				}
+			} else if (tags[i] == INVOKE_DYNAMIC) {
+				addNameAndTypeDescriptor(readUnsignedShort(offsets[i] + 2));
+			}
+		}
+		for (int i = 1; i < tags.length; i++) {
+			if (tags[i] == CLASS) {
+				if ((references[i] & (KNOWN | CODE)) != 0) {
+					addInternalName(readUtf8(readUnsignedShort(offsets[i])));
+				}
+			}
+		}
+	}
+
+	private static boolean isMemberRef(final int tag) {
+		return tag == FIELD_REF || tag == METHOD_REF || tag == INTERFACE_METHOD_REF;
+	}
+
+	private void addNameAndTypeDescriptor(final int nameAndType) {
+		addDescriptor(readUtf8(readUnsignedShort(offsets[nameAndType] + 2)));
+	}
+
+	private int scanMembers(int offset) {
+		final int count = readUnsignedShort(offset);
+		offset += 2;
+		for (int i = 0; i < count; i++) {
+			final String descriptor = readUtf8(readUnsignedShort(offset + 4));
+			String signature = null;
+			int attributeCount = readUnsignedShort(offset + 6);
+			offset += 8;
+			for (; attributeCount > 0; attributeCount--) {
+				final String name = readUtf8(readUnsignedShort(offset));
+				final int length = readInt(offset + 2);
+				offset += 6;
+				if ("Signature".equals(name)) {
+					signature = readUtf8(readUnsignedShort(offset));
+				} else if ("Code".equals(name)) {
+					scanCodeAttribute(offset);
+				} else if ("Exceptions".equals(name)) {
+					final int exceptionCount = readUnsignedShort(offset);
+					for (int j = 0; j < exceptionCount; j++) {
+						references[readUnsignedShort(offset + 2 + 2 * j)] |= KNOWN;
+					}
+				} else if ("AnnotationDefault".equals(name)) {
+					scanElementValue(offset);
+				} else {
+					scanAnnotationAttribute(name, offset);
+				}
+				offset += length;
+			}
+			if (signature != null) {
+				addSignature(signature);
+			} else {
+				addDescriptor(descriptor);
+			}
+		}
+		return offset;
+	}
+
+	private void scanClassAttributes(int offset) {
+		int attributeCount = readUnsignedShort(offset);
+		offset += 2;
+		for (; attributeCount > 0; attributeCount--) {
+			final String name = readUtf8(readUnsignedShort(offset));
+			final int length = readInt(offset + 2);
+			offset += 6;
+			if ("Signature".equals(name)) {
+				addSignature(readUtf8(readUnsignedShort(offset)));
+			} else if ("InnerClasses".equals(name)) {
+				final int classCount = readUnsignedShort(offset);
+				for (int i = 0; i < classCount; i++) {
+					references[readUnsignedShort(offset + 2 + 8 * i)] |= STRUCTURAL;
+					references[readUnsignedShort(offset + 4 + 8 * i)] |= STRUCTURAL;
+				}
+			} else if ("EnclosingMethod".equals(name) || "NestHost".equals(name)) {
+				references[readUnsignedShort(offset)] |= STRUCTURAL;
+			} else if ("NestMembers".equals(name) || "PermittedSubclasses".equals(name)) {
+				final int classCount = readUnsignedShort(offset);
+				for (int i = 0; i < classCount; i++) {
+					references[readUnsignedShort(offset + 2 + 2 * i)] |= STRUCTURAL;
+				}
+			} else if ("BootstrapMethods".equals(name)) {
+				scanBootstrapMethods(offset);
+			} else {
+				scanAnnotationAttribute(name, offset);
+			}
+			offset += length;
+		}
+	}
+
+	private void scanBootstrapMethods(int offset) {
+		final int methodCount = readUnsignedShort(offset);
+		offset += 2;
+		for (int i = 0; i < methodCount; i++) {
+			final int argumentCount = readUnsignedShort(offset + 2);
+			offset += 4;
+			for (int j = 0; j < argumentCount; j++) {
+				references[readUnsignedShort(offset)] |= STRUCTURAL;
+				offset += 2;
+			}
+		}
+	}
+
+	private void scanCodeAttribute(int offset) {
+		if (codeCount == codeOffsets.length) {
+			final int[] newCodeOffsets = new int[codeOffsets.length * 2];
+			System.arraycopy(codeOffsets, 0, newCodeOffsets, 0, codeCount);
+			codeOffsets = newCodeOffsets;
+		}
+		codeOffsets[codeCount++] = offset + 4;
+
+		offset += 8 + readInt(offset + 4);
+		final int exceptionCount = readUnsignedShort(offset);
+		for (int i = 0; i < exceptionCount; i++) {
+			references[readUnsignedShort(offset + 8 + 8 * i)] |= KNOWN;
+		}
+		offset += 2 + 8 * exceptionCount;
+
+		int localVariables = 0;
+		int localVariableTypes = 0;
+		int attributeCount = readUnsignedShort(offset);
+		offset += 2;
+		for (; attributeCount > 0; attributeCount--) {
+			final String name = readUtf8(readUnsignedShort(offset));
+			final int length = readInt(offset + 2);
+			offset += 6;
+			if ("LocalVariableTable".equals(name)) {
+				localVariables = offset;
+			} else if ("LocalVariableTypeTable".equals(name)) {
+				localVariableTypes = offset;
+			} else if ("StackMapTable".equals(name)) {
+				scanStackMapTable(offset);
+			} else {
+				scanAnnotationAttribute(name, offset);
+			}
+			offset += length;
+		}
+		if (localVariables != 0) {
+			scanLocalVariables(localVariables, localVariableTypes);
+		}
+	}
+
+	private void scanLocalVariables(final int localVariables, final int localVariableTypes) {
+		final int count = readUnsignedShort(localVariables);
+		final int typeCount = localVariableTypes != 0 ? readUnsignedShort(localVariableTypes) : 0;
+		for (int i = 0; i < count; i++) {
+			final int offset = localVariables + 2 + 10 * i;
+			String signature = null;
+
+			// a generic variable is matched by its start and index
+			for (int j = 0; j < typeCount; j++) {
+				final int typeOffset = localVariableTypes + 2 + 10 * j;
+				if (readUnsignedShort(typeOffset) == readUnsignedShort(offset)
+						&& readUnsignedShort(typeOffset + 8) == readUnsignedShort(offset + 8)) {
+					signature = readUtf8(readUnsignedShort(typeOffset + 6));
+					break;
+				}
+			}
+			if (signature != null) {
+				addSignature(signature);
+			} else {
+				addDescriptor(readUtf8(readUnsignedShort(offset + 6)));
+			}
+		}
+	}
+
+	private void scanStackMapTable(int offset) {
+		final int frameCount = readUnsignedShort(offset);
+		offset += 2;
+		for (int i = 0; i < frameCount; i++) {
+			final int frameType = b[offset++] & 0xFF;
+			if (frameType < 64) {
+				continue;
+			} else if (frameType < 128) {
+				offset = scanVerificationTypes(offset, 1);
+			} else if (frameType == 247) {
+				offset = scanVerificationTypes(offset + 2, 1);
+			} else if (frameType < 252) {
+				offset += 2;
+			} else if (frameType < 255) {
+				offset = scanVerificationTypes(offset + 2, frameType - 251);
+			} else {
+				offset = scanVerificationTypes(offset + 4, readUnsignedShort(offset + 2));
+				offset = scanVerificationTypes(offset + 2, readUnsignedShort(offset));
+			}
+		}
+	}
+
+	private int scanVerificationTypes(int offset, final int count) {
+		for (int i = 0; i < count; i++) {
+			final int tag = b[offset++];
+			if (tag == 7) { // object
+				references[readUnsignedShort(offset)] |= STRUCTURAL;
+				offset += 2;
+			} else if (tag == 8) { // uninitialized
+				offset += 2;
+			}
+		}
+		return offset;
+	}
+
+	private void scanCode(final int offset) {
+		final int start = offset + 4;
+		final int end = start + readInt(offset);
+		int i = start;
+		while (i < end) {
+			final int opcode = b[i] & 0xFF;
+			switch (opcode) {
+			case 0x12: // ldc
+				references[b[i + 1] & 0xFF] |= CODE;
+				i += 2;
+				break;
+			case 0x13: // ldc_w
+			case 0xB2: // getstatic
+			case 0xB3: // putstatic
+			case 0xB4: // getfield
+			case 0xB5: // putfield
+			case 0xB6: // invokevirtual
+			case 0xB7: // invokespecial
+			case 0xB8: // invokestatic
+			case 0xBB: // new
+			case 0xBD: // anewarray
+			case 0xC0: // checkcast
+			case 0xC1: // instanceof
+				references[readUnsignedShort(i + 1)] |= CODE;
+				i += 3;
+				break;
+			case 0xB9: // invokeinterface
+				references[readUnsignedShort(i + 1)] |= CODE;
+				i += 5;
+				break;
+			case 0xC5: // multianewarray
+				references[readUnsignedShort(i + 1)] |= CODE;
+				i += 4;
+				break;
+			case 0xAA: // tableswitch
+				i += 4 - ((i - start) & 3);
+				i += 12 + 4 * (readInt(i + 8) - readInt(i + 4) + 1);
+				break;
+			case 0xAB: // lookupswitch
+				i += 4 - ((i - start) & 3);
+				i += 8 + 8 * readInt(i + 4);
+				break;
+			case 0xC4: // wide
+				i += (b[i + 1] & 0xFF) == 0x84 ? 6 : 4;
+				break;
+			default:
+				i += INSTRUCTION_LENGTHS[opcode];
+			}
+		}
+	}
+
+	private void scanAnnotationAttribute(final String name, int offset) {
+		if ("RuntimeVisibleAnnotations".equals(name) || "RuntimeInvisibleAnnotations".equals(name)) {
+			final int annotationCount = readUnsignedShort(offset);
+			offset += 2;
+			for (int i = 0; i < annotationCount; i++) {
+				offset = scanAnnotation(offset);
+			}
+		} else if ("RuntimeVisibleParameterAnnotations".equals(name)
+				|| "RuntimeInvisibleParameterAnnotations".equals(name)) {
+			final int parameterCount = b[offset++] & 0xFF;
+			for (int i = 0; i < parameterCount; i++) {
+				final int annotationCount = readUnsignedShort(offset);
+				offset += 2;
+				for (int j = 0; j < annotationCount; j++) {
+					offset = scanAnnotation(offset);
+				}
+			}
+		} else if ("RuntimeVisibleTypeAnnotations".equals(name) || "RuntimeInvisibleTypeAnnotations".equals(name)) {
+			final int annotationCount = readUnsignedShort(offset);
+			offset += 2;
+			for (int i = 0; i < annotationCount; i++) {
+				offset = scanTypeAnnotation(offset);
+			}
+		}
+	}
+
+	private int scanTypeAnnotation(int offset) {
+		final int targetType = b[offset++] & 0xFF;
+		switch (targetType) {
+		case 0x00: // type parameter
+		case 0x01:
+		case 0x16: // formal parameter
+			offset += 1;
+			break;
+		case 0x13: // empty
+		case 0x14:
+		case 0x15:
+			break;
+		case 0x40: // local variable
+		case 0x41:
+			offset += 2 + 6 * readUnsignedShort(offset);
+			break;
+		case 0x47: // type argument
+		case 0x48:
+		case 0x49:
+		case 0x4A:
+		case 0x4B:
+			offset += 3;
+			break;
+		default: // super type, type parameter bound, throws, catch, offset
+			offset += 2;
+		}
+		offset += 1 + 2 * (b[offset] & 0xFF); // type path
+		return scanAnnotation(offset);
+	}
+
+	private int scanAnnotation(int offset) {
+		addDescriptor(readUtf8(readUnsignedShort(offset)));
+		final int pairCount = readUnsignedShort(offset + 2);
+		offset += 4;
+		for (int i = 0; i < pairCount; i++) {
+			offset = scanElementValue(offset + 2);
+		}
+		return offset;
+	}
+
+	private int scanElementValue(int offset) {
+		final int tag = b[offset++];
+		switch (tag) {
+		case 'e':
+			addDescriptor(readUtf8(readUnsignedShort(offset)));
+			return offset + 4;
+		case 'c':
+			addDescriptor(readUtf8(readUnsignedShort(offset)));
+			return offset + 2;
+		case '@':
+			return scanAnnotation(offset);
+		case '[':
+			final int valueCount = readUnsignedShort(offset);
+			offset += 2;
+			for (int i = 0; i < valueCount; i++) {
+				offset = scanElementValue(offset);
+			}
+			return offset;
+		default:
+			return offset + 2;
+		}
+	}
+
+	private void addInternalName(final String name) {
+		dependencies.addInternalName(name);
+	}
+
+	/**
+	 * Adds classes of a descriptor of a type or method.
+	 */
+	private void addDescriptor(final String descriptor) {
+		if (descriptor != null) {
+			dependencies.addDesc(descriptor);
+		}
+	}
+
+	/**
+	 * Adds classes of a signature of a class, method or type.
+	 */
+	private void addSignature(final String signature) {
+		dependencies.addSignature(signature);
+	}
+
+	private String readUtf8(final int index) {
+		String string = strings[index];
+		if (string != null) {
+			return string;
+		}
+		final int offset = offsets[index];
+		final int end = offset + 2 + readUnsignedShort(offset);
+		int length = 0;
+		for (int i = offset + 2; i < end;) {
+			final int c = b[i++];
+			if (c >= 0) {
+				buffer[length++] = (char) c;
+			} else if ((c & 0xE0) == 0xC0) {
+				buffer[length++] = (char) (((c & 0x1F) << 6) | (b[i++] & 0x3F));
+			} else {
+				buffer[length++] = (char) (((c & 0x0F) << 12) | ((b[i] & 0x3F) << 6) | (b[i + 1] & 0x3F));
+				i += 2;
+			}
+		}
+		string = new String(buffer, 0, length);
+		strings[index] = string;
+		return string;
+	}
+
+	private int readUnsignedShort(final int offset) {
+		return ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+	}
+
+	private int readInt(final int offset) {
+		return ((b[offset] & 0xFF) << 24) | ((b[offset + 1] & 0xFF) << 16) | ((b[offset + 2] & 0xFF) << 8)
+				| (b[offset + 3] & 0xFF);
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.stats;
+
+/**
+ * Counter of the work done while parsing a class: calls of the callbacks of
+ * the visitors, decoded descriptors and signatures and names added to the
+ * dependencies.
+ * 
+ * @see ParseCounters
+ * @author Tomas Rohovsky
+ */
+public enum Counter {
+
+	VISIT("visit"),
+	VISIT_FIELD("visitField"),
+	VISIT_METHOD("visitMethod"),
+
+	/**
+	 * Annotations of classes, fields, methods, parameters, types,
+	 * instructions and local variables.
+	 */
+	VISIT_ANNOTATION("visitAnnotation"),
+
+	/**
+	 * Values of annotations including nested annotations and arrays.
+	 */
+	VISIT_ANNOTATION_VALUE("visitAnnotationValue"),
+
+	VISIT_TYPE_INSN("visitTypeInsn"),
+	VISIT_FIELD_INSN("visitFieldInsn"),
+	VISIT_METHOD_INSN("visitMethodInsn"),
+	VISIT_INVOKE_DYNAMIC_INSN("visitInvokeDynamicInsn"),
+	VISIT_LDC_INSN("visitLdcInsn"),
+	VISIT_MULTI_ANEW_ARRAY_INSN("visitMultiANewArrayInsn"),
+	VISIT_TRY_CATCH_BLOCK("visitTryCatchBlock"),
+	VISIT_LOCAL_VARIABLE("visitLocalVariable"),
+
+	/**
+	 * All the instructions of the methods.
+	 */
+	INSTRUCTIONS("instructions"),
+
+	/**
+	 * Descriptors of types and methods without generic signatures.
+	 */
+	DESCRIPTORS("descriptors"),
+
+	/**
+	 * Generic signatures of classes, methods and types.
+	 */
+	SIGNATURES("signatures"),
+
+	/**
+	 * Class types of the descriptors and signatures including inner class
+	 * types and type arguments.
+	 */
+	CLASS_TYPES("classTypes"),
+
+	/**
+	 * Names of classes added to the dependencies.
+	 */
+	NAMES_ADDED("namesAdded"),
+
+	/**
+	 * Names of classes added to the dependencies that were already there.
+	 */
+	NAMES_DEDUPLICATED("namesDeduplicated");
+
+	private final String label;
+
+	private Counter(final String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Returns the name of the counter used in the reports, e.g.
+	 * "visitMethodInsn".
+	 */
+	public String getLabel() {
+		return label;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.stats;
+
+/**
+ * Counts of a class being parsed by a single thread. The counts are plain
+ * longs, they are summed per archive by the listener once the class is
+ * parsed.
+ * 
+ * @see com.github.trohovsky.just.Reader#countCalls(boolean)
+ * @author Tomas Rohovsky
+ */
+public final class ParseCounters {
+
+	private final long[] counts = new long[Counter.values().length];
+
+	public void increment(final Counter counter) {
+		counts[counter.ordinal()]++;
+	}
+
+	public void add(final Counter counter, final long count) {
+		counts[counter.ordinal()] += count;
+	}
+
+	public long get(final Counter counter) {
+		return counts[counter.ordinal()];
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.stats;
+
+/**
+ * Listener of reading of classes by a Reader, e.g. {@link ScanStatistics}.
+ * Archives, i.e. JARs and directories, are identified by the paths given to
+ * the Reader and times are in nanoseconds.
+ * Classes are read and parsed by multiple threads if the Reader is parallel,
+ * so the listener has to be thread-safe. The methods do nothing by default.
+ * <p>
+ * The Reader measures the times only if it has a listener, so reading
+ * without a listener costs nothing.
+ * 
+ * @see com.github.trohovsky.just.Reader#listener(ScanListener)
+ * @author Tomas Rohovsky
+ */
+public interface ScanListener {
+
+	/**
+	 * Called when an archive was opened, e.g. the central directory of a JAR
+	 * was read.
+	 */
+	default void archiveOpened(final String path, final long nanos) {
+	}
+
+	/**
+	 * Called when classes of an archive were listed.
+	 */
+	default void classesListed(final String path, final int classes, final long nanos) {
+	}
+
+	/**
+	 * Called when a class file was read, inflated in case of a compressed JAR
+	 * entry.
+	 * 
+	 * @param readBytes
+	 *            the bytes read from the archive, the compressed size
+	 * @param inflatedBytes
+	 *            the bytes of the class file
+	 */
+	default void classRead(final String path, final String className, final long readBytes,
+			final long inflatedBytes, final long nanos) {
+	}
+
+	/**
+	 * Called when a class file was parsed.
+	 */
+	default void classParsed(final String path, final String className, final int bytes, final long nanos) {
+	}
+
+	/**
+	 * Called instead of {@link #classParsed(String, String, int, long)} when
+	 * the Reader counts the calls, see
+	 * {@link com.github.trohovsky.just.Reader#countCalls(boolean)}. The
+	 * counters are not valid after the call.
+	 */
+	default void classParsed(final String path, final String className, final int bytes, final long nanos,
+			final ParseCounters counters) {
+		classParsed(path, className, bytes, nanos);
+	}
+
+	/**
+	 * Called when results of classes were merged, e.g. of parallel tasks.
+	 */
+	default void classesMerged(final String path, final int classes, final long nanos) {
+	}
+
+	/**
+	 * Called when dependencies of classes were taken from the cache instead
+	 * of parsing.
+	 */
+	default void classesCached(final String path, final int classes) {
+	}
+}
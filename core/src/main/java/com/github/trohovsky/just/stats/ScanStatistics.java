@@ -0,0 +1,505 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.stats;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of reading of classes: per archive times of the phases, counts
+ * of classes and bytes read versus inflated, and the classes that took the
+ * longest to read and parse. If the Reader counts the calls, the
+ * {@link Counter}s are summed per archive and kept for the slowest classes.
+ * The statistics are collected by any number of threads and Readers, the
+ * summary is printed by {@link #toString()} or written as JSON by
+ * {@link #writeJson(Writer)}.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class ScanStatistics implements ScanListener {
+
+	/**
+	 * Phase of reading of an archive.
+	 */
+	public enum Phase {
+		OPEN, LIST, INFLATE, PARSE, MERGE
+	}
+
+	private static final int DEFAULT_SLOWEST_CLASSES = 10;
+	private static final Comparator<ClassTime> BY_NANOS = new Comparator<ClassTime>() {
+
+		@Override
+		public int compare(final ClassTime a, final ClassTime b) {
+			return Long.compare(a.nanos, b.nanos);
+		}
+	};
+
+	private final ConcurrentMap<String, ArchiveStatistics> archives =
+			new ConcurrentHashMap<String, ArchiveStatistics>();
+	private final int slowestClasses;
+	private final PriorityQueue<ClassTime> slowest = new PriorityQueue<ClassTime>(BY_NANOS);
+	private volatile long slowestThreshold;
+	private final long start = System.nanoTime();
+	private volatile long end;
+
+	/**
+	 * Creates statistics keeping 10 slowest classes. The wall time starts
+	 * now.
+	 */
+	public ScanStatistics() {
+		this(DEFAULT_SLOWEST_CLASSES);
+	}
+
+	/**
+	 * Creates statistics keeping the number of slowest classes. The wall time
+	 * starts now.
+	 */
+	public ScanStatistics(final int slowestClasses) {
+		this.slowestClasses = slowestClasses;
+	}
+
+	@Override
+	public void archiveOpened(final String path, final long nanos) {
+		archive(path).add(Phase.OPEN, nanos);
+	}
+
+	@Override
+	public void classesListed(final String path, final int classes, final long nanos) {
+		final ArchiveStatistics archive = archive(path);
+		archive.add(Phase.LIST, nanos);
+		archive.listedClasses.add(classes);
+	}
+
+	@Override
+	public void classRead(final String path, final String className, final long readBytes,
+			final long inflatedBytes, final long nanos) {
+		final ArchiveStatistics archive = archive(path);
+		archive.add(Phase.INFLATE, nanos);
+		archive.readBytes.add(readBytes);
+		archive.inflatedBytes.add(inflatedBytes);
+	}
+
+	@Override
+	public void classParsed(final String path, final String className, final int bytes, final long nanos) {
+		classParsed(path, className, bytes, nanos, null);
+	}
+
+	@Override
+	public void classParsed(final String path, final String className, final int bytes, final long nanos,
+			final ParseCounters counters) {
+		final ArchiveStatistics archive = archive(path);
+		archive.add(Phase.PARSE, nanos);
+		archive.parsedClasses.increment();
+		if (counters != null) {
+			archive.add(counters);
+		}
+		// the lock is taken only by classes slower than the known ones
+		if (slowestClasses > 0 && nanos > slowestThreshold) {
+			synchronized (slowest) {
+				slowest.add(new ClassTime(path, className, bytes, nanos, counts(counters)));
+				if (slowest.size() > slowestClasses) {
+					slowest.poll();
+				}
+				if (slowest.size() == slowestClasses) {
+					slowestThreshold = slowest.peek().nanos;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void classesMerged(final String path, final int classes, final long nanos) {
+		archive(path).add(Phase.MERGE, nanos);
+	}
+
+	@Override
+	public void classesCached(final String path, final int classes) {
+		archive(path).cachedClasses.add(classes);
+	}
+
+	private static long[] counts(final ParseCounters counters) {
+		if (counters == null) {
+			return null;
+		}
+		final Counter[] values = Counter.values();
+		final long[] counts = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			counts[i] = counters.get(values[i]);
+		}
+		return counts;
+	}
+
+	private ArchiveStatistics archive(final String path) {
+		final ArchiveStatistics archive = archives.get(path);
+		if (archive != null) {
+			return archive;
+		}
+		final ArchiveStatistics newArchive = new ArchiveStatistics(path);
+		final ArchiveStatistics previous = archives.putIfAbsent(path, newArchive);
+		return previous != null ? previous : newArchive;
+	}
+
+	/**
+	 * Stops the wall time, e.g. when the reading finished. Otherwise the wall
+	 * time lasts until the statistics are read.
+	 */
+	public void stop() {
+		end = System.nanoTime();
+	}
+
+	/**
+	 * Returns the wall time since the creation of the statistics until
+	 * {@link #stop()} or now.
+	 */
+	public long getWallNanos() {
+		return (end != 0 ? end : System.nanoTime()) - start;
+	}
+
+	/**
+	 * Returns statistics of the archives in the order of their paths.
+	 */
+	public List<ArchiveStatistics> getArchives() {
+		final List<ArchiveStatistics> result = new ArrayList<ArchiveStatistics>(archives.values());
+		Collections.sort(result, new Comparator<ArchiveStatistics>() {
+
+			@Override
+			public int compare(final ArchiveStatistics a, final ArchiveStatistics b) {
+				return a.path.compareTo(b.path);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the slowest classes to parse, the slowest first.
+	 */
+	public List<ClassTime> getSlowestClasses() {
+		final List<ClassTime> result;
+		synchronized (slowest) {
+			result = new ArrayList<ClassTime>(slowest);
+		}
+		Collections.sort(result, Collections.reverseOrder(BY_NANOS));
+		return result;
+	}
+
+	/**
+	 * Returns the number of parsed classes of all the archives.
+	 */
+	public long getParsedClasses() {
+		long classes = 0;
+		for (ArchiveStatistics archive : archives.values()) {
+			classes += archive.getParsedClasses();
+		}
+		return classes;
+	}
+
+	/**
+	 * Returns the number of parsed classes per second of the wall time.
+	 */
+	public double getClassesPerSecond() {
+		final long nanos = getWallNanos();
+		return nanos > 0 ? getParsedClasses() * 1e9 / nanos : 0;
+	}
+
+	/**
+	 * Writes the statistics as a JSON object.
+	 */
+	public void writeJson(final Writer writer) throws IOException {
+		final List<ArchiveStatistics> archives = getArchives();
+		writer.write("{\"wallMillis\":" + millis(getWallNanos()));
+		writer.write(",\"parsedClasses\":" + getParsedClasses());
+		writer.write(",\"classesPerSecond\":" + Math.round(getClassesPerSecond()));
+		writer.write(",\"archives\":[");
+		for (int i = 0; i < archives.size(); i++) {
+			final ArchiveStatistics archive = archives.get(i);
+			writer.write(i == 0 ? "{" : ",{");
+			writer.write("\"path\":" + quote(archive.path));
+			writer.write(",\"listedClasses\":" + archive.getListedClasses());
+			writer.write(",\"parsedClasses\":" + archive.getParsedClasses());
+			writer.write(",\"cachedClasses\":" + archive.getCachedClasses());
+			writer.write(",\"readBytes\":" + archive.getReadBytes());
+			writer.write(",\"inflatedBytes\":" + archive.getInflatedBytes());
+			for (Phase phase : Phase.values()) {
+				writer.write(",\"" + phase.name().toLowerCase(Locale.ROOT) + "Millis\":"
+						+ millis(archive.getNanos(phase)));
+			}
+			if (archive.isCounted()) {
+				writeCounts(writer, archive.getCounts());
+			}
+			writer.write("}");
+		}
+		writer.write("],\"slowestClasses\":[");
+		final List<ClassTime> classes = getSlowestClasses();
+		for (int i = 0; i < classes.size(); i++) {
+			final ClassTime classTime = classes.get(i);
+			writer.write(i == 0 ? "{" : ",{");
+			writer.write("\"name\":" + quote(classTime.className));
+			writer.write(",\"path\":" + quote(classTime.path));
+			writer.write(",\"bytes\":" + classTime.bytes);
+			writer.write(",\"millis\":" + millis(classTime.nanos));
+			if (classTime.counts != null) {
+				writeCounts(writer, classTime.counts);
+			}
+			writer.write("}");
+		}
+		writer.write("]}\n");
+	}
+
+	private static void writeCounts(final Writer writer, final long[] counts) throws IOException {
+		writer.write(",\"counters\":{");
+		final Counter[] counters = Counter.values();
+		for (int i = 0; i < counters.length; i++) {
+			writer.write((i == 0 ? "\"" : ",\"") + counters[i].getLabel() + "\":" + counts[i]);
+		}
+		writer.write("}");
+	}
+
+	private static String millis(final long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	private static String quote(final String string) {
+		final StringBuilder quoted = new StringBuilder(string.length() + 2).append('"');
+		for (int i = 0; i < string.length(); i++) {
+			final char c = string.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * Returns a human readable summary.
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder summary = new StringBuilder();
+		long readBytes = 0;
+		long inflatedBytes = 0;
+		for (ArchiveStatistics archive : archives.values()) {
+			readBytes += archive.getReadBytes();
+			inflatedBytes += archive.getInflatedBytes();
+		}
+		line(summary, "Parsed %d classes of %d archives in %.1f ms, %.0f classes/s, read %d KB, inflated %d KB",
+				getParsedClasses(), archives.size(), getWallNanos() / 1e6, getClassesPerSecond(), readBytes / 1024,
+				inflatedBytes / 1024);
+		line(summary, "%10s %10s %10s %10s %10s %10s %10s %10s  %s", "classes", "cached", "open ms", "list ms",
+				"inflate ms", "parse ms", "merge ms", "read KB", "archive");
+		for (ArchiveStatistics archive : getArchives()) {
+			line(summary, "%10d %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10d  %s", archive.getListedClasses(),
+					archive.getCachedClasses(), archive.getNanos(Phase.OPEN) / 1e6,
+					archive.getNanos(Phase.LIST) / 1e6, archive.getNanos(Phase.INFLATE) / 1e6,
+					archive.getNanos(Phase.PARSE) / 1e6, archive.getNanos(Phase.MERGE) / 1e6,
+					archive.getReadBytes() / 1024, archive.path);
+		}
+		for (ArchiveStatistics archive : getArchives()) {
+			if (archive.isCounted()) {
+				line(summary, "Counters of %s:", archive.path);
+				line(summary, "  %s", counts(archive.getCounts()));
+			}
+		}
+		final List<ClassTime> classes = getSlowestClasses();
+		if (!classes.isEmpty()) {
+			line(summary, "Slowest classes:");
+			for (ClassTime classTime : classes) {
+				line(summary, "%10.3f ms %8d B  %s (%s)", classTime.nanos / 1e6, classTime.bytes,
+						classTime.className, classTime.path);
+				if (classTime.counts != null) {
+					line(summary, "  %s", counts(classTime.counts));
+				}
+			}
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * Returns the non-zero counts as "label=count" pairs.
+	 */
+	private static String counts(final long[] counts) {
+		final StringBuilder builder = new StringBuilder();
+		final Counter[] counters = Counter.values();
+		for (int i = 0; i < counters.length; i++) {
+			if (counts[i] != 0) {
+				builder.append(builder.length() == 0 ? "" : " ").append(counters[i].getLabel()).append('=')
+						.append(counts[i]);
+			}
+		}
+		return builder.toString();
+	}
+
+	private static void line(final StringBuilder builder, final String format, final Object... args) {
+		builder.append(String.format(Locale.ROOT, format, args)).append('\n');
+	}
+
+	/**
+	 * Statistics of an archive.
+	 */
+	public static final class ArchiveStatistics {
+
+		private final String path;
+		private final LongAdder[] nanos = new LongAdder[Phase.values().length];
+		private final LongAdder listedClasses = new LongAdder();
+		private final LongAdder parsedClasses = new LongAdder();
+		private final LongAdder cachedClasses = new LongAdder();
+		private final LongAdder readBytes = new LongAdder();
+		private final LongAdder inflatedBytes = new LongAdder();
+		private final LongAdder[] counts = new LongAdder[Counter.values().length];
+		private volatile boolean counted;
+
+		ArchiveStatistics(final String path) {
+			this.path = path;
+			for (int i = 0; i < nanos.length; i++) {
+				nanos[i] = new LongAdder();
+			}
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = new LongAdder();
+			}
+		}
+
+		void add(final Phase phase, final long phaseNanos) {
+			nanos[phase.ordinal()].add(phaseNanos);
+		}
+
+		void add(final ParseCounters counters) {
+			for (Counter counter : Counter.values()) {
+				final long count = counters.get(counter);
+				if (count != 0) {
+					counts[counter.ordinal()].add(count);
+				}
+			}
+			if (!counted) {
+				counted = true;
+			}
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * Returns the time of the phase summed over the threads.
+		 */
+		public long getNanos(final Phase phase) {
+			return nanos[phase.ordinal()].sum();
+		}
+
+		public long getListedClasses() {
+			return listedClasses.sum();
+		}
+
+		public long getParsedClasses() {
+			return parsedClasses.sum();
+		}
+
+		public long getCachedClasses() {
+			return cachedClasses.sum();
+		}
+
+		/**
+		 * Returns the bytes read from the archive, compressed in case of JARs.
+		 */
+		public long getReadBytes() {
+			return readBytes.sum();
+		}
+
+		/**
+		 * Returns the bytes of the class files.
+		 */
+		public long getInflatedBytes() {
+			return inflatedBytes.sum();
+		}
+
+		/**
+		 * Returns true if the calls were counted for any class of the archive.
+		 */
+		public boolean isCounted() {
+			return counted;
+		}
+
+		/**
+		 * Returns the count summed over the classes of the archive.
+		 */
+		public long getCount(final Counter counter) {
+			return counts[counter.ordinal()].sum();
+		}
+
+		long[] getCounts() {
+			final long[] result = new long[counts.length];
+			for (int i = 0; i < counts.length; i++) {
+				result[i] = counts[i].sum();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Time of parsing of a class and its counts if the calls were counted.
+	 */
+	public static final class ClassTime {
+
+		private final String path;
+		private final String className;
+		private final int bytes;
+		private final long nanos;
+		private final long[] counts;
+
+		ClassTime(final String path, final String className, final int bytes, final long nanos,
+				final long[] counts) {
+			this.path = path;
+			this.className = className;
+			this.bytes = bytes;
+			this.nanos = nanos;
+			this.counts = counts;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public String getClassName() {
+			return className;
+		}
+
+		public int getBytes() {
+			return bytes;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * Returns the count of the class, 0 if the calls were not counted.
+		 */
+		public long getCount(final Counter counter) {
+			return counts != null ? counts[counter.ordinal()] : 0;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * I/O utility.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class IOUtils {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private IOUtils() {
+	}
+
+	/**
+	 * Reads the remaining content of the stream. The stream is not closed.
+	 * 
+	 * @param is
+	 *            the stream to be read
+	 * @return the content of the stream
+	 * @throws IOException
+	 */
+	public static byte[] toByteArray(final InputStream is) throws IOException {
+		final ByteArrayOutputStream os = new ByteArrayOutputStream(BUFFER_SIZE);
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = is.read(buffer)) != -1) {
+			os.write(buffer, 0, read);
+		}
+		return os.toByteArray();
+	}
+
+	/**
+	 * Reads the remaining content of the stream of the expected size. The
+	 * stream is not closed.
+	 * 
+	 * @param is
+	 *            the stream to be read
+	 * @param size
+	 *            the expected size of the content, negative if unknown
+	 * @return the content of the stream
+	 * @throws IOException
+	 */
+	public static byte[] toByteArray(final InputStream is, final long size) throws IOException {
+		if (size < 0 || size > Integer.MAX_VALUE) {
+			return toByteArray(is);
+		}
+		final byte[] bytes = new byte[(int) size];
+		int offset = 0;
+		while (offset < bytes.length) {
+			final int read = is.read(bytes, offset, bytes.length - offset);
+			if (read == -1) {
+				throw new EOFException("Unexpected end of stream after " + offset + " of " + size + " bytes");
+			}
+			offset += read;
+		}
+		return bytes;
+	}
+}
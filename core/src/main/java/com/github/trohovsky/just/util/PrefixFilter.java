@@ -0,0 +1,268 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.util;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Filter of class names by including and excluding prefixes. The prefixes
+ * are compiled into a trie over UTF-8 bytes of the names, so a name is
+ * matched against all the prefixes by a single walk through its bytes.
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class PrefixFilter {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final PrefixFilter ALL = new PrefixFilter(null, null);
+
+	// flags of trie nodes
+	private static final byte INCLUDE = 1;
+	private static final byte EXCLUDE = 2;
+	private static final byte INCLUDE_BELOW = 4;
+
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	private final boolean hasIncludes;
+	private final boolean hasExcludes;
+
+	// node i has children labels[childStart[i]] .. labels[childStart[i + 1] - 1]
+	// sorted by the labels, with the nodes stored in children
+	private final byte[] flags;
+	private final int[] childStart;
+	private final byte[] labels;
+	private final int[] children;
+
+	private PrefixFilter(final String[] includes, final String[] excludes) {
+		this.hasIncludes = includes != null;
+		this.hasExcludes = excludes != null;
+
+		final Node root = new Node();
+		add(root, includes, INCLUDE);
+		add(root, excludes, EXCLUDE);
+		final List<Node> nodes = new ArrayList<Node>();
+		number(root, nodes);
+
+		flags = new byte[nodes.size()];
+		childStart = new int[nodes.size() + 1];
+		labels = new byte[nodes.size() - 1];
+		children = new int[nodes.size() - 1];
+		int child = 0;
+		for (int i = 0; i < nodes.size(); i++) {
+			final Node node = nodes.get(i);
+			flags[i] = node.flags;
+			childStart[i] = child;
+			// the children are sorted by the signed labels as binarySearch requires
+			for (Map.Entry<Byte, Node> entry : node.children.entrySet()) {
+				labels[child] = entry.getKey();
+				children[child++] = entry.getValue().index;
+			}
+		}
+		childStart[nodes.size()] = child;
+	}
+
+	private static void add(final Node root, final String[] prefixes, final byte flag) {
+		if (prefixes == null) {
+			return;
+		}
+		for (String prefix : prefixes) {
+			Node node = root;
+			for (byte b : prefix.getBytes(UTF_8)) {
+				if (flag == INCLUDE) {
+					node.flags |= INCLUDE_BELOW;
+				}
+				Node child = node.children.get(b);
+				if (child == null) {
+					child = new Node();
+					node.children.put(b, child);
+				}
+				node = child;
+			}
+			node.flags |= flag;
+		}
+	}
+
+	private static void number(final Node node, final List<Node> nodes) {
+		node.index = nodes.size();
+		nodes.add(node);
+		for (Node child : node.children.values()) {
+			number(child, nodes);
+		}
+	}
+
+	/**
+	 * Creates a filter accepting names that start with any of the including
+	 * prefixes and none of the excluding prefixes.
+	 * 
+	 * @param includes
+	 *            the including prefixes, null for including of everything
+	 * @param excludes
+	 *            the excluding prefixes, null for excluding of nothing
+	 * @return the filter
+	 */
+	public static PrefixFilter of(final String[] includes, final String[] excludes) {
+		if (includes == null && excludes == null) {
+			return ALL;
+		}
+		return new PrefixFilter(includes, excludes);
+	}
+
+	/**
+	 * Returns the filter accepting all names.
+	 * 
+	 * @return the filter
+	 */
+	public static PrefixFilter all() {
+		return ALL;
+	}
+
+	/**
+	 * Tells whether the filter accepts all names.
+	 * 
+	 * @return true if no prefixes are set
+	 */
+	public boolean acceptsAll() {
+		return !hasIncludes && !hasExcludes;
+	}
+
+	/**
+	 * Tells whether the name is accepted by the filter.
+	 * 
+	 * @param name
+	 *            the name
+	 * @return true if the name is accepted
+	 */
+	public boolean accepts(final String name) {
+		if (acceptsAll()) {
+			return true;
+		}
+		final Walk walk = new Walk();
+		for (int i = 0; i < name.length() && walk.node != NONE;) {
+			final int codePoint = name.codePointAt(i);
+			i += Character.charCount(codePoint);
+			if (codePoint < 0x80) {
+				walk.step((byte) codePoint);
+			} else if (codePoint < 0x800) {
+				walk.step((byte) (0xC0 | codePoint >> 6));
+				walk.step((byte) (0x80 | codePoint & 0x3F));
+			} else if (codePoint < 0x10000) {
+				walk.step((byte) (0xE0 | codePoint >> 12));
+				walk.step((byte) (0x80 | codePoint >> 6 & 0x3F));
+				walk.step((byte) (0x80 | codePoint & 0x3F));
+			} else {
+				walk.step((byte) (0xF0 | codePoint >> 18));
+				walk.step((byte) (0x80 | codePoint >> 12 & 0x3F));
+				walk.step((byte) (0x80 | codePoint >> 6 & 0x3F));
+				walk.step((byte) (0x80 | codePoint & 0x3F));
+			}
+		}
+		return walk.accepted();
+	}
+
+	/**
+	 * Tells whether the name encoded in UTF-8 is accepted by the filter. No
+	 * String is created for the name.
+	 * 
+	 * @param bytes
+	 *            the array containing the encoded name
+	 * @param offset
+	 *            the offset of the name in the array
+	 * @param length
+	 *            the length of the encoded name
+	 * @return true if the name is accepted
+	 */
+	public boolean accepts(final byte[] bytes, final int offset, final int length) {
+		if (acceptsAll()) {
+			return true;
+		}
+		final Walk walk = new Walk();
+		for (int i = offset; i < offset + length && walk.node != NONE; i++) {
+			walk.step(bytes[i]);
+		}
+		return walk.accepted();
+	}
+
+	/**
+	 * Tells whether any name starting with the prefix can be accepted by the
+	 * filter, e.g. whether a directory of a package has to be searched.
+	 * 
+	 * @param prefix
+	 *            the prefix of names, e.g. a package name ending with '/'
+	 * @return false if all names starting with the prefix are rejected
+	 */
+	public boolean acceptsAnyStartingWith(final String prefix) {
+		if (acceptsAll()) {
+			return true;
+		}
+		final Walk walk = new Walk();
+		final byte[] bytes = prefix.getBytes(UTF_8);
+		for (int i = 0; i < bytes.length && walk.node != NONE; i++) {
+			walk.step(bytes[i]);
+		}
+		if (walk.excluded) {
+			return false;
+		}
+		if (!hasIncludes || walk.included) {
+			return true;
+		}
+		// an include continues below the prefix
+		return walk.node != NONE && (flags[walk.node] & INCLUDE_BELOW) != 0;
+	}
+
+	private int child(final int node, final byte label) {
+		final int index = Arrays.binarySearch(labels, childStart[node], childStart[node + 1], label);
+		return index >= 0 ? children[index] : NONE;
+	}
+
+	/**
+	 * State of a walk through the trie, the walk starts in the root that
+	 * matches the empty prefix.
+	 */
+	private final class Walk {
+
+		private int node = ROOT;
+		private boolean included = (flags[ROOT] & INCLUDE) != 0;
+		private boolean excluded = (flags[ROOT] & EXCLUDE) != 0;
+
+		void step(final byte label) {
+			if (node == NONE) {
+				return;
+			}
+			node = child(node, label);
+			if (node != NONE) {
+				included |= (flags[node] & INCLUDE) != 0;
+				excluded |= (flags[node] & EXCLUDE) != 0;
+			}
+		}
+
+		boolean accepted() {
+			return (!hasIncludes || included) && !excluded;
+		}
+	}
+
+	private static final class Node {
+
+		private final Map<Byte, Node> children = new TreeMap<Byte, Node>();
+		private byte flags;
+		private int index;
+	}
+}
@@ -31,6 +31,12 @@ public final class Validation {
 		}
 	}
 
+	public static void isTrue(final boolean expression, final String message) throws IllegalArgumentException {
+		if (!expression) {
+			throw new IllegalArgumentException(message);
+		}
+	}
+
 	public static void noNullValues(final Object[] objects, final String message) {
 		for (Object object : objects) {
 			notNull(object, message);
@@ -20,6 +20,7 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
 import com.github.trohovsky.just.model.Dependencies;
+import com.github.trohovsky.just.stats.Counter;
 
 /**
  * Visitor for collecting of annotation dependencies.
@@ -37,6 +38,7 @@ public class AnnotationDependenciesVisitor extends AnnotationVisitor {
 
 	@Override
 	public void visit(String name, Object value) {
+		dependencies.count(Counter.VISIT_ANNOTATION_VALUE);
 		if (value instanceof Type) {
 			dependencies.addType((Type) value); // @Annotation(String.class)
 		}
@@ -44,17 +46,20 @@ public class AnnotationDependenciesVisitor extends AnnotationVisitor {
 
 	@Override
 	public void visitEnum(String name, String desc, String value) {
+		dependencies.count(Counter.VISIT_ANNOTATION_VALUE);
 		dependencies.addDesc(desc);
 	}
 
 	@Override
 	public AnnotationVisitor visitAnnotation(String name, String desc) {
+		dependencies.count(Counter.VISIT_ANNOTATION_VALUE);
 		dependencies.addDesc(desc);
 		return this;
 	}
 
 	@Override
 	public AnnotationVisitor visitArray(String name) {
+		dependencies.count(Counter.VISIT_ANNOTATION_VALUE);
 		return this;
 	}
 
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.visitor;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import com.github.trohovsky.just.callgraph.CallGraph;
+
+/**
+ * Visitor for collecting of members of a class and the members and classes
+ * its methods refer to.
+ * 
+ * @author Tomas Rohovsky
+ */
+public class CallGraphVisitor extends ClassVisitor {
+
+	private final CallGraph.Builder builder;
+	private final MemberVisitor methodVisitor = new MemberVisitor();
+	private int clazz = -1;
+
+	public CallGraphVisitor(final CallGraph.Builder builder) {
+		super(Opcodes.ASM5);
+		this.builder = builder;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName,
+			String[] interfaces) {
+		clazz = builder.addClass(name, access, superName, interfaces);
+	}
+
+	@Override
+	public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+		if (clazz >= 0) {
+			builder.addMember(clazz, access, name, desc);
+		}
+		return null;
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+			String[] exceptions) {
+		if (clazz < 0) {
+			return null;
+		}
+		methodVisitor.method = builder.addMember(clazz, access, name, desc);
+		return methodVisitor;
+	}
+
+	private class MemberVisitor extends MethodVisitor {
+
+		private int method;
+
+		MemberVisitor() {
+			super(Opcodes.ASM5);
+		}
+
+		@Override
+		public void visitTypeInsn(int opcode, String type) {
+			if (opcode == Opcodes.NEW) {
+				builder.addClassEdge(method, type);
+			}
+		}
+
+		@Override
+		public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+			builder.addEdge(method, CallGraph.FIELD, owner, name, desc);
+		}
+
+		@Override
+		public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+			// methods of arrays are the ones of java.lang.Object
+			final String target = owner.charAt(0) == '[' ? "java/lang/Object" : owner;
+			switch (opcode) {
+			case Opcodes.INVOKESTATIC:
+				builder.addEdge(method, CallGraph.INVOKE_STATIC, target, name, desc);
+				break;
+			case Opcodes.INVOKESPECIAL:
+				builder.addEdge(method, CallGraph.INVOKE_SPECIAL, target, name, desc);
+				break;
+			case Opcodes.INVOKEINTERFACE:
+				builder.addEdge(method, CallGraph.INVOKE_INTERFACE, target, name, desc);
+				break;
+			default:
+				builder.addEdge(method, CallGraph.INVOKE_VIRTUAL, target, name, desc);
+			}
+		}
+
+		@Override
+		public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+			visitHandle(bsm);
+			for (Object bsmArg : bsmArgs) {
+				visitConstant(bsmArg);
+			}
+		}
+
+		@Override
+		public void visitLdcInsn(Object cst) {
+			visitConstant(cst);
+		}
+
+		private void visitConstant(final Object cst) {
+			if (cst instanceof Handle) {
+				visitHandle((Handle) cst);
+			} else if (cst instanceof Type && ((Type) cst).getSort() == Type.OBJECT) {
+				builder.addClassEdge(method, ((Type) cst).getInternalName());
+			}
+		}
+
+		private void visitHandle(final Handle handle) {
+			final int kind;
+			switch (handle.getTag()) {
+			case Opcodes.H_INVOKESTATIC:
+				kind = CallGraph.INVOKE_STATIC;
+				break;
+			case Opcodes.H_NEWINVOKESPECIAL:
+				builder.addClassEdge(method, handle.getOwner());
+				kind = CallGraph.INVOKE_SPECIAL;
+				break;
+			case Opcodes.H_INVOKESPECIAL:
+				kind = CallGraph.INVOKE_SPECIAL;
+				break;
+			case Opcodes.H_INVOKEVIRTUAL:
+				kind = CallGraph.INVOKE_VIRTUAL;
+				break;
+			case Opcodes.H_INVOKEINTERFACE:
+				kind = CallGraph.INVOKE_INTERFACE;
+				break;
+			default:
+				kind = CallGraph.FIELD;
+			}
+			builder.addEdge(method, kind, handle.getOwner(), handle.getName(), handle.getDesc());
+		}
+	}
+
+}
@@ -24,9 +24,9 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.TypePath;
-import org.objectweb.asm.signature.SignatureVisitor;
 
 import com.github.trohovsky.just.model.Dependencies;
+import com.github.trohovsky.just.stats.Counter;
 
 /**
  * Visitor for collecting of class dependencies.
@@ -37,32 +37,32 @@ public class ClassDependenciesVisitor extends ClassVisitor {
 
 	private final Dependencies dependencies;
 	private final AnnotationVisitor annotationVisitor;
-	private final SignatureVisitor signatureVisitor;
 	private final FieldVisitor fieldVisitor;
 	private final MethodVisitor methodVisitor;
 
 	public ClassDependenciesVisitor(final Dependencies dependencies, final AnnotationVisitor annotationVisitor,
-			final SignatureVisitor signatureVisitor, final FieldVisitor fieldVisitor, final MethodVisitor methodVisitor) {
+			final FieldVisitor fieldVisitor, final MethodVisitor methodVisitor) {
 		super(Opcodes.ASM5);
 		this.dependencies = dependencies;
 		this.annotationVisitor = annotationVisitor;
-		this.signatureVisitor = signatureVisitor;
 		this.fieldVisitor = fieldVisitor;
 		this.methodVisitor = methodVisitor;
 	}
 
 	@Override
 	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		dependencies.count(Counter.VISIT);
 		if (signature == null) {
 			dependencies.addInternalName(superName);
 			dependencies.addInternalNames(interfaces);
 		} else {
-			dependencies.addSignature(signature, signatureVisitor);
+			dependencies.addSignature(signature);
 		}
 	}
 
 	@Override
 	public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+		dependencies.count(Counter.VISIT_ANNOTATION);
 		dependencies.addDesc(desc);
 		return annotationVisitor;
 	}
@@ -70,16 +70,18 @@ public class ClassDependenciesVisitor extends ClassVisitor {
 	// Java 8 - JSR 308: Annotations on Java Types
 	@Override
 	public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+		dependencies.count(Counter.VISIT_ANNOTATION);
 		dependencies.addDesc(desc);
 		return annotationVisitor;
 	}
 
 	@Override
 	public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+		dependencies.count(Counter.VISIT_FIELD);
 		if (signature == null) {
 			dependencies.addDesc(desc);
 		} else {
-			dependencies.addTypeSignature(signature, signatureVisitor);
+			dependencies.addSignature(signature);
 		}
 		if (value instanceof Type) {
 			dependencies.addType((Type) value);
@@ -89,10 +91,11 @@ public class ClassDependenciesVisitor extends ClassVisitor {
 
 	@Override
 	public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+		dependencies.count(Counter.VISIT_METHOD);
 		if (signature == null) {
 			dependencies.addMethodDesc(desc);
 		} else {
-			dependencies.addSignature(signature, signatureVisitor);
+			dependencies.addSignature(signature);
 		}
 		dependencies.addInternalNames(exceptions);
 		return methodVisitor;
@@ -21,6 +21,7 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.TypePath;
 
 import com.github.trohovsky.just.model.Dependencies;
+import com.github.trohovsky.just.stats.Counter;
 
 /**
  * Visitor for collecting of field dependencies.
@@ -40,6 +41,7 @@ public class FieldDependenciesVisitor extends FieldVisitor {
 
 	@Override
 	public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+		dependencies.count(Counter.VISIT_ANNOTATION);
 		dependencies.addDesc(desc);
 		return annotationVisitor;
 	}
@@ -47,6 +49,7 @@ public class FieldDependenciesVisitor extends FieldVisitor {
 	// Java 8 - JSR 308: Annotations on Java Types
 	@Override
 	public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+		dependencies.count(Counter.VISIT_ANNOTATION);
 		dependencies.addDesc(desc);
 		return annotationVisitor;
 	}
@@ -22,9 +22,9 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.TypePath;
-import org.objectweb.asm.signature.SignatureVisitor;
 
 import com.github.trohovsky.just.model.Dependencies;
+import com.github.trohovsky.just.stats.Counter;
 
 /**
  * Visitor for collecting of method dependencies.
@@ -35,14 +35,11 @@ public class MethodDependenciesVisitor extends MethodVisitor {
 
 	private final Dependencies dependencies;
 	private final AnnotationVisitor annotationVisitor;
-	private final SignatureVisitor signatureVisitor;
 
-	public MethodDependenciesVisitor(final Dependencies dependencies, final AnnotationVisitor annotationVisitor,
-			SignatureVisitor signatureVisitor) {
+	public MethodDependenciesVisitor(final Dependencies dependencies, final AnnotationVisitor annotationVisitor) {
 		super(Opcodes.ASM5);
 		this.dependencies = dependencies;
 		this.annotationVisitor = annotationVisitor;
-		this.signatureVisitor = signatureVisitor;
 	}
 
 	@Override
@@ -52,6 +49,7 @@ public class MethodDependenciesVisitor extends MethodVisitor {
 
 	@Override
 	public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+		dependencies.count(Counter.VISIT_ANNOTATION);
 		dependencies.addDesc(desc);
 		return annotationVisitor;
 	}
@@ -59,29 +57,73 @@ public class MethodDependenciesVisitor extends MethodVisitor {
 	// Java 8 - JSR 308: Annotations on Java Types
 	@Override
 	public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+		dependencies.count(Counter.VISIT_ANNOTATION);
 		dependencies.addDesc(desc);
 		return annotationVisitor;
 	}
 
 	@Override
 	public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+		dependencies.count(Counter.VISIT_ANNOTATION);
 		dependencies.addDesc(desc);
 		return annotationVisitor;
 	}
 
+	// instructions without dependencies are only counted
+	@Override
+	public void visitInsn(int opcode) {
+		dependencies.count(Counter.INSTRUCTIONS);
+	}
+
+	@Override
+	public void visitIntInsn(int opcode, int operand) {
+		dependencies.count(Counter.INSTRUCTIONS);
+	}
+
+	@Override
+	public void visitVarInsn(int opcode, int var) {
+		dependencies.count(Counter.INSTRUCTIONS);
+	}
+
+	@Override
+	public void visitJumpInsn(int opcode, Label label) {
+		dependencies.count(Counter.INSTRUCTIONS);
+	}
+
+	@Override
+	public void visitIincInsn(int var, int increment) {
+		dependencies.count(Counter.INSTRUCTIONS);
+	}
+
+	@Override
+	public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+		dependencies.count(Counter.INSTRUCTIONS);
+	}
+
+	@Override
+	public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+		dependencies.count(Counter.INSTRUCTIONS);
+	}
+
 	@Override
 	public void visitTypeInsn(int opcode, String type) {
-		dependencies.addType(Type.getObjectType(type));
+		dependencies.count(Counter.VISIT_TYPE_INSN);
+		dependencies.count(Counter.INSTRUCTIONS);
+		dependencies.addInternalName(type);
 	}
 
 	@Override
 	public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+		dependencies.count(Counter.VISIT_FIELD_INSN);
+		dependencies.count(Counter.INSTRUCTIONS);
 		dependencies.addInternalName(owner);
 		dependencies.addDesc(desc);
 	}
 
 	@Override
 	public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+		dependencies.count(Counter.VISIT_METHOD_INSN);
+		dependencies.count(Counter.INSTRUCTIONS);
 		dependencies.addInternalName(owner);
 		dependencies.addMethodDesc(desc);
 	}
@@ -89,12 +131,16 @@ public class MethodDependenciesVisitor extends MethodVisitor {
 	// TODO test
 	@Override
 	public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
-		dependencies.addDesc(desc);
+		dependencies.count(Counter.VISIT_INVOKE_DYNAMIC_INSN);
+		dependencies.count(Counter.INSTRUCTIONS);
+		dependencies.addMethodDesc(desc);
 	}
 
 	// TODO test
 	@Override
 	public void visitLdcInsn(Object cst) {
+		dependencies.count(Counter.VISIT_LDC_INSN);
+		dependencies.count(Counter.INSTRUCTIONS);
 		if (cst instanceof Type) {
 			dependencies.addType((Type) cst);
 		}
@@ -102,40 +148,47 @@ public class MethodDependenciesVisitor extends MethodVisitor {
 
 	@Override
 	public void visitMultiANewArrayInsn(String desc, int dims) {
+		dependencies.count(Counter.VISIT_MULTI_ANEW_ARRAY_INSN);
+		dependencies.count(Counter.INSTRUCTIONS);
 		dependencies.addDesc(desc);
 	}
 
 	// Java 8 - JSR 308: Annotations on Java Types
 	@Override
 	public AnnotationVisitor visitInsnAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+		dependencies.count(Counter.VISIT_ANNOTATION);
 		dependencies.addDesc(desc);
 		return annotationVisitor;
 	}
 
 	@Override
 	public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+		dependencies.count(Counter.VISIT_TRY_CATCH_BLOCK);
 		dependencies.addInternalName(type);
 	}
 
 	// Java 8 - JSR 308: Annotations on Java Types
 	@Override
 	public AnnotationVisitor visitTryCatchAnnotation(int typeRef, TypePath typePath, String desc, boolean visible) {
+		dependencies.count(Counter.VISIT_ANNOTATION);
 		dependencies.addDesc(desc);
 		return annotationVisitor;
 	}
 
 	@Override
 	public void visitLocalVariable(String name, String desc, String signature, Label start, Label end, int index) {
+		dependencies.count(Counter.VISIT_LOCAL_VARIABLE);
 		if (signature == null) {
 			dependencies.addDesc(desc);
 		} else {
-			dependencies.addTypeSignature(signature, signatureVisitor);
+			dependencies.addSignature(signature);
 		}
 	}
 
 	@Override
 	public AnnotationVisitor visitLocalVariableAnnotation(int typeRef, TypePath typePath, Label[] start, Label[] end,
 			int[] index, String desc, boolean visible) {
+		dependencies.count(Counter.VISIT_ANNOTATION);
 		dependencies.addDesc(desc);
 		return annotationVisitor;
 	}
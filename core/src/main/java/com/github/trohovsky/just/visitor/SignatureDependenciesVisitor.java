@@ -15,20 +15,31 @@
  */
 package com.github.trohovsky.just.visitor;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.signature.SignatureVisitor;
 
 import com.github.trohovsky.just.model.Dependencies;
+import com.github.trohovsky.just.stats.Counter;
 
 /**
- * Visitor for collecting of signature dependencies.
+ * Visitor for collecting of signature dependencies. This is a legacy class,
+ * the visitors of classes and the scanner of constant pools do not use it
+ * anymore since {@link Dependencies#addSignature(String)} decodes the
+ * signatures directly. It is kept for the users driving ASM by themselves
+ * and as the reference the decoding is tested against.
  * 
  * @author Tomas Rohovsky
  */
 public class SignatureDependenciesVisitor extends SignatureVisitor {
 
 	private final Dependencies dependencies;
-	private String signatureClassName;
+
+	// class types being visited, type arguments of a class type are visited
+	// before its inner class types
+	private final Deque<String> signatureClassNames = new ArrayDeque<String>();
 
 	public SignatureDependenciesVisitor(final Dependencies dependencies) {
 		super(Opcodes.ASM5);
@@ -37,13 +48,21 @@ public class SignatureDependenciesVisitor extends SignatureVisitor {
 
 	@Override
 	public void visitClassType(final String name) {
-		signatureClassName = name;
+		dependencies.count(Counter.CLASS_TYPES);
+		signatureClassNames.push(name);
 		dependencies.addInternalName(name);
 	}
 
 	@Override
 	public void visitInnerClassType(final String name) {
-		signatureClassName = signatureClassName + "$" + name;
+		dependencies.count(Counter.CLASS_TYPES);
+		final String signatureClassName = signatureClassNames.pop() + "$" + name;
+		signatureClassNames.push(signatureClassName);
 		dependencies.addInternalName(signatureClassName);
 	}
+
+	@Override
+	public void visitEnd() {
+		signatureClassNames.pop();
+	}
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+@RunWith(Parameterized.class)
+public class AnalysisSessionTest {
+
+	private static final String APP_JAR = "target/test-app.jar";
+	private static final String LIB_JAR = "target/test-lib.jar";
+	private static final String APP_DIR = "target/test-app";
+	private static final String LIB_DIR = "target/test-lib";
+	private static final String APP_INCLUDES = "com/github/trohovsky/just/test/app/includes";
+	private static final String LIB_INCLUDES = "com/github/trohovsky/just/test/lib/includes";
+
+	private String appPath;
+	private String libPath;
+
+	public AnalysisSessionTest(String appPath, String libPath) {
+		this.appPath = appPath;
+		this.libPath = libPath;
+	}
+
+	@Parameters
+	public static Collection<String[]> paths() {
+		return Arrays.asList(new String[][] { { APP_DIR, LIB_DIR }, { APP_JAR, LIB_JAR }, });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOpenNullReader() throws IOException {
+		AnalysisSession.open(null);
+	}
+
+	@Test
+	public void testOpenWithoutDependencies() throws IOException {
+		AnalysisSession session = AnalysisSession.open(Reader.from(appPath));
+
+		Assert.assertEquals(Reader.from(appPath).listClasses(), session.getArtifactClasses());
+		Assert.assertEquals(Reader.from(appPath).readClassesWithDependencies(), session.getClassesWithDependencies());
+		Assert.assertEquals(Reader.from(appPath).readDependencies(), session.getDependencies());
+		Assert.assertTrue(session.getDependencyClasses().isEmpty());
+		Assert.assertTrue(session.getUsedClasses().isEmpty());
+	}
+
+	@Test
+	public void testOpenWithDependencies() throws IOException {
+		AnalysisSession session = AnalysisSession.open(Reader.from(appPath), Reader.from(libPath));
+
+		Set<String> externalClasses = Reader.from(libPath).listClasses();
+		Map<String, Set<String>> classesWithDependencies = Reader.from(appPath).readClassesWithDependencies();
+		Set<String> dependencies = Reader.from(appPath).readDependencies();
+		Assert.assertEquals(externalClasses, session.getDependencyClasses());
+		Assert.assertEquals(DependencyUtils.intersection(dependencies, externalClasses), session.getUsedClasses());
+		Assert.assertEquals(DependencyUtils.intersection(classesWithDependencies, externalClasses),
+				session.getUsedClassesByClass());
+		Assert.assertEquals(DependencyUtils.subtract(externalClasses, dependencies), session.getUnusedClasses());
+		Assert.assertEquals(classesWithDependencies, session.getDependencyGraph().toMap());
+	}
+
+	@Test
+	public void testOpenSharedPath() throws IOException {
+		Reader artifacts = Reader.from(appPath, libPath).includes(APP_INCLUDES);
+		Reader dependencies = Reader.from(libPath, appPath).excludes(APP_INCLUDES);
+		AnalysisSession session = AnalysisSession.open(artifacts, dependencies);
+
+		Assert.assertEquals(Reader.from(appPath, libPath).includes(APP_INCLUDES).readClassesWithDependencies(),
+				session.getClassesWithDependencies());
+		Assert.assertEquals(Reader.from(libPath, appPath).excludes(APP_INCLUDES).listClasses(),
+				session.getDependencyClasses());
+	}
+
+	@Test
+	public void testOpenFilteredPaths() throws IOException {
+		AnalysisSession session = AnalysisSession.open(Reader.from(appPath).includes(APP_INCLUDES),
+				Reader.from(libPath).excludes(LIB_INCLUDES));
+
+		Assert.assertEquals(Reader.from(appPath).includes(APP_INCLUDES).readClassesWithDependencies(),
+				session.getClassesWithDependencies());
+		Assert.assertEquals(Reader.from(libPath).excludes(LIB_INCLUDES).listClasses(), session.getDependencyClasses());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutable() throws IOException {
+		AnalysisSession.open(Reader.from(appPath)).getClassesWithDependencies().clear();
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.trohovsky.just.model.DependencyGraph;
+import com.github.trohovsky.just.model.SymbolTable;
+
+public class DependencyUtilsTest {
+
+	private static Map<String, Set<String>> classesWithDependencies;
+	private static DependencyGraph graph;
+	private static Set<String> externalClasses;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		Reader reader = Reader.from("target/test-app.jar");
+		classesWithDependencies = reader.readClassesWithDependencies();
+		graph = reader.readDependencyGraph();
+		externalClasses = Reader.from("target/test-lib.jar").listClasses();
+	}
+
+	@Test
+	public void testGraphLikeMap() {
+		Assert.assertEquals(classesWithDependencies, graph.toMap());
+	}
+
+	@Test
+	public void testIntersection() {
+		Assert.assertEquals(DependencyUtils.intersection(classesWithDependencies, externalClasses),
+				DependencyUtils.intersection(graph, externalClasses).toMap());
+	}
+
+	@Test
+	public void testSubtract() {
+		Assert.assertEquals(DependencyUtils.subtract(externalClasses, classesWithDependencies),
+				DependencyUtils.subtract(externalClasses, graph));
+	}
+
+	@Test
+	public void testFlatten() {
+		Assert.assertEquals(DependencyUtils.flatten(classesWithDependencies), DependencyUtils.flatten(graph));
+	}
+
+	@Test
+	public void testToPackageNames() {
+		Assert.assertEquals(DependencyUtils.toPackageNames(classesWithDependencies),
+				DependencyUtils.toPackageNames(graph).toMap());
+	}
+
+	@Test
+	public void testSetOperations() {
+		Set<String> dependencies = DependencyUtils.flatten(classesWithDependencies);
+		Set<String> expected = new TreeSet<String>(dependencies);
+		expected.retainAll(externalClasses);
+		Assert.assertEquals(expected, DependencyUtils.intersection(dependencies, externalClasses));
+		Assert.assertEquals(expected, DependencyUtils.intersection(new TreeSet<String>(externalClasses),
+				new TreeSet<String>(dependencies)));
+
+		expected = new TreeSet<String>(externalClasses);
+		expected.removeAll(dependencies);
+		Assert.assertEquals(expected, DependencyUtils.subtract(externalClasses, dependencies));
+		Assert.assertEquals(expected, DependencyUtils.subtract(externalClasses, classesWithDependencies));
+
+		expected = new TreeSet<String>(externalClasses);
+		expected.addAll(dependencies);
+		Assert.assertEquals(expected, DependencyUtils.union(externalClasses, dependencies));
+	}
+
+	@Test
+	public void testIntersectionOfMap() {
+		Map<String, Set<String>> expected = new TreeMap<String, Set<String>>();
+		for (Map.Entry<String, Set<String>> entry : classesWithDependencies.entrySet()) {
+			Set<String> value = new TreeSet<String>(entry.getValue());
+			value.retainAll(externalClasses);
+			if (!value.isEmpty()) {
+				expected.put(entry.getKey(), value);
+			}
+		}
+		Assert.assertEquals(expected, DependencyUtils.intersection(classesWithDependencies, externalClasses));
+	}
+
+	@Test
+	public void testResultsMutable() {
+		Set<String> dependencies = DependencyUtils.flatten(classesWithDependencies);
+		dependencies.add("a/A");
+		DependencyUtils.intersection(dependencies, externalClasses).add("a/A");
+		DependencyUtils.subtract(externalClasses, dependencies).add("a/A");
+		DependencyUtils.union(externalClasses, dependencies).add("a/A");
+		DependencyUtils.flatten(graph).add("a/A");
+		Map<String, Set<String>> intersection = DependencyUtils.intersection(classesWithDependencies, externalClasses);
+		intersection.values().iterator().next().add("a/A");
+		intersection.put("a/A", new TreeSet<String>());
+	}
+
+	@Test
+	public void testForeignNamesNotInterned() {
+		SymbolTable symbolTable = graph.getSymbolTable();
+		int size = symbolTable.size();
+		DependencyUtils.union(DependencyUtils.flatten(graph), new TreeSet<String>(Arrays.asList("foreign/A")));
+		DependencyUtils.intersection(graph.toMap(), new TreeSet<String>(Arrays.asList("foreign/B")));
+		DependencyUtils.toPackageNames(graph);
+		Assert.assertEquals(size, symbolTable.size());
+		Assert.assertEquals(-1, symbolTable.get("foreign/A"));
+	}
+}
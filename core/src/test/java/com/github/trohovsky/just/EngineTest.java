@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.github.trohovsky.just.Reader.Engine;
+
+@RunWith(Parameterized.class)
+public class EngineTest {
+
+	private static final String NESTED_DEPENDENCIES_CLASS = "com/github/trohovsky/just/test/app/NestedDependencies";
+
+	private String appPath;
+	private String libPath;
+
+	public EngineTest(String appPath, String libPath) {
+		this.appPath = appPath;
+		this.libPath = libPath;
+	}
+
+	@Parameters
+	public static Collection<String[]> paths() {
+		return Arrays.asList(new String[][] { { "target/test-app", "target/test-lib" },
+				{ "target/test-app.jar", "target/test-lib.jar" }, });
+	}
+
+	@Test
+	public void testReadClassesWithDependenciesConstantPool() throws IOException {
+		Map<String, Set<String>> expected = Reader.from(appPath, libPath).engine(Engine.VISITOR)
+				.readClassesWithDependencies();
+		Map<String, Set<String>> actual = Reader.from(appPath, libPath).engine(Engine.CONSTANT_POOL)
+				.readClassesWithDependencies();
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testReadDependenciesConstantPool() throws IOException {
+		Set<String> expected = Reader.from(appPath, libPath).engine(Engine.VISITOR).readDependencies();
+		Set<String> actual = Reader.from(appPath, libPath).engine(Engine.CONSTANT_POOL).readDependencies();
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testNestedDependenciesConstantPool() throws IOException {
+		Set<String> externalClasses = Reader.from(libPath).includes("com/github/trohovsky/just/test/lib/nested")
+				.listClasses();
+		Map<String, Set<String>> classesWithDependencies = Reader.from(appPath).engine(Engine.CONSTANT_POOL)
+				.readClassesWithDependencies();
+
+		Set<String> expectedClasses = new TreeSet<String>();
+		expectedClasses.add("com/github/trohovsky/just/test/lib/nested/MethodReference");
+		expectedClasses.add("com/github/trohovsky/just/test/lib/nested/NestedOuter");
+		expectedClasses.add("com/github/trohovsky/just/test/lib/nested/NestedOuter$Callback");
+		expectedClasses.add("com/github/trohovsky/just/test/lib/nested/NestedOuter$Inner");
+		expectedClasses.add("com/github/trohovsky/just/test/lib/nested/NestedOuter$StaticInner");
+		Assert.assertEquals(expectedClasses,
+				DependencyUtils.intersection(classesWithDependencies, externalClasses).get(NESTED_DEPENDENCIES_CLASS));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullEngine() {
+		Reader.from(appPath).engine(null);
+	}
+}
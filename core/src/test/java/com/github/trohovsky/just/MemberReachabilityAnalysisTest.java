@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MemberReachabilityAnalysisTest {
+
+	private static final String APP_JAR = "target/test-app.jar";
+	private static final String APP_DIR = "target/test-app";
+	private static final String CALLGRAPH = "com/github/trohovsky/just/test/app/callgraph";
+	private static final String PREFIX = CALLGRAPH + "/";
+	private static final String MAIN = PREFIX + "Entry.main([Ljava/lang/String;)V";
+
+	@Test
+	public void testRoots() throws IOException {
+		MemberReachabilityAnalysis.Result result = MemberReachabilityAnalysis.of(
+				Reader.from(APP_JAR).includes(CALLGRAPH))
+				.roots(MAIN).run();
+
+		Set<String> reachable = result.getReachableMethods();
+		Assert.assertTrue(reachable.contains(MAIN));
+		// method reference
+		Assert.assertTrue(reachable.contains(PREFIX + "Entry.target()V"));
+		// constructor and interface call
+		Assert.assertTrue(reachable.contains(PREFIX + "Service.<init>()V"));
+		Assert.assertTrue(reachable.contains(PREFIX + "Service.run()V"));
+		// overrides a method of java.lang.Object
+		Assert.assertTrue(reachable.contains(PREFIX + "Service.toString()Ljava/lang/String;"));
+		// class hierarchy analysis of the interface call
+		Assert.assertTrue(reachable.contains(PREFIX + "OtherTask.run()V"));
+		// static call and static initializer
+		Assert.assertTrue(reachable.contains(PREFIX + "Helper.used()V"));
+		Assert.assertTrue(reachable.contains(PREFIX + "Helper.<clinit>()V"));
+		// implements an interface outside of the graph
+		Assert.assertTrue(reachable.contains(PREFIX + "Callback.run()V"));
+
+		Set<String> unused = result.getUnusedMethods();
+		Assert.assertTrue(unused.contains(PREFIX + "Entry.unused()V"));
+		Assert.assertTrue(unused.contains(PREFIX + "Service.unused()V"));
+		Assert.assertTrue(unused.contains(PREFIX + "OtherTask.run(I)V"));
+		Assert.assertTrue(unused.contains(PREFIX + "Helper.unused()V"));
+		Assert.assertTrue(unused.contains(PREFIX + "Callback.unused()V"));
+		Assert.assertTrue(unused.contains(PREFIX + "Dead.dead()V"));
+		for (String method : reachable) {
+			Assert.assertFalse(unused.contains(method));
+		}
+
+		Set<String> unusedFields = result.getUnusedFields();
+		Assert.assertTrue(unusedFields.contains(PREFIX + "Helper.unusedField:I"));
+		Assert.assertFalse(unusedFields.contains(PREFIX + "Helper.counter:I"));
+		Assert.assertFalse(unusedFields.contains(PREFIX + "Helper.LOCK:Ljava/lang/Object;"));
+	}
+
+	@Test
+	public void testRootPatterns() throws IOException {
+		MemberReachabilityAnalysis.Result result = MemberReachabilityAnalysis.of(
+				Reader.from(APP_DIR).includes(CALLGRAPH))
+				.roots(PREFIX + "Dead", PREFIX + "Helper.unused").run();
+
+		Set<String> reachable = result.getReachableMethods();
+		Assert.assertTrue(reachable.contains(PREFIX + "Dead.<init>()V"));
+		Assert.assertTrue(reachable.contains(PREFIX + "Dead.dead()V"));
+		Assert.assertTrue(reachable.contains(PREFIX + "Service.unused()V"));
+		Assert.assertTrue(reachable.contains(PREFIX + "Helper.unused()V"));
+		Assert.assertFalse(reachable.contains(PREFIX + "Helper.used()V"));
+		Assert.assertFalse(reachable.contains(MAIN));
+	}
+
+	@Test
+	public void testPublicApi() throws IOException {
+		MemberReachabilityAnalysis.Result result = MemberReachabilityAnalysis.of(
+				Reader.from(APP_JAR).includes(CALLGRAPH))
+				.publicApi(PREFIX + "Service").run();
+
+		Set<String> reachable = result.getReachableMethods();
+		Assert.assertTrue(reachable.contains(PREFIX + "Service.unused()V"));
+		Assert.assertTrue(reachable.contains(PREFIX + "Helper.unused()V"));
+		Assert.assertFalse(reachable.contains(MAIN));
+	}
+
+	@Test
+	public void testNoRoots() throws IOException {
+		MemberReachabilityAnalysis.Result result = MemberReachabilityAnalysis.of(
+				Reader.from(APP_JAR).includes(CALLGRAPH))
+				.run();
+		Assert.assertTrue(result.getReachableMethods().isEmpty());
+		Assert.assertTrue(result.getUnusedMethods().contains(MAIN));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoReaders() {
+		MemberReachabilityAnalysis.of();
+	}
+}
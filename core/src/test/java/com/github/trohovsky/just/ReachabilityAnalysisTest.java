@@ -0,0 +1,158 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReachabilityAnalysisTest {
+
+	private static final String APP_JAR = "target/test-app.jar";
+	private static final String LIB_JAR = "target/test-lib.jar";
+	private static final String APP = "com/github/trohovsky/just/test/app/";
+	private static final String LIB = "com/github/trohovsky/just/test/lib/";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoots() throws IOException {
+		ReachabilityAnalysis.Result result = ReachabilityAnalysis.of(Reader.from(APP_JAR), Reader.from(LIB_JAR))
+				.roots(APP + "MethodDependencies").run();
+
+		Map<String, Set<String>> classesWithDependencies = Reader.from(APP_JAR, LIB_JAR).readClassesWithDependencies();
+		Set<String> expected = reachable(classesWithDependencies, APP + "MethodDependencies");
+		expected.retainAll(classesWithDependencies.keySet());
+		Assert.assertEquals(expected, result.getReachableClasses());
+		Assert.assertEquals(classesWithDependencies.keySet(), result.getClasses());
+
+		Set<String> unreachable = new TreeSet<String>(classesWithDependencies.keySet());
+		unreachable.removeAll(expected);
+		Assert.assertEquals(unreachable, result.getUnreachableClasses());
+		Assert.assertTrue(result.getUnreachableClasses().contains(LIB + "other/Unused"));
+		Assert.assertTrue(result.getUnreachableClasses().contains(APP + "ClassDependencies"));
+	}
+
+	@Test
+	public void testPublicApi() throws IOException {
+		ReachabilityAnalysis.Result result = ReachabilityAnalysis.of(Reader.from(APP_JAR, LIB_JAR))
+				.publicApi(APP + "NestedDependencies").run();
+
+		Assert.assertTrue(result.getRoots().contains(APP + "NestedDependencies"));
+		Assert.assertFalse(result.getRoots().contains(APP + "NestedDependencies$Unused"));
+		Assert.assertTrue(result.getReachableClasses().contains(LIB + "nested/NestedOuter"));
+		Assert.assertTrue(result.getUnreachableClasses().contains(APP + "NestedDependencies$Unused"));
+	}
+
+	@Test
+	public void testManifestAndServices() throws IOException {
+		File jar = folder.newFile("app.jar");
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS,
+				"com.github.trohovsky.just.test.app.ClassDependencies");
+		JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar), manifest);
+		try {
+			ZipFile zipFile = new ZipFile(APP_JAR);
+			try {
+				Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					if (entry.getName().endsWith(".class")) {
+						jos.putNextEntry(new ZipEntry(entry.getName()));
+						InputStream is = zipFile.getInputStream(entry);
+						try {
+							byte[] buffer = new byte[4096];
+							for (int n = is.read(buffer); n != -1; n = is.read(buffer)) {
+								jos.write(buffer, 0, n);
+							}
+						} finally {
+							is.close();
+						}
+					}
+				}
+			} finally {
+				zipFile.close();
+			}
+			jos.putNextEntry(new ZipEntry("META-INF/services/com.github.trohovsky.just.test.lib.classtype.Interface"));
+			String providers = "# providers\ncom.github.trohovsky.just.test.app.FieldDependencies # the only one\n\n";
+			jos.write(providers.getBytes("UTF-8"));
+		} finally {
+			jos.close();
+		}
+
+		ReachabilityAnalysis.Result result = ReachabilityAnalysis.of(Reader.from(jar.getPath(), LIB_JAR)).run();
+		Set<String> expectedRoots = new TreeSet<String>();
+		expectedRoots.add(APP + "ClassDependencies");
+		expectedRoots.add(APP + "FieldDependencies");
+		expectedRoots.add(LIB + "classtype/Interface");
+		Assert.assertEquals(expectedRoots, result.getRoots());
+
+		result = ReachabilityAnalysis.of(Reader.from(jar.getPath(), LIB_JAR)).mainClasses(false).services(false).run();
+		Assert.assertTrue(result.getRoots().isEmpty());
+		Assert.assertTrue(result.getReachableClasses().isEmpty());
+	}
+
+	@Test
+	public void testParallel() throws IOException {
+		ReachabilityAnalysis.Result expected = ReachabilityAnalysis.of(Reader.from(APP_JAR, LIB_JAR))
+				.publicApi(APP).run();
+		ReachabilityAnalysis.Result actual = ReachabilityAnalysis.of(Reader.from(APP_JAR, LIB_JAR)).publicApi(APP)
+				.parallelism(4).run();
+		Assert.assertEquals(expected.getReachableClasses(), actual.getReachableClasses());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoReaders() {
+		ReachabilityAnalysis.of();
+	}
+
+	private static Set<String> reachable(Map<String, Set<String>> classesWithDependencies, String root) {
+		Set<String> reachable = new TreeSet<String>();
+		Deque<String> queue = new ArrayDeque<String>();
+		reachable.add(root);
+		queue.add(root);
+		while (!queue.isEmpty()) {
+			Set<String> dependencies = classesWithDependencies.get(queue.poll());
+			if (dependencies != null) {
+				for (String dependency : dependencies) {
+					if (reachable.add(dependency)) {
+						queue.add(dependency);
+					}
+				}
+			}
+		}
+		return reachable;
+	}
+}
@@ -15,18 +15,31 @@
  */
 package com.github.trohovsky.just;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 import org.junit.runners.Parameterized.Parameters;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import com.github.trohovsky.just.callgraph.CallGraph;
+import com.github.trohovsky.just.model.SymbolTable;
 
 @RunWith(Parameterized.class)
 public class ReaderTest {
@@ -38,6 +51,9 @@ public class ReaderTest {
 	private static final String APP_DIR = "target/test-app";
 	private static final String LIB_DIR = "target/test-lib";
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private String appPath;
 	private String libPath;
 
@@ -119,4 +135,115 @@ public class ReaderTest {
 		Assert.assertArrayEquals(expectedClasses.toArray(), classesWithDependencies.keySet().toArray());
 	}
 
+	// parallelism
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParallelismNotPositive() throws IOException {
+		Reader.from(appPath).parallelism(0);
+	}
+
+	@Test
+	public void testReadClassesWithDependenciesParallel() throws IOException {
+		Map<String, Set<String>> expected = Reader.from(appPath, libPath).readClassesWithDependencies();
+		Map<String, Set<String>> actual = Reader.from(appPath, libPath).parallelism(4).readClassesWithDependencies();
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testReadDependenciesParallel() throws IOException {
+		Set<String> expected = Reader.from(appPath, libPath).readDependencies();
+		Set<String> actual = Reader.from(appPath, libPath).parallelism(4).readDependencies();
+		Assert.assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testPoolSharedByRead() throws IOException {
+		Reader reader = Reader.from(appPath, libPath).parallelism(4);
+		Assert.assertNull(reader.getPool());
+
+		reader.beginRead();
+		ForkJoinPool pool = reader.getPool();
+		Assert.assertNotNull(pool);
+		reader.beginRead();
+		Assert.assertEquals(Reader.from(appPath, libPath).readClassesWithDependencies(),
+				reader.readClassesWithDependencies());
+		reader.endRead();
+		Assert.assertSame(pool, reader.getPool());
+		reader.endRead();
+		Assert.assertTrue(pool.isShutdown());
+		Assert.assertNull(reader.getPool());
+
+		reader.beginRead();
+		Assert.assertNotSame(pool, reader.getPool());
+		reader.endRead();
+
+		// a sequential reader has no pool
+		reader = Reader.from(appPath, libPath);
+		reader.beginRead();
+		Assert.assertNull(reader.getPool());
+		reader.endRead();
+	}
+
+	// streamClassesWithDependencies
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStreamClassesWithDependenciesNullPaths() throws IOException {
+		Reader.from(NULL_PATHS).streamClassesWithDependencies();
+	}
+
+	@Test
+	public void testStreamClassesWithDependencies() throws IOException {
+		Map<String, Set<String>> expected = Reader.from(appPath, libPath).readClassesWithDependencies();
+		Stream<Map.Entry<String, Set<String>>> stream = Reader.from(appPath, libPath).streamClassesWithDependencies();
+		try {
+			Map<String, Set<String>> actual = new LinkedHashMap<String, Set<String>>();
+			for (Map.Entry<String, Set<String>> entry : (Iterable<Map.Entry<String, Set<String>>>) stream::iterator) {
+				Assert.assertNull(actual.put(entry.getKey(), entry.getValue()));
+			}
+			Assert.assertEquals(expected, actual);
+			Assert.assertArrayEquals(expected.keySet().toArray(), actual.keySet().toArray());
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void testStreamClassesWithDependenciesParallel() throws IOException {
+		Map<String, Set<String>> expected = Reader.from(appPath, libPath)
+				.includes("com/github/trohovsky/just/test/app").readClassesWithDependencies();
+		Stream<Map.Entry<String, Set<String>>> stream = Reader.from(appPath, libPath)
+				.includes("com/github/trohovsky/just/test/app").streamClassesWithDependencies();
+		try {
+			Map<String, Set<String>> actual = stream.parallel().collect(
+					Collectors.toMap(Map.Entry<String, Set<String>>::getKey, Map.Entry<String, Set<String>>::getValue));
+			Assert.assertEquals(expected, actual);
+		} finally {
+			stream.close();
+		}
+	}
+
+	// duplicates
+
+	@Test
+	public void testDuplicateClassesLastPrecedes() throws IOException {
+		String first = writeClass("dup/A", "dup/First");
+		String last = writeClass("dup/A", "dup/Last");
+		Reader reader = Reader.from(first, last);
+
+		Assert.assertTrue(reader.readClassesWithDependencies().get("dup/A").contains("dup/Last"));
+		CallGraph graph = reader.readCallGraph();
+		SymbolTable classTable = graph.getClassTable();
+		Assert.assertEquals(classTable.get("dup/Last"), graph.getSuperClass(classTable.get("dup/A")));
+	}
+
+	private String writeClass(String className, String superName) throws IOException {
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, className, null, superName, null);
+		cw.visitEnd();
+		File dir = folder.newFolder();
+		File file = new File(dir, className + ".class");
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), cw.toByteArray());
+		return dir.getPath();
+	}
 }
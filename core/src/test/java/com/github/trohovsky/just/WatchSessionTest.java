@@ -0,0 +1,299 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WatchSessionTest {
+
+	private static final String APP_DIR = "target/test-app";
+	private static final String LIB_DIR = "target/test-lib";
+	private static final String APP_PACKAGE = "com/github/trohovsky/just/test/app/";
+	private static final String LIB_PACKAGE = "com/github/trohovsky/just/test/lib/";
+	private static final String APP_CLASS = APP_PACKAGE + "ClassDependencies";
+	private static final long TIMEOUT = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File app;
+	private File lib;
+	private WatchSession session;
+
+	@Before
+	public void setUp() throws IOException {
+		app = folder.newFolder("app");
+		lib = folder.newFolder("lib");
+		copy(new File(APP_DIR).toPath(), app.toPath());
+		copy(new File(LIB_DIR).toPath(), lib.toPath());
+		session = WatchSession.open(Reader.from(app.getPath()), Reader.from(lib.getPath())).debounce(100);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		session.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOpenNullReader() throws IOException {
+		WatchSession.open(null);
+	}
+
+	@Test
+	public void testOpen() throws IOException {
+		assertSession();
+	}
+
+	@Test
+	public void testOpenWithoutDependencies() throws IOException {
+		WatchSession session = WatchSession.open(Reader.from(APP_DIR, LIB_DIR + ".jar"));
+		try {
+			AnalysisSession analysisSession = AnalysisSession.open(Reader.from(APP_DIR, LIB_DIR + ".jar"));
+			Assert.assertEquals(analysisSession.getClassesWithDependencies(), session.getClassesWithDependencies());
+			Assert.assertEquals(analysisSession.getDependencies(), session.getDependencies());
+			Assert.assertTrue(session.getDependencyClasses().isEmpty());
+			Assert.assertTrue(session.getUnusedClasses().isEmpty());
+		} finally {
+			session.close();
+		}
+	}
+
+	@Test
+	public void testAwaitNoChanges() throws Exception {
+		Assert.assertNull(session.awaitChanges(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testDeleteCreateModifyClass() throws Exception {
+		File file = new File(app, APP_CLASS + ".class");
+		byte[] bytes = Files.readAllBytes(file.toPath());
+
+		Assert.assertTrue(file.delete());
+		WatchSession.Changes changes = awaitChanges();
+		Assert.assertEquals(Collections.singleton(APP_CLASS), changes.getRemovedClasses());
+		Assert.assertTrue(changes.getUpdatedClasses().isEmpty());
+		assertSession();
+
+		Files.write(file.toPath(), bytes);
+		changes = awaitChanges();
+		Assert.assertEquals(Collections.singleton(APP_CLASS), changes.getUpdatedClasses());
+		Assert.assertTrue(changes.getRemovedClasses().isEmpty());
+		assertSession();
+
+		Files.write(file.toPath(), bytes);
+		Assert.assertEquals(Collections.singleton(APP_CLASS), awaitChanges().getUpdatedClasses());
+		assertSession();
+	}
+
+	@Test
+	public void testUnusedClasses() throws Exception {
+		Set<String> unusedClasses = new TreeSet<String>(session.getUnusedClasses());
+		Set<String> usedClasses = session.getUsedClasses();
+
+		// the classes using the classes of the library are deleted
+		for (File file : new File(app, APP_PACKAGE).listFiles()) {
+			if (file.isFile()) {
+				Assert.assertTrue(file.delete());
+			}
+		}
+		WatchSession.Changes changes = awaitChanges();
+		Set<String> expectedUnusedClasses = new TreeSet<String>(session.getUnusedClasses());
+		expectedUnusedClasses.removeAll(unusedClasses);
+		Assert.assertFalse(expectedUnusedClasses.isEmpty());
+		Assert.assertEquals(expectedUnusedClasses, changes.getAddedUnusedClasses());
+		Assert.assertTrue(changes.getRemovedUnusedClasses().isEmpty());
+		assertSession();
+
+		// a deleted class is not unused anymore
+		String unusedClass = expectedUnusedClasses.iterator().next();
+		Assert.assertTrue(new File(lib, unusedClass + ".class").delete());
+		changes = awaitChanges();
+		Assert.assertEquals(Collections.singleton(unusedClass), changes.getRemovedDependencyClasses());
+		Assert.assertEquals(Collections.singleton(unusedClass), changes.getRemovedUnusedClasses());
+		assertSession();
+
+		// the deleted classes are restored
+		copy(new File(APP_DIR).toPath(), app.toPath());
+		copy(new File(LIB_DIR).toPath(), lib.toPath());
+		changes = awaitChanges();
+		assertSession();
+		Assert.assertEquals(unusedClasses, session.getUnusedClasses());
+		Assert.assertEquals(usedClasses, session.getUsedClasses());
+	}
+
+	@Test
+	public void testDeleteCreateDirectory() throws Exception {
+		Path dir = new File(app, APP_PACKAGE + "includes").toPath();
+		Set<String> classes = new HashSet<String>();
+		for (String name : session.getArtifactClasses()) {
+			if (name.startsWith(APP_PACKAGE + "includes/")) {
+				classes.add(name);
+			}
+		}
+
+		delete(dir);
+		WatchSession.Changes changes = awaitChanges();
+		Assert.assertEquals(classes, changes.getRemovedClasses());
+		assertSession();
+
+		copy(new File(APP_DIR, APP_PACKAGE + "includes").toPath(), dir);
+		changes = awaitChanges();
+		Assert.assertEquals(classes, changes.getUpdatedClasses());
+		assertSession();
+
+		// classes of a new directory are read even if they are not reported
+		delete(dir);
+		awaitChanges();
+		Path moved = folder.newFolder("includes").toPath();
+		copy(new File(APP_DIR, APP_PACKAGE + "includes").toPath(), moved);
+		Files.move(moved, dir);
+		Assert.assertEquals(classes, awaitChanges().getUpdatedClasses());
+		assertSession();
+	}
+
+	@Test
+	public void testModifyDirectory() throws Exception {
+		// the directory is modified, not created, so its classes are not read
+		Files.write(new File(app, APP_PACKAGE + "includes/readme.txt").toPath(), new byte[] { 1 });
+		Assert.assertNull(session.awaitChanges(500, TimeUnit.MILLISECONDS));
+		assertSession();
+	}
+
+	@Test
+	public void testReplaceDirectoryWithMalformedClass() throws Exception {
+		Path dir = new File(app, APP_PACKAGE + "includes").toPath();
+		Path moved = folder.newFolder("includes").toPath();
+		copy(dir, moved);
+		File malformed = moved.toFile().listFiles()[0];
+		String malformedClass = APP_PACKAGE + "includes/" + malformed.getName().replace(".class", "");
+		Files.write(malformed.toPath(), new byte[] { 1 });
+		Set<String> dependencies = session.getClassesWithDependencies().get(malformedClass);
+
+		// the malformed class keeps its previous dependencies
+		delete(dir);
+		Files.move(moved, dir);
+		WatchSession.Changes changes = awaitChanges();
+		Assert.assertFalse(changes.getRemovedClasses().contains(malformedClass));
+		Assert.assertFalse(changes.getUpdatedClasses().contains(malformedClass));
+		Assert.assertEquals(dependencies, session.getClassesWithDependencies().get(malformedClass));
+	}
+
+	@Test
+	public void testFilters() throws Exception {
+		WatchSession session = WatchSession.open(Reader.from(app.getPath()).excludes(APP_PACKAGE + "includes"),
+				Reader.from(lib.getPath()).includes(LIB_PACKAGE + "nested")).debounce(100);
+		try {
+			Files.write(new File(app, APP_PACKAGE + "includes/Unknown.class").toPath(), new byte[] { 1 });
+			Files.write(new File(lib, LIB_PACKAGE + "Unknown.class").toPath(), new byte[] { 1 });
+			Assert.assertNull(session.awaitChanges(500, TimeUnit.MILLISECONDS));
+
+			// a malformed class is not parsed until it changes
+			File file = new File(app, APP_CLASS + ".class");
+			byte[] bytes = Files.readAllBytes(file.toPath());
+			Files.write(file.toPath(), Arrays.copyOf(bytes, 10));
+			Assert.assertNull(session.awaitChanges(500, TimeUnit.MILLISECONDS));
+			Files.write(file.toPath(), bytes);
+			Assert.assertEquals(Collections.singleton(APP_CLASS), session.awaitChanges(TIMEOUT, TimeUnit.SECONDS)
+					.getUpdatedClasses());
+
+			AnalysisSession analysisSession = AnalysisSession.open(Reader.from(app.getPath()).excludes(APP_PACKAGE
+					+ "includes"), Reader.from(lib.getPath()).includes(LIB_PACKAGE + "nested"));
+			Assert.assertEquals(analysisSession.getClassesWithDependencies(), session.getClassesWithDependencies());
+			Assert.assertEquals(analysisSession.getDependencyClasses(), session.getDependencyClasses());
+			Assert.assertEquals(analysisSession.getUnusedClasses(), session.getUnusedClasses());
+		} finally {
+			session.close();
+		}
+	}
+
+	private WatchSession.Changes awaitChanges() throws Exception {
+		WatchSession.Changes changes = session.awaitChanges(TIMEOUT, TimeUnit.SECONDS);
+		Assert.assertNotNull(changes);
+		Assert.assertFalse(changes.isEmpty());
+		return changes;
+	}
+
+	private void assertSession() throws IOException {
+		AnalysisSession analysisSession = AnalysisSession.open(Reader.from(app.getPath()),
+				Reader.from(lib.getPath()));
+		Assert.assertEquals(analysisSession.getArtifactClasses(), session.getArtifactClasses());
+		Assert.assertEquals(analysisSession.getClassesWithDependencies(), session.getClassesWithDependencies());
+		Assert.assertEquals(analysisSession.getDependencyClasses(), session.getDependencyClasses());
+		Assert.assertEquals(analysisSession.getDependencies(), session.getDependencies());
+		Assert.assertEquals(analysisSession.getUsedClasses(), session.getUsedClasses());
+		Assert.assertEquals(analysisSession.getUsedClassesByClass(), session.getUsedClassesByClass());
+		Assert.assertEquals(analysisSession.getUnusedClasses(), session.getUnusedClasses());
+	}
+
+	private static void copy(final Path source, final Path target) throws IOException {
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attributes)
+					throws IOException {
+				Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+					throws IOException {
+				Path targetFile = target.resolve(source.relativize(file).toString());
+				if (!Files.exists(targetFile)) {
+					Files.copy(file, targetFile);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private static void delete(final Path dir) throws IOException {
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes)
+					throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(final Path dir, final IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.trohovsky.just.util.PrefixFilter;
+
+public class CentralDirectoryTest {
+
+	private static final String LIB_JAR = "target/test-lib.jar";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testListClassesLikeZipFile() throws IOException {
+		Set<String> expected = new TreeSet<String>();
+		ZipFile zipFile = new ZipFile(LIB_JAR);
+		try {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				if (name.endsWith(".class")) {
+					expected.add(name.substring(0, name.length() - ".class".length()));
+				}
+			}
+		} finally {
+			zipFile.close();
+		}
+
+		Set<String> classes = new TreeSet<String>();
+		Assert.assertEquals(expected.size(), CentralDirectory.read(LIB_JAR).listClasses(PrefixFilter.all(), classes));
+		Assert.assertEquals(expected, classes);
+	}
+
+	@Test
+	public void testListEntriesLikeZipFile() throws IOException {
+		List<CentralDirectory.Entry> entries = CentralDirectory.read(
+				ByteBuffer.wrap(Files.readAllBytes(Paths.get(LIB_JAR)))).listEntries();
+		ZipFile zipFile = new ZipFile(LIB_JAR);
+		try {
+			Assert.assertEquals(zipFile.size(), entries.size());
+			for (CentralDirectory.Entry entry : entries) {
+				ZipEntry zipEntry = zipFile.getEntry(entry.getName());
+				Assert.assertNotNull(zipEntry);
+				Assert.assertEquals(zipEntry.getMethod(), entry.getMethod());
+				Assert.assertEquals(zipEntry.getCrc(), entry.getCrc());
+				Assert.assertEquals(zipEntry.getSize(), entry.getSize());
+				Assert.assertEquals(zipEntry.getCompressedSize(), entry.getCompressedSize());
+				Assert.assertEquals(zipEntry.isDirectory(), entry.isDirectory());
+			}
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	@Test
+	public void testListClassesSkipsResourcesAndComment() throws IOException {
+		File zip = folder.newFile("resources.zip");
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+		try {
+			zos.setComment("comment with a fake signature PK\u0005\u0006");
+			zos.putNextEntry(new ZipEntry("a/"));
+			zos.putNextEntry(new ZipEntry("a/A.class"));
+			zos.write(new byte[] { 1, 2, 3 });
+			zos.putNextEntry(new ZipEntry("a/b/B.class"));
+			zos.putNextEntry(new ZipEntry("a/resource.txt"));
+			zos.putNextEntry(new ZipEntry("c/Č.class"));
+		} finally {
+			zos.close();
+		}
+
+		CentralDirectory directory = CentralDirectory.read(zip.getPath());
+		Assert.assertEquals(5, directory.size());
+
+		Set<String> classes = new TreeSet<String>();
+		directory.listClasses(PrefixFilter.of(new String[] { "a/", "c/Č" }, new String[] { "a/b/" }), classes);
+		Assert.assertArrayEquals(new String[] { "a/A", "c/Č" }, classes.toArray());
+	}
+
+	@Test
+	public void testListClassesZip64() throws IOException {
+		File zip = folder.newFile("zip64.zip");
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+		try {
+			for (int i = 0; i < 0x10000 + 10; i++) {
+				zos.putNextEntry(new ZipEntry("p/C" + i + ".class"));
+			}
+		} finally {
+			zos.close();
+		}
+
+		Set<String> classes = new TreeSet<String>();
+		CentralDirectory.read(zip.getPath()).listClasses(PrefixFilter.all(), classes);
+		Assert.assertEquals(0x10000 + 10, classes.size());
+	}
+
+	@Test(expected = ZipException.class)
+	public void testReadNotZip() throws IOException {
+		File file = folder.newFile("not.zip");
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(new byte[100]);
+		} finally {
+			fos.close();
+		}
+		CentralDirectory.read(file.getPath());
+	}
+}
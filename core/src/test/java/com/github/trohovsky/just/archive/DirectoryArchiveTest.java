@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.trohovsky.just.util.PrefixFilter;
+
+public class DirectoryArchiveTest {
+
+	private static final String LIB_DIR = "target/test-lib";
+	private static final String LIB_JAR = "target/test-lib.jar";
+	private static final String NESTED = "com/github/trohovsky/just/test/lib/nested/";
+
+	@Test
+	public void testListClassEntriesLikeJar() throws IOException {
+		Set<String> expected = new TreeSet<String>();
+		JarArchive jar = new JarArchive(LIB_JAR);
+		try {
+			for (ClassEntry entry : jar.listClassEntries(PrefixFilter.all())) {
+				expected.add(entry.getName());
+			}
+		} finally {
+			jar.close();
+		}
+
+		List<ClassEntry> entries = new DirectoryArchive(new File(LIB_DIR)).listClassEntries(PrefixFilter.all());
+		Assert.assertEquals(expected, new TreeSet<String>(names(entries)));
+		for (ClassEntry entry : entries) {
+			byte[] bytes = entry.read();
+			Assert.assertEquals(entry.getSize(), bytes.length);
+			Assert.assertEquals(0xCAFEBABE, (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16
+					| (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff));
+		}
+	}
+
+	@Test
+	public void testDeterministicOrder() throws IOException {
+		List<String> expected = names(new DirectoryArchive(new File(LIB_DIR)).listClassEntries(PrefixFilter.all()));
+		for (int parallelism = 2; parallelism <= 8; parallelism *= 2) {
+			Assert.assertEquals(expected, names(new DirectoryArchive(new File(LIB_DIR), parallelism)
+					.listClassEntries(PrefixFilter.all())));
+		}
+
+		// the files of a directory precede its subdirectories
+		int nested = expected.indexOf(NESTED + "NestedOuter");
+		Assert.assertTrue(nested > expected.indexOf("com/github/trohovsky/just/test/lib/classtype/Interface"));
+		Assert.assertTrue(nested < expected.indexOf("com/github/trohovsky/just/test/lib/other/Unused"));
+	}
+
+	@Test
+	public void testFilter() throws IOException {
+		List<ClassEntry> entries = new DirectoryArchive(new File(LIB_DIR), 4).listClassEntries(PrefixFilter.of(
+				new String[] { NESTED }, new String[] { NESTED + "NestedOuter$" }));
+		List<String> expected = new ArrayList<String>();
+		expected.add(NESTED + "MethodReference");
+		expected.add(NESTED + "NestedOuter");
+		Assert.assertEquals(expected, names(entries));
+	}
+
+	private static List<String> names(final List<ClassEntry> entries) {
+		List<String> names = new ArrayList<String>();
+		for (ClassEntry entry : entries) {
+			names.add(entry.getName());
+		}
+		return names;
+	}
+}
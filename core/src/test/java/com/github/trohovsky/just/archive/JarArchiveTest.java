@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.trohovsky.just.Reader;
+import com.github.trohovsky.just.util.PrefixFilter;
+
+public class JarArchiveTest {
+
+	private static final String APP_JAR = "target/test-app.jar";
+	private static final String LIB_JAR = "target/test-lib.jar";
+	private static final String LIB_CLASS = "com/github/trohovsky/just/test/lib/classtype/Interface";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSpringBootJar() throws IOException {
+		File jar = createFatJar("boot.jar", "BOOT-INF/classes/", "BOOT-INF/lib/test-lib.jar", true);
+		assertNestedClasses(jar, "BOOT-INF/lib/test-lib.jar");
+
+		JarArchive archive = new JarArchive(jar.getPath());
+		try {
+			for (ClassEntry entry : archive.listClassEntries(PrefixFilter.all())) {
+				Assert.assertTrue(entry.getName().startsWith("BOOT-INF/classes/"));
+				Assert.assertNull(entry.getLocation());
+			}
+		} finally {
+			archive.close();
+		}
+	}
+
+	@Test
+	public void testWar() throws IOException {
+		File war = createFatJar("app.war", "WEB-INF/classes/", "WEB-INF/lib/test-lib.jar", false);
+		assertNestedClasses(war, "WEB-INF/lib/test-lib.jar");
+	}
+
+	@Test
+	public void testReader() throws IOException {
+		File jar = createFatJar("boot.jar", "BOOT-INF/classes/", "BOOT-INF/lib/test-lib.jar", true);
+
+		Assert.assertEquals(Reader.from(APP_JAR, LIB_JAR).readClassesWithDependencies(), Reader.from(jar.getPath())
+				.nestedArchives(true).parallelism(4).readClassesWithDependencies());
+		Assert.assertEquals(Reader.from(APP_JAR, LIB_JAR).listClasses(), Reader.from(jar.getPath())
+				.nestedArchives(true).listClasses());
+
+		Map<String, String> classLocations = Reader.from(jar.getPath()).nestedArchives(true).listClassLocations();
+		Assert.assertEquals(jar.getPath() + "!/BOOT-INF/lib/test-lib.jar", classLocations.get(LIB_CLASS));
+		Assert.assertEquals(jar.getPath(),
+				classLocations.get("com/github/trohovsky/just/test/app/ClassDependencies"));
+	}
+
+	@Test
+	public void testParallelism() throws IOException {
+		File jar = createFatJar("boot.jar", "BOOT-INF/classes/", "BOOT-INF/lib/test-lib.jar", true);
+		Set<String> expected = listClasses(new JarArchive(jar.getPath(), true));
+		Assert.assertEquals(expected, listClasses(new JarArchive(jar.getPath(), true, 4)));
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			Assert.assertEquals(expected, listClasses(new JarArchive(jar.getPath(), true, pool)));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test(expected = ZipException.class)
+	public void testInvalidLocalHeader() throws IOException {
+		File jar = createFatJar("boot.jar", "BOOT-INF/classes/", "BOOT-INF/lib/test-lib.jar", true);
+		for (CentralDirectory.Entry entry : CentralDirectory.read(jar.getPath()).listEntries()) {
+			if (entry.getName().equals("BOOT-INF/lib/test-lib.jar")) {
+				RandomAccessFile file = new RandomAccessFile(jar, "rw");
+				try {
+					file.seek(entry.getOffset());
+					file.writeInt(0);
+				} finally {
+					file.close();
+				}
+			}
+		}
+		listClasses(new JarArchive(jar.getPath(), true));
+	}
+
+	private static Set<String> listClasses(final JarArchive archive) throws IOException {
+		try {
+			Set<String> names = new TreeSet<String>();
+			for (ClassEntry entry : archive.listClassEntries(PrefixFilter.all())) {
+				names.add(entry.getName());
+			}
+			return names;
+		} finally {
+			archive.close();
+		}
+	}
+
+	private static void assertNestedClasses(final File jar, final String location) throws IOException {
+		Map<String, byte[]> expected = readClasses(APP_JAR);
+		Map<String, byte[]> expectedLib = readClasses(LIB_JAR);
+		expected.putAll(expectedLib);
+
+		JarArchive archive = new JarArchive(jar.getPath(), true);
+		try {
+			Set<String> names = new TreeSet<String>();
+			for (ClassEntry entry : archive.listClassEntries(PrefixFilter.all())) {
+				names.add(entry.getName());
+				Assert.assertArrayEquals(entry.getName(), expected.get(entry.getName()), entry.read());
+				Assert.assertEquals(expectedLib.containsKey(entry.getName()) ? location : null, entry.getLocation());
+			}
+			Assert.assertEquals(expected.keySet(), names);
+		} finally {
+			archive.close();
+		}
+	}
+
+	private File createFatJar(final String name, final String classDirectory, final String lib, final boolean stored)
+			throws IOException {
+		File jar = folder.newFile(name);
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+			zos.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+			for (Map.Entry<String, byte[]> entry : readClasses(APP_JAR).entrySet()) {
+				zos.putNextEntry(new ZipEntry(classDirectory + entry.getKey() + ".class"));
+				zos.write(entry.getValue());
+			}
+			byte[] libBytes = toByteArray(new FileInputStream(LIB_JAR));
+			ZipEntry libEntry = new ZipEntry(lib);
+			if (stored) {
+				CRC32 crc = new CRC32();
+				crc.update(libBytes);
+				libEntry.setMethod(ZipEntry.STORED);
+				libEntry.setSize(libBytes.length);
+				libEntry.setCrc(crc.getValue());
+			}
+			zos.putNextEntry(libEntry);
+			zos.write(libBytes);
+		} finally {
+			zos.close();
+		}
+		return jar;
+	}
+
+	private static Map<String, byte[]> readClasses(final String path) throws IOException {
+		Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		ZipFile zipFile = new ZipFile(path);
+		try {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.getName().endsWith(".class")) {
+					classes.put(entry.getName().substring(0, entry.getName().length() - ".class".length()),
+							toByteArray(zipFile.getInputStream(entry)));
+				}
+			}
+		} finally {
+			zipFile.close();
+		}
+		return classes;
+	}
+
+	private static byte[] toByteArray(final InputStream is) throws IOException {
+		try {
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int n = is.read(buffer); n != -1; n = is.read(buffer)) {
+				os.write(buffer, 0, n);
+			}
+			return os.toByteArray();
+		} finally {
+			is.close();
+		}
+	}
+}
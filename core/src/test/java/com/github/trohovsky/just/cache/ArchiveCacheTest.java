@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.trohovsky.just.Reader;
+import com.github.trohovsky.just.stats.ScanStatistics;
+
+public class ArchiveCacheTest {
+
+	private static final String APP_JAR = "target/test-app.jar";
+	private static final String APP_DIR = "target/test-app";
+	private static final String CONFIGURATION = "configuration";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testGetPutDependencies() throws IOException {
+		ArchiveCache cache = new ArchiveCache(100);
+		File file = new File(APP_JAR);
+		Assert.assertNull(cache.get(file, CONFIGURATION, 10, 1));
+
+		cache.put(file, CONFIGURATION, 10, 1, classesWithDependencies("a/A", "a/B"));
+		Assert.assertEquals(classesWithDependencies("a/A", "a/B"), cache.get(file, CONFIGURATION, 10, 1));
+		Assert.assertEquals(classesWithDependencies("a/A", "a/B"),
+				cache.get(new File("target/../" + APP_JAR), CONFIGURATION, 10, 1));
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(4, cache.getWeight());
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testGetChangedArchive() throws IOException {
+		ArchiveCache cache = new ArchiveCache(100);
+		File file = new File(APP_JAR);
+		cache.put(file, CONFIGURATION, 10, 1, classesWithDependencies("a/A"));
+
+		Assert.assertNull(cache.get(file, CONFIGURATION, 11, 1));
+		Assert.assertNull(cache.get(file, CONFIGURATION, 10, 2));
+		Assert.assertNull(cache.get(file, "other", 10, 1));
+		Assert.assertNull(cache.get(new File("target/test-lib.jar"), CONFIGURATION, 10, 1));
+
+		cache.put(file, CONFIGURATION, 10, 2, classesWithDependencies("a/B"));
+		Assert.assertEquals(classesWithDependencies("a/B"), cache.get(file, CONFIGURATION, 10, 2));
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(2, cache.getWeight());
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		ArchiveCache cache = new ArchiveCache(6);
+		File first = new File("first.jar");
+		File second = new File("second.jar");
+		File third = new File("third.jar");
+		cache.put(first, CONFIGURATION, 1, 1, classesWithDependencies("a/A"));
+		cache.put(second, CONFIGURATION, 1, 1, classesWithDependencies("a/B"));
+		cache.put(third, CONFIGURATION, 1, 1, classesWithDependencies("a/C"));
+		Assert.assertEquals(3, cache.size());
+
+		// the first one is used recently, so the second one is evicted
+		Assert.assertNotNull(cache.get(first, CONFIGURATION, 1, 1));
+		cache.put(new File("fourth.jar"), CONFIGURATION, 1, 1, classesWithDependencies("a/D"));
+		Assert.assertEquals(3, cache.size());
+		Assert.assertEquals(6, cache.getWeight());
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertNotNull(cache.get(first, CONFIGURATION, 1, 1));
+		Assert.assertNull(cache.get(second, CONFIGURATION, 1, 1));
+		Assert.assertNotNull(cache.get(third, CONFIGURATION, 1, 1));
+
+		// heavier than the capacity
+		cache.put(second, CONFIGURATION, 1, 1, classesWithDependencies("a/A", "a/B", "a/C", "a/D"));
+		Assert.assertNull(cache.get(second, CONFIGURATION, 1, 1));
+		Assert.assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void testSymbolTableBounded() throws IOException {
+		ArchiveCache cache = new ArchiveCache(6);
+		for (int i = 0; i < 100; i++) {
+			Map<String, Set<String>> classes = new TreeMap<String, Set<String>>();
+			classes.put("a/A", new TreeSet<String>(Arrays.asList("a/B" + i, "a/C" + i)));
+			cache.put(new File(i + ".jar"), CONFIGURATION, 1, 1, classes);
+			Assert.assertTrue(cache.toString(), cache.getNameCount() <= 4 * cache.size());
+		}
+		Assert.assertEquals(classes("a/B99", "a/C99"), cache.get(new File("99.jar"), CONFIGURATION, 1, 1).get("a/A"));
+
+		// not cached, so not interned
+		int names = cache.getNameCount();
+		cache.put(new File("heavy.jar"), CONFIGURATION, 1, 1, classesWithDependencies("x/A", "x/B", "x/C", "x/D"));
+		Assert.assertEquals(names, cache.getNameCount());
+		cache.clear();
+		Assert.assertEquals(0, cache.getNameCount());
+		Reader.from(APP_DIR).archiveCache(cache).readClassesWithDependencies();
+		Assert.assertEquals(0, cache.getNameCount());
+	}
+
+	@Test
+	public void testReaderWithArchiveCache() throws IOException {
+		File jar = folder.newFile("test-app.jar");
+		Files.copy(new File(APP_JAR).toPath(), jar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Map<String, Set<String>> expected = Reader.from(APP_JAR).readClassesWithDependencies();
+		ArchiveCache cache = new ArchiveCache(1000000);
+
+		for (int i = 0; i < 2; i++) {
+			ScanStatistics statistics = new ScanStatistics();
+			Assert.assertEquals(expected, Reader.from(jar.getPath()).archiveCache(cache).listener(statistics)
+					.readClassesWithDependencies());
+			Assert.assertEquals(i == 0 ? expected.size() : 0, statistics.getParsedClasses());
+		}
+		Assert.assertEquals(1, cache.getHits());
+
+		// a different configuration is cached separately
+		Assert.assertEquals(expected, Reader.from(jar.getPath()).archiveCache(cache)
+				.engine(Reader.Engine.CONSTANT_POOL).readClassesWithDependencies());
+		Assert.assertEquals(1, cache.getHits());
+
+		// a touched JAR is read again
+		Assert.assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+		Reader.from(jar.getPath()).archiveCache(cache).readClassesWithDependencies();
+		Assert.assertEquals(1, cache.getHits());
+
+		// directories are not cached
+		Assert.assertEquals(Reader.from(APP_DIR).readClassesWithDependencies(),
+				Reader.from(APP_DIR).archiveCache(cache).readClassesWithDependencies());
+		Assert.assertEquals(2, cache.size());
+	}
+
+	private static Set<String> classes(final String... classes) {
+		return new TreeSet<String>(Arrays.asList(classes));
+	}
+
+	private static Map<String, Set<String>> classesWithDependencies(final String... classes) {
+		Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+		for (String name : classes) {
+			classesWithDependencies.put(name, new TreeSet<String>(Arrays.asList("java/lang/Object")));
+		}
+		return classesWithDependencies;
+	}
+}
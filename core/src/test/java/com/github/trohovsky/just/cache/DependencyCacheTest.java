@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.trohovsky.just.Reader;
+import com.github.trohovsky.just.archive.ClassEntry;
+import com.github.trohovsky.just.model.SymbolTable;
+
+public class DependencyCacheTest {
+
+	private static final String APP_JAR = "target/test-app.jar";
+	private static final String APP_DIR = "target/test-app";
+	private static final String PATH = "target/test-app.jar";
+	private static final String CONFIGURATION = "configuration";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReadWrittenDependencies() throws IOException {
+		DependencyCache cache = new DependencyCache(folder.getRoot());
+		List<ClassEntry> entries = Arrays.asList(entry("a/A", 10, 1), entry("a/B", 20, 2));
+		Map<String, Set<String>> classesWithDependencies = classesWithDependencies();
+		cache.write(PATH, CONFIGURATION, entries, classesWithDependencies);
+
+		Assert.assertEquals(classesWithDependencies, cache.read(PATH, CONFIGURATION, entries, new SymbolTable()));
+	}
+
+	@Test
+	public void testReadChangedEntries() throws IOException {
+		DependencyCache cache = new DependencyCache(folder.getRoot());
+		cache.write(PATH, CONFIGURATION, Arrays.asList(entry("a/A", 10, 1), entry("a/B", 20, 2)),
+				classesWithDependencies());
+
+		Map<String, Set<String>> cachedClasses = cache.read(PATH, CONFIGURATION,
+				Arrays.asList(entry("a/A", 10, 3), entry("a/B", 20, 2), entry("a/C", 30, 4)), new SymbolTable());
+		Assert.assertEquals(Collections.singleton("a/B"), cachedClasses.keySet());
+		cachedClasses = cache.read(PATH, CONFIGURATION, Arrays.asList(entry("a/A", 11, 1)), new SymbolTable());
+		Assert.assertTrue(cachedClasses.isEmpty());
+	}
+
+	@Test
+	public void testReadDifferentConfiguration() throws IOException {
+		DependencyCache cache = new DependencyCache(folder.getRoot());
+		List<ClassEntry> entries = Arrays.asList(entry("a/A", 10, 1), entry("a/B", 20, 2));
+		cache.write(PATH, CONFIGURATION, entries, classesWithDependencies());
+
+		Assert.assertTrue(cache.read(PATH, "other", entries, new SymbolTable()).isEmpty());
+		Assert.assertTrue(cache.read("target/test-lib.jar", CONFIGURATION, entries, new SymbolTable()).isEmpty());
+	}
+
+	@Test
+	public void testReadCorruptedFile() throws IOException {
+		DependencyCache cache = new DependencyCache(folder.getRoot());
+		List<ClassEntry> entries = Arrays.asList(entry("a/A", 10, 1), entry("a/B", 20, 2));
+		cache.write(PATH, CONFIGURATION, entries, classesWithDependencies());
+
+		File[] files = folder.getRoot().listFiles();
+		Assert.assertEquals(1, files.length);
+		FileOutputStream fos = new FileOutputStream(files[0], true);
+		try {
+			fos.write(new byte[] { 1, 2, 3 });
+		} finally {
+			fos.close();
+		}
+		Assert.assertTrue(cache.read(PATH, CONFIGURATION, entries, new SymbolTable()).isEmpty());
+
+		fos = new FileOutputStream(files[0]);
+		try {
+			fos.write(new byte[] { 'J', 'U', 'S', 'T', 0 });
+		} finally {
+			fos.close();
+		}
+		Assert.assertTrue(cache.read(PATH, CONFIGURATION, entries, new SymbolTable()).isEmpty());
+	}
+
+	@Test
+	public void testReadCorruptedCounts() throws IOException {
+		DependencyCache cache = new DependencyCache(folder.getRoot());
+		List<ClassEntry> entries = Arrays.asList(entry("a/A", 10, 1), entry("a/B", 20, 2));
+		cache.write(PATH, CONFIGURATION, entries, classesWithDependencies());
+
+		// the count of strings follows the magic and the version
+		RandomAccessFile file = new RandomAccessFile(folder.getRoot().listFiles()[0], "rw");
+		try {
+			file.seek(8);
+			file.writeInt(Integer.MAX_VALUE);
+		} finally {
+			file.close();
+		}
+		SymbolTable symbolTable = new SymbolTable();
+		Assert.assertTrue(cache.read(PATH, CONFIGURATION, entries, symbolTable).isEmpty());
+		Assert.assertEquals(0, symbolTable.size());
+
+		cache.write(PATH, CONFIGURATION, entries, classesWithDependencies());
+		FileOutputStream fos = new FileOutputStream(folder.getRoot().listFiles()[0], true);
+		try {
+			fos.write(new byte[] { 1, 2, 3 });
+		} finally {
+			fos.close();
+		}
+		Assert.assertTrue(cache.read(PATH, CONFIGURATION, entries, symbolTable).isEmpty());
+		Assert.assertEquals(0, symbolTable.size());
+	}
+
+	@Test
+	public void testReaderWithCache() throws IOException {
+		for (String path : new String[] { APP_DIR, APP_JAR }) {
+			Map<String, Set<String>> expected = Reader.from(path).readClassesWithDependencies();
+			Set<String> expectedDependencies = Reader.from(path).readDependencies();
+			File directory = new File(folder.getRoot(), "cache");
+
+			// the first reading fills the cache, the second one uses it
+			for (int i = 0; i < 2; i++) {
+				Assert.assertEquals(expected, Reader.from(path).cache(directory).readClassesWithDependencies());
+				Assert.assertEquals(expectedDependencies, Reader.from(path).cache(directory).readDependencies());
+			}
+			Assert.assertEquals(expected, Reader.from(path).cache(directory).parallelism(4)
+					.readClassesWithDependencies());
+		}
+	}
+
+	private static Map<String, Set<String>> classesWithDependencies() {
+		Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+		classesWithDependencies.put("a/A", new TreeSet<String>(Arrays.asList("a/B", "java/lang/Object")));
+		classesWithDependencies.put("a/B", new TreeSet<String>(Arrays.asList("java/lang/Object")));
+		return classesWithDependencies;
+	}
+
+	private static ClassEntry entry(final String name, final long size, final long stamp) {
+		return new ClassEntry(name, size, stamp) {
+
+			@Override
+			public byte[] read() throws IOException {
+				throw new IOException("Not readable");
+			}
+		};
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.callgraph;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.trohovsky.just.model.SymbolTable;
+
+public class MemberTableTest {
+
+	@Test
+	public void testIntern() {
+		MemberTable members = new MemberTable(new SymbolTable(), new SymbolTable());
+		int toString = members.intern("java/lang/Object", "toString", "()Ljava/lang/String;");
+		int out = members.intern("java/lang/System", "out", "Ljava/io/PrintStream;");
+
+		Assert.assertEquals(toString, members.intern("java/lang/Object", "toString", "()Ljava/lang/String;"));
+		Assert.assertNotEquals(toString, out);
+		Assert.assertEquals(2, members.size());
+		Assert.assertEquals("java/lang/Object.toString()Ljava/lang/String;", members.toString(toString));
+		Assert.assertEquals("java/lang/System.out:Ljava/io/PrintStream;", members.toString(out));
+		Assert.assertEquals("java/lang/System", members.getClasses().name(members.getOwner(out)));
+		int owner = members.getOwner(out);
+		Assert.assertEquals(out, members.get(owner, members.getName(out), members.getDescriptor(out)));
+		Assert.assertEquals(-1, members.get(owner, members.getName(toString), members.getDescriptor(out)));
+	}
+
+	@Test
+	public void testGrow() {
+		MemberTable members = new MemberTable(new SymbolTable(), new SymbolTable());
+		for (int i = 0; i < 10000; i++) {
+			Assert.assertEquals(i, members.intern("a/C" + i % 100, "m" + i, "()V"));
+		}
+		for (int i = 0; i < 10000; i++) {
+			Assert.assertEquals(i, members.intern("a/C" + i % 100, "m" + i, "()V"));
+			Assert.assertEquals("a/C" + i % 100 + ".m" + i + "()V", members.toString(i));
+		}
+		Assert.assertEquals(10000, members.size());
+	}
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.corpus;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.SplittableRandom;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Generator of large deterministic corpora of classes for scalability tests
+ * and benchmarks. The same configuration and seed always give the same
+ * classes, each class is generated from its own random generator, so
+ * corpora of any size are written as a stream.
+ * <p>
+ * The classes are named "gen/pX/.../pY/CN" by their index N, the packages are
+ * nested {@link #packageDepth(int)} levels below "gen". Dependencies of a
+ * class are other generated classes, more often those with lower indices,
+ * and one in eight is a class of the JDK. A dependency is a checkcast, static
+ * invocation or instantiation in a method body, or a type argument of a
+ * field signature. With a non-zero annotation density the first
+ * {@value #ANNOTATION_TYPES} classes are annotation types annotating the
+ * classes and methods by class literals.
+ * <p>
+ * Usage from the command line:
+ * 
+ * <pre>
+ * CorpusGenerator output.jar|directory classes [seed]
+ * </pre>
+ * 
+ * @author Tomas Rohovsky
+ */
+public final class CorpusGenerator {
+
+	/**
+	 * Distribution of the number of dependencies of a class.
+	 */
+	public enum Distribution {
+
+		/**
+		 * Every class has the mean number of dependencies.
+		 */
+		CONSTANT,
+
+		/**
+		 * The number is uniform from zero to twice the mean.
+		 */
+		UNIFORM,
+
+		/**
+		 * The number follows the Pareto distribution with the shape 2 and the
+		 * mean, so a few classes have many dependencies.
+		 */
+		POWER_LAW
+	}
+
+	private static final String ROOT_PACKAGE = "gen";
+	private static final int PACKAGES_PER_LEVEL = 10;
+	private static final int ANNOTATION_TYPES = 8;
+	private static final String[] JDK_CLASSES = { "java/lang/String", "java/lang/Integer", "java/lang/StringBuilder",
+			"java/util/ArrayList", "java/util/HashMap", "java/util/List", "java/util/Map", "java/util/Set",
+			"java/io/File", "java/io/InputStream", "java/util/concurrent/ConcurrentHashMap",
+			"java/util/function/Function" };
+	// 1980-01-01, the first time of ZIP entries, so the JARs do not depend
+	// on the time of writing
+	private static final long ENTRY_TIME = 315532800000L;
+
+	private final int classes;
+	private long seed;
+	private int fanOut = 8;
+	private Distribution distribution = Distribution.POWER_LAW;
+	private int packageDepth = 3;
+	private int classesPerPackage = 50;
+	private double signatureDensity = 0.1;
+	private double annotationDensity = 0.1;
+	private int methodSize = 10;
+
+	private CorpusGenerator(final int classes) {
+		this.classes = classes;
+	}
+
+	/**
+	 * Creates a generator of the number of classes.
+	 * 
+	 * @param classes
+	 *            the number of classes, must be positive
+	 * @return the generator
+	 */
+	public static CorpusGenerator of(final int classes) {
+		if (classes <= 0) {
+			throw new IllegalArgumentException("Number of classes must be positive");
+		}
+		return new CorpusGenerator(classes);
+	}
+
+	/**
+	 * Sets the seed, 0 by default.
+	 */
+	public CorpusGenerator seed(final long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Sets the mean number of dependencies of a class and their distribution,
+	 * 8 with {@link Distribution#POWER_LAW} by default.
+	 */
+	public CorpusGenerator fanOut(final int mean, final Distribution distribution) {
+		if (mean < 0) {
+			throw new IllegalArgumentException("Fan-out cannot be negative");
+		}
+		this.fanOut = mean;
+		this.distribution = distribution;
+		return this;
+	}
+
+	/**
+	 * Sets the number of package levels below the root package, 3 by default.
+	 */
+	public CorpusGenerator packageDepth(final int packageDepth) {
+		if (packageDepth <= 0) {
+			throw new IllegalArgumentException("Package depth must be positive");
+		}
+		this.packageDepth = packageDepth;
+		return this;
+	}
+
+	/**
+	 * Sets the number of classes in a package, 50 by default.
+	 */
+	public CorpusGenerator classesPerPackage(final int classesPerPackage) {
+		if (classesPerPackage <= 0) {
+			throw new IllegalArgumentException("Classes per package must be positive");
+		}
+		this.classesPerPackage = classesPerPackage;
+		return this;
+	}
+
+	/**
+	 * Sets the probability of a dependency being a type argument of a generic
+	 * signature, 0.1 by default.
+	 */
+	public CorpusGenerator signatureDensity(final double signatureDensity) {
+		this.signatureDensity = probability(signatureDensity);
+		return this;
+	}
+
+	/**
+	 * Sets the probability of a class or method being annotated, 0.1 by
+	 * default.
+	 */
+	public CorpusGenerator annotationDensity(final double annotationDensity) {
+		this.annotationDensity = probability(annotationDensity);
+		return this;
+	}
+
+	/**
+	 * Sets the number of arithmetic statements of a method body besides the
+	 * dependencies, 10 by default.
+	 */
+	public CorpusGenerator methodSize(final int methodSize) {
+		if (methodSize < 0) {
+			throw new IllegalArgumentException("Method size cannot be negative");
+		}
+		this.methodSize = methodSize;
+		return this;
+	}
+
+	private static double probability(final double probability) {
+		if (probability < 0 || probability > 1) {
+			throw new IllegalArgumentException("Density must be from 0 to 1");
+		}
+		return probability;
+	}
+
+	/**
+	 * Returns the number of classes.
+	 */
+	public int getClasses() {
+		return classes;
+	}
+
+	/**
+	 * Returns the internal name of the class of the index.
+	 */
+	public String getClassName(final int index) {
+		final StringBuilder name = new StringBuilder(ROOT_PACKAGE);
+		final int packageIndex = index / classesPerPackage;
+		int divisor = 1;
+		for (int level = 1; level < packageDepth; level++) {
+			divisor *= PACKAGES_PER_LEVEL;
+		}
+		// the top level takes the rest, so packages never repeat
+		name.append("/p").append(packageIndex / divisor);
+		for (int level = 1; level < packageDepth; level++) {
+			divisor /= PACKAGES_PER_LEVEL;
+			name.append("/p").append(packageIndex / divisor % PACKAGES_PER_LEVEL);
+		}
+		return name.append(isAnnotationType(index) ? "/A" : "/C").append(index).toString();
+	}
+
+	/**
+	 * Writes the classes to a JAR.
+	 */
+	public void writeJar(final File file) throws IOException {
+		try (JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			for (int i = 0; i < classes; i++) {
+				final ZipEntry entry = new ZipEntry(getClassName(i) + ".class");
+				entry.setTime(ENTRY_TIME);
+				out.putNextEntry(entry);
+				out.write(generate(i));
+			}
+		}
+	}
+
+	/**
+	 * Writes the classes to a directory tree.
+	 */
+	public void writeDirectory(final File directory) throws IOException {
+		File packageDirectory = null;
+		for (int i = 0; i < classes; i++) {
+			final File file = new File(directory, getClassName(i) + ".class");
+			if (!file.getParentFile().equals(packageDirectory)) {
+				packageDirectory = file.getParentFile();
+				if (!packageDirectory.isDirectory() && !packageDirectory.mkdirs()) {
+					throw new IOException("Cannot create directory " + packageDirectory);
+				}
+			}
+			try (OutputStream out = new FileOutputStream(file)) {
+				out.write(generate(i));
+			}
+		}
+	}
+
+	/**
+	 * Generates the class file of the index.
+	 */
+	public byte[] generate(final int index) {
+		if (isAnnotationType(index)) {
+			return generateAnnotationType(index);
+		}
+		final SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+		final String name = getClassName(index);
+		final String superName = index > getAnnotationTypes() && random.nextInt(5) == 0
+				? getClassName(getAnnotationTypes() + random.nextInt(index - getAnnotationTypes()))
+				: "java/lang/Object";
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, superName, null);
+		final String classAnnotation = annotationDesc(random);
+		if (classAnnotation != null) {
+			annotate(cw.visitAnnotation(classAnnotation, true), random);
+		}
+
+		final int dependencies = nextFanOut(random);
+		final String[] targets = new String[dependencies];
+		final int[] kinds = new int[dependencies];
+		for (int i = 0; i < dependencies; i++) {
+			targets[i] = nextTarget(random, index);
+			if (random.nextDouble() < signatureDensity) {
+				kinds[i] = -1;
+				final FieldVisitor fv = cw.visitField(Opcodes.ACC_PRIVATE, "f" + i, "Ljava/util/List;",
+						"Ljava/util/List<L" + targets[i] + ";>;", null);
+				fv.visitEnd();
+			} else {
+				// JDK classes are only cast to, they may be abstract
+				kinds[i] = targets[i].startsWith(ROOT_PACKAGE) ? random.nextInt(3) : Opcodes.CHECKCAST;
+			}
+		}
+
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		final int methods = 1 + dependencies / 4;
+		for (int m = 0; m < methods; m++) {
+			mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m" + m, "()V", null, null);
+			final String methodAnnotation = annotationDesc(random);
+			if (methodAnnotation != null) {
+				annotate(mv.visitAnnotation(methodAnnotation, true), random);
+			}
+			mv.visitCode();
+			for (int i = m; i < dependencies; i += methods) {
+				addDependency(mv, targets[i], kinds[i]);
+			}
+			for (int i = 0; i < methodSize; i++) {
+				mv.visitIntInsn(Opcodes.BIPUSH, random.nextInt(100));
+				mv.visitVarInsn(Opcodes.ISTORE, 0);
+				mv.visitVarInsn(Opcodes.ILOAD, 0);
+				mv.visitInsn(Opcodes.ICONST_1);
+				mv.visitInsn(Opcodes.IADD);
+				mv.visitVarInsn(Opcodes.ISTORE, 0);
+			}
+			mv.visitInsn(Opcodes.RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static void addDependency(final MethodVisitor mv, final String target, final int kind) {
+		switch (kind) {
+		case -1:
+			// in the field signature
+			break;
+		case 0:
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC, target, "m0", "()V", false);
+			break;
+		case 1:
+			mv.visitTypeInsn(Opcodes.NEW, target);
+			mv.visitInsn(Opcodes.DUP);
+			mv.visitMethodInsn(Opcodes.INVOKESPECIAL, target, "<init>", "()V", false);
+			mv.visitInsn(Opcodes.POP);
+			break;
+		default:
+			mv.visitInsn(Opcodes.ACONST_NULL);
+			mv.visitTypeInsn(Opcodes.CHECKCAST, target);
+			mv.visitInsn(Opcodes.POP);
+		}
+	}
+
+	private byte[] generateAnnotationType(final int index) {
+		final ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT
+				| Opcodes.ACC_ANNOTATION, getClassName(index), null, "java/lang/Object",
+				new String[] { "java/lang/annotation/Annotation" });
+		final AnnotationVisitor av = cw.visitAnnotation("Ljava/lang/annotation/Retention;", true);
+		av.visitEnum("value", "Ljava/lang/annotation/RetentionPolicy;", "RUNTIME");
+		av.visitEnd();
+		cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "value", "()Ljava/lang/Class;",
+				"()Ljava/lang/Class<*>;", null).visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Returns a descriptor of a random annotation type, or null if the
+	 * element is not annotated.
+	 */
+	private String annotationDesc(final SplittableRandom random) {
+		if (getAnnotationTypes() == 0 || random.nextDouble() >= annotationDensity) {
+			return null;
+		}
+		return 'L' + getClassName(random.nextInt(getAnnotationTypes())) + ';';
+	}
+
+	private void annotate(final AnnotationVisitor av, final SplittableRandom random) {
+		av.visit("value", Type.getObjectType(nextTarget(random, -1)));
+		av.visitEnd();
+	}
+
+	private int nextFanOut(final SplittableRandom random) {
+		final int fanOut;
+		switch (distribution) {
+		case CONSTANT:
+			fanOut = this.fanOut;
+			break;
+		case UNIFORM:
+			fanOut = random.nextInt(2 * this.fanOut + 1);
+			break;
+		default:
+			// the Pareto distribution with the shape 2 and the scale of a
+			// half of the mean, bounded to avoid extreme classes
+			final double pareto = this.fanOut / 2.0 / Math.sqrt(1 - random.nextDouble());
+			fanOut = (int) Math.min(Math.round(pareto), 100L * this.fanOut);
+		}
+		return fanOut;
+	}
+
+	/**
+	 * Returns a dependency, a generated class other than the one of the index
+	 * with a skew to lower indices, or a class of the JDK.
+	 */
+	private String nextTarget(final SplittableRandom random, final int index) {
+		final int first = getAnnotationTypes();
+		if (random.nextInt(8) == 0 || classes - first < 2) {
+			return JDK_CLASSES[random.nextInt(JDK_CLASSES.length)];
+		}
+		final double skewed = random.nextDouble();
+		int target = first + (int) ((classes - first) * skewed * skewed);
+		if (target == index) {
+			target = target + 1 < classes ? target + 1 : first;
+		}
+		return getClassName(target);
+	}
+
+	private int getAnnotationTypes() {
+		return annotationDensity > 0 && classes > 2 * ANNOTATION_TYPES ? ANNOTATION_TYPES : 0;
+	}
+
+	private boolean isAnnotationType(final int index) {
+		return index < getAnnotationTypes();
+	}
+
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: CorpusGenerator output.jar|directory classes [seed]");
+			System.exit(1);
+		}
+		final CorpusGenerator generator = of(Integer.parseInt(args[1]));
+		if (args.length > 2) {
+			generator.seed(Long.parseLong(args[2]));
+		}
+		final File output = new File(args[0]);
+		if (args[0].endsWith(".jar")) {
+			generator.writeJar(output);
+		} else {
+			generator.writeDirectory(output);
+		}
+	}
+}
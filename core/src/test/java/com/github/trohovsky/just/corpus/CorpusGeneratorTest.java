@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.corpus;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.trohovsky.just.DependencyUtils;
+import com.github.trohovsky.just.Reader;
+import com.github.trohovsky.just.Reader.Engine;
+import com.github.trohovsky.just.corpus.CorpusGenerator.Distribution;
+
+/**
+ * Tests of the corpus generator, the number of classes read by the Reader is
+ * set by the system property just.stress.classes, e.g. to 1000000.
+ */
+public class CorpusGeneratorTest {
+
+	private static final int CLASSES = Integer.getInteger("just.stress.classes", 2000);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDeterministic() throws IOException {
+		File first = folder.newFile("first.jar");
+		File second = folder.newFile("second.jar");
+		File other = folder.newFile("other.jar");
+		CorpusGenerator.of(500).seed(42).writeJar(first);
+		CorpusGenerator.of(500).seed(42).writeJar(second);
+		CorpusGenerator.of(500).seed(43).writeJar(other);
+
+		Assert.assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+		Assert.assertFalse(Arrays.equals(Files.readAllBytes(first.toPath()),
+				Files.readAllBytes(other.toPath())));
+	}
+
+	@Test
+	public void testClassNames() {
+		CorpusGenerator generator = CorpusGenerator.of(100000).packageDepth(3).classesPerPackage(50);
+		Assert.assertEquals("gen/p0/p0/p0/A0", generator.getClassName(0));
+		Assert.assertEquals("gen/p0/p0/p0/C8", generator.getClassName(8));
+		Assert.assertEquals("gen/p0/p2/p4/C1234", generator.getClassName(1234));
+		Assert.assertEquals("gen/p19/p9/p9/C99999", generator.getClassName(99999));
+		Assert.assertEquals("gen/p24/C1234", CorpusGenerator.of(10).packageDepth(1).getClassName(1234));
+	}
+
+	@Test
+	public void testReader() throws IOException {
+		CorpusGenerator generator = CorpusGenerator.of(CLASSES).seed(7);
+		File jar = new File(folder.getRoot(), "corpus.jar");
+		File directory = folder.newFolder("corpus");
+		generator.writeJar(jar);
+		generator.writeDirectory(directory);
+
+		Set<String> classes = Reader.from(jar.getPath()).listClasses();
+		Assert.assertEquals(CLASSES, classes.size());
+		Assert.assertEquals(classes, Reader.from(directory.getPath()).listClasses());
+
+		Map<String, Set<String>> expected = Reader.from(jar.getPath()).engine(Engine.VISITOR)
+				.readClassesWithDependencies();
+		Assert.assertEquals(expected, Reader.from(directory.getPath()).engine(Engine.CONSTANT_POOL)
+				.readClassesWithDependencies());
+		Assert.assertTrue(classes.containsAll(DependencyUtils.flatten(expected).stream()
+				.filter(name -> name.startsWith("gen/")).collect(Collectors.toSet())));
+	}
+
+	@Test
+	public void testFanOut() throws IOException {
+		File jar = new File(folder.getRoot(), "constant.jar");
+		CorpusGenerator.of(1000).fanOut(5, Distribution.CONSTANT).signatureDensity(0).annotationDensity(0)
+				.writeJar(jar);
+		Map<String, Set<String>> classesWithDependencies = Reader.from(jar.getPath()).readClassesWithDependencies();
+		for (Set<String> dependencies : classesWithDependencies.values()) {
+			// the dependencies, Object or the superclass and duplicates
+			Assert.assertTrue(dependencies.toString(), dependencies.size() >= 2 && dependencies.size() <= 7);
+		}
+	}
+
+	@Test
+	public void testLoadable() throws Exception {
+		final CorpusGenerator generator = CorpusGenerator.of(300).annotationDensity(0.5).signatureDensity(0.5);
+		ClassLoader classLoader = new ClassLoader(null) {
+			@Override
+			protected Class<?> findClass(String name) throws ClassNotFoundException {
+				String className = name.replace('.', '/');
+				for (int i = 0; i < generator.getClasses(); i++) {
+					if (generator.getClassName(i).equals(className)) {
+						byte[] bytes = generator.generate(i);
+						return defineClass(name, bytes, 0, bytes.length);
+					}
+				}
+				throw new ClassNotFoundException(name);
+			}
+		};
+		for (int i = 0; i < generator.getClasses(); i++) {
+			// initialization verifies the bytecode
+			Class.forName(generator.getClassName(i).replace('/', '.'), true, classLoader);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.trohovsky.just.Reader;
+
+public class DependencyIndexTest {
+
+	private static final String APP_JAR = "target/test-app.jar";
+	private static final String LIB_JAR = "target/test-lib.jar";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testQueries() throws IOException {
+		final Map<String, Map<String, Set<String>>> archives = Reader.from(APP_JAR, LIB_JAR)
+				.readClassesWithDependenciesByPath();
+		final File file = folder.newFile("test.jidx");
+		new IndexWriter().addAll(archives).write(file);
+
+		final Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+		int classCount = 0;
+		int edgeCount = 0;
+		for (Map<String, Set<String>> classes : archives.values()) {
+			for (Entry<String, Set<String>> entry : classes.entrySet()) {
+				for (String dependency : entry.getValue()) {
+					if (!dependents.containsKey(dependency)) {
+						dependents.put(dependency, new TreeSet<String>());
+					}
+					dependents.get(dependency).add(entry.getKey());
+				}
+				classCount++;
+				edgeCount += entry.getValue().size();
+			}
+		}
+
+		// chunks of 64 bytes make the names cross the chunks
+		for (DependencyIndex index : Arrays.asList(DependencyIndex.open(file),
+				DependencyIndex.open(file.toPath(), 64))) {
+			Assert.assertEquals(Arrays.asList(APP_JAR, LIB_JAR), index.getArchives());
+			Assert.assertEquals(classCount, index.getClassCount());
+			Assert.assertEquals(edgeCount, index.getEdgeCount());
+			for (Entry<String, Map<String, Set<String>>> archive : archives.entrySet()) {
+				Assert.assertEquals(new ArrayList<String>(archive.getValue().keySet()),
+						index.getClasses(archive.getKey()));
+				for (Entry<String, Set<String>> entry : archive.getValue().entrySet()) {
+					Assert.assertEquals(archive.getKey(), index.getArchive(entry.getKey()));
+					Assert.assertEquals(new ArrayList<String>(new TreeSet<String>(entry.getValue())),
+							index.getDependencies(entry.getKey()));
+				}
+			}
+			for (Entry<String, Set<String>> entry : dependents.entrySet()) {
+				Assert.assertEquals(new ArrayList<String>(entry.getValue()), index.getDependents(entry.getKey()));
+				Assert.assertEquals(entry.getKey(), index.getName(index.getNode(entry.getKey())));
+			}
+			Assert.assertEquals(-1, index.getNode("a/Missing"));
+			Assert.assertNull(index.getArchive("java/lang/Object"));
+			Assert.assertTrue(index.getDependencies("java/lang/Object").isEmpty());
+			Assert.assertTrue(index.getDependents("a/Missing").isEmpty());
+			Assert.assertTrue(index.getClasses("missing.jar").isEmpty());
+		}
+	}
+
+	@Test
+	public void testDuplicateClasses() throws IOException {
+		final File file = folder.newFile("duplicates.jidx");
+		new IndexWriter().add("a.jar", classes("a/A", "b/B")).add("b.jar", classes("a/A", "c/C")).write(file);
+
+		final DependencyIndex index = DependencyIndex.open(file);
+		Assert.assertEquals("b.jar", index.getArchive("a/A"));
+		Assert.assertEquals(Arrays.asList("c/C"), index.getDependencies("a/A"));
+		Assert.assertTrue(index.getDependents("b/B").isEmpty());
+		Assert.assertTrue(index.getClasses("a.jar").isEmpty());
+		Assert.assertEquals(Arrays.asList("a/A"), index.getClasses("b.jar"));
+	}
+
+	@Test
+	public void testNonAsciiNames() throws IOException {
+		// the supplementary character precedes in UTF-16 but follows in UTF-8
+		final String supplementary = "a/\uD83D\uDE00";
+		final String bmp = "a/\uFFFD";
+		final File file = folder.newFile("names.jidx");
+		new IndexWriter().add("\u00E9.jar", classes(supplementary, bmp)).write(file);
+
+		final DependencyIndex index = DependencyIndex.open(file);
+		Assert.assertEquals(Arrays.asList(bmp), index.getDependencies(supplementary));
+		Assert.assertEquals(Arrays.asList(supplementary), index.getDependents(bmp));
+		Assert.assertEquals(Arrays.asList(supplementary), index.getClasses("\u00E9.jar"));
+		Assert.assertEquals(bmp, index.getName(index.getNode(bmp)));
+	}
+
+	@Test
+	public void testEmptyIndex() throws IOException {
+		final File file = folder.newFile("empty.jidx");
+		new IndexWriter().write(file);
+
+		final DependencyIndex index = DependencyIndex.open(file);
+		Assert.assertEquals(0, index.getNodeCount());
+		Assert.assertEquals(Collections.emptyList(), index.getArchives());
+		Assert.assertEquals(-1, index.getNode("a/A"));
+	}
+
+	@Test
+	public void testCorruptedIndex() throws IOException {
+		final File file = folder.newFile("corrupted.jidx");
+		new IndexWriter().add("a.jar", classes("a/A", "b/B")).write(file);
+		final byte[] bytes = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+		try {
+			DependencyIndex.open(file);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Corrupted index file"));
+		}
+
+		Files.write(file.toPath(), new byte[100]);
+		try {
+			DependencyIndex.open(file);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Unsupported index file"));
+		}
+	}
+
+	private static Map<String, Set<String>> classes(final String className, final String dependency) {
+		final Map<String, Set<String>> classes = new TreeMap<String, Set<String>>();
+		classes.put(className, Collections.singleton(dependency));
+		return classes;
+	}
+}
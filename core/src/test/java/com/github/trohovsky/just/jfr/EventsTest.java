@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.jfr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.trohovsky.just.DependencyUtils;
+import com.github.trohovsky.just.Reader;
+import com.github.trohovsky.just.corpus.CorpusGenerator;
+
+public class EventsTest {
+
+	private static final String PREFIX = "com.github.trohovsky.just.";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testEvents() throws IOException {
+		final CorpusGenerator generator = CorpusGenerator.of(10).methodSize(2000);
+		final File jar = folder.newFile("large.jar");
+		generator.writeJar(jar);
+		final Path dump = folder.newFile("events.jfr").toPath();
+
+		final Map<String, Set<String>> classes;
+		final Recording recording = new Recording();
+		try {
+			for (String event : new String[] { "ArchiveOpen", "ArchiveScan", "ClassParse", "SetOperation" }) {
+				recording.enable(PREFIX + event).withoutThreshold();
+			}
+			recording.start();
+			classes = Reader.from(jar.getPath()).readClassesWithDependencies();
+			DependencyUtils.subtract(DependencyUtils.flatten(classes), classes.keySet());
+			recording.stop();
+			recording.dump(dump);
+		} finally {
+			recording.close();
+		}
+
+		final Map<String, Integer> counts = new HashMap<String, Integer>();
+		final List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+		for (RecordedEvent event : events) {
+			final String name = event.getEventType().getName().substring(PREFIX.length());
+			counts.put(name, counts.containsKey(name) ? counts.get(name) + 1 : 1);
+			if (name.equals("ArchiveOpen")) {
+				Assert.assertEquals(jar.getPath(), event.getString("path"));
+			} else if (name.equals("ArchiveScan")) {
+				Assert.assertEquals("classesWithDependencies", event.getString("operation"));
+				Assert.assertEquals(classes.size(), event.getLong("classes"));
+				Assert.assertTrue(event.getLong("bytes") > 0);
+			} else if (name.equals("ClassParse")) {
+				Assert.assertTrue(classes.containsKey(event.getString("className")));
+				Assert.assertTrue(event.getInt("bytes") >= ClassParseEvent.SIZE_THRESHOLD);
+			} else if (name.equals("SetOperation")) {
+				Assert.assertTrue(event.getString("operation").length() > 0);
+			}
+		}
+		Assert.assertEquals(Integer.valueOf(1), counts.get("ArchiveOpen"));
+		Assert.assertEquals(Integer.valueOf(1), counts.get("ArchiveScan"));
+		Assert.assertEquals(Integer.valueOf(classes.size()), counts.get("ClassParse"));
+		Assert.assertEquals(Integer.valueOf(2), counts.get("SetOperation"));
+	}
+}
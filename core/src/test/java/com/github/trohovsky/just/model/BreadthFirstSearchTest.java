@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BreadthFirstSearchTest {
+
+	@Test
+	public void testLikeSequentialSearch() {
+		SymbolTable symbolTable = new SymbolTable();
+		int nodeCount = 50000;
+		for (int i = 0; i < nodeCount; i++) {
+			symbolTable.intern("p/C" + i);
+		}
+		Random random = new Random(42);
+		DependencyGraph.Builder builder = new DependencyGraph.Builder(symbolTable);
+		for (int node = 0; node < nodeCount; node++) {
+			int[] dependencies = new int[random.nextInt(5)];
+			for (int i = 0; i < dependencies.length; i++) {
+				dependencies[i] = random.nextInt(nodeCount);
+			}
+			builder.add(node, dependencies);
+		}
+		DependencyGraph graph = builder.build();
+		ClassSet roots = ClassSet.ofIds(symbolTable, new int[] { 1, 2, 3, 500 }, 4);
+
+		int[] expected = reachable(graph, roots);
+		Assert.assertArrayEquals(expected, BreadthFirstSearch.reachableFrom(graph, roots, 1).toIdArray());
+		Assert.assertArrayEquals(expected, BreadthFirstSearch.reachableFrom(graph, roots, 4).toIdArray());
+	}
+
+	@Test
+	public void testRootsOutsideGraph() {
+		SymbolTable symbolTable = new SymbolTable();
+		DependencyGraph graph = DependencyGraph.of(symbolTable, Collections.singletonMap("a/A",
+				Collections.singleton("a/B")));
+		ClassSet roots = ClassSet.of(symbolTable, Arrays.asList("a/A", "x/X"));
+		Assert.assertEquals(ClassSet.of(symbolTable, Arrays.asList("a/A", "a/B", "x/X")),
+				BreadthFirstSearch.reachableFrom(graph, roots, 2));
+	}
+
+	private static int[] reachable(DependencyGraph graph, ClassSet roots) {
+		BitSet visited = new BitSet();
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+		for (int root : roots.toIdArray()) {
+			visited.set(root);
+			queue.add(root);
+		}
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+				if (!visited.get(graph.getTarget(edge))) {
+					visited.set(graph.getTarget(edge));
+					queue.add(graph.getTarget(edge));
+				}
+			}
+		}
+		return visited.stream().toArray();
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClassSetTest {
+
+	@Test
+	public void testSymbolTable() {
+		SymbolTable symbolTable = new SymbolTable();
+		for (int i = 0; i < 5000; i++) {
+			Assert.assertEquals(i, symbolTable.intern("a/C" + i));
+		}
+		Assert.assertEquals(42, symbolTable.intern("a/C42"));
+		Assert.assertEquals(42, symbolTable.get("a/C42"));
+		Assert.assertEquals(-1, symbolTable.get("a/D"));
+		Assert.assertEquals("a/C4999", symbolTable.name(4999));
+		Assert.assertEquals(5000, symbolTable.size());
+	}
+
+	@Test
+	public void testSymbolTableRegions() {
+		SymbolTable symbolTable = new SymbolTable();
+		for (int i = 0; i < 5000; i++) {
+			String name = "(La/C" + i + ";)V";
+			Assert.assertEquals(i, symbolTable.intern(name, 2, name.length() - 3));
+		}
+		char[] chars = "xa/C42y".toCharArray();
+		Assert.assertEquals(42, symbolTable.intern(chars, 1, 6));
+		Assert.assertEquals(42, symbolTable.intern("a/C42"));
+		Assert.assertEquals(5000, symbolTable.intern(chars, 1, 4));
+		Assert.assertEquals("a/C", symbolTable.name(5000));
+		Assert.assertEquals(5000, symbolTable.get("a/C"));
+		Assert.assertEquals(5001, symbolTable.size());
+	}
+
+	@Test
+	public void testLikeTreeSet() {
+		SymbolTable symbolTable = new SymbolTable();
+		symbolTable.intern("z/Z");
+		Set<String> expected = new TreeSet<String>(Arrays.asList("c/C", "a/A", "b/B", "z/Z"));
+		ClassSet classes = ClassSet.of(symbolTable, Arrays.asList("b/B", "z/Z", "a/A", "c/C", "a/A"));
+
+		Assert.assertEquals(expected, classes);
+		Assert.assertEquals(classes, expected);
+		Assert.assertEquals(expected.hashCode(), classes.hashCode());
+		Assert.assertArrayEquals(expected.toArray(), classes.toArray());
+		Assert.assertEquals(expected.toString(), classes.toString());
+		Assert.assertTrue(classes.contains("b/B"));
+		Assert.assertFalse(classes.contains("d/D"));
+		Assert.assertFalse(classes.contains(null));
+		Assert.assertTrue(ClassSet.empty(symbolTable).isEmpty());
+	}
+
+	@Test
+	public void testIterationOrder() {
+		SymbolTable symbolTable = new SymbolTable();
+		ClassSet unsorted = ClassSet.of(symbolTable, Arrays.asList("b/B", "a/A", "c/C"));
+		ClassSet sorted = ClassSet.of(symbolTable, Arrays.asList("a/A", "c/C"));
+		ClassSet single = ClassSet.of(symbolTable, Arrays.asList("b/B"));
+
+		// the order is resolved by the first iteration and kept
+		for (int i = 0; i < 2; i++) {
+			Assert.assertEquals(Arrays.asList("a/A", "b/B", "c/C"), new ArrayList<String>(unsorted));
+			Assert.assertEquals(Arrays.asList("a/A", "c/C"), new ArrayList<String>(sorted));
+			Assert.assertEquals(Arrays.asList("b/B"), new ArrayList<String>(single));
+			Assert.assertFalse(ClassSet.empty(symbolTable).iterator().hasNext());
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutable() {
+		ClassSet.of(new SymbolTable(), Arrays.asList("a/A")).add("b/B");
+	}
+
+	@Test
+	public void testDependencies() {
+		SymbolTable symbolTable = new SymbolTable();
+		Dependencies dependencies = new Dependencies(symbolTable);
+		Set<String> expected = new TreeSet<String>();
+		for (int i = 0; i < 1000; i++) {
+			dependencies.addName("a/C" + i % 100);
+			expected.add("a/C" + i % 100);
+		}
+		Assert.assertEquals(expected, dependencies.get());
+
+		Dependencies otherDependencies = new Dependencies();
+		otherDependencies.addName("b/B");
+		dependencies.addAll(otherDependencies);
+		expected.add("b/B");
+		Assert.assertEquals(expected, dependencies.get());
+		Assert.assertSame(symbolTable, dependencies.get().getSymbolTable());
+	}
+}
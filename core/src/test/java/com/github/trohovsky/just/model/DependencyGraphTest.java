@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DependencyGraphTest {
+
+	@Test
+	public void testToMap() {
+		Map<String, Set<String>> classesWithDependencies = classesWithDependencies();
+		DependencyGraph graph = DependencyGraph.of(classesWithDependencies);
+
+		Assert.assertEquals(classesWithDependencies, graph.toMap());
+		Assert.assertEquals(classesWithDependencies.keySet(), graph.getClasses());
+		Assert.assertEquals(6, graph.getEdgeCount());
+		Assert.assertEquals(set("a/B", "b/C"), graph.getDependencies("a/A"));
+		Assert.assertEquals(set("b/C"), graph.getDependencies("b/E"));
+		Assert.assertNull(graph.getDependencies("b/C"));
+		Assert.assertNull(graph.getDependencies("x/X"));
+	}
+
+	@Test
+	public void testEdges() {
+		DependencyGraph graph = DependencyGraph.of(classesWithDependencies());
+		SymbolTable symbolTable = graph.getSymbolTable();
+
+		int node = symbolTable.get("a/B");
+		Assert.assertTrue(graph.isClass(node));
+		Assert.assertEquals(3, graph.getOutDegree(node));
+		Set<String> targets = new TreeSet<String>();
+		for (int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+			targets.add(symbolTable.name(graph.getTarget(edge)));
+		}
+		Assert.assertEquals(set("a/A", "b/C", "b/D"), targets);
+
+		node = symbolTable.get("b/D");
+		Assert.assertFalse(graph.isClass(node));
+		Assert.assertEquals(0, graph.getOutDegree(node));
+		Assert.assertEquals(0, graph.getOutDegree(symbolTable.intern("x/Y")));
+	}
+
+	@Test
+	public void testReverse() {
+		DependencyGraph graph = DependencyGraph.of(classesWithDependencies());
+		DependencyGraph reverse = graph.reverse();
+
+		Map<String, Set<String>> expected = new TreeMap<String, Set<String>>();
+		expected.put("a/A", set("a/B"));
+		expected.put("a/B", set("a/A"));
+		expected.put("b/C", set("a/A", "a/B", "b/E"));
+		expected.put("b/D", set("a/B"));
+		Assert.assertEquals(expected, reverse.toMap());
+		Assert.assertSame(reverse, graph.reverse());
+		Assert.assertSame(graph, reverse.reverse());
+	}
+
+	@Test
+	public void testBuilderMerges() {
+		SymbolTable symbolTable = new SymbolTable();
+		int a = symbolTable.intern("a/A");
+		int b = symbolTable.intern("a/B");
+		int c = symbolTable.intern("b/C");
+		DependencyGraph graph = new DependencyGraph.Builder(symbolTable).add(c, new int[] {})
+				.add(a, new int[] { c, b, c }).add(a, new int[] { a, b }).build();
+
+		Map<String, Set<String>> expected = new TreeMap<String, Set<String>>();
+		expected.put("a/A", set("a/A", "a/B", "b/C"));
+		expected.put("b/C", set());
+		Assert.assertEquals(expected, graph.toMap());
+		Assert.assertEquals(3, graph.getEdgeCount());
+	}
+
+	private static Map<String, Set<String>> classesWithDependencies() {
+		Map<String, Set<String>> classesWithDependencies = new TreeMap<String, Set<String>>();
+		classesWithDependencies.put("a/A", set("a/B", "b/C"));
+		classesWithDependencies.put("a/B", set("a/A", "b/C", "b/D"));
+		classesWithDependencies.put("b/E", set("b/C"));
+		return classesWithDependencies;
+	}
+
+	private static Set<String> set(String... names) {
+		return new TreeSet<String>(Arrays.asList(names));
+	}
+}
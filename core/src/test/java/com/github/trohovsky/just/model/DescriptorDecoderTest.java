@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.signature.SignatureReader;
+
+import com.github.trohovsky.just.visitor.SignatureDependenciesVisitor;
+
+public class DescriptorDecoderTest {
+
+	private static final String[] SIGNATURES = {
+			"I",
+			"[[J",
+			"Ljava/lang/String;",
+			"[[Ljava/util/Map;",
+			"(IJ[Ljava/lang/Object;)V",
+			"()[Ljava/lang/String;",
+			"Ljava/util/List<Ljava/lang/String;>;",
+			"Ljava/util/Map<-Ljava/lang/Integer;+[Ljava/util/Set<*>;>;",
+			"<T:Ljava/lang/Object;>Ljava/lang/Object;Ljava/lang/Comparable<TT;>;",
+			"<K::Ljava/lang/Comparable<TK;>;:Ljava/io/Serializable;V:Ljava/lang/Object;>(TK;)TV;"
+					+ "^TE;^Ljava/io/IOException;",
+			"La/Outer<TT;>.Inner;",
+			"La/Outer.Middle<La/Other<Ljava/lang/Long;>.Nested<TT;>.Deep;>.Inner<[La/X.Y;>;",
+			"(La/Outer$Inner;La/Outer<TT;>.Inner.Innermost;)La/Outer.Inner;" };
+
+	@Test
+	public void testLikeSignatureReader() {
+		for (String signature : SIGNATURES) {
+			Assert.assertEquals(signature, readSignature(signature), decodeSignature(signature));
+		}
+	}
+
+	@Test
+	public void testInternalName() {
+		Dependencies dependencies = new Dependencies(new SymbolTable());
+		dependencies.addInternalName("a/A");
+		dependencies.addInternalName("[[La/B;");
+		dependencies.addInternalName("[I");
+		Assert.assertEquals(new TreeSet<String>(Arrays.asList("a/A", "a/B")), dependencies.get());
+	}
+
+	@Test
+	public void testSharedSymbolTable() {
+		SymbolTable symbolTable = new SymbolTable();
+		int id = symbolTable.intern("a/Outer$Inner");
+		Dependencies dependencies = new Dependencies(symbolTable);
+		dependencies.addSignature("La/Outer<TT;>.Inner;");
+		Assert.assertTrue(dependencies.get().contains("a/Outer$Inner"));
+		Assert.assertEquals(id, symbolTable.get("a/Outer$Inner"));
+		Assert.assertEquals(2, symbolTable.size());
+	}
+
+	private static Set<String> readSignature(final String signature) {
+		Dependencies dependencies = new Dependencies(new SymbolTable());
+		new SignatureReader(signature).accept(new SignatureDependenciesVisitor(dependencies));
+		return new TreeSet<String>(dependencies.get());
+	}
+
+	private static Set<String> decodeSignature(final String signature) {
+		Dependencies dependencies = new Dependencies(new SymbolTable());
+		dependencies.addSignature(signature);
+		return new TreeSet<String>(dependencies.get());
+	}
+}
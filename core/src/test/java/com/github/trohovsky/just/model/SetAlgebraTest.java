@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SetAlgebraTest {
+
+	private final SymbolTable symbolTable = new SymbolTable();
+
+	@Test
+	public void testLikeTreeSets() {
+		Random random = new Random(42);
+		// sizes covering both merge joins and binary searches
+		int[] sizes = { 0, 1, 5, 100, 3000 };
+		for (int sizeA : sizes) {
+			for (int sizeB : sizes) {
+				Set<String> a = randomSet(random, sizeA);
+				Set<String> b = randomSet(random, sizeB);
+				ClassSet classSetA = ClassSet.of(symbolTable, a);
+				ClassSet classSetB = ClassSet.of(symbolTable, b);
+
+				Set<String> expected = new TreeSet<String>(a);
+				expected.retainAll(b);
+				assertSetEquals(expected, SetAlgebra.intersection(classSetA, classSetB));
+
+				expected = new TreeSet<String>(a);
+				expected.removeAll(b);
+				assertSetEquals(expected, SetAlgebra.subtract(classSetA, classSetB));
+
+				expected = new TreeSet<String>(a);
+				expected.addAll(b);
+				assertSetEquals(expected, SetAlgebra.union(classSetA, classSetB));
+				assertSetEquals(expected, SetAlgebra.union(symbolTable, Arrays.asList(classSetA, classSetB)));
+			}
+		}
+	}
+
+	@Test
+	public void testIntersectionOfMany() {
+		Random random = new Random(7);
+		Set<String> set = randomSet(random, 2000);
+		ClassSet classSet = ClassSet.of(symbolTable, set);
+		List<ClassSet> sets = new ArrayList<ClassSet>();
+		for (int i = 0; i < 5000; i++) {
+			sets.add(ClassSet.of(symbolTable, randomSet(random, random.nextInt(20))));
+		}
+
+		ClassSet[] intersections = SetAlgebra.intersection(sets, classSet);
+		Assert.assertEquals(sets.size(), intersections.length);
+		for (int i = 0; i < sets.size(); i++) {
+			Set<String> expected = new TreeSet<String>(sets.get(i));
+			expected.retainAll(set);
+			assertSetEquals(expected, intersections[i]);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDifferentSymbolTables() {
+		SetAlgebra.union(ClassSet.of(symbolTable, Arrays.asList("a/A")),
+				ClassSet.of(new SymbolTable(), Arrays.asList("a/A")));
+	}
+
+	private static void assertSetEquals(Set<String> expected, ClassSet actual) {
+		Assert.assertEquals(expected, actual);
+		Assert.assertArrayEquals(expected.toArray(), actual.toArray());
+	}
+
+	private static Set<String> randomSet(Random random, int size) {
+		Set<String> set = new TreeSet<String>();
+		while (set.size() < size) {
+			set.add("p" + random.nextInt(10) + "/C" + random.nextInt(10000));
+		}
+		return set;
+	}
+}
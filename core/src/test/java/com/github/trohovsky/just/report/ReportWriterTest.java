@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.report;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReportWriterTest {
+
+	private static final String NL = System.lineSeparator();
+
+	private static Map<String, List<String>> classesWithDependencies() {
+		final Map<String, List<String>> classes = new LinkedHashMap<String, List<String>>();
+		classes.put("a/A", Arrays.asList("b/B", "c/C\"1"));
+		classes.put("a/E", Collections.<String> emptyList());
+		return classes;
+	}
+
+	private static String write(final ReportFormat format, final Map<String, List<String>> classes)
+			throws IOException {
+		final StringWriter out = new StringWriter();
+		final ReportWriter writer = format.open(out);
+		writer.writeAll(classes);
+		writer.close();
+		Assert.assertEquals(classes.size(), writer.getClasses());
+		return out.toString();
+	}
+
+	private static String write(final ReportFormat format, final List<String> classes) throws IOException {
+		final StringWriter out = new StringWriter();
+		final ReportWriter writer = format.open(out);
+		writer.writeAll(classes);
+		writer.close();
+		return out.toString();
+	}
+
+	@Test
+	public void testText() throws IOException {
+		Assert.assertEquals("a/A" + NL + "\tb/B" + NL + "\tc/C\"1" + NL + "a/E" + NL,
+				write(ReportFormat.TEXT, classesWithDependencies()));
+		Assert.assertEquals("a/A" + NL + "a/E" + NL, write(ReportFormat.TEXT, Arrays.asList("a/A", "a/E")));
+	}
+
+	@Test
+	public void testJsonLines() throws IOException {
+		Assert.assertEquals("{\"class\":\"a/A\",\"dependencies\":[\"b/B\",\"c/C\\\"1\"]}\n"
+				+ "{\"class\":\"a/E\",\"dependencies\":[]}\n", write(ReportFormat.JSONL, classesWithDependencies()));
+		Assert.assertEquals("{\"class\":\"a/A\"}\n", write(ReportFormat.JSONL, Arrays.asList("a/A")));
+	}
+
+	@Test
+	public void testCsv() throws IOException {
+		Assert.assertEquals("class,dependency\r\na/A,b/B\r\na/A,\"c/C\"\"1\"\r\na/E,\r\n",
+				write(ReportFormat.CSV, classesWithDependencies()));
+		Assert.assertEquals("class\r\na/A\r\n\"a,E\"\r\n", write(ReportFormat.CSV, Arrays.asList("a/A", "a,E")));
+	}
+
+	@Test
+	public void testDot() throws IOException {
+		Assert.assertEquals("digraph dependencies {\n\t\"a/A\";\n\t\"a/A\" -> \"b/B\";\n\t\"a/A\" -> \"c/C\\\"1\";\n"
+				+ "\t\"a/E\";\n}\n", write(ReportFormat.DOT, classesWithDependencies()));
+	}
+
+	@Test
+	public void testGraphMl() throws IOException {
+		final Map<String, List<String>> classes = classesWithDependencies();
+		classes.put("b/B", Arrays.asList("a/A"));
+		Assert.assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n"
+				+ "  <graph id=\"dependencies\" edgedefault=\"directed\">\n"
+				+ "    <node id=\"a/A\"/>\n"
+				+ "    <node id=\"b/B\"/>\n"
+				+ "    <edge source=\"a/A\" target=\"b/B\"/>\n"
+				+ "    <node id=\"c/C&quot;1\"/>\n"
+				+ "    <edge source=\"a/A\" target=\"c/C&quot;1\"/>\n"
+				+ "    <node id=\"a/E\"/>\n"
+				+ "    <edge source=\"b/B\" target=\"a/A\"/>\n"
+				+ "  </graph>\n"
+				+ "</graphml>\n", write(ReportFormat.GRAPHML, classes));
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		Assert.assertEquals("", write(ReportFormat.TEXT, Collections.<String> emptyList()));
+		Assert.assertEquals("digraph dependencies {\n}\n",
+				write(ReportFormat.DOT, Collections.<String, List<String>> emptyMap()));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMixedClasses() throws IOException {
+		final ReportWriter writer = ReportFormat.CSV.open(new StringWriter());
+		writer.writeClass("a/A", Arrays.asList("b/B"));
+		writer.writeClass("a/E");
+	}
+
+	@Test
+	public void testFormatOf() {
+		Assert.assertEquals(ReportFormat.GRAPHML, ReportFormat.of("GraphML"));
+		Assert.assertEquals("jsonl", ReportFormat.JSONL.getName());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownFormat() {
+		ReportFormat.of("xml");
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.stats;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.trohovsky.just.Reader;
+import com.github.trohovsky.just.stats.ScanStatistics.ArchiveStatistics;
+import com.github.trohovsky.just.stats.ScanStatistics.ClassTime;
+import com.github.trohovsky.just.stats.ScanStatistics.Phase;
+
+public class ScanStatisticsTest {
+
+	private static final String APP_JAR = "target/test-app.jar";
+	private static final String APP_DIRECTORY = "target/test-app";
+
+	@Test
+	public void testReadClassesWithDependencies() throws IOException {
+		ScanStatistics statistics = new ScanStatistics(3);
+		Map<String, Set<String>> classes = Reader.from(APP_JAR, APP_DIRECTORY).parallelism(2).listener(statistics)
+				.readClassesWithDependencies();
+		statistics.stop();
+
+		List<ArchiveStatistics> archives = statistics.getArchives();
+		Assert.assertEquals(2, archives.size());
+		ArchiveStatistics directory = archives.get(0);
+		ArchiveStatistics jar = archives.get(1);
+		Assert.assertEquals(APP_DIRECTORY, directory.getPath());
+		Assert.assertEquals(APP_JAR, jar.getPath());
+		for (ArchiveStatistics archive : archives) {
+			Assert.assertEquals(classes.size(), archive.getListedClasses());
+			Assert.assertEquals(classes.size(), archive.getParsedClasses());
+			Assert.assertTrue(archive.getInflatedBytes() > 0);
+			Assert.assertTrue(archive.getNanos(Phase.OPEN) > 0);
+			Assert.assertTrue(archive.getNanos(Phase.PARSE) > 0);
+		}
+		Assert.assertEquals(directory.getInflatedBytes(), directory.getReadBytes());
+		Assert.assertEquals(directory.getInflatedBytes(), jar.getInflatedBytes());
+		Assert.assertTrue(jar.getReadBytes() < jar.getInflatedBytes());
+		Assert.assertEquals(2L * classes.size(), statistics.getParsedClasses());
+
+		List<ClassTime> slowest = statistics.getSlowestClasses();
+		Assert.assertEquals(3, slowest.size());
+		Assert.assertTrue(slowest.get(0).getNanos() >= slowest.get(1).getNanos());
+		Assert.assertTrue(slowest.get(1).getNanos() >= slowest.get(2).getNanos());
+		Assert.assertTrue(classes.containsKey(slowest.get(0).getClassName()));
+	}
+
+	@Test
+	public void testListClasses() throws IOException {
+		ScanStatistics statistics = new ScanStatistics();
+		Set<String> classes = Reader.from(APP_JAR).listener(statistics).listClasses();
+
+		ArchiveStatistics jar = statistics.getArchives().get(0);
+		Assert.assertEquals(classes.size(), jar.getListedClasses());
+		Assert.assertEquals(0, jar.getParsedClasses());
+		Assert.assertTrue(statistics.getSlowestClasses().isEmpty());
+
+		// every listing of the path is counted, not only the newly added classes
+		statistics = new ScanStatistics();
+		Reader.from(APP_JAR, APP_JAR).listener(statistics).listClasses();
+		Assert.assertEquals(2L * classes.size(), statistics.getArchives().get(0).getListedClasses());
+	}
+
+	@Test
+	public void testSummary() throws IOException {
+		ScanStatistics statistics = new ScanStatistics();
+		Reader.from(APP_JAR).listener(statistics).readDependencies();
+		statistics.classParsed("a\"b.jar", "a/B", 10, 1);
+		StringWriter json = new StringWriter();
+		statistics.writeJson(json);
+
+		Assert.assertTrue(json.toString(), json.toString().startsWith("{\"wallMillis\":"));
+		Assert.assertTrue(json.toString(), json.toString().contains("\"path\":\"target/test-app.jar\""));
+		Assert.assertTrue(json.toString(), json.toString().contains("\"path\":\"a\\\"b.jar\""));
+		Assert.assertTrue(json.toString(), json.toString().contains("\"inflateMillis\":"));
+		Assert.assertTrue(statistics.toString(), statistics.toString().contains("target/test-app.jar"));
+		Assert.assertTrue(statistics.toString(), statistics.toString().contains("Slowest classes:"));
+		Assert.assertFalse(json.toString(), json.toString().contains("\"counters\""));
+	}
+
+	@Test
+	public void testCountCalls() throws IOException {
+		for (Reader.Engine engine : Reader.Engine.values()) {
+			ScanStatistics statistics = new ScanStatistics(3);
+			Map<String, Set<String>> classes = Reader.from(APP_JAR).engine(engine).listener(statistics)
+					.countCalls(true).readClassesWithDependencies();
+
+			long dependencies = 0;
+			for (Set<String> classDependencies : classes.values()) {
+				dependencies += classDependencies.size();
+			}
+			ArchiveStatistics jar = statistics.getArchives().get(0);
+			Assert.assertTrue(jar.isCounted());
+			Assert.assertEquals(dependencies,
+					jar.getCount(Counter.NAMES_ADDED) - jar.getCount(Counter.NAMES_DEDUPLICATED));
+			Assert.assertTrue(jar.getCount(Counter.NAMES_DEDUPLICATED) > 0);
+			Assert.assertTrue(jar.getCount(Counter.DESCRIPTORS) > 0);
+			Assert.assertTrue(jar.getCount(Counter.SIGNATURES) > 0);
+			Assert.assertTrue(jar.getCount(Counter.CLASS_TYPES) > 0);
+			Assert.assertTrue(jar.getCount(Counter.CLASS_TYPES) <= jar.getCount(Counter.NAMES_ADDED));
+			if (engine == Reader.Engine.VISITOR) {
+				Assert.assertEquals(classes.size(), jar.getCount(Counter.VISIT));
+				Assert.assertTrue(jar.getCount(Counter.INSTRUCTIONS) > jar.getCount(Counter.VISIT_METHOD_INSN));
+				Assert.assertTrue(jar.getCount(Counter.VISIT_METHOD_INSN) > 0);
+			} else {
+				Assert.assertEquals(0, jar.getCount(Counter.VISIT));
+			}
+
+			ClassTime slowest = statistics.getSlowestClasses().get(0);
+			Assert.assertTrue(slowest.getCount(Counter.NAMES_ADDED) > 0);
+			StringWriter json = new StringWriter();
+			statistics.writeJson(json);
+			Assert.assertTrue(json.toString(), json.toString().contains("\"counters\":{\"visit\":"));
+			Assert.assertTrue(statistics.toString(), statistics.toString().contains("namesAdded="));
+		}
+	}
+
+	@Test
+	public void testCountCallsOfDependencies() throws IOException {
+		ScanStatistics statistics = new ScanStatistics();
+		Set<String> dependencies = Reader.from(APP_JAR).listener(statistics).countCalls(true).readDependencies();
+
+		ArchiveStatistics jar = statistics.getArchives().get(0);
+		Assert.assertEquals(dependencies.size(),
+				jar.getCount(Counter.NAMES_ADDED) - jar.getCount(Counter.NAMES_DEDUPLICATED));
+	}
+}
@@ -0,0 +1,32 @@
+package com.github.trohovsky.just.test.app;
+
+import java.util.concurrent.Callable;
+
+import com.github.trohovsky.just.test.lib.nested.MethodReference;
+import com.github.trohovsky.just.test.lib.nested.NestedOuter;
+
+public class NestedDependencies {
+
+	NestedOuter<String>.Inner inner;
+
+	public Object loadNestedClass() {
+		return NestedOuter.StaticInner.class;
+	}
+
+	public boolean isNestedInterface(Object object) {
+		return object instanceof NestedOuter.Callback;
+	}
+
+	public Callable<String> lambda() {
+		return () -> MethodReference.reference(this);
+	}
+
+	public Object methodReference() {
+		java.util.function.Function<Object, String> function = MethodReference::reference;
+		return function;
+	}
+
+	private static class Unused {
+
+	}
+}
@@ -0,0 +1,11 @@
+package com.github.trohovsky.just.test.app.callgraph;
+
+public class Callback implements Runnable {
+
+	@Override
+	public void run() {
+	}
+
+	void unused() {
+	}
+}
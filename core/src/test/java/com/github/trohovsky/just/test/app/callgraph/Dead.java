@@ -0,0 +1,8 @@
+package com.github.trohovsky.just.test.app.callgraph;
+
+public class Dead {
+
+	public void dead() {
+		new Service().unused();
+	}
+}
@@ -0,0 +1,19 @@
+package com.github.trohovsky.just.test.app.callgraph;
+
+public class Entry {
+
+	public static void main(String[] args) {
+		Task task = new Service();
+		task.run();
+		Helper.used();
+		new Thread(new Callback()).start();
+		Runnable lambda = Entry::target;
+		lambda.run();
+	}
+
+	private static void target() {
+	}
+
+	private static void unused() {
+	}
+}
@@ -0,0 +1,14 @@
+package com.github.trohovsky.just.test.app.callgraph;
+
+public class Helper {
+
+	static int counter;
+	static int unusedField;
+	static final Object LOCK = new Object();
+
+	public static void used() {
+	}
+
+	public static void unused() {
+	}
+}
@@ -0,0 +1,11 @@
+package com.github.trohovsky.just.test.app.callgraph;
+
+public class OtherTask implements Task {
+
+	@Override
+	public void run() {
+	}
+
+	private void run(int times) {
+	}
+}
@@ -0,0 +1,18 @@
+package com.github.trohovsky.just.test.app.callgraph;
+
+public class Service implements Task {
+
+	@Override
+	public void run() {
+		Helper.counter++;
+	}
+
+	public void unused() {
+		Helper.unused();
+	}
+
+	@Override
+	public String toString() {
+		return "service";
+	}
+}
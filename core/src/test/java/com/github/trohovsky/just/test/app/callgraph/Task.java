@@ -0,0 +1,7 @@
+package com.github.trohovsky.just.test.app.callgraph;
+
+public interface Task {
+
+	void run();
+
+}
@@ -0,0 +1,8 @@
+package com.github.trohovsky.just.test.lib.nested;
+
+public class MethodReference {
+
+	public static String reference(Object object) {
+		return String.valueOf(object);
+	}
+}
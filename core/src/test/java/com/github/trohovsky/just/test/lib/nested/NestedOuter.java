@@ -0,0 +1,16 @@
+package com.github.trohovsky.just.test.lib.nested;
+
+public class NestedOuter<T> {
+
+	public static class StaticInner {
+
+	}
+
+	public class Inner {
+
+	}
+
+	public interface Callback {
+
+	}
+}
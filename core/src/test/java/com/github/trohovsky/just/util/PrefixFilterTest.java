@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 Tomas Rohovsky
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.trohovsky.just.util;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrefixFilterTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String[] PARTS = { "a", "b", "ab", "/", "é", "€", "😀", "" };
+
+	@Test
+	public void testAccepts() {
+		PrefixFilter filter = PrefixFilter.of(new String[] { "com/a/", "org/" }, new String[] { "com/a/internal",
+				"org/x" });
+		Assert.assertTrue(filter.accepts("com/a/A"));
+		Assert.assertTrue(filter.accepts("org/y/Y"));
+		Assert.assertFalse(filter.accepts("com/a/internal/I"));
+		Assert.assertFalse(filter.accepts("org/xy/X"));
+		Assert.assertFalse(filter.accepts("com/b/B"));
+		Assert.assertFalse(filter.accepts("com/"));
+		Assert.assertFalse(filter.acceptsAll());
+		Assert.assertTrue(PrefixFilter.all().acceptsAll());
+		Assert.assertTrue(PrefixFilter.of(new String[] { "" }, null).accepts("any/Class"));
+		Assert.assertFalse(PrefixFilter.of(null, new String[] { "" }).accepts("any/Class"));
+	}
+
+	@Test
+	public void testAcceptsAnyStartingWith() {
+		PrefixFilter filter = PrefixFilter.of(new String[] { "com/a/", "org/b" }, new String[] { "com/a/internal/" });
+		Assert.assertTrue(filter.acceptsAnyStartingWith("com/"));
+		Assert.assertTrue(filter.acceptsAnyStartingWith("com/a/"));
+		Assert.assertTrue(filter.acceptsAnyStartingWith("com/a/b/"));
+		Assert.assertTrue(filter.acceptsAnyStartingWith("org/"));
+		Assert.assertTrue(filter.acceptsAnyStartingWith("org/bb/"));
+		Assert.assertFalse(filter.acceptsAnyStartingWith("com/b/"));
+		Assert.assertFalse(filter.acceptsAnyStartingWith("net/"));
+		Assert.assertFalse(filter.acceptsAnyStartingWith("com/a/internal/"));
+		Assert.assertFalse(filter.acceptsAnyStartingWith("com/a/internal/x/"));
+
+		filter = PrefixFilter.of(null, new String[] { "com/a/" });
+		Assert.assertTrue(filter.acceptsAnyStartingWith("com/"));
+		Assert.assertFalse(filter.acceptsAnyStartingWith("com/a/"));
+	}
+
+	@Test
+	public void testLikeStartsWith() {
+		Random random = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			String[] includes = random.nextInt(3) == 0 ? null : randomStrings(random);
+			String[] excludes = random.nextInt(3) == 0 ? null : randomStrings(random);
+			PrefixFilter filter = PrefixFilter.of(includes, excludes);
+			for (int j = 0; j < 50; j++) {
+				String name = randomString(random, 8);
+				boolean expected = (includes == null || startsWithAny(name, includes))
+						&& (excludes == null || !startsWithAny(name, excludes));
+				byte[] bytes = ("xx" + name).getBytes(UTF_8);
+				Assert.assertEquals(name, expected, filter.accepts(name));
+				Assert.assertEquals(name, expected, filter.accepts(bytes, 2, bytes.length - 2));
+
+				// no name starting with a rejected prefix is accepted
+				int half = name.codePointCount(0, name.length()) / 2;
+				String prefix = name.substring(0, name.offsetByCodePoints(0, half));
+				if (!filter.acceptsAnyStartingWith(prefix)) {
+					Assert.assertFalse(name, expected);
+				}
+			}
+		}
+	}
+
+	private static boolean startsWithAny(String name, String[] prefixes) {
+		for (String prefix : prefixes) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String[] randomStrings(Random random) {
+		String[] strings = new String[random.nextInt(4)];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = randomString(random, 4);
+		}
+		return strings;
+	}
+
+	private static String randomString(Random random, int maxParts) {
+		StringBuilder sb = new StringBuilder();
+		int parts = random.nextInt(maxParts);
+		for (int i = 0; i < parts; i++) {
+			sb.append(PARTS[random.nextInt(PARTS.length)]);
+		}
+		return sb.toString();
+	}
+}